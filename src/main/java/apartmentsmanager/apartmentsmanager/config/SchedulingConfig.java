@@ -0,0 +1,12 @@
+package apartmentsmanager.apartmentsmanager.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled jobs (nightly overdue scan)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,11 +1,18 @@
 package apartmentsmanager.apartmentsmanager.controller;
 
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingInstallmentRow;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingPaymentsPageDto;
 import apartmentsmanager.apartmentsmanager.entity.Apartment;
 import apartmentsmanager.apartmentsmanager.entity.Client;
+import apartmentsmanager.apartmentsmanager.entity.OverdueScanRun;
 import apartmentsmanager.apartmentsmanager.service.ApartmentService;
 import apartmentsmanager.apartmentsmanager.service.BuildingService;
 import apartmentsmanager.apartmentsmanager.service.ClientService;
+import apartmentsmanager.apartmentsmanager.service.OverdueScanService;
+import apartmentsmanager.apartmentsmanager.service.ReceivableInstallmentService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -13,6 +20,7 @@ import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,11 +34,17 @@ public class ApartmentController {
     private final ApartmentService apartmentService;
     private final ClientService clientService;
     private final BuildingService buildingService;
+    private final ReceivableInstallmentService receivableInstallmentService;
+    private final OverdueScanService overdueScanService;
     
-    public ApartmentController(ApartmentService apartmentService, ClientService clientService, BuildingService buildingService) {
+    public ApartmentController(ApartmentService apartmentService, ClientService clientService, BuildingService buildingService,
+                               ReceivableInstallmentService receivableInstallmentService,
+                               OverdueScanService overdueScanService) {
         this.apartmentService = apartmentService;
         this.clientService = clientService;
         this.buildingService = buildingService;
+        this.receivableInstallmentService = receivableInstallmentService;
+        this.overdueScanService = overdueScanService;
     }
     
     @GetMapping
@@ -92,6 +106,7 @@ public class ApartmentController {
             data.put("client", apt.getClient() != null ? apt.getClient().getName() : "");
             data.put("totalPaid", apt.getTotalPaid());
             data.put("remainingPayment", apt.getRemainingPayment());
+            data.put("lastPaymentDate", apt.getLastPaymentDate());
             data.put("hasOverduePayments", apt.hasOverduePayments());
             return data;
         }).collect(Collectors.toList());
@@ -267,308 +282,122 @@ public class ApartmentController {
     
     @GetMapping("/api/overdue")
     @ResponseBody
-    public ResponseEntity<List<Map<String, Object>>> getOverdueApartments() {
+    public ResponseEntity<List<OverdueApartmentRow>> getOverdueApartments() {
         Long buildingId = buildingService.getCurrentBuildingId().orElse(null);
-        List<Apartment> apartments = buildingId != null
-            ? apartmentService.getAllSoldApartmentsByBuilding(buildingId)
-            : List.of();
-
-        List<Map<String, Object>> data = apartments.stream()
-            .filter(Apartment::hasOverduePayments)
-            .map(this::buildOverdueDto)
-            .filter(item -> {
-                Object amount = item.get("overdueAmount");
-                if (amount instanceof java.math.BigDecimal) {
-                    return ((java.math.BigDecimal) amount).compareTo(new java.math.BigDecimal("0.01")) > 0;
-                }
-                return false;
-            })
-            .collect(Collectors.toList());
-
-        return ResponseEntity.ok(data);
+        // Read from overdue_snapshot - same source as the overdue count in /api/statistics
+        return ResponseEntity.ok(apartmentService.getOverdueRowsByBuilding(buildingId));
     }
 
-    @GetMapping("/api/upcoming")
+    /**
+     * Re-scan overdue payments of one building (default: current building), e.g. after bulk payment entry
+     */
+    @PostMapping("/api/overdue/rescan")
     @ResponseBody
-    public ResponseEntity<List<Map<String, Object>>> getUpcomingPayments() {
-        Long buildingId = buildingService.getCurrentBuildingId().orElse(null);
-        List<Apartment> apartments = buildingId != null
-            ? apartmentService.getAllSoldApartmentsByBuilding(buildingId)
-            : List.of();
-
-        List<Map<String, Object>> upcoming = new java.util.ArrayList<>();
-        java.time.LocalDate today = java.time.LocalDate.now();
-
-        for (Apartment apt : apartments) {
-            if (apt.getPaymentPlan() == null || apt.getPayments() == null) {
-                continue;
-            }
-            var plan = apt.getPaymentPlan();
-            addUpcomingIfNeeded(upcoming, apt, "При предварителен договор", plan.getPreliminaryContractDate(), plan.getPreliminaryContractAmount(), today);
-            addUpcomingIfNeeded(upcoming, apt, "Акт 14", plan.getAkt14Date(), plan.getAkt14Amount(), today);
-            addUpcomingIfNeeded(upcoming, apt, "Акт 15", plan.getAkt15Date(), plan.getAkt15Amount(), today);
-            addUpcomingIfNeeded(upcoming, apt, "Акт 16", plan.getAkt16Date(), plan.getAkt16Amount(), today);
-
-            // Fallback: if no upcoming rows for this apartment (no future dates), use current stage cumulative
-            boolean hasRowForApartment = upcoming.stream()
-                .anyMatch(item -> apt.getId().equals(item.get("id")));
-            if (!hasRowForApartment) {
-                addUpcomingFallbackForStage(upcoming, apt);
-            }
-        }
-
-        upcoming.sort((a, b) -> {
-            java.time.LocalDate da = (java.time.LocalDate) a.get("_date");
-            java.time.LocalDate db = (java.time.LocalDate) b.get("_date");
-            return da.compareTo(db);
-        });
-
-        // Remove internal date helper
-        upcoming.forEach(item -> item.remove("_date"));
-
-        return ResponseEntity.ok(upcoming);
-    }
-
-    private Map<String, Object> buildOverdueDto(Apartment apt) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("id", apt.getId());
-        data.put("buildingName", apt.getBuildingName());
-        data.put("apartmentNumber", apt.getApartmentNumber());
-        data.put("stage", apt.getStage());
-        if (apt.getClient() != null) {
-            data.put("clientName", apt.getClient().getName());
-            data.put("clientId", apt.getClient().getId());
-        } else {
-            data.put("clientName", "-");
-            data.put("clientId", null);
-        }
-
-        OverdueInfo overdueInfo = getOverdueInfo(apt);
-        if (overdueInfo.amount.compareTo(new java.math.BigDecimal("0.01")) > 0) {
-            data.put("overdueAmount", overdueInfo.amount);
-            data.put("daysOverdue", overdueInfo.days);
-        } else {
-            java.math.BigDecimal fallbackAmount = getStageBasedOverdueAmount(apt);
-            data.put("overdueAmount", fallbackAmount);
-            data.put("daysOverdue", 0);
-        }
-        return data;
-    }
-
-    private void addUpcomingIfNeeded(List<Map<String, Object>> upcoming, Apartment apt, String stageLabel,
-                                     java.time.LocalDate date, java.math.BigDecimal expectedAmount,
-                                     java.time.LocalDate today) {
-        if (date == null || expectedAmount == null || expectedAmount.compareTo(new java.math.BigDecimal("0.01")) <= 0) {
-            return;
-        }
-        if (!date.isAfter(today)) {
-            return;
-        }
-
-        java.math.BigDecimal paid = getPaidForStage(apt, stageLabel);
-        if (paid.compareTo(expectedAmount) >= 0) {
-            return;
-        }
-
-        Map<String, Object> data = new HashMap<>();
-        data.put("id", apt.getId());
-        data.put("buildingName", apt.getBuildingName());
-        data.put("apartmentNumber", apt.getApartmentNumber());
-        if (apt.getClient() != null) {
-            data.put("clientName", apt.getClient().getName());
-            data.put("clientId", apt.getClient().getId());
-        } else {
-            data.put("clientName", "-");
-            data.put("clientId", null);
-        }
-        data.put("stage", stageLabel);
-        data.put("expectedAmount", expectedAmount.subtract(paid));
-        data.put("date", date.toString());
-        data.put("_date", date);
-        upcoming.add(data);
-    }
-
-    private void addUpcomingFallbackForStage(List<Map<String, Object>> upcoming, Apartment apt) {
-        if (apt.getPaymentPlan() == null || apt.getStage() == null) {
-            return;
-        }
-
-        String stage = apt.getStage();
-        java.util.List<String> stageOrder = java.util.Arrays.asList("prelim", "akt14", "akt15", "akt16");
-        java.util.Map<String, String> stageMappingToKey = new java.util.HashMap<>();
-        stageMappingToKey.put("Предварителен договор", "prelim");
-        stageMappingToKey.put("При предварителен договор", "prelim");
-        stageMappingToKey.put("Акт 14", "akt14");
-        stageMappingToKey.put("Акт 15", "akt15");
-        stageMappingToKey.put("Акт 16", "akt16");
-
-        String currentStageKey = stageMappingToKey.get(stage);
-        if (currentStageKey == null) {
-            return;
-        }
-
-        int currentStageIndex = stageOrder.indexOf(currentStageKey);
-        if (currentStageIndex == -1) {
-            return;
-        }
-
-        java.math.BigDecimal expectedCumulative = java.math.BigDecimal.ZERO;
-        for (int i = 0; i <= currentStageIndex; i++) {
-            expectedCumulative = expectedCumulative.add(getExpectedAmountForKey(apt, stageOrder.get(i)));
-        }
-
-        java.math.BigDecimal totalPaid = apt.getTotalPaid() != null ? apt.getTotalPaid() : java.math.BigDecimal.ZERO;
-        java.math.BigDecimal remaining = expectedCumulative.subtract(totalPaid);
-
-        if (remaining.compareTo(new java.math.BigDecimal("0.01")) <= 0) {
-            return;
+    public ResponseEntity<Map<String, Object>> rescanOverdue(@RequestParam(value = "buildingId", required = false) Long buildingId) {
+        Map<String, Object> response = new HashMap<>();
+        Long targetBuildingId = buildingId != null ? buildingId : buildingService.getCurrentBuildingId().orElse(null);
+        if (targetBuildingId == null) {
+            response.put("success", false);
+            response.put("message", "Не е избрана сграда");
+            return ResponseEntity.badRequest().body(response);
         }
-
-        Map<String, Object> data = new HashMap<>();
-        data.put("id", apt.getId());
-        data.put("buildingName", apt.getBuildingName());
-        data.put("apartmentNumber", apt.getApartmentNumber());
-        if (apt.getClient() != null) {
-            data.put("clientName", apt.getClient().getName());
-            data.put("clientId", apt.getClient().getId());
-        } else {
-            data.put("clientName", "-");
-            data.put("clientId", null);
+        try {
+            OverdueScanRun run = overdueScanService.scanBuilding(targetBuildingId);
+            response.put("success", OverdueScanRun.STATUS_SUCCESS.equals(run.getStatus()));
+            response.put("run", run);
+            response.put("message", "Просрочените плащания са преизчислени (" + run.getApartmentsOverdue() + " обекта)");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         }
-        data.put("stage", stage);
-        data.put("expectedAmount", remaining);
-        data.put("date", "-");
-        data.put("_date", java.time.LocalDate.now().plusYears(100)); // push to end
-        upcoming.add(data);
     }
 
-    private java.math.BigDecimal getExpectedAmountForKey(Apartment apt, String stageKey) {
-        var plan = apt.getPaymentPlan();
-        if (plan == null) {
-            return java.math.BigDecimal.ZERO;
-        }
-        switch (stageKey) {
-            case "prelim":
-                return plan.getPreliminaryContractAmount() != null ? plan.getPreliminaryContractAmount() : java.math.BigDecimal.ZERO;
-            case "akt14":
-                return plan.getAkt14Amount() != null ? plan.getAkt14Amount() : java.math.BigDecimal.ZERO;
-            case "akt15":
-                return plan.getAkt15Amount() != null ? plan.getAkt15Amount() : java.math.BigDecimal.ZERO;
-            case "akt16":
-                return plan.getAkt16Amount() != null ? plan.getAkt16Amount() : java.math.BigDecimal.ZERO;
-            default:
-                return java.math.BigDecimal.ZERO;
+    /**
+     * Re-scan overdue payments of all buildings
+     */
+    @PostMapping("/api/overdue/rescan-all")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rescanAllOverdue() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            OverdueScanRun run = overdueScanService.scanAll(OverdueScanRun.TRIGGER_MANUAL);
+            response.put("success", OverdueScanRun.STATUS_SUCCESS.equals(run.getStatus()));
+            response.put("run", run);
+            response.put("message", "Просрочените плащания са преизчислени за " + run.getBuildingsScanned() + " сгради");
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         }
     }
 
-    private OverdueInfo getOverdueInfo(Apartment apt) {
-        java.time.LocalDate today = java.time.LocalDate.now();
-        var plan = apt.getPaymentPlan();
-        if (plan == null) {
-            return new OverdueInfo(java.math.BigDecimal.ZERO, 0);
-        }
-
-        OverdueInfo result = new OverdueInfo(java.math.BigDecimal.ZERO, 0);
-        result = pickOverdueForStage(result, apt, "При предварителен договор", plan.getPreliminaryContractDate(), plan.getPreliminaryContractAmount(), today);
-        result = pickOverdueForStage(result, apt, "Акт 14", plan.getAkt14Date(), plan.getAkt14Amount(), today);
-        result = pickOverdueForStage(result, apt, "Акт 15", plan.getAkt15Date(), plan.getAkt15Amount(), today);
-        result = pickOverdueForStage(result, apt, "Акт 16", plan.getAkt16Date(), plan.getAkt16Amount(), today);
-        return result;
+    /**
+     * Latest overdue scan runs with their timings
+     */
+    @GetMapping("/api/overdue/runs")
+    @ResponseBody
+    public ResponseEntity<List<OverdueScanRun>> getOverdueScanRuns() {
+        return ResponseEntity.ok(overdueScanService.getRecentRuns());
     }
 
-    private java.math.BigDecimal getStageBasedOverdueAmount(Apartment apt) {
-        if (apt.getPaymentPlan() == null || apt.getStage() == null) {
-            return java.math.BigDecimal.ZERO;
-        }
-
-        String stage = apt.getStage();
-        java.util.List<String> stageOrder = java.util.Arrays.asList("prelim", "akt14", "akt15", "akt16");
-        java.util.Map<String, String> stageMappingToKey = new java.util.HashMap<>();
-        stageMappingToKey.put("Предварителен договор", "prelim");
-        stageMappingToKey.put("При предварителен договор", "prelim");
-        stageMappingToKey.put("Акт 14", "akt14");
-        stageMappingToKey.put("Акт 15", "akt15");
-        stageMappingToKey.put("Акт 16", "akt16");
-
-        String currentStageKey = stageMappingToKey.get(stage);
-        if (currentStageKey == null) {
-            return java.math.BigDecimal.ZERO;
-        }
-        int currentStageIndex = stageOrder.indexOf(currentStageKey);
-        if (currentStageIndex == -1) {
-            return java.math.BigDecimal.ZERO;
-        }
-
-        java.math.BigDecimal expectedCumulative = java.math.BigDecimal.ZERO;
-        for (int i = 0; i <= currentStageIndex; i++) {
-            expectedCumulative = expectedCumulative.add(getExpectedAmountForKey(apt, stageOrder.get(i)));
-        }
-
-        java.math.BigDecimal totalPaid = apt.getTotalPaid() != null ? apt.getTotalPaid() : java.math.BigDecimal.ZERO;
-        java.math.BigDecimal remaining = expectedCumulative.subtract(totalPaid);
-        if (remaining.compareTo(new java.math.BigDecimal("0.01")) > 0) {
-            return remaining;
-        }
-        return java.math.BigDecimal.ZERO;
+    @GetMapping("/api/upcoming")
+    @ResponseBody
+    public ResponseEntity<List<UpcomingInstallmentRow>> getUpcomingPayments() {
+        Long buildingId = buildingService.getCurrentBuildingId().orElse(null);
+        // Open installments due after today, ordered by due date in the database
+        return ResponseEntity.ok(receivableInstallmentService.getUpcomingRowsByBuilding(buildingId));
     }
 
-    private OverdueInfo pickOverdueForStage(OverdueInfo current, Apartment apt, String stageLabel,
-                                            java.time.LocalDate date, java.math.BigDecimal expectedAmount,
-                                            java.time.LocalDate today) {
-        if (date == null || expectedAmount == null || expectedAmount.compareTo(new java.math.BigDecimal("0.01")) <= 0) {
-            return current;
-        }
-        if (!date.isBefore(today)) {
-            return current;
-        }
-        java.math.BigDecimal paid = getPaidForStage(apt, stageLabel);
-        java.math.BigDecimal remaining = expectedAmount.subtract(paid);
-        if (remaining.compareTo(new java.math.BigDecimal("0.01")) <= 0) {
-            return current;
-        }
-        long days = java.time.temporal.ChronoUnit.DAYS.between(date, today);
-        if (days > current.days) {
-            return new OverdueInfo(remaining, (int) days);
+    /**
+     * Upcoming installments in [from, to] with keyset pagination on (dueDate, apartmentId, stageOrder).
+     * Defaults: from = tomorrow, to = from + 12 months, current building.
+     */
+    @GetMapping("/api/upcoming/page")
+    @ResponseBody
+    public ResponseEntity<?> getUpcomingPaymentsPage(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "afterDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate afterDate,
+            @RequestParam(value = "afterApartmentId", required = false) Long afterApartmentId,
+            @RequestParam(value = "afterStageOrder", required = false) Integer afterStageOrder,
+            @RequestParam(value = "buildingId", required = false) Long buildingId,
+            @RequestParam(value = "size", defaultValue = "50") int size) {
+        LocalDate fromDate = from != null ? from : LocalDate.now().plusDays(1);
+        LocalDate toDate = to != null ? to : fromDate.plusMonths(12);
+        if (toDate.isBefore(fromDate)) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Крайната дата трябва да е след началната");
+            return ResponseEntity.badRequest().body(response);
         }
-        return current;
+        Long targetBuildingId = buildingId != null ? buildingId : buildingService.getCurrentBuildingId().orElse(null);
+        int pageSize = Math.max(1, Math.min(size, 500));
+        UpcomingPaymentsPageDto page = receivableInstallmentService.getUpcomingPage(
+            targetBuildingId, fromDate, toDate, afterDate, afterApartmentId, afterStageOrder, pageSize);
+        return ResponseEntity.ok(page);
     }
 
-    private java.math.BigDecimal getPaidForStage(Apartment apt, String stageLabel) {
-        if (apt.getPayments() == null) {
-            return java.math.BigDecimal.ZERO;
+    @PostMapping("/api/receivables/rebuild")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rebuildReceivables() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("rows", receivableInstallmentService.rebuildAll());
+            // Snapshot rows are derived from the installments - refresh them after the rebuild has committed
+            response.put("overdueScan", overdueScanService.scanAll(OverdueScanRun.TRIGGER_MANUAL));
+            response.put("success", true);
+            response.put("message", "Графикът на вноските е преизчислен успешно");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Грешка при преизчисляване на вноските: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
-        return apt.getPayments().stream()
-            .filter(p -> p.getPaymentStage() != null)
-            .filter(p -> {
-                String s = p.getPaymentStage();
-                if (stageLabel.contains("предварителен")) {
-                    return s.toLowerCase().contains("предварителен") || s.toLowerCase().contains("prelim");
-                }
-                if (stageLabel.equals("Акт 14")) {
-                    return s.contains("Акт 14") || s.contains("акт 14");
-                }
-                if (stageLabel.equals("Акт 15")) {
-                    return s.contains("Акт 15") || s.contains("акт 15");
-                }
-                if (stageLabel.equals("Акт 16")) {
-                    return s.contains("Акт 16") || s.contains("акт 16");
-                }
-                return false;
-            })
-            .map(p -> p.getAmount() != null ? p.getAmount() : java.math.BigDecimal.ZERO)
-            .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
     }
 
-    private static class OverdueInfo {
-        final java.math.BigDecimal amount;
-        final int days;
-
-        OverdueInfo(java.math.BigDecimal amount, int days) {
-            this.amount = amount;
-            this.days = days;
-        }
-    }
-    
     @PostMapping("/api/stage/global")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> updateGlobalStage(@RequestParam String stage) {
@@ -1,7 +1,9 @@
 package apartmentsmanager.apartmentsmanager.controller;
 
 import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.StageTransition;
 import apartmentsmanager.apartmentsmanager.service.BuildingService;
+import apartmentsmanager.apartmentsmanager.service.StageTransitionService;
 import jakarta.validation.Valid;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.List;
 import java.util.Optional;
 
 @Controller
@@ -22,18 +25,32 @@ import java.util.Optional;
 public class BuildingController {
     
     private final BuildingService buildingService;
+    private final StageTransitionService stageTransitionService;
     
-    public BuildingController(BuildingService buildingService) {
+    public BuildingController(BuildingService buildingService, StageTransitionService stageTransitionService) {
         this.buildingService = buildingService;
+        this.stageTransitionService = stageTransitionService;
     }
     
     /** Списък със сгради. Маппинг за "" и "/" за да не се обръща /buildings/ към /{id} с празен id (NumberFormatException → ERR_INCOMPLETE_CHUNKED_ENCODING). */
     @GetMapping({"", "/"})
-    public String buildingsPage(Model model) {
+    public String buildingsPage(@RequestParam(value = "status", required = false) String status,
+                                @RequestParam(value = "stage", required = false) String stage,
+                                @RequestParam(value = "name", required = false) String name,
+                                @RequestParam(value = "afterId", required = false) Long afterId,
+                                @RequestParam(value = "size", defaultValue = "50") int size,
+                                Model model) {
+        int pageSize = Math.max(1, Math.min(size, 500));
+        model.addAttribute("filterStatus", status);
+        model.addAttribute("filterStage", stage);
+        model.addAttribute("filterName", name);
+        model.addAttribute("pageSize", pageSize);
         try {
-            java.util.Map<String, Object> data = buildingService.getBuildingsPageData();
+            java.util.Map<String, Object> data = buildingService.getBuildingsPageData(status, stage, name, afterId, pageSize);
             model.addAttribute("buildings", data.get("buildings"));
             model.addAttribute("buildingsCount", data.get("buildingsCount"));
+            model.addAttribute("hasMore", data.get("hasMore"));
+            model.addAttribute("nextAfterId", data.get("nextAfterId"));
             model.addAttribute("currentBuilding", data.get("currentBuilding"));
             model.addAttribute("apartmentsCount", data.get("apartmentsCount"));
             model.addAttribute("garagesCount", data.get("garagesCount"));
@@ -47,6 +64,7 @@ public class BuildingController {
             model.addAttribute("error", "Грешка при зареждане на сградите: " + e.getMessage());
             model.addAttribute("buildings", java.util.Collections.emptyList());
             model.addAttribute("buildingsCount", 0);
+            model.addAttribute("hasMore", false);
             model.addAttribute("currentBuilding", null);
             model.addAttribute("apartmentsCount", 0);
             model.addAttribute("garagesCount", 0);
@@ -63,10 +81,7 @@ public class BuildingController {
             Building building = new Building();
             // Lists are initialized by getters, but set them explicitly for safety
             building.setApartments(new java.util.ArrayList<>());
-            building.setGarages(new java.util.ArrayList<>());
-            building.setBasements(new java.util.ArrayList<>());
-            building.setParkingSpaces(new java.util.ArrayList<>());
-            building.setCommercialSpaces(new java.util.ArrayList<>());
+            building.setUnits(new java.util.ArrayList<>());
             // Default stage for new buildings (user can change or clear it)
             building.setStage("Открита строителна площадка");
             model.addAttribute("building", building);
@@ -79,7 +94,7 @@ public class BuildingController {
     @org.springframework.web.bind.annotation.ResponseBody
     public String testBuildingService() {
         try {
-            long count = buildingService.getAllBuildings().size();
+            long count = buildingService.countBuildings();
             return "Building service works! Current building count: " + count;
         } catch (Exception e) {
             return "ERROR: " + e.getMessage() + "\n" + 
@@ -93,7 +108,7 @@ public class BuildingController {
     public java.util.Map<String, Object> getBuildingCount() {
         java.util.Map<String, Object> result = new java.util.HashMap<>();
         try {
-            long count = buildingService.getAllBuildings().size();
+            long count = buildingService.countBuildings();
             result.put("success", true);
             result.put("count", count);
             result.put("message", "Общ брой сгради: " + count);
@@ -115,10 +130,7 @@ public class BuildingController {
             building = new Building();
         }
         building.setApartments(new java.util.ArrayList<>());
-        building.setGarages(new java.util.ArrayList<>());
-        building.setBasements(new java.util.ArrayList<>());
-        building.setParkingSpaces(new java.util.ArrayList<>());
-        building.setCommercialSpaces(new java.util.ArrayList<>());
+        building.setUnits(new java.util.ArrayList<>());
         
         if (bindingResult.hasErrors()) {
             model.addAttribute("building", building);
@@ -175,19 +187,9 @@ public class BuildingController {
             Building building = buildingService.getBuildingById(id)
                 .orElseThrow(() -> new RuntimeException("Сграда с ID " + id + " не е намерена"));
             
-            // Load related entities (they are lazy loaded, so we need to access them)
-            int apartmentsCount = building.getApartments() != null ? building.getApartments().size() : 0;
-            int garagesCount = building.getGarages() != null ? building.getGarages().size() : 0;
-            int basementsCount = building.getBasements() != null ? building.getBasements().size() : 0;
-            int parkingSpacesCount = building.getParkingSpaces() != null ? building.getParkingSpaces().size() : 0;
-            int commercialSpacesCount = building.getCommercialSpaces() != null ? building.getCommercialSpaces().size() : 0;
-            
+            // Counts from GROUP BY queries instead of loading the lazy collections
             model.addAttribute("building", building);
-            model.addAttribute("apartmentsCount", apartmentsCount);
-            model.addAttribute("garagesCount", garagesCount);
-            model.addAttribute("basementsCount", basementsCount);
-            model.addAttribute("parkingSpacesCount", parkingSpacesCount);
-            model.addAttribute("commercialSpacesCount", commercialSpacesCount);
+            model.addAllAttributes(buildingService.getUnitCounts(id));
             
             return "view_building";
         } catch (Exception e) {
@@ -208,11 +210,8 @@ public class BuildingController {
             if (building.getApartments() == null) {
                 building.setApartments(new java.util.ArrayList<>());
             }
-            if (building.getGarages() == null) {
-                building.setGarages(new java.util.ArrayList<>());
-            }
-            if (building.getBasements() == null) {
-                building.setBasements(new java.util.ArrayList<>());
+            if (building.getUnits() == null) {
+                building.setUnits(new java.util.ArrayList<>());
             }
             
             model.addAttribute("building", building);
@@ -237,8 +236,7 @@ public class BuildingController {
             
             // Initialize lists
             building.setApartments(existingBuilding.getApartments() != null ? existingBuilding.getApartments() : new java.util.ArrayList<>());
-            building.setGarages(existingBuilding.getGarages() != null ? existingBuilding.getGarages() : new java.util.ArrayList<>());
-            building.setBasements(existingBuilding.getBasements() != null ? existingBuilding.getBasements() : new java.util.ArrayList<>());
+            building.setUnits(existingBuilding.getUnits() != null ? existingBuilding.getUnits() : new java.util.ArrayList<>());
             
             if (bindingResult.hasErrors()) {
                 model.addAttribute("building", building);
@@ -333,6 +331,22 @@ public class BuildingController {
         }
         return response;
     }
+    
+    /** Последните смени на етап на сграда (най-новите първи) */
+    @GetMapping("/stage-history")
+    @org.springframework.web.bind.annotation.ResponseBody
+    public java.util.Map<String, Object> getStageHistory(@RequestParam("buildingId") Long id) {
+        java.util.Map<String, Object> response = new java.util.HashMap<>();
+        try {
+            List<StageTransition> transitions = stageTransitionService.getRecentTransitions(id);
+            response.put("success", true);
+            response.put("transitions", transitions);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Грешка при зареждане на историята на етапите: " + e.getMessage());
+        }
+        return response;
+    }
 }
 
 
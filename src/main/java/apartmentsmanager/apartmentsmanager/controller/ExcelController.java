@@ -1,8 +1,9 @@
 package apartmentsmanager.apartmentsmanager.controller;
 
-import apartmentsmanager.apartmentsmanager.entity.Apartment;
-import apartmentsmanager.apartmentsmanager.service.ApartmentService;
+import apartmentsmanager.apartmentsmanager.entity.ImportJob;
 import apartmentsmanager.apartmentsmanager.service.ExcelService;
+import apartmentsmanager.apartmentsmanager.service.ExcelStructureException;
+import apartmentsmanager.apartmentsmanager.service.ImportJobService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -12,25 +13,28 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Controller
 
 @RequestMapping("/excel")
 public class ExcelController {
     
+    private static final Set<String> CSV_EXPORT_TYPES = Set.of("apartments", "buildings", "clients", "payments");
+    
     private final ExcelService excelService;
-    private final ApartmentService apartmentService;
+    private final ImportJobService importJobService;
     
     @Autowired
-    public ExcelController(ExcelService excelService, ApartmentService apartmentService) {
+    public ExcelController(ExcelService excelService, ImportJobService importJobService) {
         this.excelService = excelService;
-        this.apartmentService = apartmentService;
+        this.importJobService = importJobService;
     }
     
     @GetMapping
@@ -40,35 +44,50 @@ public class ExcelController {
     
     @GetMapping(value = "/export", produces = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
     @ResponseBody
-    public ResponseEntity<byte[]> exportApartmentsToExcel() throws IOException {
-        try {
-            List<Apartment> apartments = apartmentService.getAllSoldApartments();
-            if (apartments == null || apartments.isEmpty()) {
-                // Return empty Excel file if no apartments
-                apartments = List.of();
-            }
-            byte[] excelData = excelService.exportApartmentsToExcel(apartments);
-            
-            HttpHeaders headers = new HttpHeaders();
-            // Set proper Excel MIME type
-            headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
-            // Force download - use setContentDispositionFormData which properly sets the header
-            headers.setContentDispositionFormData("attachment", "apartments_export.xlsx");
-            headers.setContentLength(excelData.length);
-            // Prevent caching
-            headers.add("Cache-Control", "no-cache, no-store, must-revalidate");
-            headers.add("Pragma", "no-cache");
-            headers.add("Expires", "0");
-            // Ensure binary data is not corrupted
-            headers.add("Content-Transfer-Encoding", "binary");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(excelData);
-        } catch (Exception e) {
-            e.printStackTrace(); // Log the error
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public ResponseEntity<StreamingResponseBody> exportApartmentsToExcel() {
+        HttpHeaders headers = new HttpHeaders();
+        // Set proper Excel MIME type
+        headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+        // Force download - use setContentDispositionFormData which properly sets the header
+        headers.setContentDispositionFormData("attachment", "apartments_export.xlsx");
+        // Prevent caching
+        headers.add("Cache-Control", "no-cache, no-store, must-revalidate");
+        headers.add("Pragma", "no-cache");
+        headers.add("Expires", "0");
+        // Ensure binary data is not corrupted
+        headers.add("Content-Transfer-Encoding", "binary");
+        
+        // The workbook is written straight to the response (no byte[] copy, no Content-Length)
+        StreamingResponseBody body = outputStream -> excelService.exportSoldApartmentsToExcel(outputStream);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+    
+    /**
+     * CSV export (apartments, buildings, clients or payments) streamed to the response
+     */
+    @GetMapping("/export/csv")
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> exportToCsv(
+            @RequestParam(value = "type", defaultValue = "apartments") String exportType) {
+        String type = exportType.toLowerCase();
+        if (!CSV_EXPORT_TYPES.contains(type)) {
+            return ResponseEntity.badRequest().build();
         }
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("text/csv; charset=UTF-8"));
+        headers.setContentDispositionFormData("attachment", type + "_export.csv");
+        // Prevent caching
+        headers.add("Cache-Control", "no-cache, no-store, must-revalidate");
+        headers.add("Pragma", "no-cache");
+        headers.add("Expires", "0");
+        
+        StreamingResponseBody body = outputStream -> excelService.exportToCsv(type, outputStream);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
     }
     
     @PostMapping("/import")
@@ -85,25 +104,16 @@ public class ExcelController {
             return ResponseEntity.badRequest().body(response);
         }
         
-        if (!file.getOriginalFilename().endsWith(".xlsx") && !file.getOriginalFilename().endsWith(".xls")) {
+        String filename = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+        if (!filename.endsWith(".xlsx") && !filename.endsWith(".xls") && !filename.endsWith(".csv")) {
             response.put("success", false);
-            response.put("message", "Поддържат се само Excel файлове (.xlsx, .xls)");
+            response.put("message", "Поддържат се само Excel (.xlsx, .xls) и CSV (.csv) файлове");
             return ResponseEntity.badRequest().body(response);
         }
         
         try {
-            // For buildings import, skip strict validation as format is simpler
-            if (!"buildings".equalsIgnoreCase(importType)) {
-                // Validate file structure for apartments and clients
-                ByteArrayInputStream inputStream = new ByteArrayInputStream(file.getBytes());
-                if (!excelService.validateExcelStructure(inputStream)) {
-                    response.put("success", false);
-                    response.put("message", "Невалидна структура на Excel файла. Моля, използвайте предоставения шаблон.");
-                    return ResponseEntity.badRequest().body(response);
-                }
-            }
-            
-            // Import based on type
+            // Import based on type - the file is parsed once, the header row is validated
+            // while streaming (buildings import skips strict validation as format is simpler)
             Map<String, Object> importResult;
             switch (importType.toLowerCase()) {
                 case "buildings":
@@ -112,6 +122,12 @@ public class ExcelController {
                 case "clients":
                     importResult = excelService.importClientsFromExcel(file);
                     break;
+                case "payments":
+                    importResult = excelService.importPaymentsFromExcel(file);
+                    break;
+                case "workbook":
+                    importResult = excelService.importWorkbookFromExcel(file);
+                    break;
                 case "apartments":
                 default:
                     importResult = excelService.importApartmentsFromExcelForBuilding(file, buildingId);
@@ -121,10 +137,16 @@ public class ExcelController {
             response.put("success", true);
             response.put("message", "Импортът е завършен успешно");
             response.put("imported", importResult.get("imported"));
+            response.put("updated", importResult.get("updated"));
             response.put("errors", importResult.get("errors"));
             response.put("skipped", importResult.get("skipped"));
+            response.put("stages", importResult.get("stages"));
             
             return ResponseEntity.ok(response);
+        } catch (ExcelStructureException e) {
+            response.put("success", false);
+            response.put("message", "Невалидна структура на Excel файла. Моля, използвайте предоставения шаблон.");
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             e.printStackTrace();
             response.put("success", false);
@@ -133,6 +155,79 @@ public class ExcelController {
         }
     }
     
+    /**
+     * Queue an import job - the file is stored on disk and processed in the background
+     */
+    @PostMapping("/import/jobs")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> submitImportJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "type", defaultValue = "apartments") String importType,
+            @RequestParam(value = "buildingId", required = false) Long buildingId) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            ImportJob job = importJobService.submit(file, importType, buildingId);
+            response.put("success", true);
+            response.put("message", "Импортът е добавен в опашката");
+            response.put("jobId", job.getId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+    
+    @GetMapping("/import/jobs")
+    @ResponseBody
+    public List<ImportJob> getImportJobs() {
+        return importJobService.getRecentJobs();
+    }
+    
+    @GetMapping("/import/jobs/{id}")
+    @ResponseBody
+    public ResponseEntity<ImportJob> getImportJob(@PathVariable Long id) {
+        return importJobService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/import/jobs/{id}/errors")
+    @ResponseBody
+    public List<String> getImportJobErrors(@PathVariable Long id,
+                                           @RequestParam(value = "limit", defaultValue = "10000") int limit) {
+        return importJobService.getErrors(id, limit);
+    }
+    
+    /**
+     * Progress of a job as Server-Sent Events ("progress" while running, "done" at the end)
+     */
+    @GetMapping(value = "/import/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamImportJob(@PathVariable Long id) {
+        return importJobService.subscribe(id);
+    }
+    
+    @PostMapping("/import/jobs/{id}/cancel")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> cancelImportJob(@PathVariable Long id) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            boolean cancelled = importJobService.cancel(id);
+            response.put("success", cancelled);
+            response.put("message", cancelled ? "Импортът се прекратява" : "Импортът вече е приключил");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+    
     @GetMapping("/template")
     public ResponseEntity<byte[]> downloadTemplate(@RequestParam(value = "type", defaultValue = "apartments") String templateType) {
         try {
@@ -148,6 +243,10 @@ public class ExcelController {
                     templateData = excelService.generateClientsTemplate();
                     filename = "clients_template.xlsx";
                     break;
+                case "workbook":
+                    templateData = excelService.generateWorkbookTemplate();
+                    filename = "workbook_template.xlsx";
+                    break;
                 case "apartments":
                 default:
                     templateData = excelService.generateApartmentsTemplate();
@@ -2,6 +2,7 @@ package apartmentsmanager.apartmentsmanager.controller;
 
 import apartmentsmanager.apartmentsmanager.entity.Apartment;
 import apartmentsmanager.apartmentsmanager.entity.Payment;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
 import apartmentsmanager.apartmentsmanager.service.ApartmentService;
 import apartmentsmanager.apartmentsmanager.service.PaymentService;
 import jakarta.validation.Valid;
@@ -346,24 +347,21 @@ public class PaymentController {
         paidByStage.put("other", BigDecimal.ZERO);
         
         for (Payment payment : payments) {
-            String stage = payment.getPaymentStage();
             BigDecimal amount = payment.getAmount() != null ? payment.getAmount() : BigDecimal.ZERO;
             
+            PaymentStage stage = payment.getPaymentStageCode() != null
+                ? payment.getPaymentStageCode()
+                : PaymentStage.fromLabel(payment.getPaymentStage());
+            String key = "other";
             if (stage != null) {
-                if (stage.contains("предварителен") || stage.toLowerCase().contains("prelim")) {
-                    paidByStage.put("prelim", paidByStage.get("prelim").add(amount));
-                } else if (stage.contains("Акт 14") || stage.contains("акт 14")) {
-                    paidByStage.put("akt14", paidByStage.get("akt14").add(amount));
-                } else if (stage.contains("Акт 15") || stage.contains("акт 15")) {
-                    paidByStage.put("akt15", paidByStage.get("akt15").add(amount));
-                } else if (stage.contains("Акт 16") || stage.contains("акт 16")) {
-                    paidByStage.put("akt16", paidByStage.get("akt16").add(amount));
-                } else {
-                    paidByStage.put("other", paidByStage.get("other").add(amount));
+                switch (stage) {
+                    case PRELIMINARY: key = "prelim"; break;
+                    case AKT14: key = "akt14"; break;
+                    case AKT15: key = "akt15"; break;
+                    case AKT16: key = "akt16"; break;
                 }
-            } else {
-                paidByStage.put("other", paidByStage.get("other").add(amount));
             }
+            paidByStage.put(key, paidByStage.get(key).add(amount));
         }
         
         response.put("paidByStage", paidByStage);
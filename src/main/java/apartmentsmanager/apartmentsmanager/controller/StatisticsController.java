@@ -2,13 +2,21 @@ package apartmentsmanager.apartmentsmanager.controller;
 
 import apartmentsmanager.apartmentsmanager.service.ApartmentService;
 import apartmentsmanager.apartmentsmanager.service.BuildingService;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.CashFlowService;
+import apartmentsmanager.apartmentsmanager.service.PaymentTotalsService;
+import apartmentsmanager.apartmentsmanager.service.ReceivablesForecastService;
+import apartmentsmanager.apartmentsmanager.service.StatisticsCache;
 import apartmentsmanager.apartmentsmanager.service.StatisticsService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -16,11 +24,24 @@ public class StatisticsController {
     private final StatisticsService statisticsService;
     private final BuildingService buildingService;
     private final ApartmentService apartmentService;
+    private final BuildingStatsService buildingStatsService;
+    private final StatisticsCache statisticsCache;
+    private final CashFlowService cashFlowService;
+    private final ReceivablesForecastService receivablesForecastService;
+    private final PaymentTotalsService paymentTotalsService;
 
-    public StatisticsController(StatisticsService statisticsService, BuildingService buildingService, ApartmentService apartmentService) {
+    public StatisticsController(StatisticsService statisticsService, BuildingService buildingService, ApartmentService apartmentService,
+                                BuildingStatsService buildingStatsService, StatisticsCache statisticsCache,
+                                CashFlowService cashFlowService, ReceivablesForecastService receivablesForecastService,
+                                PaymentTotalsService paymentTotalsService) {
         this.statisticsService = statisticsService;
         this.buildingService = buildingService;
         this.apartmentService = apartmentService;
+        this.buildingStatsService = buildingStatsService;
+        this.statisticsCache = statisticsCache;
+        this.cashFlowService = cashFlowService;
+        this.receivablesForecastService = receivablesForecastService;
+        this.paymentTotalsService = paymentTotalsService;
     }
 
     @GetMapping("/api/statistics")
@@ -65,8 +86,123 @@ public class StatisticsController {
         }
 
         stats.putAll(statisticsService.getStatisticsForBuilding(buildingId));
-        stats.put("overdueCount", apartmentService.getApartmentsWithOverduePaymentsByBuilding(buildingId).size());
+        stats.put("overdueCount", apartmentService.countOverdueApartmentsByBuilding(buildingId));
         stats.put("currentBuildingId", buildingId);
         return ResponseEntity.ok(stats);
     }
+
+    /**
+     * Statistics for all buildings (portfolio view)
+     */
+    @GetMapping("/api/statistics/portfolio")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getPortfolioStatistics() {
+        return ResponseEntity.ok(statisticsService.getPortfolioStatistics());
+    }
+
+    /**
+     * Monthly cash flow series (collected by payment method and expected by payment plan).
+     * Default: last 5 years for all buildings
+     */
+    @GetMapping("/api/statistics/cash-flow")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getCashFlow(@RequestParam(value = "buildingId", required = false) Long buildingId,
+                                                           @RequestParam(value = "months", defaultValue = "60") int months) {
+        return ResponseEntity.ok(cashFlowService.getMonthlySeries(buildingId, Math.min(months, 240)));
+    }
+
+    /**
+     * Recompute the cash flow rollup from payments and payment plans
+     */
+    @PostMapping("/api/statistics/cash-flow/rebuild")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rebuildCashFlow() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("rows", cashFlowService.rebuildAll());
+            response.put("success", true);
+            response.put("message", "Паричните потоци са преизчислени успешно");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Грешка при преизчисляване на паричните потоци: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Recompute the paid columns of all apartments and report rows that were out of sync
+     */
+    @PostMapping("/api/statistics/payment-totals/reconcile")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> reconcilePaymentTotals() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(paymentTotalsService.reconcile());
+            response.put("success", true);
+            response.put("message", "Платените суми по обекти са сверени успешно");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Грешка при сверяване на платените суми: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Forecast of future receipts per month (payment plans minus paid per stage)
+     */
+    @GetMapping("/api/statistics/forecast")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getForecast(@RequestParam(value = "buildingId", required = false) Long buildingId,
+                                                           @RequestParam(value = "months", defaultValue = "12") int months) {
+        return ResponseEntity.ok(receivablesForecastService.forecast(buildingId, Math.min(months, 120)));
+    }
+
+    /**
+     * Recompute building_stats for one building (buildingId) or for all buildings
+     */
+    @PostMapping("/api/statistics/rebuild")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rebuildStatistics(@RequestParam(value = "buildingId", required = false) Long buildingId) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            if (buildingId != null) {
+                buildingStatsService.rebuildBuilding(buildingId);
+                response.put("rebuilt", 1);
+            } else {
+                response.put("rebuilt", buildingStatsService.rebuildAll());
+            }
+            response.put("success", true);
+            response.put("message", "Статистиката е преизчислена успешно");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Грешка при преизчисляване на статистиката: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Compare building_stats with a fresh aggregate (should always be empty)
+     */
+    @GetMapping("/api/statistics/consistency")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> checkStatisticsConsistency() {
+        List<Map<String, Object>> mismatches = buildingStatsService.checkConsistency();
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("consistent", mismatches.isEmpty());
+        response.put("mismatches", mismatches);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Statistics cache counters (hits, misses, evictions, invalidations)
+     */
+    @GetMapping("/api/statistics/cache")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getStatisticsCacheStats() {
+        return ResponseEntity.ok(statisticsCache.getCacheStats());
+    }
 }
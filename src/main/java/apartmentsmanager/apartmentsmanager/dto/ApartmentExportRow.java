@@ -0,0 +1,36 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection за ред от Excel експорта - само колоните от реда на апартамента
+ * (платената сума идва от apartments.total_paid, без зареждане на плащанията).
+ */
+public interface ApartmentExportRow {
+
+    Long getId();
+
+    String getBuildingName();
+
+    String getApartmentNumber();
+
+    BigDecimal getArea();
+
+    BigDecimal getPricePerM2();
+
+    BigDecimal getTotalPrice();
+
+    String getStage();
+
+    String getClientName();
+
+    BigDecimal getTotalPaid();
+
+    String getNotes();
+
+    default BigDecimal getRemainingPayment() {
+        BigDecimal price = getTotalPrice() != null ? getTotalPrice() : BigDecimal.ZERO;
+        BigDecimal paid = getTotalPaid() != null ? getTotalPaid() : BigDecimal.ZERO;
+        return price.subtract(paid);
+    }
+}
@@ -0,0 +1,20 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection с ключа на апартамент (сграда + номер) и неговото ID - за свързване и проверка на плащания при импорт без заявка на ред.
+ */
+public interface ApartmentKey {
+
+    Long getId();
+
+    String getBuildingName();
+
+    String getApartmentNumber();
+
+    BigDecimal getTotalPrice();
+
+    // Платено до момента (колоната total_paid)
+    BigDecimal getTotalPaid();
+}
@@ -0,0 +1,22 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection с платените суми по етап за един апартамент (по Payment.paymentStage) и общо платено.
+ */
+public interface ApartmentStagePaid {
+
+    Long getApartmentId();
+
+    BigDecimal getPaidPrelim();
+
+    BigDecimal getPaidAkt14();
+
+    BigDecimal getPaidAkt15();
+
+    BigDecimal getPaidAkt16();
+
+    // Всички плащания, включително без разпознат етап
+    BigDecimal getPaidTotal();
+}
@@ -0,0 +1,11 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+/**
+ * Projection за брой по сграда от GROUP BY заявка (alias-и buildingId и total).
+ */
+public interface BuildingCount {
+
+    Long getBuildingId();
+
+    long getTotal();
+}
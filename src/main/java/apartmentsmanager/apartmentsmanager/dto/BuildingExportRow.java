@@ -0,0 +1,17 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+/**
+ * Projection за ред от CSV експорта на сгради - колоните от шаблона за импорт (Име, Адрес, Статус, Етап, Бележки).
+ */
+public interface BuildingExportRow {
+
+    String getName();
+
+    String getAddress();
+
+    String getStatus();
+
+    String getStage();
+
+    String getNotes();
+}
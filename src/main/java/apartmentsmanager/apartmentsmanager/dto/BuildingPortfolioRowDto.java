@@ -0,0 +1,46 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * DTO за ред в портфолио статистиката (една сграда).
+ */
+public class BuildingPortfolioRowDto {
+    private Long buildingId;
+    private String name;
+    private String status;
+    private String stage;
+    private long totalApartments;
+    private BigDecimal totalRevenue;
+    private BigDecimal totalCollected;
+    private BigDecimal remainingPayments;
+    private BigDecimal collectionRate;
+    private long overdueCount;
+    private Map<String, Long> stageBreakdown;
+
+    public BuildingPortfolioRowDto() {}
+
+    public Long getBuildingId() { return buildingId; }
+    public void setBuildingId(Long buildingId) { this.buildingId = buildingId; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public String getStage() { return stage; }
+    public void setStage(String stage) { this.stage = stage; }
+    public long getTotalApartments() { return totalApartments; }
+    public void setTotalApartments(long totalApartments) { this.totalApartments = totalApartments; }
+    public BigDecimal getTotalRevenue() { return totalRevenue; }
+    public void setTotalRevenue(BigDecimal totalRevenue) { this.totalRevenue = totalRevenue; }
+    public BigDecimal getTotalCollected() { return totalCollected; }
+    public void setTotalCollected(BigDecimal totalCollected) { this.totalCollected = totalCollected; }
+    public BigDecimal getRemainingPayments() { return remainingPayments; }
+    public void setRemainingPayments(BigDecimal remainingPayments) { this.remainingPayments = remainingPayments; }
+    public BigDecimal getCollectionRate() { return collectionRate; }
+    public void setCollectionRate(BigDecimal collectionRate) { this.collectionRate = collectionRate; }
+    public long getOverdueCount() { return overdueCount; }
+    public void setOverdueCount(long overdueCount) { this.overdueCount = overdueCount; }
+    public Map<String, Long> getStageBreakdown() { return stageBreakdown; }
+    public void setStageBreakdown(Map<String, Long> stageBreakdown) { this.stageBreakdown = stageBreakdown; }
+}
@@ -0,0 +1,48 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection със статистиката за една сграда, изчислена с една агрегатна заявка
+ * (без зареждане на Apartment/Payment entity-та в persistence context-а).
+ * Имената на getter-ите съвпадат с alias-ите в ApartmentRepository.findStatisticsSnapshotByBuilding.
+ * Същата форма се използва и за приноса на един апартамент (findStatisticsSnapshotByApartment)
+ * и за материализирания ред в building_stats (BuildingStats).
+ */
+public interface BuildingStatisticsSnapshot {
+
+    Long getBuildingId();
+
+    long getTotalApartments();
+
+    BigDecimal getTotalRevenue();
+
+    BigDecimal getTotalCollected();
+
+    // Брой продадени обекти по етап
+    long getPrelimCount();
+
+    long getAkt14Count();
+
+    long getAkt15Count();
+
+    long getAkt16Count();
+
+    // Очаквани суми по етап (от PaymentPlan)
+    BigDecimal getExpectedPrelim();
+
+    BigDecimal getExpectedAkt14();
+
+    BigDecimal getExpectedAkt15();
+
+    BigDecimal getExpectedAkt16();
+
+    // Събрани суми по етап (от Payment.paymentStage)
+    BigDecimal getCollectedPrelim();
+
+    BigDecimal getCollectedAkt14();
+
+    BigDecimal getCollectedAkt15();
+
+    BigDecimal getCollectedAkt16();
+}
@@ -0,0 +1,15 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import apartmentsmanager.apartmentsmanager.entity.UnitType;
+
+/**
+ * Projection за брой обекти по сграда и вид от GROUP BY заявка (alias-и buildingId, unitType и total).
+ */
+public interface BuildingUnitTypeCount {
+
+    Long getBuildingId();
+
+    UnitType getUnitType();
+
+    long getTotal();
+}
@@ -0,0 +1,21 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection за сума на плащания, групирани по сграда, година/месец и метод на плащане.
+ */
+public interface CashFlowAggregate {
+
+    Long getBuildingId();
+
+    Integer getPeriodYear();
+
+    Integer getPeriodMonth();
+
+    String getPaymentMethod();
+
+    BigDecimal getAmount();
+
+    long getEntryCount();
+}
@@ -0,0 +1,19 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+/**
+ * Projection за ред от CSV експорта на клиенти - колоните от шаблона за импорт (Име, Телефон, Email, Адрес, Бележки, ЕГН/ЕИК).
+ */
+public interface ClientExportRow {
+
+    String getName();
+
+    String getPhone();
+
+    String getEmail();
+
+    String getAddress();
+
+    String getNotes();
+
+    String getEgn();
+}
@@ -0,0 +1,15 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+/**
+ * Projection с ключовете за съпоставяне на клиент при импорт (ЕГН/ЕИК, email, телефон) - без останалите полета.
+ */
+public interface ClientMatchKey {
+
+    Long getId();
+
+    String getEgn();
+
+    String getEmail();
+
+    String getPhone();
+}
@@ -0,0 +1,34 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Projection за апартамент с просрочено плащане, изчислен изцяло в базата
+ * (ReceivableInstallmentRepository.findOverdueRowsByBuilding) - без зареждане на Apartment/Payment entity-та.
+ */
+public interface OverdueApartmentRow {
+
+    Long getId();
+
+    String getApartmentNumber();
+
+    String getBuildingName();
+
+    String getStage();
+
+    Long getClientId();
+
+    String getClientName();
+
+    BigDecimal getOverdueAmount();
+
+    // Най-старата неплатена падежна дата
+    LocalDate getOverdueSince();
+
+    default long getDaysOverdue() {
+        LocalDate since = getOverdueSince();
+        return since != null ? ChronoUnit.DAYS.between(since, LocalDate.now()) : 0L;
+    }
+}
@@ -0,0 +1,31 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Projection за ред от CSV експорта на плащания - апартаментът е посочен със сграда и номер,
+ * за да може файлът да се импортира обратно в друга база.
+ */
+public interface PaymentExportRow {
+
+    Long getId();
+
+    String getBuildingName();
+
+    String getApartmentNumber();
+
+    LocalDate getPaymentDate();
+
+    BigDecimal getAmount();
+
+    String getPaymentStage();
+
+    String getPaymentMethod();
+
+    String getInvoiceNumber();
+
+    Boolean getIsDeposit();
+
+    String getNotes();
+}
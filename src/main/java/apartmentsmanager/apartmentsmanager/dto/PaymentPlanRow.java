@@ -0,0 +1,35 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Projection с плана за плащане на продаден апартамент (без зареждане на entity).
+ * Имената на getter-ите съвпадат с alias-ите в ApartmentRepository.findPaymentPlanRows.
+ */
+public interface PaymentPlanRow {
+
+    Long getApartmentId();
+
+    Long getBuildingId();
+
+    PaymentStage getStageCode(); // Етап, до който е стигнал апартаментът (null = без етап)
+
+    LocalDate getPreliminaryContractDate();
+
+    LocalDate getAkt14Date();
+
+    LocalDate getAkt15Date();
+
+    LocalDate getAkt16Date();
+
+    BigDecimal getPreliminaryContractAmount();
+
+    BigDecimal getAkt14Amount();
+
+    BigDecimal getAkt15Amount();
+
+    BigDecimal getAkt16Amount();
+}
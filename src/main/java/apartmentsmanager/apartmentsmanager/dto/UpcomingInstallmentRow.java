@@ -0,0 +1,32 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Projection за предстояща (неплатена) вноска от receivable_installments.
+ */
+public interface UpcomingInstallmentRow {
+
+    // Apartment id (used by the "add payment" button)
+    Long getId();
+
+    String getApartmentNumber();
+
+    String getBuildingName();
+
+    Long getClientId();
+
+    String getClientName();
+
+    String getStage();
+
+    // Remaining amount of the installment
+    BigDecimal getExpectedAmount();
+
+    LocalDate getDueDate();
+
+    default String getDate() {
+        return getDueDate() != null ? getDueDate().toString() : "-";
+    }
+}
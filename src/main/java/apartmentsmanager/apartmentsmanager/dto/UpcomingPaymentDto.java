@@ -0,0 +1,53 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * DTO за предстояща вноска (ред от receivable_installments), създава се директно от JPQL constructor expression.
+ */
+public class UpcomingPaymentDto {
+    private Long apartmentId;
+    private String apartmentNumber;
+    private String buildingName;
+    private Long clientId;
+    private String clientName;
+    private String stage;
+    private int stageOrder;
+    private LocalDate dueDate;
+    private BigDecimal remainingAmount;
+
+    public UpcomingPaymentDto() {}
+
+    public UpcomingPaymentDto(Long apartmentId, String apartmentNumber, String buildingName, Long clientId, String clientName,
+                              String stage, int stageOrder, LocalDate dueDate, BigDecimal remainingAmount) {
+        this.apartmentId = apartmentId;
+        this.apartmentNumber = apartmentNumber;
+        this.buildingName = buildingName;
+        this.clientId = clientId;
+        this.clientName = clientName;
+        this.stage = stage;
+        this.stageOrder = stageOrder;
+        this.dueDate = dueDate;
+        this.remainingAmount = remainingAmount;
+    }
+
+    public Long getApartmentId() { return apartmentId; }
+    public void setApartmentId(Long apartmentId) { this.apartmentId = apartmentId; }
+    public String getApartmentNumber() { return apartmentNumber; }
+    public void setApartmentNumber(String apartmentNumber) { this.apartmentNumber = apartmentNumber; }
+    public String getBuildingName() { return buildingName; }
+    public void setBuildingName(String buildingName) { this.buildingName = buildingName; }
+    public Long getClientId() { return clientId; }
+    public void setClientId(Long clientId) { this.clientId = clientId; }
+    public String getClientName() { return clientName; }
+    public void setClientName(String clientName) { this.clientName = clientName; }
+    public String getStage() { return stage; }
+    public void setStage(String stage) { this.stage = stage; }
+    public int getStageOrder() { return stageOrder; }
+    public void setStageOrder(int stageOrder) { this.stageOrder = stageOrder; }
+    public LocalDate getDueDate() { return dueDate; }
+    public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; }
+    public BigDecimal getRemainingAmount() { return remainingAmount; }
+    public void setRemainingAmount(BigDecimal remainingAmount) { this.remainingAmount = remainingAmount; }
+}
@@ -0,0 +1,44 @@
+package apartmentsmanager.apartmentsmanager.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Страница предстоящи вноски с keyset курсор (dueDate, apartmentId, stageOrder) на последния ред.
+ * Следващата страница се иска с afterDate/afterApartmentId/afterStageOrder = next*.
+ */
+public class UpcomingPaymentsPageDto {
+    private List<UpcomingPaymentDto> items;
+    private int size;
+    private boolean hasMore;
+    private LocalDate nextAfterDate;
+    private Long nextAfterApartmentId;
+    private Integer nextAfterStageOrder;
+
+    public UpcomingPaymentsPageDto() {}
+
+    public UpcomingPaymentsPageDto(List<UpcomingPaymentDto> items, int size, boolean hasMore) {
+        this.items = items;
+        this.size = size;
+        this.hasMore = hasMore;
+        if (hasMore && !items.isEmpty()) {
+            UpcomingPaymentDto last = items.get(items.size() - 1);
+            this.nextAfterDate = last.getDueDate();
+            this.nextAfterApartmentId = last.getApartmentId();
+            this.nextAfterStageOrder = last.getStageOrder();
+        }
+    }
+
+    public List<UpcomingPaymentDto> getItems() { return items; }
+    public void setItems(List<UpcomingPaymentDto> items) { this.items = items; }
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+    public LocalDate getNextAfterDate() { return nextAfterDate; }
+    public void setNextAfterDate(LocalDate nextAfterDate) { this.nextAfterDate = nextAfterDate; }
+    public Long getNextAfterApartmentId() { return nextAfterApartmentId; }
+    public void setNextAfterApartmentId(Long nextAfterApartmentId) { this.nextAfterApartmentId = nextAfterApartmentId; }
+    public Integer getNextAfterStageOrder() { return nextAfterStageOrder; }
+    public void setNextAfterStageOrder(Integer nextAfterStageOrder) { this.nextAfterStageOrder = nextAfterStageOrder; }
+}
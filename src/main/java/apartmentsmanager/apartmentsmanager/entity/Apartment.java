@@ -5,6 +5,7 @@ import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -19,12 +20,17 @@ import java.util.List;
 @Entity
 @Table(name = "apartments", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"building_id", "apartment_number"})
+}, indexes = {
+    @Index(name = "idx_apartment_building_stage_order", columnList = "building_id, stage_order"),
+    @Index(name = "idx_apartment_building_unit_type", columnList = "building_id, unit_type")
 })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Apartment {
     
+    private static final BigDecimal OVERDUE_TOLERANCE = new BigDecimal("0.01");
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -60,6 +66,16 @@ public class Apartment {
     @Column(name = "stage", length = 100)
     private String stage; // Етап: Завършен, В процес, Незапочнат, Акт 14, Акт 15, Акт 16
     
+    // Код на етапа, изчислява се от stage при запис (null = друг / без етап)
+    @Convert(converter = PaymentStageConverter.class)
+    @Column(name = "stage_order")
+    private PaymentStage stageCode;
+    
+    // Вид на обекта (апартамент, гараж, паркомясто, мазе, търговски обект), изчислява се от номера при запис
+    @Convert(converter = UnitTypeConverter.class)
+    @Column(name = "unit_type")
+    private UnitType unitType;
+    
     @Column(name = "contract_date")
     private LocalDate contractDate; // Дата на договор
     
@@ -69,6 +85,31 @@ public class Apartment {
     @Column(name = "is_sold", nullable = false)
     private Boolean isSold = false;
     
+    // Платени суми - поддържат се само от PaymentTotalsService (UPDATE при запис на плащане),
+    // затова не се записват от entity-то; @ColumnDefault("0") за нови апартаменти
+    @ColumnDefault("0")
+    @Column(name = "total_paid", precision = 15, scale = 2, insertable = false, updatable = false)
+    private BigDecimal totalPaid;
+    
+    @Column(name = "last_payment_date", insertable = false, updatable = false)
+    private LocalDate lastPaymentDate;
+    
+    @ColumnDefault("0")
+    @Column(name = "paid_prelim", precision = 15, scale = 2, insertable = false, updatable = false)
+    private BigDecimal paidPrelim;
+    
+    @ColumnDefault("0")
+    @Column(name = "paid_akt14", precision = 15, scale = 2, insertable = false, updatable = false)
+    private BigDecimal paidAkt14;
+    
+    @ColumnDefault("0")
+    @Column(name = "paid_akt15", precision = 15, scale = 2, insertable = false, updatable = false)
+    private BigDecimal paidAkt15;
+    
+    @ColumnDefault("0")
+    @Column(name = "paid_akt16", precision = 15, scale = 2, insertable = false, updatable = false)
+    private BigDecimal paidAkt16;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
@@ -87,15 +128,27 @@ public class Apartment {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        syncStageCode();
+        unitType = UnitType.fromApartmentNumber(apartmentNumber);
         // Calculate totalPrice only if not already set
         if (totalPrice == null) {
             calculateTotalPrice();
         }
     }
     
+    /**
+     * Same defaults as @PrePersist (timestamps, stage code, unit type, total price) for rows
+     * inserted with plain JDBC by the bulk import
+     */
+    public void applyInsertDefaults() {
+        onCreate();
+    }
+    
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        syncStageCode();
+        unitType = UnitType.fromApartmentNumber(apartmentNumber);
         // Don't auto-calculate totalPrice if apartment is sold (has client)
         // to preserve the exact purchase price
         if (client == null) {
@@ -116,9 +169,13 @@ public class Apartment {
     }
     
     /**
-     * Get total paid amount from all payments
+     * Get total paid amount - from the total_paid column, the payments collection is loaded
+     * only for rows that have not been backfilled yet
      */
     public BigDecimal getTotalPaid() {
+        if (totalPaid != null) {
+            return totalPaid.setScale(2, RoundingMode.HALF_UP);
+        }
         if (payments == null || payments.isEmpty()) {
             return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP);
         }
@@ -139,94 +196,44 @@ public class Apartment {
     }
     
     /**
-     * Check if apartment has overdue payments
+     * Normalize the stage label and keep stage_order in sync with it
      */
+    private void syncStageCode() {
+        stage = PaymentStage.normalizeLabel(stage);
+        stageCode = PaymentStage.fromLabel(stage);
+    }
+    
     /**
      * Check if apartment has overdue payments based on current stage and payment plan
      * Logic: Checks if cumulative paid amount covers all stages up to current stage
      * ONLY for stages that exist in the payment plan (expectedAmount > 0)
      */
     public boolean hasOverduePayments() {
-        if (paymentPlan == null || payments == null || stage == null) {
+        if (paymentPlan == null) {
             return false;
         }
-        
-        // Define stage order and mapping
-        java.util.List<String> stageOrder = java.util.Arrays.asList("prelim", "akt14", "akt15", "akt16");
-        java.util.Map<String, String> stageMappingToKey = new java.util.HashMap<>();
-        stageMappingToKey.put("Предварителен договор", "prelim");
-        stageMappingToKey.put("При предварителен договор", "prelim");
-        stageMappingToKey.put("Акт 14", "akt14");
-        stageMappingToKey.put("Акт 15", "akt15");
-        stageMappingToKey.put("Акт 16", "akt16");
-        
-        String currentStageKey = stageMappingToKey.get(stage);
-        if (currentStageKey == null) {
+        PaymentStage current = stageCode != null ? stageCode : PaymentStage.fromLabel(stage);
+        if (current == null) {
             return false; // Unknown stage
         }
         
-        int currentStageIndex = stageOrder.indexOf(currentStageKey);
-        if (currentStageIndex == -1) {
-            return false;
-        }
-        
-        // Get all stages up to and including current stage
-        java.util.List<String> stagesToCheck = stageOrder.subList(0, currentStageIndex + 1);
-        
-        // FILTER: Only include stages that have expectedAmount > 0 (exist in payment plan)
-        java.util.List<String> activeStages = new java.util.ArrayList<>();
-        for (String stageKey : stagesToCheck) {
-            BigDecimal expected = getExpectedAmountForStage(stageKey);
-            if (expected != null && expected.compareTo(new BigDecimal("0.01")) > 0) {
-                activeStages.add(stageKey);
-            }
-        }
-        
-        if (activeStages.isEmpty()) {
-            return false; // No active stages to check
-        }
-        
-        // Calculate expected cumulative amount ONLY for active stages
+        // Expected cumulative amount of the active stages (expectedAmount > 0.01) up to the current one
         BigDecimal expectedCumulative = BigDecimal.ZERO;
-        for (String stageKey : activeStages) {
-            BigDecimal expected = getExpectedAmountForStage(stageKey);
-            if (expected != null) {
+        boolean hasActiveStage = false;
+        for (int code = 0; code <= current.getCode(); code++) {
+            BigDecimal expected = PaymentStage.fromCode(code).expectedAmount(paymentPlan);
+            if (expected.compareTo(OVERDUE_TOLERANCE) > 0) {
                 expectedCumulative = expectedCumulative.add(expected);
+                hasActiveStage = true;
             }
         }
-        
-        // Calculate total paid (all payments)
-        BigDecimal totalPaid = getTotalPaid();
-        
-        // Check if there's a shortfall (delay)
-        BigDecimal shortfall = expectedCumulative.subtract(totalPaid);
-        return shortfall.compareTo(new BigDecimal("0.01")) > 0; // Allow small rounding differences
-    }
-    
-    /**
-     * Get expected amount for a specific stage from payment plan
-     */
-    private BigDecimal getExpectedAmountForStage(String stageKey) {
-        if (paymentPlan == null) {
-            return BigDecimal.ZERO;
+        if (!hasActiveStage) {
+            return false; // No active stages to check
         }
         
-        switch (stageKey) {
-            case "prelim":
-                return paymentPlan.getPreliminaryContractAmount() != null ? 
-                       paymentPlan.getPreliminaryContractAmount() : BigDecimal.ZERO;
-            case "akt14":
-                return paymentPlan.getAkt14Amount() != null ? 
-                       paymentPlan.getAkt14Amount() : BigDecimal.ZERO;
-            case "akt15":
-                return paymentPlan.getAkt15Amount() != null ? 
-                       paymentPlan.getAkt15Amount() : BigDecimal.ZERO;
-            case "akt16":
-                return paymentPlan.getAkt16Amount() != null ? 
-                       paymentPlan.getAkt16Amount() : BigDecimal.ZERO;
-            default:
-                return BigDecimal.ZERO;
-        }
+        // Check if there's a shortfall (delay), allowing small rounding differences
+        BigDecimal shortfall = expectedCumulative.subtract(getTotalPaid());
+        return shortfall.compareTo(OVERDUE_TOLERANCE) > 0;
     }
     
     /**
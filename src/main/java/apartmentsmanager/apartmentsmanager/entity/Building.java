@@ -17,7 +17,11 @@ import java.util.List;
  * Entity representing a building
  */
 @Entity
-@Table(name = "buildings")
+@Table(name = "buildings", indexes = {
+    @Index(name = "idx_building_stage_order", columnList = "stage_order"),
+    @Index(name = "idx_building_status_stage_order", columnList = "status, stage_order"),
+    @Index(name = "idx_building_name", columnList = "name")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,6 +44,11 @@ public class Building {
     @Column(name = "stage", length = 100)
     private String stage; // Етап: Открита строителна площадка, Акт 14, Акт 15, Акт 16, Завършен
     
+    // Код на етапа, изчислява се от stage при запис (за сравнения и GROUP BY по индекс)
+    @Convert(converter = ConstructionStageConverter.class)
+    @Column(name = "stage_order")
+    private ConstructionStage stageCode;
+    
     @Column(columnDefinition = "TEXT")
     private String notes;
     
@@ -56,33 +65,12 @@ public class Building {
     @EqualsAndHashCode.Exclude
     private List<Apartment> apartments;
     
-    // One-to-Many relationship with Garages
-    @OneToMany(mappedBy = "building", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
-    @JsonIgnore
-    @ToString.Exclude
-    @EqualsAndHashCode.Exclude
-    private List<Garage> garages;
-    
-    // One-to-Many relationship with Basements
-    @OneToMany(mappedBy = "building", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
-    @JsonIgnore
-    @ToString.Exclude
-    @EqualsAndHashCode.Exclude
-    private List<Basement> basements;
-    
-    // One-to-Many relationship with Parking Spaces
+    // One-to-Many relationship with the other units (garages, basements, parking and commercial spaces)
     @OneToMany(mappedBy = "building", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @JsonIgnore
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
-    private List<ParkingSpace> parkingSpaces;
-    
-    // One-to-Many relationship with Commercial Spaces
-    @OneToMany(mappedBy = "building", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
-    @JsonIgnore
-    @ToString.Exclude
-    @EqualsAndHashCode.Exclude
-    private List<CommercialSpace> commercialSpaces;
+    private List<Unit> units;
     
     // Getter methods that ensure lists are initialized
     public List<Apartment> getApartments() {
@@ -92,32 +80,11 @@ public class Building {
         return apartments;
     }
     
-    public List<Garage> getGarages() {
-        if (garages == null) {
-            garages = new ArrayList<>();
+    public List<Unit> getUnits() {
+        if (units == null) {
+            units = new ArrayList<>();
         }
-        return garages;
-    }
-    
-    public List<Basement> getBasements() {
-        if (basements == null) {
-            basements = new ArrayList<>();
-        }
-        return basements;
-    }
-    
-    public List<ParkingSpace> getParkingSpaces() {
-        if (parkingSpaces == null) {
-            parkingSpaces = new ArrayList<>();
-        }
-        return parkingSpaces;
-    }
-    
-    public List<CommercialSpace> getCommercialSpaces() {
-        if (commercialSpaces == null) {
-            commercialSpaces = new ArrayList<>();
-        }
-        return commercialSpaces;
+        return units;
     }
     
     @PrePersist
@@ -127,17 +94,24 @@ public class Building {
         if (status == null || status.trim().isEmpty()) {
             status = "активна";
         }
+        syncStageCode();
         // Initialize lists - use getters to ensure initialization
         getApartments();
-        getGarages();
-        getBasements();
-        getParkingSpaces();
-        getCommercialSpaces();
+        getUnits();
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        syncStageCode();
+    }
+    
+    /**
+     * Normalize the stage label and keep stage_order in sync with it
+     */
+    private void syncStageCode() {
+        stage = ConstructionStage.normalizeLabel(stage);
+        stageCode = ConstructionStage.fromLabel(stage);
     }
 }
 
@@ -0,0 +1,123 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Materialized running totals per building (one row per building).
+ * Maintained in the same transaction as payment/apartment/building-stage writes,
+ * so the dashboard reads statistics by primary key instead of aggregating.
+ */
+@Entity
+@Table(name = "building_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BuildingStats implements BuildingStatisticsSnapshot {
+
+    @Id
+    @Column(name = "building_id")
+    private Long buildingId;
+
+    @Column(name = "total_apartments", nullable = false)
+    private long totalApartments; // Брой продадени обекти
+
+    @Column(name = "total_revenue", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalRevenue = BigDecimal.ZERO;
+
+    @Column(name = "total_collected", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalCollected = BigDecimal.ZERO;
+
+    @Column(name = "prelim_count", nullable = false)
+    private long prelimCount;
+
+    @Column(name = "akt14_count", nullable = false)
+    private long akt14Count;
+
+    @Column(name = "akt15_count", nullable = false)
+    private long akt15Count;
+
+    @Column(name = "akt16_count", nullable = false)
+    private long akt16Count;
+
+    @Column(name = "expected_prelim", nullable = false, precision = 19, scale = 2)
+    private BigDecimal expectedPrelim = BigDecimal.ZERO;
+
+    @Column(name = "expected_akt14", nullable = false, precision = 19, scale = 2)
+    private BigDecimal expectedAkt14 = BigDecimal.ZERO;
+
+    @Column(name = "expected_akt15", nullable = false, precision = 19, scale = 2)
+    private BigDecimal expectedAkt15 = BigDecimal.ZERO;
+
+    @Column(name = "expected_akt16", nullable = false, precision = 19, scale = 2)
+    private BigDecimal expectedAkt16 = BigDecimal.ZERO;
+
+    @Column(name = "collected_prelim", nullable = false, precision = 19, scale = 2)
+    private BigDecimal collectedPrelim = BigDecimal.ZERO;
+
+    @Column(name = "collected_akt14", nullable = false, precision = 19, scale = 2)
+    private BigDecimal collectedAkt14 = BigDecimal.ZERO;
+
+    @Column(name = "collected_akt15", nullable = false, precision = 19, scale = 2)
+    private BigDecimal collectedAkt15 = BigDecimal.ZERO;
+
+    @Column(name = "collected_akt16", nullable = false, precision = 19, scale = 2)
+    private BigDecimal collectedAkt16 = BigDecimal.ZERO;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Create a row from a freshly computed aggregate
+     */
+    public static BuildingStats of(Long buildingId, BuildingStatisticsSnapshot snapshot) {
+        BuildingStats stats = new BuildingStats();
+        stats.setBuildingId(buildingId);
+        stats.add(snapshot, 1);
+        return stats;
+    }
+
+    /**
+     * Add (sign = 1) or subtract (sign = -1) the contribution of an apartment
+     */
+    public void add(BuildingStatisticsSnapshot delta, int sign) {
+        if (delta == null) {
+            return;
+        }
+        totalApartments += sign * delta.getTotalApartments();
+        totalRevenue = plus(totalRevenue, delta.getTotalRevenue(), sign);
+        totalCollected = plus(totalCollected, delta.getTotalCollected(), sign);
+        prelimCount += sign * delta.getPrelimCount();
+        akt14Count += sign * delta.getAkt14Count();
+        akt15Count += sign * delta.getAkt15Count();
+        akt16Count += sign * delta.getAkt16Count();
+        expectedPrelim = plus(expectedPrelim, delta.getExpectedPrelim(), sign);
+        expectedAkt14 = plus(expectedAkt14, delta.getExpectedAkt14(), sign);
+        expectedAkt15 = plus(expectedAkt15, delta.getExpectedAkt15(), sign);
+        expectedAkt16 = plus(expectedAkt16, delta.getExpectedAkt16(), sign);
+        collectedPrelim = plus(collectedPrelim, delta.getCollectedPrelim(), sign);
+        collectedAkt14 = plus(collectedAkt14, delta.getCollectedAkt14(), sign);
+        collectedAkt15 = plus(collectedAkt15, delta.getCollectedAkt15(), sign);
+        collectedAkt16 = plus(collectedAkt16, delta.getCollectedAkt16(), sign);
+    }
+
+    private static BigDecimal plus(BigDecimal current, BigDecimal value, int sign) {
+        BigDecimal base = current != null ? current : BigDecimal.ZERO;
+        if (value == null) {
+            return base;
+        }
+        return sign < 0 ? base.subtract(value) : base.add(value);
+    }
+}
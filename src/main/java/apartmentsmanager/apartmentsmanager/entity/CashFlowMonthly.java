@@ -0,0 +1,69 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Месечен rollup на паричните потоци: събрани плащания (по метод на плащане)
+ * и очаквани суми по PaymentPlan, за месец и сграда.
+ * Поддържа се инкрементално при всеки запис на плащане/апартамент.
+ */
+@Entity
+@Table(name = "cash_flow_monthly",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_cash_flow_bucket",
+            columnNames = {"period_month", "building_id", "flow_type", "payment_method"})
+    },
+    indexes = {
+        @Index(name = "idx_cash_flow_month_building", columnList = "period_month, building_id")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CashFlowMonthly {
+
+    public static final String FLOW_COLLECTED = "COLLECTED"; // Payment.amount по payment_date
+    public static final String FLOW_EXPECTED = "EXPECTED";   // PaymentPlan суми по дата на етапа
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "period_month", nullable = false)
+    private LocalDate periodMonth; // Първи ден от месеца
+
+    @Column(name = "building_id", nullable = false)
+    private Long buildingId;
+
+    @Column(name = "flow_type", nullable = false, length = 20)
+    private String flowType;
+
+    @Column(name = "payment_method", nullable = false, length = 50)
+    private String paymentMethod = ""; // "Банка", "В брой"; празно за очаквани суми
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    @Column(name = "entry_count", nullable = false)
+    private long entryCount; // Брой плащания / етапи в кофата
+
+    /**
+     * Contribution of one payment or plan stage (not persisted directly)
+     */
+    public static CashFlowMonthly of(LocalDate date, Long buildingId, String flowType, String paymentMethod,
+                                     BigDecimal amount, long entryCount) {
+        CashFlowMonthly entry = new CashFlowMonthly();
+        entry.setPeriodMonth(date.withDayOfMonth(1));
+        entry.setBuildingId(buildingId);
+        entry.setFlowType(flowType);
+        entry.setPaymentMethod(paymentMethod != null ? paymentMethod : "");
+        entry.setAmount(amount != null ? amount : BigDecimal.ZERO);
+        entry.setEntryCount(entryCount);
+        return entry;
+    }
+}
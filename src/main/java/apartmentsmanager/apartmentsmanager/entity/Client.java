@@ -15,6 +15,8 @@ import java.util.List;
  * Entity representing a client/buyer
  */
 @Entity
+// Unique index uk_client_egn (upsert key of the client import) - created by ClientEgnIndexService only when
+// there are no duplicate EGN/EIK values; blank values are stored as NULL, so only real values must be unique
 @Table(name = "clients")
 @Data
 @NoArgsConstructor
@@ -59,10 +61,23 @@ public class Client {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        egn = normalizeEgn(egn);
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        egn = normalizeEgn(egn);
+    }
+    
+    /**
+     * ЕГН/ЕИК without spaces and dashes, upper case ("bg 123-456" -> "BG123456"); blank -> null
+     */
+    public static String normalizeEgn(String egn) {
+        if (egn == null) {
+            return null;
+        }
+        String normalized = egn.replaceAll("[\\s\\u00A0-]", "").toUpperCase();
+        return normalized.isEmpty() ? null : normalized;
     }
 }
@@ -0,0 +1,99 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import java.util.Locale;
+
+/**
+ * Етап на строителство на сграда. Кодът (0..4) се пази в индексираната колона
+ * buildings.stage_order (ConstructionStageConverter).
+ */
+public enum ConstructionStage {
+    OPEN_SITE(0, "Открита строителна площадка", PaymentStage.PRELIMINARY),
+    AKT14(1, "Акт 14", PaymentStage.AKT14),
+    AKT15(2, "Акт 15", PaymentStage.AKT15),
+    AKT16(3, "Акт 16", PaymentStage.AKT16),
+    COMPLETED(4, "Завършен", PaymentStage.PRELIMINARY);
+
+    private static final ConstructionStage[] BY_CODE = values();
+
+    private final int code;
+    private final String label;
+    private final PaymentStage apartmentStage;
+
+    ConstructionStage(int code, String label, PaymentStage apartmentStage) {
+        this.code = code;
+        this.label = label;
+        this.apartmentStage = apartmentStage;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Етап, в който преминават обектите на сградата при смяна на етапа на сградата
+     */
+    public PaymentStage getApartmentStage() {
+        return apartmentStage;
+    }
+
+    public static ConstructionStage fromCode(Integer code) {
+        if (code == null || code < 0 || code >= BY_CODE.length) {
+            return null;
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Етап по етикет; null за празен или непознат етикет
+     */
+    public static ConstructionStage fromLabel(String label) {
+        if (label == null) {
+            return null;
+        }
+        switch (label) {
+            case "Открита строителна площадка":
+                return OPEN_SITE;
+            case "Акт 14":
+                return AKT14;
+            case "Акт 15":
+                return AKT15;
+            case "Акт 16":
+                return AKT16;
+            case "Завършен":
+            case "Завършена":
+                return COMPLETED;
+            default:
+                break;
+        }
+        String normalized = label.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        if (normalized.contains("площадка")) {
+            return OPEN_SITE;
+        }
+        if (normalized.startsWith("завърш")) {
+            return COMPLETED;
+        }
+        PaymentStage akt = PaymentStage.fromLabel(normalized);
+        if (akt == PaymentStage.AKT14) {
+            return AKT14;
+        }
+        if (akt == PaymentStage.AKT15) {
+            return AKT15;
+        }
+        if (akt == PaymentStage.AKT16) {
+            return AKT16;
+        }
+        return null;
+    }
+
+    public static String normalizeLabel(String label) {
+        ConstructionStage stage = fromLabel(label);
+        return stage != null ? stage.label : label;
+    }
+}
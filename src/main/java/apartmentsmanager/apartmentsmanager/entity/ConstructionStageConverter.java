@@ -0,0 +1,21 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * ConstructionStage <-> код на етапа (0..4) в колоната buildings.stage_order
+ */
+@Converter
+public class ConstructionStageConverter implements AttributeConverter<ConstructionStage, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(ConstructionStage stage) {
+        return stage != null ? stage.getCode() : null;
+    }
+
+    @Override
+    public ConstructionStage convertToEntityAttribute(Integer code) {
+        return ConstructionStage.fromCode(code);
+    }
+}
@@ -0,0 +1,82 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Асинхронен импорт на Excel файл - качения файл се пази на диска до края на обработката,
+ * а броячите се записват периодично, за да оцелеят след рестарт
+ */
+@Entity
+@Table(name = "import_jobs", indexes = {
+    @Index(name = "idx_import_job_status", columnList = "status"),
+    @Index(name = "idx_import_job_created", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJob {
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "import_type", nullable = false, length = 20)
+    private String importType; // apartments, buildings, clients, payments
+
+    @Column(name = "building_id")
+    private Long buildingId; // Целева сграда при импорт на апартаменти
+
+    @Column(name = "original_filename", length = 255)
+    private String originalFilename;
+
+    @Column(name = "file_path", length = 500)
+    private String filePath; // Качения файл (изтрива се след края на импорта)
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "rows_read", nullable = false)
+    private int rowsRead;
+
+    @Column(name = "imported_count", nullable = false)
+    private int importedCount;
+
+    @Column(name = "updated_count", nullable = false)
+    private int updatedCount; // Част от импортираните, обновили съществуващ запис (клиенти)
+
+    @Column(name = "skipped_count", nullable = false)
+    private int skippedCount;
+
+    @Column(name = "error_count", nullable = false)
+    private int errorCount;
+
+    @Column(name = "message", length = 500)
+    private String message;
+
+    @Column(name = "stage_metrics", length = 1000)
+    private String stageMetrics; // Метрики на етапите parse/validate/persist (тясното място на импорта)
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public boolean isFinished() {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status) || STATUS_CANCELLED.equals(status);
+    }
+}
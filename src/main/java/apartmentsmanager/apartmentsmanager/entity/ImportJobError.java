@@ -0,0 +1,40 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Една грешка от асинхронен импорт ("Ред N: ..."), в реда на възникване
+ */
+@Entity
+@Table(name = "import_job_errors", indexes = {
+    @Index(name = "idx_import_job_error_job", columnList = "job_id, error_index")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobError {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(name = "error_index", nullable = false)
+    private int position; // Пореден номер на грешката в job-а
+
+    @Column(name = "message", nullable = false, length = 1000)
+    private String message;
+
+    public static ImportJobError of(Long jobId, int position, String message) {
+        ImportJobError error = new ImportJobError();
+        error.setJobId(jobId);
+        error.setPosition(position);
+        error.setMessage(message != null && message.length() > 1000 ? message.substring(0, 1000) : String.valueOf(message));
+        return error;
+    }
+}
@@ -0,0 +1,75 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Запис за едно изпълнение на сканирането за просрочени плащания (времена и резултат)
+ */
+@Entity
+@Table(name = "overdue_scan_runs", indexes = {
+    @Index(name = "idx_overdue_scan_run_started", columnList = "started_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueScanRun {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_SUCCESS = "SUCCESS";
+    public static final String STATUS_FAILED = "FAILED";
+
+    public static final String TRIGGER_SCHEDULED = "SCHEDULED";
+    public static final String TRIGGER_STARTUP = "STARTUP";
+    public static final String TRIGGER_MANUAL = "MANUAL";
+    public static final String TRIGGER_IMPORT = "IMPORT";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "building_id")
+    private Long buildingId; // null = всички сгради
+
+    @Column(name = "trigger_type", nullable = false, length = 20)
+    private String triggerType;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "duration_millis")
+    private Long durationMillis;
+
+    @Column(name = "worker_threads")
+    private int workerThreads;
+
+    @Column(name = "buildings_scanned")
+    private int buildingsScanned;
+
+    @Column(name = "apartments_overdue")
+    private long apartmentsOverdue;
+
+    @Column(name = "total_overdue", precision = 19, scale = 2)
+    private BigDecimal totalOverdue = BigDecimal.ZERO;
+
+    // Най-бавната сграда в изпълнението
+    @Column(name = "slowest_building_id")
+    private Long slowestBuildingId;
+
+    @Column(name = "slowest_building_millis")
+    private Long slowestBuildingMillis;
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+}
@@ -0,0 +1,90 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Предварително изчислен просрочен апартамент (един ред за апартамент).
+ * Пълни се от нощното сканиране (OverdueScanService) и се обновява за конкретния апартамент
+ * при запис на плащане/апартамент, така че списъкът и броят на просрочените се четат без агрегиране.
+ */
+@Entity
+@Table(name = "overdue_snapshot", indexes = {
+    @Index(name = "idx_overdue_snapshot_building_since", columnList = "building_id, overdue_since")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueSnapshot implements OverdueApartmentRow {
+
+    @Id
+    @Column(name = "apartment_id")
+    private Long apartmentId;
+
+    @Column(name = "building_id", nullable = false)
+    private Long buildingId;
+
+    @Column(name = "building_name", length = 255)
+    private String buildingName;
+
+    @Column(name = "apartment_number", length = 50)
+    private String apartmentNumber;
+
+    @Column(name = "stage", length = 100)
+    private String stage;
+
+    @Column(name = "client_id")
+    private Long clientId;
+
+    @Column(name = "client_name", length = 255)
+    private String clientName;
+
+    @Column(name = "overdue_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal overdueAmount = BigDecimal.ZERO;
+
+    @Column(name = "overdue_since")
+    private LocalDate overdueSince;
+
+    @Column(name = "days_overdue", nullable = false)
+    private long daysOverdue; // Към датата на сканиране
+
+    @Column(name = "scan_run_id")
+    private Long scanRunId; // null = обновен при запис
+
+    @Column(name = "scanned_at", nullable = false)
+    private LocalDateTime scannedAt;
+
+    @Override
+    public Long getId() {
+        return apartmentId;
+    }
+
+    /**
+     * Create a row from the live overdue aggregate of one apartment
+     */
+    public static OverdueSnapshot of(Long buildingId, OverdueApartmentRow row, Long scanRunId, LocalDateTime scannedAt) {
+        OverdueSnapshot snapshot = new OverdueSnapshot();
+        snapshot.setApartmentId(row.getId());
+        snapshot.setBuildingId(buildingId);
+        snapshot.setBuildingName(row.getBuildingName());
+        snapshot.setApartmentNumber(row.getApartmentNumber());
+        snapshot.setStage(row.getStage());
+        snapshot.setClientId(row.getClientId());
+        snapshot.setClientName(row.getClientName());
+        snapshot.setOverdueAmount(row.getOverdueAmount() != null ? row.getOverdueAmount() : BigDecimal.ZERO);
+        snapshot.setOverdueSince(row.getOverdueSince());
+        snapshot.setDaysOverdue(row.getOverdueSince() != null
+            ? ChronoUnit.DAYS.between(row.getOverdueSince(), scannedAt.toLocalDate()) : 0L);
+        snapshot.setScanRunId(scanRunId);
+        snapshot.setScannedAt(scannedAt);
+        return snapshot;
+    }
+}
@@ -16,7 +16,9 @@ import java.time.LocalDateTime;
  * Entity representing a payment for an apartment
  */
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+    @Index(name = "idx_payment_apartment_stage_order", columnList = "apartment_id, payment_stage_order")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,7 +44,12 @@ public class Payment {
     private String paymentMethod; // Метод: "Банка" или "В брой"
     
     @Column(name = "payment_stage", length = 100)
-    private String paymentStage; // Етап: "Предварителен договор", "Акт 14", "Акт 15", "Акт 16"
+    private String paymentStage; // Етап: "При предварителен договор", "Акт 14", "Акт 15", "Акт 16"
+    
+    // Код на етапа, изчислява се от paymentStage при запис (null = друго / без етап)
+    @Convert(converter = PaymentStageConverter.class)
+    @Column(name = "payment_stage_order")
+    private PaymentStage paymentStageCode;
     
     @Column(name = "is_deposit", nullable = false)
     private Boolean isDeposit = false; // Дали е капаро
@@ -68,6 +75,7 @@ public class Payment {
         if (amount != null) {
             amount = amount.setScale(2, RoundingMode.HALF_UP);
         }
+        syncStageCode();
     }
     
     @PreUpdate
@@ -76,5 +84,14 @@ public class Payment {
         if (amount != null) {
             amount = amount.setScale(2, RoundingMode.HALF_UP);
         }
+        syncStageCode();
+    }
+    
+    /**
+     * Normalize the stage label and keep payment_stage_order in sync with it
+     */
+    private void syncStageCode() {
+        paymentStage = PaymentStage.normalizeLabel(paymentStage);
+        paymentStageCode = PaymentStage.fromLabel(paymentStage);
     }
 }
@@ -0,0 +1,122 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Етап на плащане / продажба на обект. Кодът (0..3) се пази в индексираните колони
+ * apartments.stage_order и payments.payment_stage_order (PaymentStageConverter),
+ * а етикетът остава в текстовите колони за визуализация.
+ */
+public enum PaymentStage {
+    PRELIMINARY(0, "При предварителен договор"),
+    AKT14(1, "Акт 14"),
+    AKT15(2, "Акт 15"),
+    AKT16(3, "Акт 16");
+
+    /**
+     * Префикс за enum литерали в JPQL: "p.paymentStageCode = " + PaymentStage.JPQL + "AKT14"
+     */
+    public static final String JPQL = "apartmentsmanager.apartmentsmanager.entity.PaymentStage.";
+
+    private static final PaymentStage[] BY_CODE = values();
+
+    private final int code;
+    private final String label;
+
+    PaymentStage(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public static PaymentStage fromCode(Integer code) {
+        if (code == null || code < 0 || code >= BY_CODE.length) {
+            return null;
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Етап по етикет; null за празен или непознат етикет ("Завършен", "друго" ...)
+     */
+    public static PaymentStage fromLabel(String label) {
+        if (label == null) {
+            return null;
+        }
+        // Каноничните етикети - без алокация
+        switch (label) {
+            case "При предварителен договор":
+            case "Предварителен договор":
+                return PRELIMINARY;
+            case "Акт 14":
+                return AKT14;
+            case "Акт 15":
+                return AKT15;
+            case "Акт 16":
+                return AKT16;
+            default:
+                break;
+        }
+        // Стари / ръчно въведени варианти ("предварителен", "prelim", "акт14", "АКТ 15" ...)
+        String normalized = label.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        if (normalized.contains("предварителен") || normalized.contains("prelim")) {
+            return PRELIMINARY;
+        }
+        if (normalized.contains("акт") || normalized.contains("akt")) {
+            if (normalized.contains("14")) {
+                return AKT14;
+            }
+            if (normalized.contains("15")) {
+                return AKT15;
+            }
+            if (normalized.contains("16")) {
+                return AKT16;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Каноничен етикет за познатите етапи, иначе етикетът без промяна
+     */
+    public static String normalizeLabel(String label) {
+        PaymentStage stage = fromLabel(label);
+        return stage != null ? stage.label : label;
+    }
+
+    /**
+     * Очаквана сума за етапа от плана за плащане (0 при липса)
+     */
+    public BigDecimal expectedAmount(PaymentPlan plan) {
+        if (plan == null) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal amount;
+        switch (this) {
+            case PRELIMINARY:
+                amount = plan.getPreliminaryContractAmount();
+                break;
+            case AKT14:
+                amount = plan.getAkt14Amount();
+                break;
+            case AKT15:
+                amount = plan.getAkt15Amount();
+                break;
+            default:
+                amount = plan.getAkt16Amount();
+                break;
+        }
+        return amount != null ? amount : BigDecimal.ZERO;
+    }
+}
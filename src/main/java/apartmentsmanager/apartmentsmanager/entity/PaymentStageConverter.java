@@ -0,0 +1,21 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * PaymentStage <-> код на етапа (0..3) в колоните *_stage_order
+ */
+@Converter
+public class PaymentStageConverter implements AttributeConverter<PaymentStage, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(PaymentStage stage) {
+        return stage != null ? stage.getCode() : null;
+    }
+
+    @Override
+    public PaymentStage convertToEntityAttribute(Integer code) {
+        return PaymentStage.fromCode(code);
+    }
+}
@@ -0,0 +1,80 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Вноска по график: един ред за апартамент × етап от PaymentPlan.
+ * Платената сума се разпределя последователно по етапите (предварителен договор → Акт 16),
+ * така че просрочените и предстоящите вноски се намират с range scan по (building_id, due_date, status).
+ * Поддържа се при запис на плащане/апартамент (ReceivableInstallmentService.syncApartment).
+ */
+@Entity
+@Table(name = "receivable_installments",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_installment_apartment_stage", columnNames = {"apartment_id", "stage_order"})
+    },
+    indexes = {
+        @Index(name = "idx_installment_building_due_status", columnList = "building_id, due_date, status")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceivableInstallment {
+
+    public static final String STATUS_OPEN = "OPEN";
+    public static final String STATUS_PAID = "PAID";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Plain ids (no FK) - rows are removed explicitly when apartments/buildings are deleted
+    @Column(name = "apartment_id", nullable = false)
+    private Long apartmentId;
+
+    @Column(name = "building_id", nullable = false)
+    private Long buildingId;
+
+    @Column(name = "stage", nullable = false, length = 100)
+    private String stage; // "При предварителен договор", "Акт 14", "Акт 15", "Акт 16"
+
+    @Column(name = "stage_order", nullable = false)
+    private int stageOrder; // 0 = предварителен договор ... 3 = Акт 16
+
+    @Column(name = "due_date")
+    private LocalDate dueDate; // null ако етапът няма дата в плана
+
+    // Изискуема независимо от датата: предварителният етап и етапите, до които апартаментът е стигнал
+    // (същото правило като Apartment.hasOverduePayments); иначе вноската става изискуема след due_date
+    @Column(name = "is_due", nullable = false)
+    private boolean due;
+
+    @Column(name = "expected_amount", nullable = false, precision = 15, scale = 2)
+    private BigDecimal expectedAmount = BigDecimal.ZERO;
+
+    @Column(name = "paid_amount", nullable = false, precision = 15, scale = 2)
+    private BigDecimal paidAmount = BigDecimal.ZERO;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status = STATUS_OPEN;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public BigDecimal getRemainingAmount() {
+        return expectedAmount.subtract(paidAmount);
+    }
+}
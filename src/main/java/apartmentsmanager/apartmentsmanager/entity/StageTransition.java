@@ -0,0 +1,43 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * История на масовите смени на етап (етап на сграда или на всички продадени обекти)
+ */
+@Entity
+@Table(name = "stage_transitions", indexes = {
+    @Index(name = "idx_stage_transition_building_at", columnList = "building_id, transitioned_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StageTransition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "building_id")
+    private Long buildingId; // null = всички сгради
+
+    @Column(name = "from_stage", length = 100)
+    private String fromStage; // Предишен етап на сградата (null при смяна само на обектите)
+
+    @Column(name = "to_stage", length = 100)
+    private String toStage; // Нов етап на сградата, при смяна само на обектите - етапът на обектите
+
+    @Column(name = "apartment_stage", length = 100)
+    private String apartmentStage; // Етап, записан на обектите
+
+    @Column(name = "apartment_count", nullable = false)
+    private int apartmentCount; // Брой обновени обекти
+
+    @Column(name = "transitioned_at", nullable = false)
+    private LocalDateTime transitionedAt;
+}
@@ -0,0 +1,109 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Обект извън апартаментите (гараж, мазе, паркомясто, търговски обект). Всички видове са в една
+ * таблица units (single table), видът е в колоната unit_type с кода от UnitType.
+ */
+@Entity
+@Table(name = "units", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"building_id", "unit_type", "unit_number"})
+}, indexes = {
+    @Index(name = "idx_unit_building_type_sold", columnList = "building_id, unit_type, is_sold")
+})
+@Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+@DiscriminatorColumn(name = "unit_type", discriminatorType = DiscriminatorType.INTEGER)
+@Data
+public abstract class Unit {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // Видът само за четене (записва се от дискриминатора на подкласа)
+    @Convert(converter = UnitTypeConverter.class)
+    @Column(name = "unit_type", insertable = false, updatable = false)
+    private UnitType unitType;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "building_id", nullable = false)
+    private Building building;
+    
+    @NotBlank(message = "Номерът на обекта е задължителен")
+    @Column(name = "unit_number", nullable = false, length = 50)
+    private String number;
+    
+    @NotNull(message = "Площта е задължителна")
+    @DecimalMin(value = "0.01", message = "Площта трябва да е по-голяма от 0")
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal area; // Площ в кв.м
+    
+    @NotNull(message = "Цената на кв.м е задължителна")
+    @DecimalMin(value = "0.01", message = "Цената трябва да е по-голяма от 0")
+    @Column(name = "price_per_m2", nullable = false, precision = 15, scale = 2)
+    private BigDecimal pricePerM2; // Цена на кв.м
+    
+    @Column(name = "total_price", nullable = false, precision = 15, scale = 2)
+    private BigDecimal totalPrice; // Обща цена (изчислява се автоматично)
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "client_id")
+    private Client client;
+    
+    @Column(name = "contract_date")
+    private LocalDate contractDate; // Дата на договор
+    
+    @Column(name = "notes", columnDefinition = "TEXT")
+    private String notes;
+    
+    @Column(name = "is_sold", nullable = false)
+    private Boolean isSold = false;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    protected Unit(UnitType unitType) {
+        this.unitType = unitType;
+    }
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+        calculateTotalPrice();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+        calculateTotalPrice();
+    }
+    
+    /**
+     * Calculate total price from area * pricePerM2
+     */
+    private void calculateTotalPrice() {
+        if (area != null && pricePerM2 != null) {
+            totalPrice = area.multiply(pricePerM2).setScale(2, RoundingMode.HALF_UP);
+        }
+    }
+    
+    /**
+     * Get full unit identifier ("Сграда А - Гараж 3")
+     */
+    public String getFullIdentifier() {
+        String label = unitType != null ? unitType.getLabel() + " " + number : number;
+        return building != null ? building.getName() + " - " + label : label;
+    }
+}
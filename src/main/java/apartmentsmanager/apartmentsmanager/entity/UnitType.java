@@ -0,0 +1,74 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Вид на обекта. Кодът (0..4) се пази в колоната apartments.unit_type (UnitTypeConverter), където се
+ * определя от номера на обекта при запис, и е дискриминаторът на таблицата units (кодове 1..4).
+ */
+public enum UnitType {
+    APARTMENT(0, "Апартамент", List.of()),
+    GARAGE(1, "Гараж", List.of("ГАРАЖ")),
+    PARKING_SPACE(2, "Паркомясто", List.of("ПАРКО")),
+    BASEMENT(3, "Мазе", List.of("МАЗЕ")),
+    COMMERCIAL_SPACE(4, "Търговски обект", List.of("ТЪРГ", "МАГАЗ"));
+
+    private static final UnitType[] BY_CODE = values();
+    // Ред на проверка по номер - първото съвпадение печели, APARTMENT е по подразбиране
+    private static final List<UnitType> CLASSIFICATION_ORDER = List.of(GARAGE, PARKING_SPACE, BASEMENT, COMMERCIAL_SPACE);
+
+    private final int code;
+    private final String label;
+    private final List<String> numberMarkers;
+
+    UnitType(int code, String label, List<String> numberMarkers) {
+        this.code = code;
+        this.label = label;
+        this.numberMarkers = numberMarkers;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Части от номера (главни букви), по които се разпознава видът
+     */
+    public List<String> getNumberMarkers() {
+        return numberMarkers;
+    }
+
+    public static UnitType fromCode(Integer code) {
+        if (code == null || code < 0 || code >= BY_CODE.length) {
+            return null;
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Вид по номера на обекта ("Гараж 3", "ПАРКОМЯСТО 12", "Мазе 5", "Магазин 1" ...); всичко останало е апартамент
+     */
+    public static UnitType fromApartmentNumber(String apartmentNumber) {
+        String value = apartmentNumber != null ? apartmentNumber.trim().toUpperCase(Locale.ROOT) : "";
+        for (UnitType type : CLASSIFICATION_ORDER) {
+            for (String marker : type.numberMarkers) {
+                if (value.contains(marker)) {
+                    return type;
+                }
+            }
+        }
+        return APARTMENT;
+    }
+
+    /**
+     * Видовете в реда, в който се проверяват по номер (без APARTMENT)
+     */
+    public static List<UnitType> classificationOrder() {
+        return CLASSIFICATION_ORDER;
+    }
+}
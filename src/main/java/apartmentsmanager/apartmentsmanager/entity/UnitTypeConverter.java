@@ -0,0 +1,21 @@
+package apartmentsmanager.apartmentsmanager.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * UnitType <-> код на вида (0..4) в колоната apartments.unit_type
+ */
+@Converter
+public class UnitTypeConverter implements AttributeConverter<UnitType, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(UnitType unitType) {
+        return unitType != null ? unitType.getCode() : null;
+    }
+
+    @Override
+    public UnitType convertToEntityAttribute(Integer code) {
+        return UnitType.fromCode(code);
+    }
+}
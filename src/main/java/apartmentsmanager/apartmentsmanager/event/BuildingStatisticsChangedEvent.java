@@ -0,0 +1,26 @@
+package apartmentsmanager.apartmentsmanager.event;
+
+/**
+ * Публикува се при промяна на данни, от които зависи статистиката на сграда
+ * (плащания, апартаменти, етап на сграда). buildingId = null означава всички сгради.
+ */
+public class BuildingStatisticsChangedEvent {
+
+    private final Long buildingId;
+
+    public BuildingStatisticsChangedEvent(Long buildingId) {
+        this.buildingId = buildingId;
+    }
+
+    public static BuildingStatisticsChangedEvent allBuildings() {
+        return new BuildingStatisticsChangedEvent(null);
+    }
+
+    public Long getBuildingId() {
+        return buildingId;
+    }
+
+    public boolean isAllBuildings() {
+        return buildingId == null;
+    }
+}
@@ -1,24 +1,77 @@
 package apartmentsmanager.apartmentsmanager.repository;
 
+import apartmentsmanager.apartmentsmanager.dto.ApartmentExportRow;
+import apartmentsmanager.apartmentsmanager.dto.ApartmentKey;
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
+import apartmentsmanager.apartmentsmanager.dto.BuildingUnitTypeCount;
+import apartmentsmanager.apartmentsmanager.dto.PaymentPlanRow;
 import apartmentsmanager.apartmentsmanager.entity.Apartment;
 import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+import apartmentsmanager.apartmentsmanager.entity.UnitType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ApartmentRepository extends JpaRepository<Apartment, Long> {
+
+    // Paid totals of an apartment recomputed from its payments (shared by refresh and reconciliation)
+    String PAYMENT_TOTALS_SET =
+        "SET a.totalPaid = (SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.apartment.id = a.id), " +
+        "a.lastPaymentDate = (SELECT MAX(p.paymentDate) FROM Payment p WHERE p.apartment.id = a.id), " +
+        "a.paidPrelim = (SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.apartment.id = a.id " +
+        "   AND p.paymentStageCode = " + PaymentStage.JPQL + "PRELIMINARY), " +
+        "a.paidAkt14 = (SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.apartment.id = a.id " +
+        "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT14), " +
+        "a.paidAkt15 = (SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.apartment.id = a.id " +
+        "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT15), " +
+        "a.paidAkt16 = (SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.apartment.id = a.id " +
+        "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT16) ";
     
     // Find by building and apartment number (for duplicate check)
     Optional<Apartment> findByBuildingAndApartmentNumber(Building building, String apartmentNumber);
     
+    // Existing apartment numbers of a building (bulk import duplicate check, one query per building)
+    @Query("SELECT a.apartmentNumber FROM Apartment a WHERE a.building.id = :buildingId")
+    List<String> findApartmentNumbersByBuilding(@Param("buildingId") Long buildingId);
+    
     // Find by building name and apartment number (for backward compatibility)
     Optional<Apartment> findByBuildingNameAndApartmentNumber(String buildingName, String apartmentNumber);
     
+    // Apartment id by building name + number (payments import) - the linked building's name, the stored name otherwise
+    @Query("SELECT a.id FROM Apartment a LEFT JOIN a.building b " +
+           "WHERE COALESCE(b.name, a.buildingName) = :buildingName AND a.apartmentNumber = :apartmentNumber ORDER BY a.id")
+    List<Long> findIdsByBuildingNameAndApartmentNumber(@Param("buildingName") String buildingName,
+                                                       @Param("apartmentNumber") String apartmentNumber);
+    
+    // Amount still to pay of one apartment (payments import checks its rows against a running total)
+    @Query("SELECT a.totalPrice - COALESCE(a.totalPaid, 0) FROM Apartment a WHERE a.id = :apartmentId")
+    Optional<BigDecimal> findRemainingAmount(@Param("apartmentId") Long apartmentId);
+    
+    // Unit counts per building and unit type for a page of buildings - index-only GROUP BY over (building_id, unit_type)
+    @Query("SELECT a.building.id AS buildingId, a.unitType AS unitType, COUNT(a) AS total " +
+           "FROM Apartment a WHERE a.building.id IN :buildingIds GROUP BY a.building.id, a.unitType")
+    List<BuildingUnitTypeCount> countGroupedByBuildingAndUnitType(@Param("buildingIds") Collection<Long> buildingIds);
+    
+    // Keys of all apartments (workbook import resolves and checks payment rows in memory) - same building name rule as above
+    @Query("SELECT a.id AS id, COALESCE(b.name, a.buildingName) AS buildingName, a.apartmentNumber AS apartmentNumber, " +
+           "a.totalPrice AS totalPrice, a.totalPaid AS totalPaid " +
+           "FROM Apartment a LEFT JOIN a.building b ORDER BY a.id")
+    List<ApartmentKey> findAllKeys();
+    
     // Find by building
     List<Apartment> findByBuilding(Building building);
     
@@ -31,25 +84,16 @@ public interface ApartmentRepository extends JpaRepository<Apartment, Long> {
     // Find all sold apartments
     List<Apartment> findByIsSoldTrue();
     
-    // Find apartments with overdue payments
-    @Query("SELECT DISTINCT a FROM Apartment a " +
-           "JOIN a.paymentPlan pp " +
-           "WHERE a.isSold = true " +
-           "AND (pp.preliminaryContractDate < CURRENT_DATE OR " +
-           "     pp.akt14Date < CURRENT_DATE OR " +
-           "     pp.akt15Date < CURRENT_DATE OR " +
-           "     pp.akt16Date < CURRENT_DATE)")
+    // Overdue = has an open receivable installment with a past due date (see ReceivableInstallmentRepository)
+    @Query("SELECT x FROM Apartment x WHERE x.id IN (" +
+           "SELECT i.apartmentId FROM ReceivableInstallment i WHERE i.dueDate < CURRENT_DATE AND i.status = 'OPEN')")
     List<Apartment> findApartmentsWithOverduePayments();
 
     // Find apartments with overdue payments by building
-    @Query("SELECT DISTINCT a FROM Apartment a " +
-           "JOIN a.paymentPlan pp " +
-           "WHERE a.isSold = true AND a.building.id = :buildingId " +
-           "AND (pp.preliminaryContractDate < CURRENT_DATE OR " +
-           "     pp.akt14Date < CURRENT_DATE OR " +
-           "     pp.akt15Date < CURRENT_DATE OR " +
-           "     pp.akt16Date < CURRENT_DATE)")
-    List<Apartment> findApartmentsWithOverduePaymentsByBuilding(Long buildingId);
+    @Query("SELECT x FROM Apartment x WHERE x.id IN (" +
+           "SELECT i.apartmentId FROM ReceivableInstallment i WHERE i.buildingId = :buildingId " +
+           "AND i.dueDate < CURRENT_DATE AND i.status = 'OPEN')")
+    List<Apartment> findApartmentsWithOverduePaymentsByBuilding(@Param("buildingId") Long buildingId);
     
     // Calculate total revenue
     @Query("SELECT COALESCE(SUM(a.totalPrice), 0) FROM Apartment a WHERE a.isSold = true")
@@ -73,8 +117,127 @@ public interface ApartmentRepository extends JpaRepository<Apartment, Long> {
     @Query("SELECT COUNT(a) FROM Apartment a WHERE a.isSold = true AND a.building.id = :buildingId")
     long countSoldApartmentsByBuilding(Long buildingId);
     
-    // Count apartments by stage
-    @Query("SELECT a.stage, COUNT(a) FROM Apartment a WHERE a.isSold = true GROUP BY a.stage")
+    // Statistics snapshot for a building in a single statement (no entity hydration).
+    // Apartment-level sums come from the outer aggregate; payment sums are uncorrelated
+    // scalar subqueries so that payments do not multiply the apartment rows.
+    @Query("SELECT MAX(a.building.id) AS buildingId, COUNT(a) AS totalApartments, " +
+           "COALESCE(SUM(a.totalPrice), 0) AS totalRevenue, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = :buildingId) AS totalCollected, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "PRELIMINARY " +
+           "   OR a.stage IS NULL OR TRIM(a.stage) = '' THEN 1 ELSE 0 END), 0) AS prelimCount, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT14 THEN 1 ELSE 0 END), 0) AS akt14Count, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT15 THEN 1 ELSE 0 END), 0) AS akt15Count, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT16 THEN 1 ELSE 0 END), 0) AS akt16Count, " +
+           "COALESCE(SUM(a.paymentPlan.preliminaryContractAmount), 0) AS expectedPrelim, " +
+           "COALESCE(SUM(a.paymentPlan.akt14Amount), 0) AS expectedAkt14, " +
+           "COALESCE(SUM(a.paymentPlan.akt15Amount), 0) AS expectedAkt15, " +
+           "COALESCE(SUM(a.paymentPlan.akt16Amount), 0) AS expectedAkt16, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = :buildingId " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "PRELIMINARY) AS collectedPrelim, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = :buildingId " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT14) AS collectedAkt14, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = :buildingId " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT15) AS collectedAkt15, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = :buildingId " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT16) AS collectedAkt16 " +
+           "FROM Apartment a WHERE a.isSold = true AND a.building.id = :buildingId")
+    BuildingStatisticsSnapshot findStatisticsSnapshotByBuilding(@Param("buildingId") Long buildingId);
+
+    // Contribution of a single sold apartment to its building statistics (same shape as the building snapshot).
+    // Unsold or missing apartments produce an all-zero row with a null buildingId.
+    @Query("SELECT MAX(a.building.id) AS buildingId, COUNT(a) AS totalApartments, " +
+           "COALESCE(SUM(a.totalPrice), 0) AS totalRevenue, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.id = :apartmentId) AS totalCollected, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "PRELIMINARY " +
+           "   OR a.stage IS NULL OR TRIM(a.stage) = '' THEN 1 ELSE 0 END), 0) AS prelimCount, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT14 THEN 1 ELSE 0 END), 0) AS akt14Count, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT15 THEN 1 ELSE 0 END), 0) AS akt15Count, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT16 THEN 1 ELSE 0 END), 0) AS akt16Count, " +
+           "COALESCE(SUM(a.paymentPlan.preliminaryContractAmount), 0) AS expectedPrelim, " +
+           "COALESCE(SUM(a.paymentPlan.akt14Amount), 0) AS expectedAkt14, " +
+           "COALESCE(SUM(a.paymentPlan.akt15Amount), 0) AS expectedAkt15, " +
+           "COALESCE(SUM(a.paymentPlan.akt16Amount), 0) AS expectedAkt16, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.id = :apartmentId " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "PRELIMINARY) AS collectedPrelim, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.id = :apartmentId " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT14) AS collectedAkt14, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.id = :apartmentId " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT15) AS collectedAkt15, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.id = :apartmentId " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT16) AS collectedAkt16 " +
+           "FROM Apartment a WHERE a.isSold = true AND a.id = :apartmentId")
+    BuildingStatisticsSnapshot findStatisticsSnapshotByApartment(@Param("apartmentId") Long apartmentId);
+
+    // Statistics snapshots of all buildings in one GROUP BY statement (portfolio view).
+    // Payment sums are correlated on the grouped building id.
+    @Query("SELECT a.building.id AS buildingId, COUNT(a) AS totalApartments, " +
+           "COALESCE(SUM(a.totalPrice), 0) AS totalRevenue, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = a.building.id) AS totalCollected, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "PRELIMINARY " +
+           "   OR a.stage IS NULL OR TRIM(a.stage) = '' THEN 1 ELSE 0 END), 0) AS prelimCount, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT14 THEN 1 ELSE 0 END), 0) AS akt14Count, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT15 THEN 1 ELSE 0 END), 0) AS akt15Count, " +
+           "COALESCE(SUM(CASE WHEN a.stageCode = " + PaymentStage.JPQL + "AKT16 THEN 1 ELSE 0 END), 0) AS akt16Count, " +
+           "COALESCE(SUM(a.paymentPlan.preliminaryContractAmount), 0) AS expectedPrelim, " +
+           "COALESCE(SUM(a.paymentPlan.akt14Amount), 0) AS expectedAkt14, " +
+           "COALESCE(SUM(a.paymentPlan.akt15Amount), 0) AS expectedAkt15, " +
+           "COALESCE(SUM(a.paymentPlan.akt16Amount), 0) AS expectedAkt16, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = a.building.id " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "PRELIMINARY) AS collectedPrelim, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = a.building.id " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT14) AS collectedAkt14, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = a.building.id " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT15) AS collectedAkt15, " +
+           "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p " +
+           "   WHERE p.apartment.isSold = true AND p.apartment.building.id = a.building.id " +
+           "   AND p.paymentStageCode = " + PaymentStage.JPQL + "AKT16) AS collectedAkt16 " +
+           "FROM Apartment a WHERE a.isSold = true AND a.building IS NOT NULL " +
+           "GROUP BY a.building.id")
+    List<BuildingStatisticsSnapshot> findStatisticsSnapshotsGroupedByBuilding();
+
+    // Payment plans of all sold apartments as flat rows (no entity hydration)
+    @Query("SELECT a.id AS apartmentId, a.building.id AS buildingId, a.stageCode AS stageCode, " +
+           "a.paymentPlan.preliminaryContractDate AS preliminaryContractDate, a.paymentPlan.akt14Date AS akt14Date, " +
+           "a.paymentPlan.akt15Date AS akt15Date, a.paymentPlan.akt16Date AS akt16Date, " +
+           "a.paymentPlan.preliminaryContractAmount AS preliminaryContractAmount, a.paymentPlan.akt14Amount AS akt14Amount, " +
+           "a.paymentPlan.akt15Amount AS akt15Amount, a.paymentPlan.akt16Amount AS akt16Amount " +
+           "FROM Apartment a WHERE a.isSold = true")
+    List<PaymentPlanRow> findPaymentPlanRows();
+
+    // Payment plans of the sold apartments of a building
+    @Query("SELECT a.id AS apartmentId, a.building.id AS buildingId, a.stageCode AS stageCode, " +
+           "a.paymentPlan.preliminaryContractDate AS preliminaryContractDate, a.paymentPlan.akt14Date AS akt14Date, " +
+           "a.paymentPlan.akt15Date AS akt15Date, a.paymentPlan.akt16Date AS akt16Date, " +
+           "a.paymentPlan.preliminaryContractAmount AS preliminaryContractAmount, a.paymentPlan.akt14Amount AS akt14Amount, " +
+           "a.paymentPlan.akt15Amount AS akt15Amount, a.paymentPlan.akt16Amount AS akt16Amount " +
+           "FROM Apartment a WHERE a.isSold = true AND a.building.id = :buildingId")
+    List<PaymentPlanRow> findPaymentPlanRowsByBuilding(@Param("buildingId") Long buildingId);
+
+    // Payment plan of one sold apartment (empty if unsold or missing)
+    @Query("SELECT a.id AS apartmentId, a.building.id AS buildingId, a.stageCode AS stageCode, " +
+           "a.paymentPlan.preliminaryContractDate AS preliminaryContractDate, a.paymentPlan.akt14Date AS akt14Date, " +
+           "a.paymentPlan.akt15Date AS akt15Date, a.paymentPlan.akt16Date AS akt16Date, " +
+           "a.paymentPlan.preliminaryContractAmount AS preliminaryContractAmount, a.paymentPlan.akt14Amount AS akt14Amount, " +
+           "a.paymentPlan.akt15Amount AS akt15Amount, a.paymentPlan.akt16Amount AS akt16Amount " +
+           "FROM Apartment a WHERE a.isSold = true AND a.id = :apartmentId")
+    Optional<PaymentPlanRow> findPaymentPlanRowByApartment(@Param("apartmentId") Long apartmentId);
+
+    // Count apartments by stage code (grouped on the indexed stage_order column)
+    @Query("SELECT a.stageCode, COUNT(a) FROM Apartment a WHERE a.isSold = true GROUP BY a.stageCode")
     List<Object[]> countApartmentsByStage();
     
     // Find all with payments eagerly loaded
@@ -84,5 +247,97 @@ public interface ApartmentRepository extends JpaRepository<Apartment, Long> {
     // Find all sold apartments with payments by building
     @Query("SELECT DISTINCT a FROM Apartment a LEFT JOIN FETCH a.payments WHERE a.isSold = true AND a.building.id = :buildingId")
     List<Apartment> findAllSoldApartmentsWithPaymentsByBuilding(Long buildingId);
-}
 
+    // Distinct stage labels that have no stage code yet (one-time label normalization)
+    @Query("SELECT DISTINCT a.stage FROM Apartment a WHERE a.stageCode IS NULL AND a.stage IS NOT NULL")
+    List<String> findUncodedStageLabels();
+
+    // Rewrite a group of label variants to the canonical label and its stage code
+    @Modifying
+    @Query("UPDATE Apartment a SET a.stage = :label, a.stageCode = :stageCode " +
+           "WHERE a.stageCode IS NULL AND a.stage IN :variants")
+    int normalizeStage(@Param("variants") Collection<String> variants,
+                       @Param("label") String label,
+                       @Param("stageCode") PaymentStage stageCode);
+
+    // Stage transition of a whole building in one statement (label and code already normalized)
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Apartment a SET a.stage = :label, a.stageCode = :stageCode, a.updatedAt = :now " +
+           "WHERE a.building.id = :buildingId")
+    int updateStageByBuilding(@Param("buildingId") Long buildingId,
+                              @Param("label") String label,
+                              @Param("stageCode") PaymentStage stageCode,
+                              @Param("now") LocalDateTime now);
+
+    // Stage transition of the sold apartments of a building
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Apartment a SET a.stage = :label, a.stageCode = :stageCode, a.updatedAt = :now " +
+           "WHERE a.building.id = :buildingId AND a.isSold = true")
+    int updateSoldStageByBuilding(@Param("buildingId") Long buildingId,
+                                  @Param("label") String label,
+                                  @Param("stageCode") PaymentStage stageCode,
+                                  @Param("now") LocalDateTime now);
+
+    // Stage transition of every sold apartment
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Apartment a SET a.stage = :label, a.stageCode = :stageCode, a.updatedAt = :now " +
+           "WHERE a.isSold = true")
+    int updateSoldStage(@Param("label") String label,
+                        @Param("stageCode") PaymentStage stageCode,
+                        @Param("now") LocalDateTime now);
+
+    // Rows written before unit_type existed (one-time classification)
+    boolean existsByUnitTypeIsNull();
+
+    // Classify unclassified rows whose number contains the marker (pattern = "%МАРКЕР%", upper case)
+    @Modifying
+    @Query("UPDATE Apartment a SET a.unitType = :unitType " +
+           "WHERE a.unitType IS NULL AND UPPER(a.apartmentNumber) LIKE :pattern")
+    int classifyUnitType(@Param("unitType") UnitType unitType, @Param("pattern") String pattern);
+
+    // Everything left unclassified is an apartment
+    @Modifying
+    @Query("UPDATE Apartment a SET a.unitType = :unitType WHERE a.unitType IS NULL")
+    int classifyRemainingUnitTypes(@Param("unitType") UnitType unitType);
+
+    // Recompute the paid columns of one apartment in a single statement (payment write path)
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Apartment a " + PAYMENT_TOTALS_SET + "WHERE a.id = :apartmentId")
+    int refreshPaymentTotals(@Param("apartmentId") Long apartmentId);
+
+    // Recompute the paid columns of the apartments touched by a payments import
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Apartment a " + PAYMENT_TOTALS_SET + "WHERE a.id IN :apartmentIds")
+    int refreshPaymentTotalsByIds(@Param("apartmentIds") Collection<Long> apartmentIds);
+
+    // Buildings of a set of apartments (scope of the aggregate refresh after a payments import)
+    @Query("SELECT DISTINCT a.building.id FROM Apartment a WHERE a.id IN :apartmentIds AND a.building IS NOT NULL")
+    List<Long> findBuildingIdsByApartmentIds(@Param("apartmentIds") Collection<Long> apartmentIds);
+
+    // Recompute the paid columns of every apartment (reconciliation)
+    @Modifying
+    @Query("UPDATE Apartment a " + PAYMENT_TOTALS_SET)
+    int refreshAllPaymentTotals();
+
+    // Apartments whose stored paid total differs from the sum of their payments
+    @Query("SELECT a.id FROM Apartment a " +
+           "WHERE a.totalPaid <> (SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.apartment.id = a.id)")
+    List<Long> findApartmentIdsWithStalePaymentTotals();
+
+    // Rows from before the paid columns had DEFAULT 0 (backfilled once on startup)
+    boolean existsByTotalPaidIsNull();
+
+    // Export rows of all sold apartments, scrolled instead of materialized (caller must close the stream
+    // inside a transaction). Fetch size Integer.MIN_VALUE makes MySQL Connector/J stream row by row;
+    // projection rows are not managed, so the persistence context does not grow with the export.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT a.id AS id, COALESCE(b.name, a.buildingName) AS buildingName, a.apartmentNumber AS apartmentNumber, " +
+           "a.area AS area, a.pricePerM2 AS pricePerM2, a.totalPrice AS totalPrice, a.stage AS stage, " +
+           "c.name AS clientName, COALESCE(a.totalPaid, 0) AS totalPaid, a.notes AS notes " +
+           "FROM Apartment a LEFT JOIN a.building b LEFT JOIN a.client c " +
+           "WHERE a.isSold = true ORDER BY a.id")
+    Stream<ApartmentExportRow> streamSoldApartmentsForExport();
+}
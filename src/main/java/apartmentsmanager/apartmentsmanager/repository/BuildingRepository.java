@@ -1,10 +1,22 @@
 package apartmentsmanager.apartmentsmanager.repository;
 
+import apartmentsmanager.apartmentsmanager.dto.BuildingExportRow;
 import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.ConstructionStage;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BuildingRepository extends JpaRepository<Building, Long> {
@@ -12,7 +24,58 @@ public interface BuildingRepository extends JpaRepository<Building, Long> {
     Optional<Building> findByName(String name);
     
     boolean existsByName(String name);
-}
+    
+    Optional<Building> findFirstByStatusOrderByIdAsc(String status);
+    
+    Optional<Building> findFirstByOrderByIdAsc();
+    
+    // Keyset page of the buildings list: ids after the cursor, optional filters on status, stage_order and
+    // name prefix (LIKE 'prefix%' with '!' as escape character). Pageable only limits the rows.
+    @Query("SELECT b FROM Building b WHERE b.id > :afterId " +
+           "AND (:status IS NULL OR b.status = :status) " +
+           "AND (:stageCode IS NULL OR b.stageCode = :stageCode) " +
+           "AND (:namePattern IS NULL OR b.name LIKE :namePattern ESCAPE '!') " +
+           "ORDER BY b.id")
+    List<Building> findPage(@Param("status") String status,
+                            @Param("stageCode") ConstructionStage stageCode,
+                            @Param("namePattern") String namePattern,
+                            @Param("afterId") long afterId,
+                            Pageable pageable);
+    
+    // Number of buildings matching the list filters (same conditions as findPage, without the cursor)
+    @Query("SELECT COUNT(b) FROM Building b WHERE (:status IS NULL OR b.status = :status) " +
+           "AND (:stageCode IS NULL OR b.stageCode = :stageCode) " +
+           "AND (:namePattern IS NULL OR b.name LIKE :namePattern ESCAPE '!')")
+    long countFiltered(@Param("status") String status,
+                       @Param("stageCode") ConstructionStage stageCode,
+                       @Param("namePattern") String namePattern);
+    
+    // Only the ids (no entity loading) - used by statistics rebuild/consistency jobs
+    @Query("SELECT b.id FROM Building b ORDER BY b.id")
+    List<Long> findAllIds();
+    
+    // All building names in one query (workbook import - existing buildings are reused)
+    @Query("SELECT b.name FROM Building b")
+    List<String> findAllNames();
 
+    // Distinct stage labels that have no stage code yet (one-time label normalization)
+    @Query("SELECT DISTINCT b.stage FROM Building b WHERE b.stageCode IS NULL AND b.stage IS NOT NULL")
+    List<String> findUncodedStageLabels();
 
+    // Rewrite a group of label variants to the canonical label and its stage code
+    @Modifying
+    @Query("UPDATE Building b SET b.stage = :label, b.stageCode = :stageCode " +
+           "WHERE b.stageCode IS NULL AND b.stage IN :variants")
+    int normalizeStage(@Param("variants") Collection<String> variants,
+                       @Param("label") String label,
+                       @Param("stageCode") ConstructionStage stageCode);
 
+    // CSV export rows, scrolled row by row (caller must close the stream inside a transaction)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b.name AS name, b.address AS address, b.status AS status, b.stage AS stage, b.notes AS notes " +
+           "FROM Building b ORDER BY b.id")
+    Stream<BuildingExportRow> streamAllForExport();
+}
@@ -0,0 +1,32 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.entity.BuildingStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BuildingStatsRepository extends JpaRepository<BuildingStats, Long> {
+
+    // Lock the row for read-modify-write of the running totals (concurrent payment writes)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BuildingStats s WHERE s.buildingId = :buildingId")
+    Optional<BuildingStats> findByIdForUpdate(@Param("buildingId") Long buildingId);
+
+    // Create an empty row unless it exists; returns 0 when it does. A concurrent first write waits on the
+    // other transaction's row instead of failing with a duplicate key
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO building_stats (building_id, total_apartments, total_revenue, total_collected, " +
+                   "prelim_count, akt14_count, akt15_count, akt16_count, " +
+                   "expected_prelim, expected_akt14, expected_akt15, expected_akt16, " +
+                   "collected_prelim, collected_akt14, collected_akt15, collected_akt16, updated_at) " +
+                   "VALUES (:buildingId, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, CURRENT_TIMESTAMP)",
+           nativeQuery = true)
+    int insertIfMissing(@Param("buildingId") Long buildingId);
+}
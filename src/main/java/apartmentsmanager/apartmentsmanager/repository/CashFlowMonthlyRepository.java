@@ -0,0 +1,48 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.entity.CashFlowMonthly;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface CashFlowMonthlyRepository extends JpaRepository<CashFlowMonthly, Long> {
+
+    // Add a delta to one bucket atomically: the unique key uk_cash_flow_bucket turns a concurrent first
+    // insert into an update of the same row instead of a duplicate key error
+    @Modifying
+    @Query(value = "INSERT INTO cash_flow_monthly (period_month, building_id, flow_type, payment_method, amount, entry_count) " +
+                   "VALUES (:periodMonth, :buildingId, :flowType, :paymentMethod, :amount, :entryCount) " +
+                   "ON DUPLICATE KEY UPDATE amount = amount + :amount, entry_count = entry_count + :entryCount",
+           nativeQuery = true)
+    int addToBucket(@Param("periodMonth") LocalDate periodMonth,
+                    @Param("buildingId") Long buildingId,
+                    @Param("flowType") String flowType,
+                    @Param("paymentMethod") String paymentMethod,
+                    @Param("amount") BigDecimal amount,
+                    @Param("entryCount") long entryCount);
+
+    // Drop a bucket that no longer has any payment / plan stage
+    @Modifying
+    @Query("DELETE FROM CashFlowMonthly c WHERE c.periodMonth = :periodMonth AND c.buildingId = :buildingId " +
+           "AND c.flowType = :flowType AND c.paymentMethod = :paymentMethod AND c.entryCount <= 0")
+    int deleteEmptyBucket(@Param("periodMonth") LocalDate periodMonth,
+                          @Param("buildingId") Long buildingId,
+                          @Param("flowType") String flowType,
+                          @Param("paymentMethod") String paymentMethod);
+
+    // Range scan on (period_month, building_id)
+    List<CashFlowMonthly> findByPeriodMonthBetweenOrderByPeriodMonth(LocalDate from, LocalDate to);
+
+    List<CashFlowMonthly> findByPeriodMonthBetweenAndBuildingIdOrderByPeriodMonth(LocalDate from, LocalDate to, Long buildingId);
+
+    @Modifying
+    @Query("DELETE FROM CashFlowMonthly c WHERE c.buildingId = :buildingId")
+    int deleteByBuildingId(@Param("buildingId") Long buildingId);
+}
@@ -1,14 +1,20 @@
 package apartmentsmanager.apartmentsmanager.repository;
 
+import apartmentsmanager.apartmentsmanager.dto.ClientExportRow;
+import apartmentsmanager.apartmentsmanager.dto.ClientMatchKey;
 import apartmentsmanager.apartmentsmanager.entity.Client;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ClientRepository extends JpaRepository<Client, Long> {
@@ -23,8 +29,17 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
            "LOWER(c.email) LIKE LOWER(CONCAT('%', :search, '%'))")
     List<Client> searchClients(@Param("search") String search);
     
-    // Find by EGN/EIK
-    Optional<Client> findByEgn(String egn);
+    // Find by EGN/EIK - the oldest client when the value is still duplicated (uk_client_egn not created yet)
+    Optional<Client> findFirstByEgnOrderById(String egn);
+    
+    // Duplicate check on save (another client with the same EGN/EIK)
+    boolean existsByEgn(String egn);
+    
+    boolean existsByEgnAndIdNot(String egn, Long id);
+    
+    // Match keys of all clients in one query (client import builds its dedupe index from them)
+    @Query("SELECT c.id AS id, c.egn AS egn, c.email AS email, c.phone AS phone FROM Client c ORDER BY c.id")
+    List<ClientMatchKey> findAllMatchKeys();
     
     // Find client with apartments eagerly loaded (payments will be initialized separately to avoid MultipleBagFetchException)
     @EntityGraph(attributePaths = {"apartments"})
@@ -34,4 +49,13 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
     // Get apartment count for a client
     @Query("SELECT COUNT(a) FROM Apartment a WHERE a.client.id = :clientId")
     Long countApartmentsByClientId(@Param("clientId") Long clientId);
+    
+    // CSV export rows, scrolled row by row (caller must close the stream inside a transaction)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT c.name AS name, c.phone AS phone, c.email AS email, c.address AS address, c.notes AS notes, " +
+           "c.egn AS egn FROM Client c ORDER BY c.id")
+    Stream<ClientExportRow> streamAllForExport();
 }
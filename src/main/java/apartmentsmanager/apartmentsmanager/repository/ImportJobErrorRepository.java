@@ -0,0 +1,18 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.entity.ImportJobError;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImportJobErrorRepository extends JpaRepository<ImportJobError, Long> {
+
+    // Error messages of a job in the order they were reported
+    @Query("SELECT e.message FROM ImportJobError e WHERE e.jobId = :jobId ORDER BY e.position")
+    List<String> findMessagesByJobId(@Param("jobId") Long jobId, Pageable pageable);
+}
@@ -0,0 +1,16 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.entity.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+
+    List<ImportJob> findTop20ByOrderByCreatedAtDesc();
+
+    // Jobs left queued or running by a previous run of the application
+    List<ImportJob> findByStatusOrderByIdAsc(String status);
+}
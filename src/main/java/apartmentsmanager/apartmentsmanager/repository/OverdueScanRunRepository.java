@@ -0,0 +1,16 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.entity.OverdueScanRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OverdueScanRunRepository extends JpaRepository<OverdueScanRun, Long> {
+
+    List<OverdueScanRun> findTop20ByOrderByStartedAtDesc();
+
+    boolean existsByStatusAndStartedAtAfter(String status, LocalDateTime startedAt);
+}
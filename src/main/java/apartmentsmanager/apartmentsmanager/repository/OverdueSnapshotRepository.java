@@ -0,0 +1,38 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingCount;
+import apartmentsmanager.apartmentsmanager.entity.OverdueSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface OverdueSnapshotRepository extends JpaRepository<OverdueSnapshot, Long> {
+
+    // Overdue list of a building, oldest due date first (index on building_id, overdue_since)
+    List<OverdueSnapshot> findByBuildingIdOrderByOverdueSinceAscApartmentIdAsc(Long buildingId);
+
+    // Whole portfolio, oldest due date first (reminders)
+    List<OverdueSnapshot> findAllByOrderByOverdueSinceAscApartmentIdAsc();
+
+    long countByBuildingId(Long buildingId);
+
+    @Query("SELECT s.buildingId AS buildingId, COUNT(s) AS total FROM OverdueSnapshot s GROUP BY s.buildingId")
+    List<BuildingCount> countGroupedByBuilding();
+
+    @Query("SELECT COALESCE(SUM(s.overdueAmount), 0) FROM OverdueSnapshot s WHERE s.buildingId = :buildingId")
+    BigDecimal sumOverdueAmountByBuilding(@Param("buildingId") Long buildingId);
+
+    @Modifying
+    @Query("DELETE FROM OverdueSnapshot s WHERE s.buildingId = :buildingId")
+    int deleteByBuildingId(@Param("buildingId") Long buildingId);
+
+    @Modifying
+    @Query("DELETE FROM OverdueSnapshot s WHERE s.apartmentId = :apartmentId")
+    int deleteByApartmentId(@Param("apartmentId") Long apartmentId);
+}
@@ -1,14 +1,25 @@
 package apartmentsmanager.apartmentsmanager.repository;
 
+import apartmentsmanager.apartmentsmanager.dto.ApartmentStagePaid;
+import apartmentsmanager.apartmentsmanager.dto.CashFlowAggregate;
+import apartmentsmanager.apartmentsmanager.dto.PaymentExportRow;
 import apartmentsmanager.apartmentsmanager.entity.Payment;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
@@ -20,6 +31,10 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.apartment.id = :apartmentId")
     BigDecimal calculateTotalByApartment(@Param("apartmentId") Long apartmentId);
     
+    // Apartment of an existing payment (without loading the payment)
+    @Query("SELECT p.apartment.id FROM Payment p WHERE p.id = :paymentId")
+    Optional<Long> findApartmentIdByPaymentId(@Param("paymentId") Long paymentId);
+    
     // Find payments by date range
     List<Payment> findByPaymentDateBetween(LocalDate startDate, LocalDate endDate);
     
@@ -30,4 +45,75 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     // Calculate total cash payments
     @Query("SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.paymentMethod = 'В брой'")
     BigDecimal calculateTotalCashPayments();
+
+    // Payments per building, month and payment method (cash flow rollup rebuild)
+    @Query("SELECT p.apartment.building.id AS buildingId, YEAR(p.paymentDate) AS periodYear, " +
+           "MONTH(p.paymentDate) AS periodMonth, p.paymentMethod AS paymentMethod, " +
+           "SUM(p.amount) AS amount, COUNT(p) AS entryCount FROM Payment p " +
+           "GROUP BY p.apartment.building.id, YEAR(p.paymentDate), MONTH(p.paymentDate), p.paymentMethod")
+    List<CashFlowAggregate> sumPaymentsByBuildingMonthAndMethod();
+
+    // Same buckets for the payments of one building (rollup rebuild of a building)
+    @Query("SELECT p.apartment.building.id AS buildingId, YEAR(p.paymentDate) AS periodYear, " +
+           "MONTH(p.paymentDate) AS periodMonth, p.paymentMethod AS paymentMethod, " +
+           "SUM(p.amount) AS amount, COUNT(p) AS entryCount FROM Payment p " +
+           "WHERE p.apartment.building.id = :buildingId " +
+           "GROUP BY p.apartment.building.id, YEAR(p.paymentDate), MONTH(p.paymentDate), p.paymentMethod")
+    List<CashFlowAggregate> sumPaymentsByMonthAndMethodForBuilding(@Param("buildingId") Long buildingId);
+
+    // Same buckets for the payments of one apartment (incremental rollup maintenance)
+    @Query("SELECT p.apartment.building.id AS buildingId, YEAR(p.paymentDate) AS periodYear, " +
+           "MONTH(p.paymentDate) AS periodMonth, p.paymentMethod AS paymentMethod, " +
+           "SUM(p.amount) AS amount, COUNT(p) AS entryCount FROM Payment p " +
+           "WHERE p.apartment.id = :apartmentId " +
+           "GROUP BY p.apartment.building.id, YEAR(p.paymentDate), MONTH(p.paymentDate), p.paymentMethod")
+    List<CashFlowAggregate> sumPaymentsByMonthAndMethodForApartment(@Param("apartmentId") Long apartmentId);
+
+    // Paid amount per stage for every sold apartment (same stage matching as the statistics snapshot)
+    @Query("SELECT p.apartment.id AS apartmentId, " +
+           "COALESCE(SUM(CASE WHEN p.paymentStageCode = " + PaymentStage.JPQL + "PRELIMINARY " +
+           "   THEN p.amount ELSE 0 END), 0) AS paidPrelim, " +
+           "COALESCE(SUM(CASE WHEN p.paymentStageCode = " + PaymentStage.JPQL + "AKT14 THEN p.amount ELSE 0 END), 0) AS paidAkt14, " +
+           "COALESCE(SUM(CASE WHEN p.paymentStageCode = " + PaymentStage.JPQL + "AKT15 THEN p.amount ELSE 0 END), 0) AS paidAkt15, " +
+           "COALESCE(SUM(CASE WHEN p.paymentStageCode = " + PaymentStage.JPQL + "AKT16 THEN p.amount ELSE 0 END), 0) AS paidAkt16, " +
+           "COALESCE(SUM(p.amount), 0) AS paidTotal " +
+           "FROM Payment p WHERE p.apartment.isSold = true " +
+           "GROUP BY p.apartment.id")
+    List<ApartmentStagePaid> sumPaidByStageForSoldApartments();
+
+    // Paid amount per stage for the sold apartments of a building
+    @Query("SELECT p.apartment.id AS apartmentId, " +
+           "COALESCE(SUM(CASE WHEN p.paymentStageCode = " + PaymentStage.JPQL + "PRELIMINARY " +
+           "   THEN p.amount ELSE 0 END), 0) AS paidPrelim, " +
+           "COALESCE(SUM(CASE WHEN p.paymentStageCode = " + PaymentStage.JPQL + "AKT14 THEN p.amount ELSE 0 END), 0) AS paidAkt14, " +
+           "COALESCE(SUM(CASE WHEN p.paymentStageCode = " + PaymentStage.JPQL + "AKT15 THEN p.amount ELSE 0 END), 0) AS paidAkt15, " +
+           "COALESCE(SUM(CASE WHEN p.paymentStageCode = " + PaymentStage.JPQL + "AKT16 THEN p.amount ELSE 0 END), 0) AS paidAkt16, " +
+           "COALESCE(SUM(p.amount), 0) AS paidTotal " +
+           "FROM Payment p WHERE p.apartment.isSold = true AND p.apartment.building.id = :buildingId " +
+           "GROUP BY p.apartment.id")
+    List<ApartmentStagePaid> sumPaidByStageForSoldApartmentsByBuilding(@Param("buildingId") Long buildingId);
+
+    // Distinct stage labels that have no stage code yet (one-time label normalization)
+    @Query("SELECT DISTINCT p.paymentStage FROM Payment p WHERE p.paymentStageCode IS NULL AND p.paymentStage IS NOT NULL")
+    List<String> findUncodedStageLabels();
+
+    // Rewrite a group of label variants to the canonical label and its stage code
+    @Modifying
+    @Query("UPDATE Payment p SET p.paymentStage = :label, p.paymentStageCode = :stageCode " +
+           "WHERE p.paymentStageCode IS NULL AND p.paymentStage IN :variants")
+    int normalizeStage(@Param("variants") Collection<String> variants,
+                       @Param("label") String label,
+                       @Param("stageCode") PaymentStage stageCode);
+
+    // CSV export rows with the apartment as building name + number, scrolled row by row
+    // (caller must close the stream inside a transaction)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.id AS id, COALESCE(b.name, a.buildingName) AS buildingName, a.apartmentNumber AS apartmentNumber, " +
+           "p.paymentDate AS paymentDate, p.amount AS amount, p.paymentStage AS paymentStage, " +
+           "p.paymentMethod AS paymentMethod, p.invoiceNumber AS invoiceNumber, p.isDeposit AS isDeposit, p.notes AS notes " +
+           "FROM Payment p JOIN p.apartment a LEFT JOIN a.building b ORDER BY p.id")
+    Stream<PaymentExportRow> streamAllForExport();
 }
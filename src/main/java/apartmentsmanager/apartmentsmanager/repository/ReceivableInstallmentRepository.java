@@ -0,0 +1,96 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingCount;
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingInstallmentRow;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingPaymentDto;
+import apartmentsmanager.apartmentsmanager.entity.ReceivableInstallment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReceivableInstallmentRepository extends JpaRepository<ReceivableInstallment, Long> {
+
+    List<ReceivableInstallment> findByApartmentIdOrderByStageOrder(Long apartmentId);
+
+    // Rows written before is_due existed (the preliminary stage is always due)
+    boolean existsByStageOrderAndDueFalse(int stageOrder);
+
+    @Modifying
+    @Query("DELETE FROM ReceivableInstallment i WHERE i.apartmentId = :apartmentId")
+    int deleteByApartmentId(@Param("apartmentId") Long apartmentId);
+
+    @Modifying
+    @Query("DELETE FROM ReceivableInstallment i WHERE i.buildingId = :buildingId")
+    int deleteByBuildingId(@Param("buildingId") Long buildingId);
+
+    // Overdue rule shared by the list and count queries: an open installment whose stage is due regardless of the
+    // date (the preliminary stage or a stage the apartment has reached) or whose due date has passed
+    String OVERDUE = "i.status = 'OPEN' AND (i.due = true OR i.dueDate < CURRENT_DATE)";
+
+    // Overdue apartments of a building; range scan on the building_id prefix of (building_id, due_date, status)
+    @Query("SELECT a.id AS id, a.apartmentNumber AS apartmentNumber, MAX(b.name) AS buildingName, a.stage AS stage, " +
+           "MAX(c.id) AS clientId, MAX(c.name) AS clientName, " +
+           "SUM(i.expectedAmount - i.paidAmount) AS overdueAmount, MIN(i.dueDate) AS overdueSince " +
+           "FROM ReceivableInstallment i JOIN Apartment a ON a.id = i.apartmentId " +
+           "JOIN a.building b LEFT JOIN a.client c " +
+           "WHERE i.buildingId = :buildingId AND " + OVERDUE + " " +
+           "GROUP BY a.id ORDER BY MIN(i.dueDate), a.id")
+    List<OverdueApartmentRow> findOverdueRowsByBuilding(@Param("buildingId") Long buildingId);
+
+    // Overdue row of a single apartment (same rule, used to refresh overdue_snapshot after a write)
+    @Query("SELECT a.id AS id, a.apartmentNumber AS apartmentNumber, MAX(b.name) AS buildingName, a.stage AS stage, " +
+           "MAX(c.id) AS clientId, MAX(c.name) AS clientName, " +
+           "SUM(i.expectedAmount - i.paidAmount) AS overdueAmount, MIN(i.dueDate) AS overdueSince " +
+           "FROM ReceivableInstallment i JOIN Apartment a ON a.id = i.apartmentId " +
+           "JOIN a.building b LEFT JOIN a.client c " +
+           "WHERE i.apartmentId = :apartmentId AND " + OVERDUE + " " +
+           "GROUP BY a.id")
+    Optional<OverdueApartmentRow> findOverdueRowByApartment(@Param("apartmentId") Long apartmentId);
+
+    // Same rule as findOverdueRowsByBuilding
+    @Query("SELECT COUNT(DISTINCT i.apartmentId) FROM ReceivableInstallment i " +
+           "WHERE i.buildingId = :buildingId AND " + OVERDUE)
+    long countOverdueApartmentsByBuilding(@Param("buildingId") Long buildingId);
+
+    @Query("SELECT i.buildingId AS buildingId, COUNT(DISTINCT i.apartmentId) AS total FROM ReceivableInstallment i " +
+           "WHERE " + OVERDUE + " GROUP BY i.buildingId")
+    List<BuildingCount> countOverdueApartmentsGroupedByBuilding();
+
+    // Open installments due after today, oldest first
+    @Query("SELECT a.id AS id, a.apartmentNumber AS apartmentNumber, b.name AS buildingName, " +
+           "c.id AS clientId, c.name AS clientName, i.stage AS stage, " +
+           "i.expectedAmount - i.paidAmount AS expectedAmount, i.dueDate AS dueDate " +
+           "FROM ReceivableInstallment i JOIN Apartment a ON a.id = i.apartmentId " +
+           "JOIN a.building b LEFT JOIN a.client c " +
+           "WHERE i.buildingId = :buildingId AND i.dueDate > CURRENT_DATE AND i.status = 'OPEN' AND i.due = false " +
+           "ORDER BY i.dueDate, i.apartmentId")
+    List<UpcomingInstallmentRow> findUpcomingRowsByBuilding(@Param("buildingId") Long buildingId);
+
+    // Keyset page of open installments in [from, to] after the cursor (dueDate, apartmentId, stageOrder).
+    // Filtering and ordering follow the (building_id, due_date, status) index; Pageable only limits the rows.
+    @Query("SELECT new apartmentsmanager.apartmentsmanager.dto.UpcomingPaymentDto(" +
+           "a.id, a.apartmentNumber, b.name, c.id, c.name, i.stage, i.stageOrder, i.dueDate, i.expectedAmount - i.paidAmount) " +
+           "FROM ReceivableInstallment i JOIN Apartment a ON a.id = i.apartmentId " +
+           "JOIN a.building b LEFT JOIN a.client c " +
+           "WHERE i.buildingId = :buildingId AND i.status = 'OPEN' AND i.due = false " +
+           "AND i.dueDate >= :from AND i.dueDate <= :to " +
+           "AND (i.dueDate > :afterDate OR (i.dueDate = :afterDate AND (i.apartmentId > :afterApartmentId " +
+           "     OR (i.apartmentId = :afterApartmentId AND i.stageOrder > :afterStageOrder)))) " +
+           "ORDER BY i.dueDate, i.apartmentId, i.stageOrder")
+    List<UpcomingPaymentDto> findUpcomingPage(@Param("buildingId") Long buildingId,
+                                              @Param("from") LocalDate from,
+                                              @Param("to") LocalDate to,
+                                              @Param("afterDate") LocalDate afterDate,
+                                              @Param("afterApartmentId") Long afterApartmentId,
+                                              @Param("afterStageOrder") int afterStageOrder,
+                                              Pageable pageable);
+}
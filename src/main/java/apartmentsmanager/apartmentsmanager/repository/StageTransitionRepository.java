@@ -0,0 +1,13 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.entity.StageTransition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StageTransitionRepository extends JpaRepository<StageTransition, Long> {
+
+    List<StageTransition> findTop20ByBuildingIdOrderByTransitionedAtDesc(Long buildingId);
+}
@@ -0,0 +1,25 @@
+package apartmentsmanager.apartmentsmanager.repository;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingUnitTypeCount;
+import apartmentsmanager.apartmentsmanager.entity.Unit;
+import apartmentsmanager.apartmentsmanager.entity.UnitType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UnitRepository extends JpaRepository<Unit, Long> {
+    
+    List<Unit> findByBuildingIdOrderByUnitTypeAscNumberAsc(Long buildingId);
+    
+    boolean existsByBuildingIdAndUnitTypeAndNumber(Long buildingId, UnitType unitType, String number);
+    
+    // Unit counts per building and type for a page of buildings - index-only GROUP BY over (building_id, unit_type, is_sold)
+    @Query("SELECT u.building.id AS buildingId, u.unitType AS unitType, COUNT(u) AS total " +
+           "FROM Unit u WHERE u.building.id IN :buildingIds GROUP BY u.building.id, u.unitType")
+    List<BuildingUnitTypeCount> countGroupedByBuildingAndUnitType(@Param("buildingIds") Collection<Long> buildingIds);
+}
@@ -0,0 +1,44 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.entity.Apartment;
+
+import java.util.function.BiConsumer;
+
+public interface ApartmentImportService {
+
+    /**
+     * Start a bulk apartment import. Buildings are resolved (or created) once per name,
+     * existing apartment numbers are loaded once per building and accepted rows are
+     * inserted with JDBC batches, one transaction per batch.
+     *
+     * @param buildingId target building for every row (null = use the building name of the row)
+     * @param rowErrors  receives (line, message) for every rejected row
+     */
+    default Session begin(Long buildingId, BiConsumer<Integer, String> rowErrors) {
+        return begin(buildingId, true, rowErrors);
+    }
+
+    /**
+     * Same as begin(buildingId, rowErrors); refreshStatistics = false leaves the building statistics
+     * to a caller that rebuilds them for all buildings after the import
+     */
+    Session begin(Long buildingId, boolean refreshStatistics, BiConsumer<Integer, String> rowErrors);
+
+    /**
+     * One running import - not thread safe, rows are added in file order
+     */
+    interface Session {
+
+        /**
+         * Queue a parsed and validated row; duplicates are reported immediately,
+         * the insert happens when the batch is full. A client (by id), contract date and
+         * payment plan set on the row are inserted with it.
+         */
+        void add(int line, Apartment apartment);
+
+        /**
+         * Write the last batch, refresh building statistics (unless disabled), returns the number of inserted rows
+         */
+        int finish();
+    }
+}
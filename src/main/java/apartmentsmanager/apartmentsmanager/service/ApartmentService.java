@@ -1,5 +1,6 @@
 package apartmentsmanager.apartmentsmanager.service;
 
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
 import apartmentsmanager.apartmentsmanager.entity.Apartment;
 
 import java.math.BigDecimal;
@@ -25,6 +26,10 @@ public interface ApartmentService {
     List<Apartment> getApartmentsWithOverduePayments();
 
     List<Apartment> getApartmentsWithOverduePaymentsByBuilding(Long buildingId);
+
+    List<OverdueApartmentRow> getOverdueRowsByBuilding(Long buildingId);
+
+    long countOverdueApartmentsByBuilding(Long buildingId);
     
     BigDecimal getTotalRevenue();
 
@@ -2,19 +2,26 @@ package apartmentsmanager.apartmentsmanager.service;
 
 import apartmentsmanager.apartmentsmanager.entity.Building;
 
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 public interface BuildingService {
     
     /**
-     * Loads all data needed for the buildings list page in one transaction (avoids LazyInitializationException).
-     * Keys: buildings, buildingsCount, currentBuilding, apartmentsCount, garagesCount, basementsCount, parkingSpacesCount, commercialSpacesCount
+     * Loads one keyset page of the buildings list in one transaction (avoids LazyInitializationException).
+     * status/stage/namePrefix are optional filters, afterId is the last id of the previous page (null for the first).
+     * Keys: buildings, buildingsCount (all matching buildings), hasMore, nextAfterId, currentBuilding,
+     * apartmentsCount, garagesCount, basementsCount, parkingSpacesCount, commercialSpacesCount
      */
-    Map<String, Object> getBuildingsPageData();
+    Map<String, Object> getBuildingsPageData(String status, String stage, String namePrefix, Long afterId, int size);
     
-    List<Building> getAllBuildings();
+    /**
+     * Unit counts of one building from two GROUP BY queries.
+     * Keys: apartmentsCount, garagesCount, basementsCount, parkingSpacesCount, commercialSpacesCount
+     */
+    Map<String, Object> getUnitCounts(Long buildingId);
+    
+    long countBuildings();
     
     Optional<Building> getBuildingById(Long id);
     
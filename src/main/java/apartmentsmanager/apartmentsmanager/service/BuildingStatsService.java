@@ -0,0 +1,61 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
+import apartmentsmanager.apartmentsmanager.entity.BuildingStats;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface BuildingStatsService {
+
+    /**
+     * Get materialized statistics row for a building (primary key read)
+     */
+    Optional<BuildingStats> getBuildingStats(Long buildingId);
+
+    /**
+     * Get all materialized statistics rows (portfolio view)
+     */
+    List<BuildingStats> getAllBuildingStats();
+
+    /**
+     * Capture the current contribution of an apartment (call before and after a write)
+     */
+    BuildingStatisticsSnapshot captureApartment(Long apartmentId);
+
+    /**
+     * Apply the difference between two captured apartment contributions to building_stats
+     */
+    void applyApartmentChange(BuildingStatisticsSnapshot before, BuildingStatisticsSnapshot after);
+
+    /**
+     * All sold apartments in the building moved to the given apartment stage
+     */
+    void applyStageTransition(Long buildingId, String apartmentStage);
+
+    /**
+     * All sold apartments in every building moved to the given apartment stage
+     */
+    void applyStageTransitionToAll(String apartmentStage);
+
+    /**
+     * Remove the statistics row of a deleted building
+     */
+    void removeBuilding(Long buildingId);
+
+    /**
+     * Recompute the statistics row of a building from scratch
+     */
+    BuildingStats rebuildBuilding(Long buildingId);
+
+    /**
+     * Recompute building_stats for all buildings, returns number of rebuilt rows
+     */
+    int rebuildAll();
+
+    /**
+     * Compare stored rows with a fresh aggregate; returns one entry per mismatching value
+     */
+    List<Map<String, Object>> checkConsistency();
+}
@@ -0,0 +1,41 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.entity.CashFlowMonthly;
+
+import java.util.List;
+import java.util.Map;
+
+public interface CashFlowService {
+
+    /**
+     * Capture the cash flow buckets an apartment contributes to (its payments and its payment plan).
+     * Call before and after a write.
+     */
+    List<CashFlowMonthly> captureApartment(Long apartmentId);
+
+    /**
+     * Apply the difference between two captured contributions to cash_flow_monthly
+     */
+    void applyApartmentChange(List<CashFlowMonthly> before, List<CashFlowMonthly> after);
+
+    /**
+     * Remove the rollup rows of a deleted building
+     */
+    void removeBuilding(Long buildingId);
+
+    /**
+     * Recompute cash_flow_monthly from payments and payment plans, returns number of rows
+     */
+    int rebuildAll();
+
+    /**
+     * Recompute the cash_flow_monthly rows of one building, returns number of rows
+     */
+    int rebuildBuilding(Long buildingId);
+
+    /**
+     * Monthly series (collected by payment method, expected) for the given number of months
+     * ending with the current month; buildingId = null for all buildings
+     */
+    Map<String, Object> getMonthlySeries(Long buildingId, int months);
+}
@@ -0,0 +1,12 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import java.util.Map;
+
+public interface ClientEgnIndexService {
+
+    /**
+     * Create the unique index uk_client_egn when it is missing and no two clients share an EGN/EIK;
+     * returns the duplicated EGN/EIK values with their client ids (empty = the index is in place)
+     */
+    Map<String, String> ensureUniqueEgnIndex();
+}
@@ -0,0 +1,46 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.entity.Client;
+
+import java.util.function.BiConsumer;
+
+public interface ClientImportService {
+
+    /**
+     * Start an upsert client import. The match keys of all existing clients (normalized EGN/EIK, email
+     * and phone) are loaded once into hash indexes, every row is matched in memory and the resulting
+     * inserts and updates are written with JDBC batches, one transaction per batch.
+     *
+     * @param rowErrors receives (line, message) for every rejected row
+     */
+    Session begin(BiConsumer<Integer, String> rowErrors);
+
+    /**
+     * One running import - not thread safe, rows are added in file order
+     */
+    interface Session {
+
+        /**
+         * Match a parsed row: an existing client (or an earlier row of the same file) is updated with the
+         * non-empty values of the row, anything else is inserted. Writes happen when the batch is full.
+         */
+        void add(int line, Client client);
+
+        /**
+         * Write the last batch and return the counts
+         */
+        Result finish();
+
+        /**
+         * Id of the client with this EGN/EIK - stored or written by this import (after finish()),
+         * null when there is none. Used to resolve client references of other sheets without a query.
+         */
+        Long findIdByEgn(String egn);
+    }
+
+    /**
+     * Rows written by an import; rows merged into another row of the same file count as updated
+     */
+    record Result(int inserted, int updated) {
+    }
+}
@@ -1,21 +1,29 @@
 package apartmentsmanager.apartmentsmanager.service;
 
-import apartmentsmanager.apartmentsmanager.entity.Apartment;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
-import java.util.List;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Map;
 
 public interface ExcelService {
     
     /**
-     * Export all apartments to Excel
+     * Export all sold apartments to Excel, writing the workbook directly to the output stream
+     * (row-windowed workbook fed by a scrolling query - heap use does not grow with the row count)
      */
-    byte[] exportApartmentsToExcel(List<Apartment> apartments);
+    void exportSoldApartmentsToExcel(OutputStream outputStream);
     
     /**
-     * Import apartments from Excel file
+     * Export apartments, buildings, clients or payments (type) as CSV written directly to the output stream:
+     * UTF-8 with BOM, ";" delimiter and "," decimals, columns in the import format so the file can be imported back
+     */
+    void exportToCsv(String type, OutputStream outputStream);
+    
+    /**
+     * Import apartments from Excel file (.xlsx or .csv, streamed row by row; the header row is validated
+     * on the fly and a bad structure is reported with ExcelStructureException)
      */
     Map<String, Object> importApartmentsFromExcel(MultipartFile file);
 
@@ -30,12 +38,32 @@ public interface ExcelService {
     Map<String, Object> importBuildingsFromExcel(MultipartFile file);
     
     /**
-     * Import clients from Excel file
+     * Import clients from Excel file - upsert: a row matching an existing client by EGN/EIK, email or phone
+     * updates it ("updated" in the result), other rows are inserted
      */
     Map<String, Object> importClientsFromExcel(MultipartFile file);
     
     /**
-     * Validate Excel file structure
+     * Import payments from Excel/CSV file; the apartment is given by building name and apartment number
+     */
+    Map<String, Object> importPaymentsFromExcel(MultipartFile file);
+    
+    /**
+     * Import a migration workbook (.xlsx with the sheets Сгради, Клиенти, Апартаменти, Плащания)
+     * in one transaction - see WorkbookImportService
+     */
+    Map<String, Object> importWorkbookFromExcel(MultipartFile file);
+    
+    /**
+     * Import an .xlsx or .csv file already stored on disk (import jobs); importType = apartments, buildings,
+     * clients, payments or workbook (.xlsx only).
+     * Counters and errors are written to the progress while rows are read, a cancel request stops
+     * the import before the next row. A bad header is reported with ExcelStructureException.
+     */
+    Map<String, Object> importFile(String importType, Path file, Long buildingId, ImportProgress progress);
+    
+    /**
+     * Validate Excel file structure (reads only the header row)
      */
     boolean validateExcelStructure(InputStream inputStream);
     
@@ -53,6 +81,11 @@ public interface ExcelService {
      * Generate template Excel file for apartments
      */
     byte[] generateApartmentsTemplate();
+    
+    /**
+     * Generate template workbook with one sheet per type (workbook import)
+     */
+    byte[] generateWorkbookTemplate();
 }
 
 
@@ -0,0 +1,11 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+/**
+ * Файлът за импорт няма очакваната структура (липсващ лист или заглавен ред с твърде малко колони)
+ */
+public class ExcelStructureException extends RuntimeException {
+
+    public ExcelStructureException(String message) {
+        super(message);
+    }
+}
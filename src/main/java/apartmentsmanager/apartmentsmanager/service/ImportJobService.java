@@ -0,0 +1,39 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.entity.ImportJob;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ImportJobService {
+
+    /**
+     * Store the upload on disk and queue an import job; returns immediately with the queued job.
+     * Throws IllegalArgumentException for an invalid file and IllegalStateException when the queue is full.
+     */
+    ImportJob submit(MultipartFile file, String importType, Long buildingId);
+
+    Optional<ImportJob> getJob(Long jobId);
+
+    /**
+     * Last 20 jobs, newest first
+     */
+    List<ImportJob> getRecentJobs();
+
+    /**
+     * Errors of a job in the order they were reported (at most limit)
+     */
+    List<String> getErrors(Long jobId, int limit);
+
+    /**
+     * Cancel a queued job or stop a running one before its next row; false if the job is already finished
+     */
+    boolean cancel(Long jobId);
+
+    /**
+     * Server-Sent Events stream with "progress" events while the job runs and a final "done" event
+     */
+    SseEmitter subscribe(Long jobId);
+}
@@ -0,0 +1,125 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Броячи на един импорт (прочетени/импортирани/обновени/пропуснати редове, грешки и метрики по етапи).
+ * Попълва се от нишките на pipeline-а (четене, валидация, запис); другите нишки (SSE, checkpoint на job-а)
+ * само четат стойностите и могат да поискат прекратяване.
+ */
+public class ImportProgress {
+
+    private final AtomicInteger rowsRead = new AtomicInteger();
+    private final AtomicInteger imported = new AtomicInteger();
+    // Imported rows that updated an existing record (upsert imports) - part of imported
+    private final AtomicInteger updated = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private volatile boolean cancelRequested;
+    private volatile List<ImportStageMetrics> stages = List.of();
+    private final List<String> errors = new ArrayList<>();
+
+    public int getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public int getImported() {
+        return imported.get();
+    }
+
+    public int getUpdated() {
+        return updated.get();
+    }
+
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    public void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    public void imported() {
+        imported.incrementAndGet();
+    }
+
+    public void addImported(int count) {
+        imported.addAndGet(count);
+    }
+
+    public void addUpdated(int count) {
+        updated.addAndGet(count);
+    }
+
+    /**
+     * Row rejected - counted as skipped and reported as "Ред N: message"
+     */
+    public void skip(int line, String message) {
+        skipped.incrementAndGet();
+        error("Ред " + line + ": " + message);
+    }
+
+    /**
+     * Error that is not tied to a row (e.g. unreadable file)
+     */
+    public synchronized void error(String message) {
+        errors.add(message);
+    }
+
+    public synchronized int getErrorCount() {
+        return errors.size();
+    }
+
+    /**
+     * Copy of the errors starting at the given index (incremental reads for progress events)
+     */
+    public synchronized List<String> getErrorsFrom(int fromIndex) {
+        if (fromIndex >= errors.size()) {
+            return List.of();
+        }
+        return new ArrayList<>(errors.subList(Math.max(0, fromIndex), errors.size()));
+    }
+
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * Per-stage metrics of the import pipeline (live while the import runs)
+     */
+    public List<ImportStageMetrics> getStages() {
+        return stages;
+    }
+
+    public void setStages(List<ImportStageMetrics> stages) {
+        this.stages = List.copyOf(stages);
+    }
+
+    public List<Map<String, Object>> getStagesAsMaps() {
+        List<Map<String, Object>> maps = new ArrayList<>();
+        for (ImportStageMetrics stage : stages) {
+            maps.add(stage.toMap());
+        }
+        return maps;
+    }
+
+    /**
+     * Result map in the shape returned by the ExcelService import methods
+     */
+    public Map<String, Object> toResult() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("imported", getImported());
+        result.put("updated", getUpdated());
+        result.put("skipped", getSkipped());
+        result.put("errors", getErrorsFrom(0));
+        result.put("stages", getStagesAsMaps());
+        return result;
+    }
+}
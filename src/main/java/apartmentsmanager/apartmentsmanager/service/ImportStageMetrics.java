@@ -0,0 +1,83 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Метрики на един етап от import pipeline-а (четене, валидация, запис).
+ * busy = време в работа, waitInput = чакане на предишния етап (етапът е по-бърз),
+ * waitOutput = чакане на следващия етап (backpressure - следващият етап е тясното място).
+ * Всеки етап се пише само от своята нишка.
+ */
+public class ImportStageMetrics {
+
+    private final String name;
+    private volatile long items;
+    private volatile long busyNanos;
+    private volatile long waitInputNanos;
+    private volatile long waitOutputNanos;
+
+    public ImportStageMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getItems() {
+        return items;
+    }
+
+    public void addItem() {
+        items++;
+    }
+
+    public void addBusy(long nanos) {
+        busyNanos += nanos;
+    }
+
+    public void addWaitInput(long nanos) {
+        waitInputNanos += nanos;
+    }
+
+    public void addWaitOutput(long nanos) {
+        waitOutputNanos += nanos;
+    }
+
+    public long getBusyMillis() {
+        return busyNanos / 1_000_000;
+    }
+
+    public long getWaitInputMillis() {
+        return waitInputNanos / 1_000_000;
+    }
+
+    public long getWaitOutputMillis() {
+        return waitOutputNanos / 1_000_000;
+    }
+
+    /**
+     * Items per second of busy time - the stage with the lowest value is the bottleneck
+     */
+    public long getItemsPerSecond() {
+        return busyNanos > 0 ? items * 1_000_000_000L / busyNanos : 0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("stage", name);
+        map.put("items", items);
+        map.put("itemsPerSecond", getItemsPerSecond());
+        map.put("busyMillis", getBusyMillis());
+        map.put("waitInputMillis", getWaitInputMillis());
+        map.put("waitOutputMillis", getWaitOutputMillis());
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + items + " бр., " + getItemsPerSecond() + "/s, работа " + getBusyMillis()
+            + " ms, чакане вход " + getWaitInputMillis() + " ms, чакане изход " + getWaitOutputMillis() + " ms";
+    }
+}
@@ -0,0 +1,66 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingCount;
+import apartmentsmanager.apartmentsmanager.entity.OverdueScanRun;
+import apartmentsmanager.apartmentsmanager.entity.OverdueSnapshot;
+
+import java.util.List;
+
+public interface OverdueScanService {
+
+    /**
+     * Rescan all buildings in parallel (one worker task per building) and replace overdue_snapshot
+     */
+    OverdueScanRun scanAll(String triggerType);
+
+    /**
+     * Rescan a single building (e.g. after bulk payment entry)
+     */
+    OverdueScanRun scanBuilding(Long buildingId);
+
+    /**
+     * Refresh the snapshot row of one apartment after its installments were recomputed
+     */
+    void refreshApartment(Long apartmentId, Long buildingId);
+
+    /**
+     * Replace the snapshot rows of one building inside the caller's transaction
+     * (after its installments were recomputed in bulk)
+     */
+    void refreshBuilding(Long buildingId);
+
+    /**
+     * Remove the snapshot row of an apartment that is no longer receivable
+     */
+    void removeApartment(Long apartmentId);
+
+    /**
+     * Remove the snapshot rows of a deleted building
+     */
+    void removeBuilding(Long buildingId);
+
+    /**
+     * Overdue apartments of a building from the snapshot, oldest due date first
+     */
+    List<OverdueSnapshot> getOverdueRows(Long buildingId);
+
+    /**
+     * Overdue apartments of all buildings from the snapshot (reminders)
+     */
+    List<OverdueSnapshot> getAllOverdueRows();
+
+    /**
+     * Number of overdue apartments of a building from the snapshot
+     */
+    long countOverdue(Long buildingId);
+
+    /**
+     * Number of overdue apartments for every building from the snapshot
+     */
+    List<BuildingCount> countOverdueGroupedByBuilding();
+
+    /**
+     * Latest scan runs with their timings
+     */
+    List<OverdueScanRun> getRecentRuns();
+}
@@ -0,0 +1,34 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.entity.Payment;
+
+import java.util.function.BiConsumer;
+
+public interface PaymentImportService {
+
+    /**
+     * Start a bulk payment import. The apartment of every row is already resolved by the caller and
+     * accepted rows are inserted with JDBC batches, one transaction per batch. Payment totals,
+     * installments, cash flow and statistics are not maintained per row - the caller refreshes them
+     * once for the whole load.
+     *
+     * @param rowErrors receives (line, message) for every rejected row
+     */
+    Session begin(BiConsumer<Integer, String> rowErrors);
+
+    /**
+     * One running import - not thread safe, rows are added in file order
+     */
+    interface Session {
+
+        /**
+         * Queue a parsed and validated payment of the given apartment; the insert happens when the batch is full
+         */
+        void add(int line, Long apartmentId, Payment payment);
+
+        /**
+         * Write the last batch, returns the number of inserted rows
+         */
+        int finish();
+    }
+}
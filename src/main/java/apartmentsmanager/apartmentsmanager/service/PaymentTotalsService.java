@@ -0,0 +1,23 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface PaymentTotalsService {
+
+    /**
+     * Recompute total_paid, last_payment_date and the per-stage paid columns of an apartment
+     * (call after the payment write has been flushed)
+     */
+    void refreshApartment(Long apartmentId);
+
+    /**
+     * Same as refreshApartment for a set of apartments, in one UPDATE (bulk payment import)
+     */
+    void refreshApartments(Collection<Long> apartmentIds);
+
+    /**
+     * Recompute the paid columns of all apartments; returns how many rows were out of sync
+     */
+    Map<String, Object> reconcile();
+}
@@ -0,0 +1,66 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingCount;
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingInstallmentRow;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingPaymentsPageDto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ReceivableInstallmentService {
+
+    /**
+     * Recompute the installments of an apartment from its payment plan and payments
+     * (call after the write has been flushed)
+     */
+    void syncApartment(Long apartmentId);
+
+    /**
+     * Remove the installments of a deleted apartment
+     */
+    void removeApartment(Long apartmentId);
+
+    /**
+     * Remove the installments of a deleted building
+     */
+    void removeBuilding(Long buildingId);
+
+    /**
+     * Recompute receivable_installments for all sold apartments, returns number of rows
+     */
+    int rebuildAll();
+
+    /**
+     * Recompute the installments of the sold apartments of a building and refresh its overdue snapshot rows
+     * (call after a bulk write such as a stage transition), returns number of rows
+     */
+    int rebuildBuilding(Long buildingId);
+
+    /**
+     * Overdue apartments of a building (open installments with a past due date)
+     */
+    List<OverdueApartmentRow> getOverdueRowsByBuilding(Long buildingId);
+
+    /**
+     * Number of overdue apartments of a building (same rule as getOverdueRowsByBuilding)
+     */
+    long countOverdueApartmentsByBuilding(Long buildingId);
+
+    /**
+     * Number of overdue apartments for every building
+     */
+    List<BuildingCount> countOverdueApartmentsGroupedByBuilding();
+
+    /**
+     * Open installments of a building due after today, ordered by due date
+     */
+    List<UpcomingInstallmentRow> getUpcomingRowsByBuilding(Long buildingId);
+
+    /**
+     * Keyset page of open installments of a building due in [from, to];
+     * afterDate/afterApartmentId/afterStageOrder = cursor of the previous page (null for the first page)
+     */
+    UpcomingPaymentsPageDto getUpcomingPage(Long buildingId, LocalDate from, LocalDate to,
+                                            LocalDate afterDate, Long afterApartmentId, Integer afterStageOrder, int size);
+}
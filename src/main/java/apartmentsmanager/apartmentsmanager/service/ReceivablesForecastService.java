@@ -0,0 +1,12 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import java.util.Map;
+
+public interface ReceivablesForecastService {
+
+    /**
+     * Project future receipts per month for the next N months from the payment plans
+     * of sold apartments minus what is already paid per stage; buildingId = null for all buildings
+     */
+    Map<String, Object> forecast(Long buildingId, int months);
+}
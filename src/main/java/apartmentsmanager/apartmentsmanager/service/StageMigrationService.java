@@ -0,0 +1,12 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import java.util.Map;
+
+public interface StageMigrationService {
+
+    /**
+     * Normalize stage labels to the canonical ones and fill the stage code columns
+     * of rows written before the codes existed; returns updated rows per table
+     */
+    Map<String, Integer> normalizeStages();
+}
@@ -0,0 +1,30 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.StageTransition;
+
+import java.util.List;
+
+public interface StageTransitionService {
+
+    /**
+     * Change the stage of a building and move all of its objects to the matching apartment stage
+     * with one bulk UPDATE; the transition is recorded and the building statistics are refreshed
+     */
+    Building transitionBuilding(Long buildingId, String buildingStage);
+
+    /**
+     * Move the sold apartments of a building to a stage with one bulk UPDATE, returns the updated rows
+     */
+    int transitionSoldApartments(Long buildingId, String apartmentStage);
+
+    /**
+     * Move every sold apartment to a stage with one bulk UPDATE, returns the updated rows
+     */
+    int transitionAllSoldApartments(String apartmentStage);
+
+    /**
+     * Latest transitions of a building, newest first
+     */
+    List<StageTransition> getRecentTransitions(Long buildingId);
+}
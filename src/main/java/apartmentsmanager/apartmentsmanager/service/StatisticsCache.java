@@ -0,0 +1,27 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import java.util.Map;
+import java.util.function.Function;
+
+public interface StatisticsCache {
+
+    /**
+     * Get cached statistics for a building or compute them with the loader
+     */
+    Map<String, Object> get(Long buildingId, Function<Long, Map<String, Object>> loader);
+
+    /**
+     * Remove the entry of one building
+     */
+    void evict(Long buildingId);
+
+    /**
+     * Remove all entries
+     */
+    void evictAll();
+
+    /**
+     * Hit/miss/eviction counters and current size
+     */
+    Map<String, Object> getCacheStats();
+}
@@ -1,5 +1,7 @@
 package apartmentsmanager.apartmentsmanager.service;
 
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
+
 import java.math.BigDecimal;
 import java.util.Map;
 
@@ -35,14 +37,19 @@ public interface StatisticsService {
      */
     Map<String, Object> getStatistics();
 
+    /**
+     * Get raw statistics snapshot for a building (single aggregate query, no entity loading)
+     */
+    BuildingStatisticsSnapshot getStatisticsSnapshotForBuilding(Long buildingId);
+
     /**
      * Get statistics for a specific building
      */
     Map<String, Object> getStatisticsForBuilding(Long buildingId);
-}
-
-
-
-
-
 
+    /**
+     * Get statistics for all buildings (revenue, collection rate, overdue count, stage mix)
+     * with a fixed number of grouped queries
+     */
+    Map<String, Object> getPortfolioStatistics();
+}
@@ -0,0 +1,10 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+public interface UnitMigrationService {
+
+    /**
+     * Move the rows of the old garages, basements, parking_spaces and commercial_spaces tables into
+     * the units table and drop each old table once all of its rows are there; returns the moved rows
+     */
+    int migrateLegacyUnitTables();
+}
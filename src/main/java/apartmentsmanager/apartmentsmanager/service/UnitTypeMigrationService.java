@@ -0,0 +1,10 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+public interface UnitTypeMigrationService {
+
+    /**
+     * Fill apartments.unit_type for rows written before the column existed, with the same
+     * apartment number rules as UnitType.fromApartmentNumber; returns the number of updated rows
+     */
+    int classifyUnitTypes();
+}
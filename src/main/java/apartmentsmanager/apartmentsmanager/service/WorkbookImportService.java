@@ -0,0 +1,15 @@
+package apartmentsmanager.apartmentsmanager.service;
+
+import java.nio.file.Path;
+
+public interface WorkbookImportService {
+
+    /**
+     * Load a migration workbook (.xlsx with the sheets Сгради, Клиенти, Апартаменти and Плащания - English
+     * names are accepted too). The sheets are read in dependency order and references are resolved from
+     * in-memory key maps: apartments point to their client by EGN/EIK, payments to their apartment by
+     * building name + apartment number. The whole load is one transaction - a single rejected row or a
+     * cancel request rolls everything back. Counters and errors are written to the progress.
+     */
+    void importWorkbook(Path file, ImportProgress progress);
+}
@@ -0,0 +1,241 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.entity.Apartment;
+import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.PaymentPlan;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.service.ApartmentImportService;
+import apartmentsmanager.apartmentsmanager.service.BuildingService;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+@Service
+public class ApartmentImportServiceImpl implements ApartmentImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApartmentImportServiceImpl.class);
+
+    // Paid columns start at 0 - a new apartment has no payments (same values as PAYMENT_TOTALS_SET);
+    // the payment plan columns are the physical names of the embedded PaymentPlan fields
+    private static final String INSERT_SQL =
+        "INSERT INTO apartments (building_id, building_name, apartment_number, area, price_per_m2, total_price, " +
+        "stage, stage_order, unit_type, notes, is_sold, client_id, contract_date, " +
+        "preliminary_contract_date, akt14_date, akt15_date, akt16_date, " +
+        "preliminary_contract_amount, akt14_amount, akt15_amount, akt16_amount, " +
+        "total_paid, paid_prelim, paid_akt14, paid_akt15, paid_akt16, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 0, 0, 0, ?, ?)";
+
+    private final ApartmentRepository apartmentRepository;
+    private final BuildingService buildingService;
+    private final BuildingStatsService buildingStatsService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public ApartmentImportServiceImpl(ApartmentRepository apartmentRepository,
+                                      BuildingService buildingService,
+                                      BuildingStatsService buildingStatsService,
+                                      JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${app.import.batch-size:1000}") int batchSize) {
+        this.apartmentRepository = apartmentRepository;
+        this.buildingService = buildingService;
+        this.buildingStatsService = buildingStatsService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public Session begin(Long buildingId, boolean refreshStatistics, BiConsumer<Integer, String> rowErrors) {
+        Building target = buildingId != null ? buildingService.getBuildingById(buildingId).orElse(null) : null;
+        return new BatchSession(target, refreshStatistics, rowErrors);
+    }
+
+    private record PendingRow(int line, Apartment apartment) {
+    }
+
+    private final class BatchSession implements Session {
+
+        private final Building target;
+        private final boolean refreshStatistics;
+        private final BiConsumer<Integer, String> rowErrors;
+        private final Map<String, Building> buildingsByName = new HashMap<>();
+        // Apartment numbers per building id - existing rows plus rows accepted by this import
+        private final Map<Long, Set<String>> numbersByBuilding = new HashMap<>();
+        private final Set<Long> touchedBuildings = new LinkedHashSet<>();
+        private final List<PendingRow> pending = new ArrayList<>();
+        private final long startNanos = System.nanoTime();
+        private int inserted;
+        private int batches;
+
+        BatchSession(Building target, boolean refreshStatistics, BiConsumer<Integer, String> rowErrors) {
+            this.target = target;
+            this.refreshStatistics = refreshStatistics;
+            this.rowErrors = rowErrors;
+        }
+
+        @Override
+        public void add(int line, Apartment apartment) {
+            if (target == null && (apartment.getBuildingName() == null || apartment.getBuildingName().trim().isEmpty())) {
+                rowErrors.accept(line, "Липсват задължителни полета");
+                return;
+            }
+            Building building = target != null ? target : resolveBuilding(apartment.getBuildingName());
+            apartment.setBuilding(building);
+            apartment.setBuildingName(building.getName());
+
+            Set<String> numbers = numbersByBuilding.computeIfAbsent(building.getId(),
+                id -> new HashSet<>(apartmentRepository.findApartmentNumbersByBuilding(id)));
+            // Same key as the unique constraint (building_id, apartment_number)
+            if (!numbers.add(apartment.getApartmentNumber())) {
+                rowErrors.accept(line, "Апартамент вече съществува");
+                return;
+            }
+
+            apartment.applyInsertDefaults();
+            pending.add(new PendingRow(line, apartment));
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public int finish() {
+            flush();
+            // Imported apartments have no payments - only the building totals change here. Rows with
+            // a payment plan come from the workbook import, which rebuilds all aggregates itself
+            if (refreshStatistics) {
+                for (Long buildingId : touchedBuildings) {
+                    buildingStatsService.rebuildBuilding(buildingId);
+                }
+            }
+            logger.info("Apartment import: {} rows inserted in {} batches into {} buildings in {} ms",
+                inserted, batches, touchedBuildings.size(), (System.nanoTime() - startNanos) / 1_000_000);
+            return inserted;
+        }
+
+        /**
+         * Create a missing building once per distinct name
+         */
+        private Building resolveBuilding(String name) {
+            return buildingsByName.computeIfAbsent(name, key -> buildingService.getBuildingByName(key).orElseGet(() -> {
+                Building newBuilding = new Building();
+                newBuilding.setName(key);
+                newBuilding.setStatus("активна");
+                return buildingService.saveBuilding(newBuilding);
+            }));
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batches++;
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, pending, pending.size(),
+                        (ps, row) -> bind(ps, row.apartment())));
+                inserted += pending.size();
+            } catch (DataAccessException e) {
+                // The batch was rolled back - insert its rows one by one to find the failing ones
+                logger.warn("Apartment import batch of {} rows failed, retrying row by row: {}",
+                    pending.size(), e.getMostSpecificCause().getMessage());
+                for (PendingRow row : pending) {
+                    insertSingle(row);
+                }
+            }
+            for (PendingRow row : pending) {
+                touchedBuildings.add(row.apartment().getBuilding().getId());
+            }
+            pending.clear();
+        }
+
+        private void insertSingle(PendingRow row) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, row.apartment())));
+                inserted++;
+            } catch (DataAccessException e) {
+                numbersByBuilding.get(row.apartment().getBuilding().getId()).remove(row.apartment().getApartmentNumber());
+                rowErrors.accept(row.line(), e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Apartment apartment) throws SQLException {
+        Timestamp now = Timestamp.valueOf(apartment.getCreatedAt());
+        ps.setLong(1, apartment.getBuilding().getId());
+        ps.setString(2, apartment.getBuildingName());
+        ps.setString(3, apartment.getApartmentNumber());
+        ps.setBigDecimal(4, apartment.getArea());
+        setNullableDecimal(ps, 5, apartment.getPricePerM2());
+        ps.setBigDecimal(6, apartment.getTotalPrice());
+        ps.setString(7, apartment.getStage());
+        if (apartment.getStageCode() != null) {
+            ps.setInt(8, apartment.getStageCode().getCode());
+        } else {
+            ps.setNull(8, Types.INTEGER);
+        }
+        ps.setInt(9, apartment.getUnitType().getCode());
+        ps.setString(10, apartment.getNotes());
+        ps.setBoolean(11, Boolean.TRUE.equals(apartment.getIsSold()));
+        if (apartment.getClient() != null && apartment.getClient().getId() != null) {
+            ps.setLong(12, apartment.getClient().getId());
+        } else {
+            ps.setNull(12, Types.BIGINT);
+        }
+        setNullableDate(ps, 13, apartment.getContractDate());
+        PaymentPlan plan = apartment.getPaymentPlan() != null ? apartment.getPaymentPlan() : new PaymentPlan();
+        setNullableDate(ps, 14, plan.getPreliminaryContractDate());
+        setNullableDate(ps, 15, plan.getAkt14Date());
+        setNullableDate(ps, 16, plan.getAkt15Date());
+        setNullableDate(ps, 17, plan.getAkt16Date());
+        setNullableDecimal(ps, 18, plan.getPreliminaryContractAmount());
+        setNullableDecimal(ps, 19, plan.getAkt14Amount());
+        setNullableDecimal(ps, 20, plan.getAkt15Amount());
+        setNullableDecimal(ps, 21, plan.getAkt16Amount());
+        ps.setTimestamp(22, now);
+        ps.setTimestamp(23, now);
+    }
+
+    private static void setNullableDate(PreparedStatement ps, int index, LocalDate value) throws SQLException {
+        if (value != null) {
+            ps.setDate(index, Date.valueOf(value));
+        } else {
+            ps.setNull(index, Types.DATE);
+        }
+    }
+
+    private static void setNullableDecimal(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
+        if (value != null) {
+            ps.setBigDecimal(index, value);
+        } else {
+            ps.setNull(index, Types.DECIMAL);
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package apartmentsmanager.apartmentsmanager.service.impl;
 
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
 import apartmentsmanager.apartmentsmanager.entity.Apartment;
+import apartmentsmanager.apartmentsmanager.entity.CashFlowMonthly;
 import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
 import apartmentsmanager.apartmentsmanager.service.ApartmentService;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.CashFlowService;
+import apartmentsmanager.apartmentsmanager.service.OverdueScanService;
+import apartmentsmanager.apartmentsmanager.service.ReceivableInstallmentService;
+import apartmentsmanager.apartmentsmanager.service.StageTransitionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,10 +25,25 @@ import java.util.Optional;
 public class ApartmentServiceImpl implements ApartmentService {
     
     private final ApartmentRepository apartmentRepository;
+    private final BuildingStatsService buildingStatsService;
+    private final CashFlowService cashFlowService;
+    private final ReceivableInstallmentService receivableInstallmentService;
+    private final OverdueScanService overdueScanService;
+    private final StageTransitionService stageTransitionService;
     
     @Autowired
-    public ApartmentServiceImpl(ApartmentRepository apartmentRepository) {
+    public ApartmentServiceImpl(ApartmentRepository apartmentRepository,
+                                BuildingStatsService buildingStatsService,
+                                CashFlowService cashFlowService,
+                                ReceivableInstallmentService receivableInstallmentService,
+                                OverdueScanService overdueScanService,
+                                StageTransitionService stageTransitionService) {
         this.apartmentRepository = apartmentRepository;
+        this.buildingStatsService = buildingStatsService;
+        this.cashFlowService = cashFlowService;
+        this.receivableInstallmentService = receivableInstallmentService;
+        this.overdueScanService = overdueScanService;
+        this.stageTransitionService = stageTransitionService;
     }
     
     @Override
@@ -51,12 +75,23 @@ public class ApartmentServiceImpl implements ApartmentService {
     
     @Override
     public Apartment saveApartment(Apartment apartment) {
-        return apartmentRepository.save(apartment);
+        BuildingStatisticsSnapshot statsBefore = buildingStatsService.captureApartment(apartment.getId());
+        List<CashFlowMonthly> cashFlowBefore = cashFlowService.captureApartment(apartment.getId());
+        Apartment saved = apartmentRepository.saveAndFlush(apartment);
+        buildingStatsService.applyApartmentChange(statsBefore, buildingStatsService.captureApartment(saved.getId()));
+        cashFlowService.applyApartmentChange(cashFlowBefore, cashFlowService.captureApartment(saved.getId()));
+        receivableInstallmentService.syncApartment(saved.getId());
+        return saved;
     }
     
     @Override
     public void deleteApartment(Long id) {
+        BuildingStatisticsSnapshot statsBefore = buildingStatsService.captureApartment(id);
+        List<CashFlowMonthly> cashFlowBefore = cashFlowService.captureApartment(id);
         apartmentRepository.deleteById(id);
+        buildingStatsService.applyApartmentChange(statsBefore, null);
+        cashFlowService.applyApartmentChange(cashFlowBefore, null);
+        receivableInstallmentService.removeApartment(id);
     }
     
     @Override
@@ -88,6 +123,25 @@ public class ApartmentServiceImpl implements ApartmentService {
         }
         return apartmentRepository.findApartmentsWithOverduePaymentsByBuilding(buildingId);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OverdueApartmentRow> getOverdueRowsByBuilding(Long buildingId) {
+        if (buildingId == null) {
+            return List.of();
+        }
+        // Precomputed by the overdue scan and refreshed per apartment on writes
+        return new ArrayList<>(overdueScanService.getOverdueRows(buildingId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countOverdueApartmentsByBuilding(Long buildingId) {
+        if (buildingId == null) {
+            return 0L;
+        }
+        return overdueScanService.countOverdue(buildingId);
+    }
     
     @Override
     @Transactional(readOnly = true)
@@ -155,31 +209,25 @@ public class ApartmentServiceImpl implements ApartmentService {
         Optional<Apartment> apartmentOpt = apartmentRepository.findById(apartmentId);
         if (apartmentOpt.isPresent()) {
             Apartment apartment = apartmentOpt.get();
+            BuildingStatisticsSnapshot before = buildingStatsService.captureApartment(apartmentId);
             apartment.setStage(stage);
-            return apartmentRepository.save(apartment);
+            Apartment saved = apartmentRepository.saveAndFlush(apartment);
+            buildingStatsService.applyApartmentChange(before, buildingStatsService.captureApartment(apartmentId));
+            receivableInstallmentService.syncApartment(apartmentId);
+            return saved;
         }
         throw new RuntimeException("Apartment not found with id: " + apartmentId);
     }
     
     @Override
     public void updateAllApartmentsStage(String stage) {
-        List<Apartment> apartments = apartmentRepository.findByIsSoldTrue();
-        for (Apartment apartment : apartments) {
-            apartment.setStage(stage);
-        }
-        apartmentRepository.saveAll(apartments);
+        // One bulk UPDATE instead of loading and saving every sold apartment
+        stageTransitionService.transitionAllSoldApartments(stage);
     }
 
     @Override
     public void updateAllApartmentsStageByBuilding(Long buildingId, String stage) {
-        if (buildingId == null) {
-            return;
-        }
-        List<Apartment> apartments = apartmentRepository.findByIsSoldTrueAndBuildingId(buildingId);
-        for (Apartment apartment : apartments) {
-            apartment.setStage(stage);
-        }
-        apartmentRepository.saveAll(apartments);
+        stageTransitionService.transitionSoldApartments(buildingId, stage);
     }
 }
 
@@ -187,4 +235,3 @@ public class ApartmentServiceImpl implements ApartmentService {
 
 
 
-
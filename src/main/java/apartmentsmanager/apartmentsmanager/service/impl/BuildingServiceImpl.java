@@ -2,11 +2,20 @@ package apartmentsmanager.apartmentsmanager.service.impl;
 
 import apartmentsmanager.apartmentsmanager.dto.BuildingDetailDto;
 import apartmentsmanager.apartmentsmanager.dto.BuildingRowDto;
-import apartmentsmanager.apartmentsmanager.entity.Apartment;
+import apartmentsmanager.apartmentsmanager.dto.BuildingUnitTypeCount;
 import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.ConstructionStage;
+import apartmentsmanager.apartmentsmanager.entity.UnitType;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
 import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.repository.UnitRepository;
 import apartmentsmanager.apartmentsmanager.service.BuildingService;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.CashFlowService;
+import apartmentsmanager.apartmentsmanager.service.ReceivableInstallmentService;
+import apartmentsmanager.apartmentsmanager.service.StageTransitionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,50 +31,70 @@ import java.util.concurrent.atomic.AtomicReference;
 public class BuildingServiceImpl implements BuildingService {
     
     private final BuildingRepository buildingRepository;
+    private final BuildingStatsService buildingStatsService;
+    private final CashFlowService cashFlowService;
+    private final ReceivableInstallmentService receivableInstallmentService;
+    private final StageTransitionService stageTransitionService;
+    private final ApartmentRepository apartmentRepository;
+    private final UnitRepository unitRepository;
     private final AtomicReference<Long> currentBuildingId = new AtomicReference<>(null);
     
     @Autowired
-    public BuildingServiceImpl(BuildingRepository buildingRepository) {
+    public BuildingServiceImpl(BuildingRepository buildingRepository,
+                               BuildingStatsService buildingStatsService,
+                               CashFlowService cashFlowService,
+                               ReceivableInstallmentService receivableInstallmentService,
+                               StageTransitionService stageTransitionService,
+                               ApartmentRepository apartmentRepository,
+                               UnitRepository unitRepository) {
         this.buildingRepository = buildingRepository;
+        this.buildingStatsService = buildingStatsService;
+        this.cashFlowService = cashFlowService;
+        this.receivableInstallmentService = receivableInstallmentService;
+        this.stageTransitionService = stageTransitionService;
+        this.apartmentRepository = apartmentRepository;
+        this.unitRepository = unitRepository;
     }
     
     @Override
     @Transactional(readOnly = true)
-    public Map<String, Object> getBuildingsPageData() {
+    public Map<String, Object> getBuildingsPageData(String status, String stage, String namePrefix, Long afterId, int size) {
         Map<String, Object> data = new HashMap<>();
         try {
-            List<Building> buildings = buildingRepository.findAll();
-            List<BuildingRowDto> buildingRows = toRowDtos(buildings);
-            data.put("buildings", buildingRows);
-            data.put("buildingsCount", buildingRows.size());
+            // Constant number of queries: one page of buildings, its COUNT and one GROUP BY for apartments and one for units
+            String statusFilter = blankToNull(status);
+            String stageFilter = blankToNull(stage);
+            ConstructionStage stageCode = ConstructionStage.fromLabel(stageFilter);
+            String namePattern = toPrefixPattern(namePrefix);
+            List<Building> buildings = List.of();
+            long total = 0;
+            boolean hasMore = false;
+            // An unknown stage label matches no building
+            if (stageFilter == null || stageCode != null) {
+                // One extra row tells whether there is a next page
+                List<Building> rows = buildingRepository.findPage(statusFilter, stageCode, namePattern,
+                    afterId != null ? afterId : 0L, PageRequest.of(0, size + 1));
+                hasMore = rows.size() > size;
+                buildings = hasMore ? rows.subList(0, size) : rows;
+                total = buildingRepository.countFiltered(statusFilter, stageCode, namePattern);
+            }
+            Map<Long, CountSummary> counts = countUnitsByBuilding(buildings.stream().map(Building::getId).toList());
+            data.put("buildings", toRowDtos(buildings, counts));
+            data.put("buildingsCount", total);
+            data.put("hasMore", hasMore);
+            data.put("nextAfterId", hasMore ? buildings.get(buildings.size() - 1).getId() : null);
             data.put("currentBuilding", null);
             data.put("apartmentsCount", 0);
             data.put("garagesCount", 0);
             data.put("basementsCount", 0);
             data.put("parkingSpacesCount", 0);
             data.put("commercialSpacesCount", 0);
-            if (buildings != null && !buildings.isEmpty()) {
-                Building currentEntity = null;
-                Long selectedId = currentBuildingId.get();
-                if (selectedId != null) {
-                    for (Building b : buildings) {
-                        if (selectedId.equals(b.getId())) {
-                            currentEntity = b;
-                            break;
-                        }
-                    }
-                    if (currentEntity == null) {
-                        currentBuildingId.set(null);
-                    }
-                }
-                if (currentEntity == null) {
-                    currentEntity = buildings.stream()
-                        .filter(b -> b.getStatus() != null && b.getStatus().equals("активна"))
-                        .findFirst()
-                        .orElse(buildings.get(0));
-                }
+            Building currentEntity = findCurrentBuilding().orElse(null);
+            if (currentEntity != null) {
                 data.put("currentBuilding", toDetailDto(currentEntity));
-                CountSummary summary = buildCounts(currentEntity);
+                CountSummary summary = counts.containsKey(currentEntity.getId())
+                    ? counts.get(currentEntity.getId())
+                    : countUnitsByBuilding(List.of(currentEntity.getId())).getOrDefault(currentEntity.getId(), EMPTY_COUNTS);
                 data.put("apartmentsCount", summary.apartments);
                 data.put("garagesCount", summary.garages);
                 data.put("basementsCount", summary.basements);
@@ -75,6 +104,8 @@ public class BuildingServiceImpl implements BuildingService {
         } catch (Exception e) {
             data.put("buildings", List.of());
             data.put("buildingsCount", 0);
+            data.put("hasMore", false);
+            data.put("nextAfterId", null);
             data.put("currentBuilding", null);
             data.put("apartmentsCount", 0);
             data.put("garagesCount", 0);
@@ -86,12 +117,27 @@ public class BuildingServiceImpl implements BuildingService {
         return data;
     }
 
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    /**
+     * LIKE pattern for a name prefix ('!' escapes the wildcards), null for an empty prefix
+     */
+    private static String toPrefixPattern(String namePrefix) {
+        String prefix = blankToNull(namePrefix);
+        if (prefix == null) {
+            return null;
+        }
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
     /** Конвертира entity -> DTO само с прости полета (без lazy колекции). View получава само DTO. */
-    private static List<BuildingRowDto> toRowDtos(List<Building> buildings) {
+    private static List<BuildingRowDto> toRowDtos(List<Building> buildings, Map<Long, CountSummary> counts) {
         if (buildings == null) return List.of();
         List<BuildingRowDto> list = new ArrayList<>(buildings.size());
         for (Building b : buildings) {
-            CountSummary summary = buildCounts(b);
+            CountSummary summary = counts.getOrDefault(b.getId(), EMPTY_COUNTS);
             list.add(new BuildingRowDto(
                 b.getId(),
                 b.getName(),
@@ -124,61 +170,60 @@ public class BuildingServiceImpl implements BuildingService {
         );
     }
 
-    private static int safeSize(java.util.Collection<?> c) {
-        return c != null ? c.size() : 0;
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getUnitCounts(Long buildingId) {
+        CountSummary summary = countUnitsByBuilding(List.of(buildingId)).getOrDefault(buildingId, EMPTY_COUNTS);
+        Map<String, Object> data = new HashMap<>();
+        data.put("apartmentsCount", summary.apartments);
+        data.put("garagesCount", summary.garages);
+        data.put("basementsCount", summary.basements);
+        data.put("parkingSpacesCount", summary.parkingSpaces);
+        data.put("commercialSpacesCount", summary.commercialSpaces);
+        return data;
     }
 
-    private static CountSummary buildCounts(Building building) {
-        CountSummary summary = new CountSummary();
-        if (building == null) return summary;
-
-        List<Apartment> apartments = building.getApartments();
-        CountSummary classified = classifyFromApartments(apartments);
-
-        boolean hasSpecialTypes = classified.garages > 0 ||
-            classified.basements > 0 ||
-            classified.parkingSpaces > 0 ||
-            classified.commercialSpaces > 0;
-
-        if (hasSpecialTypes) {
-            summary = classified;
-        } else {
-            summary.apartments = safeSize(building.getApartments());
-            summary.garages = safeSize(building.getGarages());
-            summary.basements = safeSize(building.getBasements());
-            summary.parkingSpaces = safeSize(building.getParkingSpaces());
-            summary.commercialSpaces = safeSize(building.getCommercialSpaces());
-            summary.total = summary.apartments + summary.garages + summary.basements + summary.parkingSpaces + summary.commercialSpaces;
+    /**
+     * Unit counts of the given buildings from two GROUP BY queries (apartments and units)
+     */
+    private Map<Long, CountSummary> countUnitsByBuilding(List<Long> buildingIds) {
+        if (buildingIds.isEmpty()) {
+            return new HashMap<>();
         }
-
-        return summary;
+        return summarize(apartmentRepository.countGroupedByBuildingAndUnitType(buildingIds),
+            unitRepository.countGroupedByBuildingAndUnitType(buildingIds));
     }
 
-    private static CountSummary classifyFromApartments(List<Apartment> apartments) {
-        CountSummary summary = new CountSummary();
-        if (apartments == null) return summary;
-
-        for (Apartment apartment : apartments) {
-            String number = apartment != null ? apartment.getApartmentNumber() : null;
-            String value = number != null ? number.trim().toUpperCase() : "";
-
-            if (value.contains("ГАРАЖ")) {
-                summary.garages++;
-            } else if (value.contains("ПАРКО")) {
-                summary.parkingSpaces++;
-            } else if (value.contains("МАЗЕ")) {
-                summary.basements++;
-            } else if (value.contains("ТЪРГ") || value.contains("МАГАЗ")) {
-                summary.commercialSpaces++;
-            } else {
-                summary.apartments++;
+    /**
+     * Buildings that keep garages, basements etc. as apartments (by unit_type) are counted from the
+     * apartments alone, the others from the units table.
+     */
+    private static Map<Long, CountSummary> summarize(List<BuildingUnitTypeCount> apartmentRows,
+                                                     List<BuildingUnitTypeCount> unitRows) {
+        Map<Long, CountSummary> counts = new HashMap<>();
+        for (BuildingUnitTypeCount row : apartmentRows) {
+            CountSummary summary = counts.computeIfAbsent(row.getBuildingId(), id -> new CountSummary());
+            // Rows not yet reached by the unit type backfill count as apartments
+            UnitType unitType = row.getUnitType() != null ? row.getUnitType() : UnitType.APARTMENT;
+            summary.add(unitType, (int) row.getTotal());
+            if (unitType != UnitType.APARTMENT) {
+                summary.classified = true;
             }
         }
-
-        summary.total = summary.apartments + summary.garages + summary.basements + summary.parkingSpaces + summary.commercialSpaces;
-        return summary;
+        for (BuildingUnitTypeCount row : unitRows) {
+            CountSummary summary = counts.computeIfAbsent(row.getBuildingId(), id -> new CountSummary());
+            if (!summary.classified && row.getUnitType() != null) {
+                summary.add(row.getUnitType(), (int) row.getTotal());
+            }
+        }
+        for (CountSummary summary : counts.values()) {
+            summary.total = summary.apartments + summary.garages + summary.basements + summary.parkingSpaces + summary.commercialSpaces;
+        }
+        return counts;
     }
 
+    private static final CountSummary EMPTY_COUNTS = new CountSummary();
+
     private static class CountSummary {
         int apartments;
         int garages;
@@ -186,11 +231,34 @@ public class BuildingServiceImpl implements BuildingService {
         int parkingSpaces;
         int commercialSpaces;
         int total;
+        // Special units found among the apartments - the units table is not counted then
+        boolean classified;
+
+        void add(UnitType unitType, int count) {
+            switch (unitType) {
+                case GARAGE:
+                    garages += count;
+                    break;
+                case PARKING_SPACE:
+                    parkingSpaces += count;
+                    break;
+                case BASEMENT:
+                    basements += count;
+                    break;
+                case COMMERCIAL_SPACE:
+                    commercialSpaces += count;
+                    break;
+                default:
+                    apartments += count;
+                    break;
+            }
+        }
     }
     
     @Override
-    public List<Building> getAllBuildings() {
-        return buildingRepository.findAll();
+    @Transactional(readOnly = true)
+    public long countBuildings() {
+        return buildingRepository.count();
     }
     
     @Override
@@ -211,6 +279,9 @@ public class BuildingServiceImpl implements BuildingService {
     @Override
     public void deleteBuilding(Long id) {
         buildingRepository.deleteById(id);
+        buildingStatsService.removeBuilding(id);
+        cashFlowService.removeBuilding(id);
+        receivableInstallmentService.removeBuilding(id);
         if (id != null && id.equals(currentBuildingId.get())) {
             currentBuildingId.set(null);
         }
@@ -232,45 +303,8 @@ public class BuildingServiceImpl implements BuildingService {
     @Override
     @Transactional
     public Building updateBuildingStage(Long buildingId, String stage) {
-        Building building = buildingRepository.findById(buildingId)
-            .orElseThrow(() -> new RuntimeException("Сграда с ID " + buildingId + " не е намерена"));
-        
-        // Update building stage
-        building.setStage(stage);
-        
-        // Map building stage to apartment stage
-        String apartmentStage = mapBuildingStageToApartmentStage(stage);
-        
-        // Update all apartments/objects in this building to the new stage
-        if (building.getApartments() != null && !building.getApartments().isEmpty()) {
-            building.getApartments().forEach(apt -> apt.setStage(apartmentStage));
-        }
-        
-        return buildingRepository.save(building);
-    }
-    
-    /**
-     * Map building stage to apartment stage
-     * Building stages: "Открита строителна площадка", "Акт 14", "Акт 15", "Акт 16"
-     * Apartment stages: "Предварителен договор", "Акт 14", "Акт 15", "Акт 16"
-     */
-    private String mapBuildingStageToApartmentStage(String buildingStage) {
-        if (buildingStage == null) {
-            return "Предварителен договор";
-        }
-        
-        switch (buildingStage) {
-            case "Открита строителна площадка":
-                return "Предварителен договор";
-            case "Акт 14":
-                return "Акт 14";
-            case "Акт 15":
-                return "Акт 15";
-            case "Акт 16":
-                return "Акт 16";
-            default:
-                return "Предварителен договор";
-        }
+        // One bulk UPDATE for the objects of the building, recorded in the stage history
+        return stageTransitionService.transitionBuilding(buildingId, stage);
     }
 
     @Override
@@ -286,25 +320,24 @@ public class BuildingServiceImpl implements BuildingService {
     @Override
     @Transactional(readOnly = true)
     public Optional<Building> getOrSetCurrentBuilding() {
+        Optional<Building> chosen = findCurrentBuilding();
+        chosen.ifPresent(b -> currentBuildingId.set(b.getId()));
+        return chosen;
+    }
+
+    /**
+     * The selected building, or the first active one, or the first one - without loading the whole list
+     */
+    private Optional<Building> findCurrentBuilding() {
         Long selectedId = currentBuildingId.get();
         if (selectedId != null) {
-            return buildingRepository.findById(selectedId);
-        }
-
-        List<Building> buildings = buildingRepository.findAll();
-        if (buildings == null || buildings.isEmpty()) {
-            return Optional.empty();
+            Optional<Building> selected = buildingRepository.findById(selectedId);
+            if (selected.isPresent()) {
+                return selected;
+            }
+            currentBuildingId.set(null);
         }
-
-        Building chosen = buildings.stream()
-            .filter(b -> b.getStatus() != null && b.getStatus().equals("активна"))
-            .findFirst()
-            .orElse(buildings.get(0));
-
-        currentBuildingId.set(chosen.getId());
-        return Optional.of(chosen);
+        Optional<Building> active = buildingRepository.findFirstByStatusOrderByIdAsc("активна");
+        return active.isPresent() ? active : buildingRepository.findFirstByOrderByIdAsc();
     }
 }
-
-
-
@@ -0,0 +1,262 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
+import apartmentsmanager.apartmentsmanager.entity.BuildingStats;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+import apartmentsmanager.apartmentsmanager.event.BuildingStatisticsChangedEvent;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingStatsRepository;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+@Service
+@Transactional
+public class BuildingStatsServiceImpl implements BuildingStatsService {
+
+    private final BuildingStatsRepository buildingStatsRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final BuildingRepository buildingRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public BuildingStatsServiceImpl(BuildingStatsRepository buildingStatsRepository,
+                                    ApartmentRepository apartmentRepository,
+                                    BuildingRepository buildingRepository,
+                                    ApplicationEventPublisher eventPublisher) {
+        this.buildingStatsRepository = buildingStatsRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.buildingRepository = buildingRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<BuildingStats> getBuildingStats(Long buildingId) {
+        if (buildingId == null) {
+            return Optional.empty();
+        }
+        return buildingStatsRepository.findById(buildingId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BuildingStats> getAllBuildingStats() {
+        return buildingStatsRepository.findAll();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BuildingStatisticsSnapshot captureApartment(Long apartmentId) {
+        if (apartmentId == null) {
+            return null;
+        }
+        return apartmentRepository.findStatisticsSnapshotByApartment(apartmentId);
+    }
+
+    @Override
+    public void applyApartmentChange(BuildingStatisticsSnapshot before, BuildingStatisticsSnapshot after) {
+        Long beforeBuildingId = before != null ? before.getBuildingId() : null;
+        Long afterBuildingId = after != null ? after.getBuildingId() : null;
+
+        if (beforeBuildingId != null && beforeBuildingId.equals(afterBuildingId)) {
+            applyDelta(beforeBuildingId, after, before);
+            return;
+        }
+        // Apartment was sold/unsold, deleted or moved to another building
+        if (beforeBuildingId != null) {
+            applyDelta(beforeBuildingId, null, before);
+        }
+        if (afterBuildingId != null) {
+            applyDelta(afterBuildingId, after, null);
+        }
+    }
+
+    private void applyDelta(Long buildingId, BuildingStatisticsSnapshot plus, BuildingStatisticsSnapshot minus) {
+        // Listeners run after commit (statistics cache invalidation)
+        eventPublisher.publishEvent(new BuildingStatisticsChangedEvent(buildingId));
+        BuildingStats stats = lockOrCreate(buildingId);
+        if (stats == null) {
+            return;
+        }
+        stats.add(plus, 1);
+        stats.add(minus, -1);
+        buildingStatsRepository.save(stats);
+    }
+
+    @Override
+    public void applyStageTransition(Long buildingId, String apartmentStage) {
+        if (buildingId == null) {
+            return;
+        }
+        eventPublisher.publishEvent(new BuildingStatisticsChangedEvent(buildingId));
+        BuildingStats stats = lockOrCreate(buildingId);
+        if (stats == null) {
+            return;
+        }
+        setAllCountsToStage(stats, apartmentStage);
+        buildingStatsRepository.save(stats);
+    }
+
+    /**
+     * Stats row locked for a read-modify-write, or null when this call created it. A created row is
+     * filled from the aggregate, which already includes the flushed write, so no delta is applied to it.
+     * The row is created with INSERT IGNORE - two first writes to a new building do not collide.
+     */
+    private BuildingStats lockOrCreate(Long buildingId) {
+        if (buildingStatsRepository.insertIfMissing(buildingId) > 0) {
+            rebuildBuilding(buildingId);
+            return null;
+        }
+        Optional<BuildingStats> existing = buildingStatsRepository.findByIdForUpdate(buildingId);
+        if (existing.isEmpty()) {
+            // Removed concurrently (building deleted)
+            return null;
+        }
+        return existing.get();
+    }
+
+    @Override
+    public void applyStageTransitionToAll(String apartmentStage) {
+        eventPublisher.publishEvent(BuildingStatisticsChangedEvent.allBuildings());
+        List<BuildingStats> rows = buildingStatsRepository.findAll();
+        for (BuildingStats stats : rows) {
+            setAllCountsToStage(stats, apartmentStage);
+        }
+        buildingStatsRepository.saveAll(rows);
+    }
+
+    /**
+     * Every sold apartment is now in one stage - same classification as the aggregate query
+     */
+    private static void setAllCountsToStage(BuildingStats stats, String apartmentStage) {
+        long sold = stats.getTotalApartments();
+        stats.setPrelimCount(0);
+        stats.setAkt14Count(0);
+        stats.setAkt15Count(0);
+        stats.setAkt16Count(0);
+        if (apartmentStage == null || apartmentStage.trim().isEmpty()) {
+            stats.setPrelimCount(sold);
+            return;
+        }
+        PaymentStage stage = PaymentStage.fromLabel(apartmentStage);
+        if (stage == null) {
+            return;
+        }
+        switch (stage) {
+            case PRELIMINARY:
+                stats.setPrelimCount(sold);
+                break;
+            case AKT14:
+                stats.setAkt14Count(sold);
+                break;
+            case AKT15:
+                stats.setAkt15Count(sold);
+                break;
+            case AKT16:
+                stats.setAkt16Count(sold);
+                break;
+        }
+    }
+
+    @Override
+    public void removeBuilding(Long buildingId) {
+        if (buildingId != null) {
+            eventPublisher.publishEvent(new BuildingStatisticsChangedEvent(buildingId));
+        }
+        if (buildingId != null && buildingStatsRepository.existsById(buildingId)) {
+            buildingStatsRepository.deleteById(buildingId);
+        }
+    }
+
+    @Override
+    public BuildingStats rebuildBuilding(Long buildingId) {
+        eventPublisher.publishEvent(new BuildingStatisticsChangedEvent(buildingId));
+        BuildingStatisticsSnapshot snapshot = apartmentRepository.findStatisticsSnapshotByBuilding(buildingId);
+        // Assigned id -> save() merges onto the existing row or inserts a new one
+        return buildingStatsRepository.save(BuildingStats.of(buildingId, snapshot));
+    }
+
+    @Override
+    public int rebuildAll() {
+        List<Long> buildingIds = buildingRepository.findAllIds();
+        for (Long buildingId : buildingIds) {
+            rebuildBuilding(buildingId);
+        }
+        // Drop rows of buildings that no longer exist
+        Set<Long> existingIds = new HashSet<>(buildingIds);
+        buildingStatsRepository.findAll().stream()
+            .filter(stats -> !existingIds.contains(stats.getBuildingId()))
+            .forEach(buildingStatsRepository::delete);
+        return buildingIds.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> checkConsistency() {
+        List<Map<String, Object>> mismatches = new ArrayList<>();
+        for (Long buildingId : buildingRepository.findAllIds()) {
+            BuildingStatisticsSnapshot actual = apartmentRepository.findStatisticsSnapshotByBuilding(buildingId);
+            BuildingStats stored = buildingStatsRepository.findById(buildingId).orElse(null);
+            if (stored == null) {
+                if (actual != null && actual.getTotalApartments() > 0) {
+                    mismatches.add(mismatch(buildingId, "row", null, "missing"));
+                }
+                continue;
+            }
+            compare(mismatches, buildingId, "totalApartments", stored.getTotalApartments(), actual.getTotalApartments());
+            compare(mismatches, buildingId, "totalRevenue", stored.getTotalRevenue(), actual.getTotalRevenue());
+            compare(mismatches, buildingId, "totalCollected", stored.getTotalCollected(), actual.getTotalCollected());
+            compare(mismatches, buildingId, "prelimCount", stored.getPrelimCount(), actual.getPrelimCount());
+            compare(mismatches, buildingId, "akt14Count", stored.getAkt14Count(), actual.getAkt14Count());
+            compare(mismatches, buildingId, "akt15Count", stored.getAkt15Count(), actual.getAkt15Count());
+            compare(mismatches, buildingId, "akt16Count", stored.getAkt16Count(), actual.getAkt16Count());
+            compare(mismatches, buildingId, "expectedPrelim", stored.getExpectedPrelim(), actual.getExpectedPrelim());
+            compare(mismatches, buildingId, "expectedAkt14", stored.getExpectedAkt14(), actual.getExpectedAkt14());
+            compare(mismatches, buildingId, "expectedAkt15", stored.getExpectedAkt15(), actual.getExpectedAkt15());
+            compare(mismatches, buildingId, "expectedAkt16", stored.getExpectedAkt16(), actual.getExpectedAkt16());
+            compare(mismatches, buildingId, "collectedPrelim", stored.getCollectedPrelim(), actual.getCollectedPrelim());
+            compare(mismatches, buildingId, "collectedAkt14", stored.getCollectedAkt14(), actual.getCollectedAkt14());
+            compare(mismatches, buildingId, "collectedAkt15", stored.getCollectedAkt15(), actual.getCollectedAkt15());
+            compare(mismatches, buildingId, "collectedAkt16", stored.getCollectedAkt16(), actual.getCollectedAkt16());
+        }
+        return mismatches;
+    }
+
+    private static void compare(List<Map<String, Object>> mismatches, Long buildingId, String field,
+                                Object stored, Object actual) {
+        boolean equal;
+        if (stored instanceof BigDecimal || actual instanceof BigDecimal) {
+            BigDecimal s = stored != null ? (BigDecimal) stored : BigDecimal.ZERO;
+            BigDecimal a = actual != null ? (BigDecimal) actual : BigDecimal.ZERO;
+            equal = s.compareTo(a) == 0;
+        } else {
+            equal = Objects.equals(stored, actual);
+        }
+        if (!equal) {
+            mismatches.add(mismatch(buildingId, field, stored, actual));
+        }
+    }
+
+    private static Map<String, Object> mismatch(Long buildingId, String field, Object stored, Object actual) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("buildingId", buildingId);
+        item.put("field", field);
+        item.put("stored", stored);
+        item.put("actual", actual);
+        return item;
+    }
+}
@@ -0,0 +1,251 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.CashFlowAggregate;
+import apartmentsmanager.apartmentsmanager.dto.PaymentPlanRow;
+import apartmentsmanager.apartmentsmanager.entity.CashFlowMonthly;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.CashFlowMonthlyRepository;
+import apartmentsmanager.apartmentsmanager.repository.PaymentRepository;
+import apartmentsmanager.apartmentsmanager.service.CashFlowService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Service
+@Transactional
+public class CashFlowServiceImpl implements CashFlowService {
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final CashFlowMonthlyRepository cashFlowMonthlyRepository;
+    private final PaymentRepository paymentRepository;
+    private final ApartmentRepository apartmentRepository;
+
+    @Autowired
+    public CashFlowServiceImpl(CashFlowMonthlyRepository cashFlowMonthlyRepository,
+                               PaymentRepository paymentRepository,
+                               ApartmentRepository apartmentRepository) {
+        this.cashFlowMonthlyRepository = cashFlowMonthlyRepository;
+        this.paymentRepository = paymentRepository;
+        this.apartmentRepository = apartmentRepository;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CashFlowMonthly> captureApartment(Long apartmentId) {
+        List<CashFlowMonthly> entries = new ArrayList<>();
+        if (apartmentId == null) {
+            return entries;
+        }
+        for (CashFlowAggregate aggregate : paymentRepository.sumPaymentsByMonthAndMethodForApartment(apartmentId)) {
+            entries.add(collectedEntry(aggregate));
+        }
+        apartmentRepository.findPaymentPlanRowByApartment(apartmentId)
+            .ifPresent(plan -> addExpectedEntries(entries, plan));
+        return entries;
+    }
+
+    @Override
+    public void applyApartmentChange(List<CashFlowMonthly> before, List<CashFlowMonthly> after) {
+        Map<Bucket, CashFlowMonthly> deltas = new LinkedHashMap<>();
+        accumulate(deltas, after, 1);
+        accumulate(deltas, before, -1);
+
+        for (Map.Entry<Bucket, CashFlowMonthly> entry : deltas.entrySet()) {
+            CashFlowMonthly delta = entry.getValue();
+            if (delta.getEntryCount() == 0 && delta.getAmount().signum() == 0) {
+                continue; // Unchanged bucket
+            }
+            Bucket bucket = entry.getKey();
+            // Upsert instead of find-then-insert: two first writes to the same bucket must not collide
+            cashFlowMonthlyRepository.addToBucket(bucket.periodMonth, bucket.buildingId, bucket.flowType,
+                bucket.paymentMethod, delta.getAmount(), delta.getEntryCount());
+            if (delta.getEntryCount() < 0) {
+                cashFlowMonthlyRepository.deleteEmptyBucket(bucket.periodMonth, bucket.buildingId,
+                    bucket.flowType, bucket.paymentMethod);
+            }
+        }
+    }
+
+    @Override
+    public void removeBuilding(Long buildingId) {
+        if (buildingId != null) {
+            cashFlowMonthlyRepository.deleteByBuildingId(buildingId);
+        }
+    }
+
+    @Override
+    public int rebuildAll() {
+        Map<Bucket, CashFlowMonthly> buckets = new LinkedHashMap<>();
+        List<CashFlowMonthly> entries = new ArrayList<>();
+        for (CashFlowAggregate aggregate : paymentRepository.sumPaymentsByBuildingMonthAndMethod()) {
+            entries.add(collectedEntry(aggregate));
+        }
+        for (PaymentPlanRow plan : apartmentRepository.findPaymentPlanRows()) {
+            addExpectedEntries(entries, plan);
+        }
+        accumulate(buckets, entries, 1);
+
+        cashFlowMonthlyRepository.deleteAllInBatch();
+        List<CashFlowMonthly> rows = new ArrayList<>(buckets.values());
+        cashFlowMonthlyRepository.saveAll(rows);
+        return rows.size();
+    }
+
+    @Override
+    public int rebuildBuilding(Long buildingId) {
+        if (buildingId == null) {
+            return 0;
+        }
+        Map<Bucket, CashFlowMonthly> buckets = new LinkedHashMap<>();
+        List<CashFlowMonthly> entries = new ArrayList<>();
+        for (CashFlowAggregate aggregate : paymentRepository.sumPaymentsByMonthAndMethodForBuilding(buildingId)) {
+            entries.add(collectedEntry(aggregate));
+        }
+        for (PaymentPlanRow plan : apartmentRepository.findPaymentPlanRowsByBuilding(buildingId)) {
+            addExpectedEntries(entries, plan);
+        }
+        accumulate(buckets, entries, 1);
+
+        cashFlowMonthlyRepository.deleteByBuildingId(buildingId);
+        List<CashFlowMonthly> rows = new ArrayList<>(buckets.values());
+        cashFlowMonthlyRepository.saveAll(rows);
+        return rows.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getMonthlySeries(Long buildingId, int months) {
+        int count = Math.max(1, months);
+        LocalDate to = LocalDate.now().withDayOfMonth(1);
+        LocalDate from = to.minusMonths(count - 1L);
+
+        List<CashFlowMonthly> rows = buildingId != null
+            ? cashFlowMonthlyRepository.findByPeriodMonthBetweenAndBuildingIdOrderByPeriodMonth(from, to, buildingId)
+            : cashFlowMonthlyRepository.findByPeriodMonthBetweenOrderByPeriodMonth(from, to);
+
+        // One slot per month, months without rows stay at zero
+        List<String> labels = new ArrayList<>(count);
+        Map<LocalDate, Integer> index = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            LocalDate month = from.plusMonths(i);
+            labels.add(month.format(MONTH_FORMAT));
+            index.put(month, i);
+        }
+        BigDecimal[] collected = zeros(count);
+        BigDecimal[] expected = zeros(count);
+        Map<String, BigDecimal[]> collectedByMethod = new LinkedHashMap<>();
+
+        for (CashFlowMonthly row : rows) {
+            Integer i = index.get(row.getPeriodMonth());
+            if (i == null) {
+                continue;
+            }
+            if (CashFlowMonthly.FLOW_EXPECTED.equals(row.getFlowType())) {
+                expected[i] = expected[i].add(row.getAmount());
+            } else {
+                collected[i] = collected[i].add(row.getAmount());
+                String method = row.getPaymentMethod().isEmpty() ? "Друг" : row.getPaymentMethod();
+                BigDecimal[] series = collectedByMethod.computeIfAbsent(method, m -> zeros(count));
+                series[i] = series[i].add(row.getAmount());
+            }
+        }
+
+        Map<String, List<BigDecimal>> byMethod = new LinkedHashMap<>();
+        collectedByMethod.forEach((method, series) -> byMethod.put(method, List.of(series)));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("months", labels);
+        result.put("collected", List.of(collected));
+        result.put("expected", List.of(expected));
+        result.put("collectedByMethod", byMethod);
+        result.put("buildingId", buildingId);
+        return result;
+    }
+
+    private static CashFlowMonthly collectedEntry(CashFlowAggregate aggregate) {
+        LocalDate month = LocalDate.of(aggregate.getPeriodYear(), aggregate.getPeriodMonth(), 1);
+        return CashFlowMonthly.of(month, aggregate.getBuildingId(), CashFlowMonthly.FLOW_COLLECTED,
+            aggregate.getPaymentMethod(), aggregate.getAmount(), aggregate.getEntryCount());
+    }
+
+    /**
+     * Expected amount of each plan stage goes to the month of its akt date
+     */
+    private static void addExpectedEntries(List<CashFlowMonthly> entries, PaymentPlanRow plan) {
+        addExpected(entries, plan.getBuildingId(), plan.getPreliminaryContractDate(), plan.getPreliminaryContractAmount());
+        addExpected(entries, plan.getBuildingId(), plan.getAkt14Date(), plan.getAkt14Amount());
+        addExpected(entries, plan.getBuildingId(), plan.getAkt15Date(), plan.getAkt15Amount());
+        addExpected(entries, plan.getBuildingId(), plan.getAkt16Date(), plan.getAkt16Amount());
+    }
+
+    private static void addExpected(List<CashFlowMonthly> entries, Long buildingId, LocalDate date, BigDecimal amount) {
+        if (buildingId == null || date == null || amount == null || amount.signum() <= 0) {
+            return;
+        }
+        entries.add(CashFlowMonthly.of(date, buildingId, CashFlowMonthly.FLOW_EXPECTED, "", amount, 1));
+    }
+
+    private static void accumulate(Map<Bucket, CashFlowMonthly> buckets, List<CashFlowMonthly> entries, int sign) {
+        if (entries == null) {
+            return;
+        }
+        for (CashFlowMonthly entry : entries) {
+            Bucket bucket = new Bucket(entry);
+            CashFlowMonthly total = buckets.computeIfAbsent(bucket, b -> CashFlowMonthly.of(
+                b.periodMonth, b.buildingId, b.flowType, b.paymentMethod, BigDecimal.ZERO, 0));
+            total.setAmount(sign < 0 ? total.getAmount().subtract(entry.getAmount()) : total.getAmount().add(entry.getAmount()));
+            total.setEntryCount(total.getEntryCount() + sign * entry.getEntryCount());
+        }
+    }
+
+    private static BigDecimal[] zeros(int count) {
+        BigDecimal[] values = new BigDecimal[count];
+        Arrays.fill(values, BigDecimal.ZERO);
+        return values;
+    }
+
+    /**
+     * Rollup key: month + building + flow type + payment method
+     */
+    private static final class Bucket {
+        private final LocalDate periodMonth;
+        private final Long buildingId;
+        private final String flowType;
+        private final String paymentMethod;
+
+        private Bucket(CashFlowMonthly entry) {
+            this.periodMonth = entry.getPeriodMonth();
+            this.buildingId = entry.getBuildingId();
+            this.flowType = entry.getFlowType();
+            this.paymentMethod = entry.getPaymentMethod();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Bucket)) return false;
+            Bucket other = (Bucket) o;
+            return Objects.equals(periodMonth, other.periodMonth)
+                && Objects.equals(buildingId, other.buildingId)
+                && Objects.equals(flowType, other.flowType)
+                && Objects.equals(paymentMethod, other.paymentMethod);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(periodMonth, buildingId, flowType, paymentMethod);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.service.ClientEgnIndexService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The unique EGN/EIK index of clients is created here instead of by the schema update: on a database
+ * that already holds duplicate EGNs the CREATE UNIQUE INDEX would fail with only a warning in the log.
+ * Duplicates are not merged automatically (they may be different people with a mistyped EGN) - they
+ * are reported as errors on every start and the index is skipped until they are resolved by hand.
+ * After the index exists a restart costs one information_schema query.
+ */
+@Service
+public class ClientEgnIndexServiceImpl implements ClientEgnIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientEgnIndexServiceImpl.class);
+
+    private static final String INDEX_NAME = "uk_client_egn";
+    // Reported per start - enough to find the rows, the log stays readable on a badly broken table
+    private static final int MAX_REPORTED = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ClientEgnIndexServiceImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void ensureIndexOnStartup() {
+        try {
+            Map<String, String> duplicates = ensureUniqueEgnIndex();
+            if (!duplicates.isEmpty()) {
+                logger.error("Index {} NOT created: {} EGN/EIK values belong to more than one client. " +
+                    "Merge or correct these clients, the index is created on the next start", INDEX_NAME, duplicates.size());
+                duplicates.forEach((egn, ids) -> logger.error("Duplicate EGN/EIK {} - client ids {}", egn, ids));
+            }
+        } catch (Exception e) {
+            logger.error("Index {} could not be checked or created: {}", INDEX_NAME, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, String> ensureUniqueEgnIndex() {
+        if (indexExists()) {
+            return Map.of();
+        }
+        Map<String, String> duplicates = new LinkedHashMap<>();
+        jdbcTemplate.query(
+            "SELECT egn, GROUP_CONCAT(id ORDER BY id) AS ids FROM clients WHERE egn IS NOT NULL " +
+            "GROUP BY egn HAVING COUNT(*) > 1 ORDER BY egn LIMIT " + MAX_REPORTED,
+            (RowCallbackHandler) rs -> duplicates.put(rs.getString("egn"), rs.getString("ids")));
+        if (duplicates.isEmpty()) {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + INDEX_NAME + " ON clients (egn)");
+            logger.info("Index {} created", INDEX_NAME);
+        }
+        return duplicates;
+    }
+
+    private boolean indexExists() {
+        Long count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() AND table_name = 'clients' AND index_name = ?",
+            Long.class, INDEX_NAME);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,397 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.ClientMatchKey;
+import apartmentsmanager.apartmentsmanager.entity.Client;
+import apartmentsmanager.apartmentsmanager.repository.ClientRepository;
+import apartmentsmanager.apartmentsmanager.service.ClientImportService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+@Service
+public class ClientImportServiceImpl implements ClientImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientImportServiceImpl.class);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO clients (name, phone, email, egn, address, notes, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Empty values of the row keep what is stored
+    private static final String UPDATE_SQL =
+        "UPDATE clients SET name = ?, phone = COALESCE(?, phone), email = COALESCE(?, email), " +
+        "egn = COALESCE(?, egn), address = COALESCE(?, address), notes = COALESCE(?, notes), updated_at = ? " +
+        "WHERE id = ?";
+
+    // Shorter digit strings are not used as a phone match key
+    private static final int MIN_PHONE_DIGITS = 6;
+
+    private final ClientRepository clientRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final int batchSize;
+
+    @Autowired
+    public ClientImportServiceImpl(ClientRepository clientRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   Validator validator,
+                                   @Value("${app.import.batch-size:1000}") int batchSize) {
+        this.clientRepository = clientRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public Session begin(BiConsumer<Integer, String> rowErrors) {
+        return new BatchSession(rowErrors);
+    }
+
+    /**
+     * A known client: stored (id set) or a row of this import waiting for its insert (pending set)
+     */
+    private static final class Entry {
+
+        private Long id;
+        private String egn;
+        private Client pending;
+        // Rows of the file merged into the pending row - counted as updated once it is inserted
+        private int merged;
+        private final List<String> keys = new ArrayList<>(3);
+
+        Entry(Long id, String egn) {
+            this.id = id;
+            this.egn = egn;
+        }
+    }
+
+    private record PendingRow(int line, Client client, Entry entry) {
+    }
+
+    private final class BatchSession implements Session {
+
+        private final BiConsumer<Integer, String> rowErrors;
+        // Normalized key -> client; the oldest client wins when stored clients share a key
+        private final Map<String, Entry> byEgn = new HashMap<>();
+        private final Map<String, Entry> byEmail = new HashMap<>();
+        private final Map<String, Entry> byPhone = new HashMap<>();
+        private final List<PendingRow> inserts = new ArrayList<>();
+        private final List<PendingRow> updates = new ArrayList<>();
+        private final long startNanos = System.nanoTime();
+        private int inserted;
+        private int updated;
+        private int batches;
+
+        BatchSession(BiConsumer<Integer, String> rowErrors) {
+            this.rowErrors = rowErrors;
+            // One query for the whole index instead of a lookup per row
+            List<ClientMatchKey> existing = clientRepository.findAllMatchKeys();
+            for (ClientMatchKey key : existing) {
+                String egn = Client.normalizeEgn(key.getEgn());
+                index(new Entry(key.getId(), egn), egn, normalizeEmail(key.getEmail()), normalizePhone(key.getPhone()));
+            }
+            logger.info("Client import: match index of {} clients built in {} ms",
+                existing.size(), (System.nanoTime() - startNanos) / 1_000_000);
+        }
+
+        @Override
+        public void add(int line, Client client) {
+            client.setName(trimToNull(client.getName()));
+            client.setPhone(trimToNull(client.getPhone()));
+            client.setEmail(trimToNull(client.getEmail()));
+            client.setEgn(Client.normalizeEgn(client.getEgn()));
+            client.setAddress(trimToNull(client.getAddress()));
+            client.setNotes(trimToNull(client.getNotes()));
+
+            // Same constraints as a client saved through JPA (rows go to JDBC directly)
+            Set<ConstraintViolation<Client>> violations = validator.validate(client);
+            if (!violations.isEmpty()) {
+                rowErrors.accept(line, violations.iterator().next().getMessage());
+                return;
+            }
+
+            String egn = client.getEgn();
+            String email = normalizeEmail(client.getEmail());
+            String phone = normalizePhone(client.getPhone());
+            Entry entry = match(egn, email, phone);
+            if (entry == null) {
+                entry = new Entry(null, egn);
+                entry.pending = client;
+                inserts.add(new PendingRow(line, client, entry));
+            } else if (entry.pending != null) {
+                // Repeated in the file before its insert was written - one row with the latest values
+                merge(entry.pending, client);
+                entry.merged++;
+            } else {
+                updates.add(new PendingRow(line, client, entry));
+            }
+            if (entry.egn == null) {
+                entry.egn = egn;
+            }
+            index(entry, egn, email, phone);
+
+            if (inserts.size() + updates.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public Result finish() {
+            flush();
+            logger.info("Client import: {} inserted, {} updated in {} batches in {} ms",
+                inserted, updated, batches, (System.nanoTime() - startNanos) / 1_000_000);
+            return new Result(inserted, updated);
+        }
+
+        @Override
+        public Long findIdByEgn(String egn) {
+            String key = Client.normalizeEgn(egn);
+            Entry entry = key != null ? byEgn.get(key) : null;
+            return entry != null ? entry.id : null;
+        }
+
+        /**
+         * EGN/EIK first; email and phone only match when the EGNs do not contradict each other
+         */
+        private Entry match(String egn, String email, String phone) {
+            if (egn != null && byEgn.containsKey(egn)) {
+                return byEgn.get(egn);
+            }
+            Entry entry = email != null ? byEmail.get(email) : null;
+            if (entry == null && phone != null) {
+                entry = byPhone.get(phone);
+            }
+            if (entry != null && egn != null && entry.egn != null) {
+                return null; // Same contact, different person
+            }
+            return entry;
+        }
+
+        private void index(Entry entry, String egn, String email, String phone) {
+            addKey(byEgn, entry, egn);
+            addKey(byEmail, entry, email);
+            addKey(byPhone, entry, phone);
+        }
+
+        private void addKey(Map<String, Entry> keys, Entry entry, String key) {
+            if (key != null && keys.putIfAbsent(key, entry) == null) {
+                entry.keys.add(key);
+            }
+        }
+
+        /**
+         * A row that could not be written is forgotten - later rows with its keys are matched again
+         */
+        private void forget(Entry entry) {
+            for (String key : entry.keys) {
+                byEgn.remove(key, entry);
+                byEmail.remove(key, entry);
+                byPhone.remove(key, entry);
+            }
+        }
+
+        private void flush() {
+            if (inserts.isEmpty() && updates.isEmpty()) {
+                return;
+            }
+            batches++;
+            try {
+                List<Long> ids = transactionTemplate.execute(status -> {
+                    List<Long> generated = insertBatch();
+                    if (!updates.isEmpty()) {
+                        jdbcTemplate.batchUpdate(UPDATE_SQL, updates, updates.size(),
+                            (ps, row) -> bindUpdate(ps, row.client(), row.entry().id));
+                    }
+                    return generated;
+                });
+                for (int i = 0; i < inserts.size(); i++) {
+                    inserted(inserts.get(i).entry(), ids.get(i));
+                }
+                updated += updates.size();
+            } catch (DataAccessException e) {
+                // The batch was rolled back - write its rows one by one to find the failing ones
+                logger.warn("Client import batch of {} rows failed, retrying row by row: {}",
+                    inserts.size() + updates.size(), e.getMostSpecificCause().getMessage());
+                for (PendingRow row : inserts) {
+                    insertSingle(row);
+                }
+                for (PendingRow row : updates) {
+                    updateSingle(row);
+                }
+            }
+            inserts.clear();
+            updates.clear();
+        }
+
+        /**
+         * Multi-row INSERT (rewriteBatchedStatements); the generated ids come back in row order
+         */
+        private List<Long> insertBatch() {
+            List<Long> ids = new ArrayList<>(inserts.size());
+            if (inserts.isEmpty()) {
+                return ids;
+            }
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        bindInsert(ps, inserts.get(i).client());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return inserts.size();
+                    }
+                },
+                keyHolder);
+            for (Map<String, Object> keys : keyHolder.getKeyList()) {
+                ids.add(((Number) keys.values().iterator().next()).longValue());
+            }
+            if (ids.size() != inserts.size()) {
+                throw new IllegalStateException("Expected " + inserts.size() + " generated ids, got " + ids.size());
+            }
+            return ids;
+        }
+
+        private void inserted(Entry entry, Long id) {
+            entry.id = id;
+            entry.pending = null;
+            inserted++;
+            updated += entry.merged;
+            entry.merged = 0;
+        }
+
+        private void insertSingle(PendingRow row) {
+            try {
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+                    bindInsert(ps, row.client());
+                    return ps;
+                }, keyHolder));
+                inserted(row.entry(), keyHolder.getKey().longValue());
+            } catch (DataAccessException e) {
+                forget(row.entry());
+                rowErrors.accept(row.line(), e.getMostSpecificCause().getMessage());
+            }
+        }
+
+        private void updateSingle(PendingRow row) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.update(UPDATE_SQL, ps -> bindUpdate(ps, row.client(), row.entry().id)));
+                updated++;
+            } catch (DataAccessException e) {
+                rowErrors.accept(row.line(), e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Values of a later row win, empty ones keep the earlier value
+     */
+    static void merge(Client target, Client row) {
+        target.setName(row.getName());
+        if (row.getPhone() != null) {
+            target.setPhone(row.getPhone());
+        }
+        if (row.getEmail() != null) {
+            target.setEmail(row.getEmail());
+        }
+        if (row.getEgn() != null) {
+            target.setEgn(row.getEgn());
+        }
+        if (row.getAddress() != null) {
+            target.setAddress(row.getAddress());
+        }
+        if (row.getNotes() != null) {
+            target.setNotes(row.getNotes());
+        }
+    }
+
+    private static void bindInsert(PreparedStatement ps, Client client) throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        ps.setString(1, client.getName());
+        ps.setString(2, client.getPhone());
+        ps.setString(3, client.getEmail());
+        ps.setString(4, client.getEgn());
+        ps.setString(5, client.getAddress());
+        ps.setString(6, client.getNotes());
+        ps.setTimestamp(7, now);
+        ps.setTimestamp(8, now);
+    }
+
+    private static void bindUpdate(PreparedStatement ps, Client client, Long id) throws SQLException {
+        ps.setString(1, client.getName());
+        ps.setString(2, client.getPhone());
+        ps.setString(3, client.getEmail());
+        ps.setString(4, client.getEgn());
+        ps.setString(5, client.getAddress());
+        ps.setString(6, client.getNotes());
+        ps.setTimestamp(7, Timestamp.valueOf(LocalDateTime.now()));
+        ps.setLong(8, id);
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * Lower-case email; values without "@" are not used as a match key
+     */
+    private static String normalizeEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        String normalized = email.trim().toLowerCase();
+        return normalized.indexOf('@') > 0 ? normalized : null;
+    }
+
+    /**
+     * Digits only, international Bulgarian prefix as a leading 0 ("+359 888 123 456" -> "0888123456")
+     */
+    static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.startsWith("00359")) {
+            digits = "0" + digits.substring(5);
+        } else if (digits.startsWith("359") && phone.trim().startsWith("+")) {
+            digits = "0" + digits.substring(3);
+        }
+        return digits.length() >= MIN_PHONE_DIGITS ? digits : null;
+    }
+}
@@ -52,6 +52,17 @@ public class ClientServiceImpl implements ClientService {
     
     @Override
     public Client saveClient(Client client) {
+        // EGN/EIK is unique (uk_client_egn) - report a duplicate instead of a constraint violation. An exists
+        // check, not a lookup: while duplicates are left from before the index, several rows can match
+        String egn = Client.normalizeEgn(client.getEgn());
+        if (egn != null) {
+            boolean taken = client.getId() != null
+                ? clientRepository.existsByEgnAndIdNot(egn, client.getId())
+                : clientRepository.existsByEgn(egn);
+            if (taken) {
+                throw new IllegalArgumentException("Клиент с ЕГН/ЕИК " + egn + " вече съществува");
+            }
+        }
         return clientRepository.save(client);
     }
     
@@ -72,7 +83,8 @@ public class ClientServiceImpl implements ClientService {
     @Override
     @Transactional(readOnly = true)
     public Optional<Client> findByEgn(String egn) {
-        return clientRepository.findByEgn(egn);
+        String normalized = Client.normalizeEgn(egn);
+        return normalized != null ? clientRepository.findFirstByEgnOrderById(normalized) : Optional.empty();
     }
     
     @Override
@@ -0,0 +1,254 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.service.ExcelStructureException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader for .csv files with the same contract as XlsxRowReader (header first, then one row at a time).
+ * The file is read through a FileChannel into a fixed buffer and decoded as UTF-8 (a BOM is skipped), so memory
+ * does not depend on the file size. The delimiter (";", "," or tab) is taken from the header line - Excel with
+ * Bulgarian regional settings writes ";" because "," is the decimal separator.
+ * Quoted fields may contain delimiters, doubled quotes ("") and line breaks (RFC 4180).
+ */
+public final class CsvRowReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char BOM = '\uFEFF';
+    private static final char[] DELIMITERS = {';', ',', '\t'};
+
+    private CsvRowReader() {
+    }
+
+    /**
+     * Parse the file. The header must have at least minHeaderColumns non-empty fields (0 = no check).
+     * Empty lines are still delivered - XlsxRow.isEmpty() tells them apart.
+     */
+    public static void read(Path csv, int minHeaderColumns, XlsxRowReader.RowHandler handler) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        Parser parser = new Parser(minHeaderColumns, handler);
+
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(bytes) < 0;
+                bytes.flip();
+                CoderResult result;
+                do {
+                    // Decode as much as fits, hand the chars to the parser and continue with the rest
+                    result = decoder.decode(bytes, chars, eof);
+                    drain(chars, parser);
+                } while (result.isOverflow());
+                bytes.compact();
+            }
+            while (decoder.flush(chars).isOverflow()) {
+                drain(chars, parser);
+            }
+            drain(chars, parser);
+        }
+        parser.finish();
+        handler.end();
+    }
+
+    private static void drain(CharBuffer chars, Parser parser) {
+        chars.flip();
+        while (chars.hasRemaining()) {
+            parser.accept(chars.get());
+        }
+        chars.clear();
+    }
+
+    /**
+     * Character-level state machine; the header line is buffered first to pick the delimiter
+     */
+    private static final class Parser {
+
+        private final int minHeaderColumns;
+        private final XlsxRowReader.RowHandler handler;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        // Raw header line until its end is seen (null afterwards)
+        private StringBuilder headerLine = new StringBuilder();
+        private boolean headerQuoted;
+        private char delimiter;
+        private boolean inQuotes;
+        // Quote seen inside a quoted field - either the closing quote or the first half of ""
+        private boolean quoteInQuoted;
+        private boolean afterCarriageReturn;
+        private boolean firstChar = true;
+        private boolean recordStarted;
+        private int rowNum;
+
+        Parser(int minHeaderColumns, XlsxRowReader.RowHandler handler) {
+            this.minHeaderColumns = minHeaderColumns;
+            this.handler = handler;
+        }
+
+        void accept(char c) {
+            if (firstChar) {
+                firstChar = false;
+                if (c == BOM) {
+                    return;
+                }
+            }
+            if (headerLine != null) {
+                bufferHeader(c);
+                return;
+            }
+            parse(c);
+        }
+
+        private void bufferHeader(char c) {
+            if (c == '"') {
+                headerQuoted = !headerQuoted;
+            } else if ((c == '\n' || c == '\r') && !headerQuoted) {
+                delimiter = detectDelimiter(headerLine);
+                String line = headerLine.toString();
+                headerLine = null;
+                for (int i = 0; i < line.length(); i++) {
+                    parse(line.charAt(i));
+                }
+                parse(c);
+                return;
+            }
+            headerLine.append(c);
+        }
+
+        private void parse(char c) {
+            // "\r\n" ends one record, not two
+            if (afterCarriageReturn) {
+                afterCarriageReturn = false;
+                if (c == '\n') {
+                    return;
+                }
+            }
+            if (inQuotes) {
+                if (quoteInQuoted) {
+                    quoteInQuoted = false;
+                    if (c == '"') {
+                        field.append('"');
+                        return;
+                    }
+                    inQuotes = false;
+                    // Fall through - c follows the closing quote
+                } else if (c == '"') {
+                    quoteInQuoted = true;
+                    return;
+                } else {
+                    field.append(c);
+                    return;
+                }
+            }
+            if (c == delimiter) {
+                endField();
+            } else if (c == '\n' || c == '\r') {
+                afterCarriageReturn = c == '\r';
+                endRecord();
+            } else if (c == '"' && field.length() == 0) {
+                inQuotes = true;
+                recordStarted = true;
+            } else {
+                field.append(c);
+                recordStarted = true;
+            }
+        }
+
+        private void endField() {
+            fields.add(field.toString());
+            field.setLength(0);
+            recordStarted = true;
+        }
+
+        private void endRecord() {
+            fields.add(field.toString());
+            field.setLength(0);
+            // Empty fields read as missing cells, trailing ones are dropped like in a sheet row
+            int width = 0;
+            String[] cells = new String[fields.size()];
+            for (int i = 0; i < cells.length; i++) {
+                String value = fields.get(i);
+                if (!value.isEmpty()) {
+                    cells[i] = value;
+                    width = i + 1;
+                }
+            }
+            fields.clear();
+            recordStarted = false;
+            XlsxRowReader.XlsxRow row = new XlsxRowReader.XlsxRow(rowNum, Arrays.copyOf(cells, width));
+            if (rowNum++ == 0) {
+                XlsxRowReader.checkHeader(row, minHeaderColumns);
+                handler.header(row);
+                return;
+            }
+            handler.row(row);
+        }
+
+        /**
+         * End of input - a last line without a line break is still a record
+         */
+        void finish() {
+            if (headerLine != null) {
+                if (headerLine.length() == 0) {
+                    if (minHeaderColumns > 0) {
+                        throw new ExcelStructureException("Липсва заглавен ред");
+                    }
+                    return;
+                }
+                // Header only, no line break after it
+                bufferHeader('\n');
+                return;
+            }
+            // An unterminated quoted field runs to the end of the file (as Excel reads it)
+            if (recordStarted || field.length() > 0 || !fields.isEmpty()) {
+                inQuotes = false;
+                quoteInQuoted = false;
+                endRecord();
+            }
+        }
+
+        /**
+         * Delimiter that occurs most often outside quotes in the header line (";" when there is none)
+         */
+        private static char detectDelimiter(CharSequence line) {
+            int[] counts = new int[DELIMITERS.length];
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                    continue;
+                }
+                if (!quoted) {
+                    for (int d = 0; d < DELIMITERS.length; d++) {
+                        if (c == DELIMITERS[d]) {
+                            counts[d]++;
+                        }
+                    }
+                }
+            }
+            int best = 0;
+            for (int d = 1; d < DELIMITERS.length; d++) {
+                if (counts[d] > counts[best]) {
+                    best = d;
+                }
+            }
+            return DELIMITERS[best];
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Streaming CSV writer in the format Excel opens directly with Bulgarian regional settings:
+ * UTF-8 with BOM, ";" delimiter, "," decimal separator, dates as dd.MM.yyyy, CRLF line ends.
+ * Rows go through a fixed buffer to the output stream - nothing is collected in memory.
+ * The output is read back by CsvRowReader.
+ */
+final class CsvWriter {
+
+    private static final char DELIMITER = ';';
+    private static final int BUFFER_SIZE = 64 * 1024;
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final Writer writer;
+    private boolean firstField = true;
+
+    CsvWriter(OutputStream outputStream) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        // The BOM makes Excel read the file as UTF-8 (Cyrillic) instead of the ANSI code page
+        writer.write('\uFEFF');
+    }
+
+    CsvWriter row(String... values) throws IOException {
+        for (String value : values) {
+            text(value);
+        }
+        return endRow();
+    }
+
+    CsvWriter text(String value) throws IOException {
+        separate();
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        if (needsQuotes(value)) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+        return this;
+    }
+
+    CsvWriter number(BigDecimal value) throws IOException {
+        separate();
+        if (value != null) {
+            writer.write(value.toPlainString().replace('.', ','));
+        }
+        return this;
+    }
+
+    CsvWriter number(Long value) throws IOException {
+        separate();
+        if (value != null) {
+            writer.write(Long.toString(value));
+        }
+        return this;
+    }
+
+    CsvWriter date(LocalDate value) throws IOException {
+        separate();
+        if (value != null) {
+            writer.write(DATE_FORMAT.format(value));
+        }
+        return this;
+    }
+
+    CsvWriter endRow() throws IOException {
+        writer.write("\r\n");
+        firstField = true;
+        return this;
+    }
+
+    /**
+     * Flush the buffer; the underlying stream stays open (it belongs to the caller)
+     */
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void separate() throws IOException {
+        if (!firstField) {
+            writer.write(DELIMITER);
+        }
+        firstField = false;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == DELIMITER || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
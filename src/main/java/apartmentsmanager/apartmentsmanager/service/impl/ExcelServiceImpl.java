@@ -1,50 +1,154 @@
 package apartmentsmanager.apartmentsmanager.service.impl;
 
+import apartmentsmanager.apartmentsmanager.dto.ApartmentExportRow;
+import apartmentsmanager.apartmentsmanager.dto.BuildingExportRow;
+import apartmentsmanager.apartmentsmanager.dto.ClientExportRow;
+import apartmentsmanager.apartmentsmanager.dto.PaymentExportRow;
 import apartmentsmanager.apartmentsmanager.entity.Apartment;
 import apartmentsmanager.apartmentsmanager.entity.Building;
 import apartmentsmanager.apartmentsmanager.entity.Client;
-import apartmentsmanager.apartmentsmanager.service.ApartmentService;
+import apartmentsmanager.apartmentsmanager.entity.Payment;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.repository.ClientRepository;
+import apartmentsmanager.apartmentsmanager.repository.PaymentRepository;
+import apartmentsmanager.apartmentsmanager.service.ApartmentImportService;
 import apartmentsmanager.apartmentsmanager.service.BuildingService;
-import apartmentsmanager.apartmentsmanager.service.ClientService;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.CashFlowService;
+import apartmentsmanager.apartmentsmanager.service.ClientImportService;
 import apartmentsmanager.apartmentsmanager.service.ExcelService;
+import apartmentsmanager.apartmentsmanager.service.ExcelStructureException;
+import apartmentsmanager.apartmentsmanager.service.ImportProgress;
+import apartmentsmanager.apartmentsmanager.service.OverdueScanService;
+import apartmentsmanager.apartmentsmanager.service.PaymentImportService;
+import apartmentsmanager.apartmentsmanager.service.PaymentTotalsService;
+import apartmentsmanager.apartmentsmanager.service.ReceivableInstallmentService;
+import apartmentsmanager.apartmentsmanager.service.WorkbookImportService;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
 
 @Service
 public class ExcelServiceImpl implements ExcelService {
     
-    private final ApartmentService apartmentService;
+    private static final Logger logger = LoggerFactory.getLogger(ExcelServiceImpl.class);
+    
+    private static final int EXPORT_ROW_WINDOW = 200;
+    private static final int EXPORT_WIDTH_SAMPLE = 500;
+    private static final int EXPORT_MAX_COLUMN_CHARS = 60;
+    // Apartments/clients/payments templates have at least this many header columns
+    private static final int MIN_HEADER_COLUMNS = 3;
+    
+    private static final String[] APARTMENT_HEADERS = {
+        "ID", "Сграда", "Апартамент", "Площ (кв.м)", "Цена/кв.м (€)",
+        "Обща цена (€)", "Етап", "Клиент", "Платено (€)", "Остатък (€)", "Бележки"
+    };
+    private static final String[] BUILDING_HEADERS = {"Име", "Адрес", "Статус", "Етап", "Бележки"};
+    private static final String[] CLIENT_HEADERS = {"Име", "Телефон", "Email", "Адрес", "Бележки", "ЕГН/ЕИК"};
+    private static final String[] PAYMENT_HEADERS = {
+        "ID", "Сграда", "Апартамент", "Дата", "Сума (€)", "Етап", "Метод", "Фактура", "Капаро", "Бележки"
+    };
+    // Date cells of .xlsx files come formatted by their cell format (built-in date format = M/d/yy)
+    private static final List<DateTimeFormatter> IMPORT_DATE_FORMATS = List.of(
+        DateTimeFormatter.ofPattern("d.M.yyyy"),
+        DateTimeFormatter.ISO_LOCAL_DATE,
+        DateTimeFormatter.ofPattern("M/d/yy"),
+        DateTimeFormatter.ofPattern("M/d/yyyy"),
+        DateTimeFormatter.ofPattern("d.M.yy")
+    );
+    
     private final BuildingService buildingService;
-    private final ClientService clientService;
+    private final ClientImportService clientImportService;
+    private final PaymentImportService paymentImportService;
+    private final PaymentTotalsService paymentTotalsService;
+    private final ReceivableInstallmentService receivableInstallmentService;
+    private final CashFlowService cashFlowService;
+    private final BuildingStatsService buildingStatsService;
+    private final OverdueScanService overdueScanService;
+    private final ApartmentRepository apartmentRepository;
+    private final BuildingRepository buildingRepository;
+    private final ClientRepository clientRepository;
+    private final PaymentRepository paymentRepository;
+    private final ApartmentImportService apartmentImportService;
+    private final WorkbookImportService workbookImportService;
+    private final TransactionTemplate transactionTemplate;
+    private final int pipelineQueueCapacity;
     
     @Autowired
-    public ExcelServiceImpl(ApartmentService apartmentService, 
-                           BuildingService buildingService,
-                           ClientService clientService) {
-        this.apartmentService = apartmentService;
+    public ExcelServiceImpl(BuildingService buildingService,
+                           ClientImportService clientImportService,
+                           PaymentImportService paymentImportService,
+                           PaymentTotalsService paymentTotalsService,
+                           ReceivableInstallmentService receivableInstallmentService,
+                           CashFlowService cashFlowService,
+                           BuildingStatsService buildingStatsService,
+                           OverdueScanService overdueScanService,
+                           ApartmentRepository apartmentRepository,
+                           BuildingRepository buildingRepository,
+                           ClientRepository clientRepository,
+                           PaymentRepository paymentRepository,
+                           ApartmentImportService apartmentImportService,
+                           WorkbookImportService workbookImportService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.import.pipeline.queue-capacity:1000}") int pipelineQueueCapacity) {
         this.buildingService = buildingService;
-        this.clientService = clientService;
+        this.clientImportService = clientImportService;
+        this.paymentImportService = paymentImportService;
+        this.paymentTotalsService = paymentTotalsService;
+        this.receivableInstallmentService = receivableInstallmentService;
+        this.cashFlowService = cashFlowService;
+        this.buildingStatsService = buildingStatsService;
+        this.overdueScanService = overdueScanService;
+        this.apartmentRepository = apartmentRepository;
+        this.buildingRepository = buildingRepository;
+        this.clientRepository = clientRepository;
+        this.paymentRepository = paymentRepository;
+        this.apartmentImportService = apartmentImportService;
+        this.workbookImportService = workbookImportService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pipelineQueueCapacity = pipelineQueueCapacity;
     }
     
     @Override
-    public byte[] exportApartmentsToExcel(List<Apartment> apartments) {
-        try (Workbook workbook = new XSSFWorkbook()) {
+    @Transactional(readOnly = true)
+    public void exportSoldApartmentsToExcel(OutputStream outputStream) {
+        // Only EXPORT_ROW_WINDOW rows are kept in memory, older rows are flushed to a compressed temp file
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try (Stream<ApartmentExportRow> rows = apartmentRepository.streamSoldApartmentsForExport()) {
             Sheet sheet = workbook.createSheet("Апартаменти");
             
             // Create header row
             Row headerRow = sheet.createRow(0);
-            String[] headers = {
-                "ID", "Сграда", "Апартамент", "Площ (кв.м)", "Цена/кв.м (€)", 
-                "Обща цена (€)", "Етап", "Клиент", "Платено (€)", "Остатък (€)", "Бележки"
-            };
+            String[] headers = APARTMENT_HEADERS;
             
             CellStyle headerStyle = workbook.createCellStyle();
             Font headerFont = workbook.createFont();
@@ -53,16 +157,21 @@ public class ExcelServiceImpl implements ExcelService {
             headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
             headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
             
+            // Column widths (in characters) measured on the header and the first EXPORT_WIDTH_SAMPLE rows
+            int[] widths = new int[headers.length];
             for (int i = 0; i < headers.length; i++) {
                 Cell cell = headerRow.createCell(i);
                 cell.setCellValue(headers[i]);
                 cell.setCellStyle(headerStyle);
+                widths[i] = headers[i].length();
             }
             
             // Create data rows
             int rowNum = 1;
-            for (Apartment apt : apartments) {
-                Row row = sheet.createRow(rowNum++);
+            Iterator<ApartmentExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                ApartmentExportRow apt = iterator.next();
+                Row row = sheet.createRow(rowNum);
                 
                 row.createCell(0).setCellValue(apt.getId() != null ? apt.getId() : 0);
                 row.createCell(1).setCellValue(apt.getBuildingName() != null ? apt.getBuildingName() : "");
@@ -71,24 +180,132 @@ public class ExcelServiceImpl implements ExcelService {
                 row.createCell(4).setCellValue(apt.getPricePerM2() != null ? apt.getPricePerM2().doubleValue() : 0);
                 row.createCell(5).setCellValue(apt.getTotalPrice() != null ? apt.getTotalPrice().doubleValue() : 0);
                 row.createCell(6).setCellValue(apt.getStage() != null ? apt.getStage() : "");
-                row.createCell(7).setCellValue(apt.getClient() != null && apt.getClient().getName() != null ? apt.getClient().getName() : "");
+                row.createCell(7).setCellValue(apt.getClientName() != null ? apt.getClientName() : "");
                 row.createCell(8).setCellValue(apt.getTotalPaid() != null ? apt.getTotalPaid().doubleValue() : 0);
-                row.createCell(9).setCellValue(apt.getRemainingPayment() != null ? apt.getRemainingPayment().doubleValue() : 0);
+                row.createCell(9).setCellValue(apt.getRemainingPayment().doubleValue());
                 row.createCell(10).setCellValue(apt.getNotes() != null ? apt.getNotes() : "");
+                
+                if (rowNum <= EXPORT_WIDTH_SAMPLE) {
+                    for (Cell cell : row) {
+                        int length = cell.getCellType() == CellType.NUMERIC
+                            ? String.valueOf(cell.getNumericCellValue()).length()
+                            : cell.getStringCellValue().length();
+                        widths[cell.getColumnIndex()] = Math.max(widths[cell.getColumnIndex()], length);
+                    }
+                }
+                rowNum++;
             }
             
-            // Auto-size columns
             for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
+                sheet.setColumnWidth(i, Math.min(widths[i] + 2, EXPORT_MAX_COLUMN_CHARS) * 256);
             }
             
-            // Write to byte array
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             workbook.write(outputStream);
-            return outputStream.toByteArray();
-            
+            outputStream.flush();
         } catch (Exception e) {
             throw new RuntimeException("Грешка при експорт на Excel: " + e.getMessage(), e);
+        } finally {
+            workbook.dispose(); // Delete the temp files
+            try {
+                workbook.close();
+            } catch (IOException ignored) {
+                // Nothing left to release
+            }
+        }
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public void exportToCsv(String type, OutputStream outputStream) {
+        try {
+            CsvWriter csv = new CsvWriter(outputStream);
+            switch (type != null ? type.toLowerCase() : "apartments") {
+                case "buildings":
+                    writeBuildingsCsv(csv);
+                    break;
+                case "clients":
+                    writeClientsCsv(csv);
+                    break;
+                case "payments":
+                    writePaymentsCsv(csv);
+                    break;
+                case "apartments":
+                    writeApartmentsCsv(csv);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неподдържан тип за експорт: " + type);
+            }
+            csv.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Грешка при експорт на CSV: " + e.getMessage(), e);
+        }
+    }
+    
+    private void writeApartmentsCsv(CsvWriter csv) throws IOException {
+        // Same rows and columns as the Excel export
+        csv.row(APARTMENT_HEADERS);
+        try (Stream<ApartmentExportRow> rows = apartmentRepository.streamSoldApartmentsForExport()) {
+            Iterator<ApartmentExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                ApartmentExportRow apt = iterator.next();
+                csv.number(apt.getId())
+                    .text(apt.getBuildingName())
+                    .text(apt.getApartmentNumber())
+                    .number(apt.getArea())
+                    .number(apt.getPricePerM2())
+                    .number(apt.getTotalPrice())
+                    .text(apt.getStage())
+                    .text(apt.getClientName())
+                    .number(apt.getTotalPaid())
+                    .number(apt.getRemainingPayment())
+                    .text(apt.getNotes())
+                    .endRow();
+            }
+        }
+    }
+    
+    private void writeBuildingsCsv(CsvWriter csv) throws IOException {
+        csv.row(BUILDING_HEADERS);
+        try (Stream<BuildingExportRow> rows = buildingRepository.streamAllForExport()) {
+            Iterator<BuildingExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                BuildingExportRow building = iterator.next();
+                csv.row(building.getName(), building.getAddress(), building.getStatus(),
+                    building.getStage(), building.getNotes());
+            }
+        }
+    }
+    
+    private void writeClientsCsv(CsvWriter csv) throws IOException {
+        csv.row(CLIENT_HEADERS);
+        try (Stream<ClientExportRow> rows = clientRepository.streamAllForExport()) {
+            Iterator<ClientExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                ClientExportRow client = iterator.next();
+                csv.row(client.getName(), client.getPhone(), client.getEmail(),
+                    client.getAddress(), client.getNotes(), client.getEgn());
+            }
+        }
+    }
+    
+    private void writePaymentsCsv(CsvWriter csv) throws IOException {
+        csv.row(PAYMENT_HEADERS);
+        try (Stream<PaymentExportRow> rows = paymentRepository.streamAllForExport()) {
+            Iterator<PaymentExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                PaymentExportRow payment = iterator.next();
+                csv.number(payment.getId())
+                    .text(payment.getBuildingName())
+                    .text(payment.getApartmentNumber())
+                    .date(payment.getPaymentDate())
+                    .number(payment.getAmount())
+                    .text(payment.getPaymentStage())
+                    .text(payment.getPaymentMethod())
+                    .text(payment.getInvoiceNumber())
+                    .text(Boolean.TRUE.equals(payment.getIsDeposit()) ? "Да" : "Не")
+                    .text(payment.getNotes())
+                    .endRow();
+            }
         }
     }
     
@@ -99,461 +316,530 @@ public class ExcelServiceImpl implements ExcelService {
 
     @Override
     public Map<String, Object> importApartmentsFromExcelForBuilding(MultipartFile file, Long buildingId) {
-        Map<String, Object> result = new HashMap<>();
-        List<String> errors = new ArrayList<>();
-        int imported = 0;
-        int skipped = 0;
-        Building currentBuilding = null;
-        if (buildingId != null) {
-            currentBuilding = buildingService.getBuildingById(buildingId).orElse(null);
+        ImportProgress progress = new ImportProgress();
+        withSpooledUpload(file, progress, path -> importApartments(path, buildingId, progress));
+        return progress.toResult();
+    }
+    
+    @Override
+    public Map<String, Object> importFile(String importType, Path file, Long buildingId, ImportProgress progress) {
+        switch (importType != null ? importType.toLowerCase() : "apartments") {
+            case "buildings":
+                importBuildings(file, progress);
+                break;
+            case "clients":
+                importClients(file, progress);
+                break;
+            case "payments":
+                importPayments(file, progress);
+                break;
+            case "workbook":
+                workbookImportService.importWorkbook(file, progress);
+                break;
+            case "apartments":
+            default:
+                importApartments(file, buildingId, progress);
+                break;
         }
+        return progress.toResult();
+    }
+    
+    private void importApartments(Path file, Long buildingId, ImportProgress progress) {
+        // Duplicate check, building lookup and inserts are set-based - see ApartmentImportService
+        ApartmentImportService.Session session = apartmentImportService.begin(buildingId, progress::skip);
         
-        try (InputStream inputStream = file.getInputStream();
-             Workbook workbook = new XSSFWorkbook(inputStream)) {
-            
-            Sheet sheet = workbook.getSheetAt(0);
-            Iterator<Row> rowIterator = sheet.iterator();
-            
-            // Skip header row
-            if (rowIterator.hasNext()) {
-                rowIterator.next();
-            }
-            
-            while (rowIterator.hasNext()) {
-                Row row = rowIterator.next();
-                
-                // Skip empty rows
-                if (row == null || row.getPhysicalNumberOfCells() == 0) {
-                    continue;
-                }
-                
+        runPipeline("apartments", file, MIN_HEADER_COLUMNS, progress,
+            row -> parseApartment(row, progress),
+            (apartment, line) -> {
                 try {
-                    Apartment apartment = new Apartment();
-                    
-                    // Read data from row (adjust column indices based on export format)
-                    if (currentBuilding != null) {
-                        apartment.setBuilding(currentBuilding);
-                        apartment.setBuildingName(currentBuilding.getName());
-                    } else if (row.getCell(1) != null) {
-                        apartment.setBuildingName(getCellValueAsString(row.getCell(1)));
-                    }
-                    if (row.getCell(2) != null) {
-                        apartment.setApartmentNumber(getCellValueAsString(row.getCell(2)));
-                    }
-                    
-                    // Read area (column 3) - required field
-                    BigDecimal area = null;
-                    if (row.getCell(3) != null) {
-                        double areaValue = getCellValueAsDouble(row.getCell(3));
-                        if (areaValue > 0) {
-                            area = BigDecimal.valueOf(areaValue);
-                        }
-                    }
-                    apartment.setArea(area);
-                    
-                    // Read pricePerM2 (column 4) - optional
-                    BigDecimal pricePerM2 = null;
-                    if (row.getCell(4) != null) {
-                        double priceValue = getCellValueAsDouble(row.getCell(4));
-                        if (priceValue > 0) {
-                            pricePerM2 = BigDecimal.valueOf(priceValue);
-                        }
-                    }
-                    apartment.setPricePerM2(pricePerM2);
-                    
-                    if (row.getCell(6) != null) {
-                        apartment.setStage(getCellValueAsString(row.getCell(6)));
-                    }
-                    if (row.getCell(10) != null) {
-                        apartment.setNotes(getCellValueAsString(row.getCell(10)));
-                    }
-                    
-                    apartment.setIsSold(true);
-                    
-                    // Validate required fields
-                    if ((apartment.getBuildingName() == null || apartment.getBuildingName().trim().isEmpty()) ||
-                        apartment.getApartmentNumber() == null || apartment.getApartmentNumber().trim().isEmpty()) {
-                        skipped++;
-                        errors.add("Ред " + (row.getRowNum() + 1) + ": Липсват задължителни полета");
-                        continue;
-                    }
-                    
-                    // Validate area
-                    if (apartment.getArea() == null || apartment.getArea().compareTo(BigDecimal.valueOf(0.01)) < 0) {
-                        skipped++;
-                        errors.add("Ред " + (row.getRowNum() + 1) + ": Площта трябва да е по-голяма от 0");
-                        continue;
-                    }
-                    
-                    // Resolve building if not provided
-                    if (apartment.getBuilding() == null) {
-                        Building foundBuilding = buildingService.getBuildingByName(apartment.getBuildingName()).orElse(null);
-                        if (foundBuilding == null) {
-                            // Create building if missing
-                            Building newBuilding = new Building();
-                            newBuilding.setName(apartment.getBuildingName());
-                            newBuilding.setStatus("активна");
-                            foundBuilding = buildingService.saveBuilding(newBuilding);
-                        }
-                        apartment.setBuilding(foundBuilding);
-                        apartment.setBuildingName(foundBuilding.getName());
-                    }
-
-                    // Check for duplicates
-                    if (apartmentService.apartmentExists(apartment.getBuildingName(),
-                                                        apartment.getApartmentNumber(), null)) {
-                        skipped++;
-                        errors.add("Ред " + (row.getRowNum() + 1) + ": Апартамент вече съществува");
-                        continue;
-                    }
-                    
-                    // Save apartment
-                    apartmentService.saveApartment(apartment);
-                    imported++;
-                    
+                    session.add(line, apartment);
                 } catch (Exception e) {
-                    skipped++;
-                    String errorMessage = e.getMessage();
-                    // Extract validation error message if it's a constraint violation
-                    if (errorMessage != null && errorMessage.contains("ConstraintViolationImpl")) {
-                        if (errorMessage.contains("area")) {
-                            errors.add("Ред " + (row.getRowNum() + 1) + ": Площта трябва да е по-голяма от 0");
-                        } else {
-                            errors.add("Ред " + (row.getRowNum() + 1) + ": " + errorMessage);
-                        }
-                    } else {
-                        errors.add("Ред " + (row.getRowNum() + 1) + ": " + errorMessage);
-                    }
+                    progress.skip(line, e.getMessage());
                 }
-            }
-            
-        } catch (Exception e) {
-            errors.add("Грешка при четене на файла: " + e.getMessage());
-        }
-        
-        result.put("imported", imported);
-        result.put("skipped", skipped);
-        result.put("errors", errors);
-        
-        return result;
+            },
+            // Rows accepted before a cancellation are still written
+            () -> progress.addImported(session.finish()));
     }
     
-    @Override
-    public boolean validateExcelStructure(InputStream inputStream) {
-        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
-            Sheet sheet = workbook.getSheetAt(0);
+    /**
+     * Validate stage of the apartment import - null when the row is empty or rejected
+     */
+    private Apartment parseApartment(XlsxRowReader.XlsxRow row, ImportProgress progress) {
+        // Skip empty rows
+        if (row.isEmpty()) {
+            return null;
+        }
+        
+        int line = row.getRowNum() + 1;
+        try {
+            Apartment apartment = new Apartment();
             
-            if (sheet == null || sheet.getPhysicalNumberOfRows() == 0) {
-                return false;
+            // Read data from row (column indices follow the export format);
+            // the building name is ignored when importing into a specific building
+            if (row.has(1)) {
+                apartment.setBuildingName(row.getString(1));
             }
+            if (row.has(2)) {
+                apartment.setApartmentNumber(row.getString(2));
+            }
+            
+            // Read area (column 3) - required field
+            double areaValue = row.getDouble(3);
+            apartment.setArea(areaValue > 0 ? BigDecimal.valueOf(areaValue) : null);
             
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null) {
-                return false;
+            // Read pricePerM2 (column 4) - optional
+            double priceValue = row.getDouble(4);
+            apartment.setPricePerM2(priceValue > 0 ? BigDecimal.valueOf(priceValue) : null);
+            
+            if (row.has(6)) {
+                apartment.setStage(row.getString(6));
+            }
+            if (row.has(10)) {
+                apartment.setNotes(row.getString(10));
             }
             
-            // Check if required columns exist (at least some basic validation)
-            int cellCount = headerRow.getPhysicalNumberOfCells();
-            return cellCount >= 3; // At least 3 columns expected
+            apartment.setIsSold(true);
             
-        } catch (Exception e) {
-            return false;
-        }
-    }
-    
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
-        }
-        
-        try {
-            switch (cell.getCellType()) {
-                case STRING:
-                    return cell.getStringCellValue().trim();
-                case NUMERIC:
-                    if (DateUtil.isCellDateFormatted(cell)) {
-                        return cell.getDateCellValue().toString();
-                    } else {
-                        // Check if it's a whole number or decimal
-                        double numericValue = cell.getNumericCellValue();
-                        if (numericValue == (long) numericValue) {
-                            return String.valueOf((long) numericValue);
-                        } else {
-                            return String.valueOf(numericValue);
-                        }
-                    }
-                case BOOLEAN:
-                    return String.valueOf(cell.getBooleanCellValue());
-                case FORMULA:
-                    // Try to get the formula result
-                    try {
-                        switch (cell.getCachedFormulaResultType()) {
-                            case STRING:
-                                return cell.getStringCellValue().trim();
-                            case NUMERIC:
-                                double formulaValue = cell.getNumericCellValue();
-                                if (formulaValue == (long) formulaValue) {
-                                    return String.valueOf((long) formulaValue);
-                                } else {
-                                    return String.valueOf(formulaValue);
-                                }
-                            default:
-                                return cell.getCellFormula();
-                        }
-                    } catch (Exception e) {
-                        return cell.getCellFormula();
-                    }
-                case BLANK:
-                    return "";
-                default:
-                    return "";
+            // Validate required fields (the building name is checked by the session)
+            if (apartment.getApartmentNumber() == null || apartment.getApartmentNumber().trim().isEmpty()) {
+                progress.skip(line, "Липсват задължителни полета");
+                return null;
             }
+            
+            // Validate area
+            if (apartment.getArea() == null || apartment.getArea().compareTo(BigDecimal.valueOf(0.01)) < 0) {
+                progress.skip(line, "Площта трябва да е по-голяма от 0");
+                return null;
+            }
+            
+            return apartment;
+            
         } catch (Exception e) {
-            System.err.println("Грешка при четене на клетка: " + e.getMessage());
-            return "";
+            progress.skip(line, e.getMessage());
+            return null;
         }
     }
     
-    private double getCellValueAsDouble(Cell cell) {
-        if (cell == null) {
-            return 0.0;
-        }
-        
-        switch (cell.getCellType()) {
-            case NUMERIC:
-                return cell.getNumericCellValue();
-            case STRING:
-                String strValue = cell.getStringCellValue().trim();
-                if (strValue.isEmpty()) {
-                    return 0.0;
-                }
-                try {
-                    // Handle comma as decimal separator (Bulgarian format)
-                    strValue = strValue.replace(',', '.');
-                    return Double.parseDouble(strValue);
-                } catch (NumberFormatException e) {
-                    return 0.0;
+    @Override
+    public boolean validateExcelStructure(InputStream inputStream) {
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("excel-validate-", ".xlsx");
+            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            // Only the header row is needed - stop the parse right after it
+            XlsxRowReader.read(tempFile, MIN_HEADER_COLUMNS, new XlsxRowReader.RowHandler() {
+                @Override
+                public void header(XlsxRowReader.XlsxRow header) {
+                    throw new HeaderRead();
                 }
-            case BLANK:
-                return 0.0;
-            case FORMULA:
-                try {
-                    switch (cell.getCachedFormulaResultType()) {
-                        case NUMERIC:
-                            return cell.getNumericCellValue();
-                        case STRING:
-                            String formulaStr = cell.getStringCellValue().trim();
-                            if (formulaStr.isEmpty()) {
-                                return 0.0;
-                            }
-                            formulaStr = formulaStr.replace(',', '.');
-                            return Double.parseDouble(formulaStr);
-                        default:
-                            return 0.0;
-                    }
-                } catch (Exception e) {
-                    return 0.0;
+                
+                @Override
+                public void row(XlsxRowReader.XlsxRow row) {
                 }
-            default:
-                return 0.0;
+            });
+            return false; // Empty sheet
+        } catch (HeaderRead e) {
+            return true;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            deleteQuietly(tempFile);
         }
     }
     
     @Override
     public Map<String, Object> importBuildingsFromExcel(MultipartFile file) {
-        Map<String, Object> result = new HashMap<>();
-        List<String> errors = new ArrayList<>();
-        int imported = 0;
-        int skipped = 0;
-        
-        try (InputStream inputStream = file.getInputStream();
-             Workbook workbook = new XSSFWorkbook(inputStream)) {
-            
-            Sheet sheet = workbook.getSheetAt(0);
-            Iterator<Row> rowIterator = sheet.iterator();
-            
-            // Skip header row
-            if (rowIterator.hasNext()) {
-                rowIterator.next();
-            }
-            
-            while (rowIterator.hasNext()) {
-                Row row = rowIterator.next();
-                
-                // Skip empty rows
-                if (row == null || row.getPhysicalNumberOfCells() == 0) {
-                    continue;
-                }
-                
+        ImportProgress progress = new ImportProgress();
+        withSpooledUpload(file, progress, path -> importBuildings(path, progress));
+        return progress.toResult();
+    }
+    
+    private void importBuildings(Path file, ImportProgress progress) {
+        // Buildings template is simpler - no header check
+        runPipeline("buildings", file, 0, progress,
+            ExcelServiceImpl::parseBuilding,
+            (building, line) -> {
                 try {
-                    Building building = new Building();
-                    
-                    // Expected columns: Име, Адрес, Статус, Етап, Бележки
-                    String name = "";
-                    if (row.getCell(0) != null) {
-                        name = getCellValueAsString(row.getCell(0)).trim();
-                        building.setName(name);
-                    }
-                    
-                    if (row.getCell(1) != null) {
-                        String address = getCellValueAsString(row.getCell(1)).trim();
-                        if (!address.isEmpty()) {
-                            building.setAddress(address);
-                        }
-                    }
-                    
-                    if (row.getCell(2) != null) {
-                        String status = getCellValueAsString(row.getCell(2)).trim();
-                        if (!status.isEmpty()) {
-                            building.setStatus(status);
-                        }
-                    }
-                    
-                    if (row.getCell(3) != null) {
-                        String stage = getCellValueAsString(row.getCell(3)).trim();
-                        if (!stage.isEmpty()) {
-                            building.setStage(stage);
-                        }
-                    }
-                    
-                    if (row.getCell(4) != null) {
-                        String notes = getCellValueAsString(row.getCell(4)).trim();
-                        if (!notes.isEmpty()) {
-                            building.setNotes(notes);
-                        }
-                    }
-                    
-                    // Skip rows with empty name (completely empty rows)
-                    if (name == null || name.isEmpty()) {
-                        continue; // Skip empty rows silently
-                    }
-                    
-                    // Validate required fields
-                    if (building.getName() == null || building.getName().isEmpty()) {
-                        skipped++;
-                        errors.add("Ред " + (row.getRowNum() + 1) + ": Липсва име на сградата");
-                        continue;
-                    }
-                    
                     // Check for duplicates
                     if (buildingService.buildingExists(building.getName())) {
-                        skipped++;
-                        errors.add("Ред " + (row.getRowNum() + 1) + ": Сграда '" + building.getName() + "' вече съществува");
-                        continue;
-                    }
-                    
-                    // Set default status if not provided
-                    if (building.getStatus() == null || building.getStatus().isEmpty()) {
-                        building.setStatus("активна");
+                        progress.skip(line, "Сграда '" + building.getName() + "' вече съществува");
+                        return;
                     }
                     
-                    // Initialize lists before saving
-                    building.setApartments(new java.util.ArrayList<>());
-                    building.setGarages(new java.util.ArrayList<>());
-                    building.setBasements(new java.util.ArrayList<>());
-                    building.setParkingSpaces(new java.util.ArrayList<>());
-                    building.setCommercialSpaces(new java.util.ArrayList<>());
-                    
                     // Save building
                     Building savedBuilding = buildingService.saveBuilding(building);
-                    imported++;
+                    progress.imported();
                     
-                    System.out.println("✓ Импортирана сграда: " + savedBuilding.getName() + " (ID: " + savedBuilding.getId() + ")");
+                    logger.debug("Imported building {} (id {})", savedBuilding.getName(), savedBuilding.getId());
                     
                 } catch (Exception e) {
-                    skipped++;
-                    String errorMsg = "Ред " + (row.getRowNum() + 1) + ": " + e.getMessage();
-                    errors.add(errorMsg);
-                    System.err.println("✗ Грешка при импорт на ред " + (row.getRowNum() + 1) + ": " + e.getMessage());
-                    e.printStackTrace();
+                    progress.skip(line, e.getMessage());
+                    logger.warn("Building import failed on line {}", line, e);
                 }
-            }
-            
-            System.out.println("=== Импорт на сгради завършен: " + imported + " импортирани, " + skipped + " пропуснати ===");
-            
-        } catch (Exception e) {
-            String errorMsg = "Грешка при четене на файла: " + e.getMessage();
-            errors.add(errorMsg);
-            System.err.println("✗ " + errorMsg);
-            e.printStackTrace();
+            },
+            () -> logger.info("Building import finished: {} imported, {} skipped", progress.getImported(), progress.getSkipped()));
+    }
+    
+    /**
+     * Validate stage of the building import (and the buildings sheet of a workbook) - null for empty rows
+     */
+    static Building parseBuilding(XlsxRowReader.XlsxRow row) {
+        // Skip empty rows
+        if (row.isEmpty()) {
+            return null;
+        }
+        
+        Building building = new Building();
+        
+        // Expected columns: Име, Адрес, Статус, Етап, Бележки
+        String name = row.getString(0);
+        // Skip rows with empty name (completely empty rows)
+        if (name.isEmpty()) {
+            return null; // Skip empty rows silently
         }
+        building.setName(name);
         
-        result.put("imported", imported);
-        result.put("skipped", skipped);
-        result.put("errors", errors);
+        String address = row.getString(1);
+        if (!address.isEmpty()) {
+            building.setAddress(address);
+        }
+        
+        String status = row.getString(2);
+        // Set default status if not provided
+        building.setStatus(!status.isEmpty() ? status : "активна");
         
-        System.out.println("Резултат от импорт: " + result);
+        String stage = row.getString(3);
+        if (!stage.isEmpty()) {
+            building.setStage(stage);
+        }
+        
+        String notes = row.getString(4);
+        if (!notes.isEmpty()) {
+            building.setNotes(notes);
+        }
         
-        return result;
+        // Initialize lists before saving
+        building.setApartments(new java.util.ArrayList<>());
+        building.setUnits(new java.util.ArrayList<>());
+        
+        return building;
     }
     
     @Override
     public Map<String, Object> importClientsFromExcel(MultipartFile file) {
-        Map<String, Object> result = new HashMap<>();
-        List<String> errors = new ArrayList<>();
-        int imported = 0;
-        int skipped = 0;
+        ImportProgress progress = new ImportProgress();
+        withSpooledUpload(file, progress, path -> importClients(path, progress));
+        return progress.toResult();
+    }
+    
+    private void importClients(Path file, ImportProgress progress) {
+        // Upsert - rows are matched in memory against existing clients (EGN/EIK, email, phone), see ClientImportService
+        ClientImportService.Session session = clientImportService.begin(progress::skip);
         
-        try (InputStream inputStream = file.getInputStream();
-             Workbook workbook = new XSSFWorkbook(inputStream)) {
-            
-            Sheet sheet = workbook.getSheetAt(0);
-            Iterator<Row> rowIterator = sheet.iterator();
-            
-            // Skip header row
-            if (rowIterator.hasNext()) {
-                rowIterator.next();
-            }
-            
-            while (rowIterator.hasNext()) {
-                Row row = rowIterator.next();
-                
+        runPipeline("clients", file, MIN_HEADER_COLUMNS, progress,
+            row -> parseClient(row, progress),
+            (client, line) -> {
                 try {
-                    Client client = new Client();
-                    
-                    // Expected columns: Име, Телефон, Email, Адрес, Бележки
-                    if (row.getCell(0) != null) {
-                        client.setName(getCellValueAsString(row.getCell(0)).trim());
-                    }
-                    if (row.getCell(1) != null) {
-                        client.setPhone(getCellValueAsString(row.getCell(1)));
-                    }
-                    if (row.getCell(2) != null) {
-                        client.setEmail(getCellValueAsString(row.getCell(2)));
-                    }
-                    if (row.getCell(3) != null) {
-                        client.setAddress(getCellValueAsString(row.getCell(3)));
-                    }
-                    if (row.getCell(4) != null) {
-                        client.setNotes(getCellValueAsString(row.getCell(4)));
+                    session.add(line, client);
+                } catch (Exception e) {
+                    progress.skip(line, e.getMessage());
+                }
+            },
+            // Rows accepted before a cancellation are still written
+            () -> {
+                ClientImportService.Result result = session.finish();
+                progress.addImported(result.inserted() + result.updated());
+                progress.addUpdated(result.updated());
+            });
+    }
+    
+    /**
+     * Validate stage of the client import (and the clients sheet of a workbook) - null when the row is rejected
+     */
+    static Client parseClient(XlsxRowReader.XlsxRow row, ImportProgress progress) {
+        int line = row.getRowNum() + 1;
+        Client client = new Client();
+        
+        // Expected columns: Име, Телефон, Email, Адрес, Бележки, ЕГН/ЕИК
+        if (row.has(0)) {
+            client.setName(row.getString(0));
+        }
+        if (row.has(1)) {
+            client.setPhone(row.getString(1));
+        }
+        if (row.has(2)) {
+            client.setEmail(row.getString(2));
+        }
+        if (row.has(3)) {
+            client.setAddress(row.getString(3));
+        }
+        if (row.has(4)) {
+            client.setNotes(row.getString(4));
+        }
+        if (row.has(5)) {
+            client.setEgn(row.getString(5));
+        }
+        
+        // Validate required fields
+        if (client.getName() == null || client.getName().isEmpty()) {
+            progress.skip(line, "Липсва име на клиента");
+            return null;
+        }
+        return client;
+    }
+    
+    @Override
+    public Map<String, Object> importPaymentsFromExcel(MultipartFile file) {
+        ImportProgress progress = new ImportProgress();
+        withSpooledUpload(file, progress, path -> importPayments(path, progress));
+        return progress.toResult();
+    }
+    
+    @Override
+    public Map<String, Object> importWorkbookFromExcel(MultipartFile file) {
+        ImportProgress progress = new ImportProgress();
+        withSpooledUpload(file, progress, path -> workbookImportService.importWorkbook(path, progress));
+        return progress.toResult();
+    }
+    
+    private void importPayments(Path file, ImportProgress progress) {
+        // Apartment ids by building + number - payments of one apartment usually come together
+        Map<String, Long> apartmentIds = new HashMap<>();
+        // Apartment id -> amount still to pay, reduced by every accepted row (the rows are not in the database yet)
+        Map<Long, BigDecimal> remaining = new HashMap<>();
+        // Inserts are batched - totals, statistics, cash flow and installments are refreshed once at the end
+        PaymentImportService.Session session = paymentImportService.begin(progress::skip);
+        AtomicInteger inserted = new AtomicInteger();
+        
+        runPipeline("payments", file, MIN_HEADER_COLUMNS, progress,
+            row -> parsePayment(row, progress),
+            (payment, line) -> {
+                try {
+                    String key = payment.buildingName() + "\n" + payment.apartmentNumber();
+                    Long apartmentId = apartmentIds.computeIfAbsent(key, k ->
+                        apartmentRepository.findIdsByBuildingNameAndApartmentNumber(
+                            payment.buildingName(), payment.apartmentNumber()).stream().findFirst().orElse(null));
+                    if (apartmentId == null) {
+                        progress.skip(line, "Апартамент " + payment.apartmentNumber() + " в сграда '"
+                            + payment.buildingName() + "' не е намерен");
+                        return;
                     }
                     
-                    // Validate required fields
-                    if (client.getName() == null || client.getName().isEmpty()) {
-                        skipped++;
-                        errors.add("Ред " + (row.getRowNum() + 1) + ": Липсва име на клиента");
-                        continue;
+                    // Same rule as payments entered in the UI, against the running total of this import
+                    BigDecimal amount = payment.payment().getAmount();
+                    BigDecimal left = remaining.computeIfAbsent(apartmentId, id ->
+                        apartmentRepository.findRemainingAmount(id).orElse(BigDecimal.ZERO));
+                    if (amount.compareTo(left) > 0) {
+                        progress.skip(line, "Сумата на плащането надвишава остатъка за плащане");
+                        return;
                     }
-                    
-                    // Save client
-                    clientService.saveClient(client);
-                    imported++;
-                    
+                    remaining.put(apartmentId, left.subtract(amount));
+                    session.add(line, apartmentId, payment.payment());
                 } catch (Exception e) {
-                    skipped++;
-                    errors.add("Ред " + (row.getRowNum() + 1) + ": " + e.getMessage());
+                    progress.skip(line, e.getMessage());
                 }
+            },
+            // Rows accepted before a cancellation are still written
+            () -> {
+                inserted.set(session.finish());
+                progress.addImported(inserted.get());
+            });
+        
+        if (inserted.get() > 0) {
+            refreshPaymentAggregates(remaining.keySet());
+        }
+        logger.info("Payment import finished: {} imported, {} skipped", progress.getImported(), progress.getSkipped());
+    }
+    
+    /**
+     * Refresh what the per-payment write path normally maintains, scoped to the apartments of the file
+     * and their buildings - the cost follows the file, not the portfolio
+     */
+    private void refreshPaymentAggregates(Set<Long> apartmentIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            paymentTotalsService.refreshApartments(apartmentIds);
+            for (Long apartmentId : apartmentIds) {
+                receivableInstallmentService.syncApartment(apartmentId);
             }
-            
-        } catch (Exception e) {
-            errors.add("Грешка при четене на файла: " + e.getMessage());
+            for (Long buildingId : apartmentRepository.findBuildingIdsByApartmentIds(apartmentIds)) {
+                buildingStatsService.rebuildBuilding(buildingId);
+                cashFlowService.rebuildBuilding(buildingId);
+                overdueScanService.refreshBuilding(buildingId);
+            }
+        });
+    }
+    
+    /**
+     * Validate stage of the payment import (and the payments sheet of a workbook) - null when the row is empty or rejected
+     */
+    static PaymentImportRow parsePayment(XlsxRowReader.XlsxRow row, ImportProgress progress) {
+        // Skip empty rows
+        if (row.isEmpty()) {
+            return null;
         }
         
-        result.put("imported", imported);
-        result.put("skipped", skipped);
-        result.put("errors", errors);
+        int line = row.getRowNum() + 1;
+        // Expected columns: ID, Сграда, Апартамент, Дата, Сума, Етап, Метод, Фактура, Капаро, Бележки
+        String buildingName = row.getString(1);
+        String apartmentNumber = row.getString(2);
+        if (buildingName.isEmpty() || apartmentNumber.isEmpty()) {
+            progress.skip(line, "Липсват задължителни полета");
+            return null;
+        }
+        
+        LocalDate paymentDate = parseDate(row.getString(3));
+        if (paymentDate == null) {
+            progress.skip(line, "Невалидна дата на плащане: '" + row.getString(3) + "'");
+            return null;
+        }
+        
+        double amount = row.getDouble(4);
+        if (amount < 0.01) {
+            progress.skip(line, "Сумата трябва да е по-голяма от 0");
+            return null;
+        }
         
-        return result;
+        Payment payment = new Payment();
+        payment.setPaymentDate(paymentDate);
+        payment.setAmount(BigDecimal.valueOf(amount));
+        if (row.has(5)) {
+            payment.setPaymentStage(row.getString(5));
+        }
+        if (row.has(6)) {
+            payment.setPaymentMethod(row.getString(6));
+        }
+        if (row.has(7)) {
+            payment.setInvoiceNumber(row.getString(7));
+        }
+        String deposit = row.getString(8).toLowerCase();
+        payment.setIsDeposit(deposit.equals("да") || deposit.equals("true") || deposit.equals("1"));
+        if (row.has(9)) {
+            payment.setNotes(row.getString(9));
+        }
+        return new PaymentImportRow(buildingName, apartmentNumber, payment);
+    }
+    
+    /**
+     * Date in one of the accepted formats (dd.MM.yyyy as written by the CSV export), null if unreadable
+     */
+    static LocalDate parseDate(String value) {
+        // "15.01.2024 г." - the year suffix is optional
+        String date = value.replace("г.", "").trim();
+        if (date.isEmpty()) {
+            return null;
+        }
+        for (DateTimeFormatter format : IMPORT_DATE_FORMATS) {
+            try {
+                return LocalDate.parse(date, format);
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Payment handed from the validate to the persist stage, the apartment is resolved when it is written
+     */
+    record PaymentImportRow(String buildingName, String apartmentNumber, Payment payment) {
+    }
+    
+    /**
+     * Run the parse -> validate -> persist pipeline over the first sheet; the stage metrics
+     * are attached to the progress so running jobs can report them
+     */
+    private <T> void runPipeline(String name, Path file, int minHeaderColumns, ImportProgress progress,
+                                 Function<XlsxRowReader.XlsxRow, T> validator, ObjIntConsumer<T> writer, Runnable onEnd) {
+        ImportPipeline<T> pipeline = new ImportPipeline<>(name, pipelineQueueCapacity, validator, writer, onEnd);
+        progress.setStages(pipeline.getStages());
+        try {
+            readFile(file, minHeaderColumns, progress, pipeline::submit);
+        } finally {
+            pipeline.close();
+        }
+    }
+    
+    /**
+     * Spool the upload to a temp file for the file-based importers (the .xlsx reader needs random access
+     * to the zip); the extension of the upload is kept so the right reader is picked
+     */
+    private void withSpooledUpload(MultipartFile file, ImportProgress progress, Consumer<Path> importer) {
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("excel-import-", isCsv(file.getOriginalFilename()) ? ".csv" : ".xlsx");
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            importer.accept(tempFile);
+        } catch (IOException e) {
+            progress.error("Грешка при четене на файла: " + e.getMessage());
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+    
+    /**
+     * Stream the first sheet (or the .csv file) row by row (single parse, bounded memory). A bad header
+     * is rethrown as ExcelStructureException, any other read failure is reported in the errors.
+     * A cancellation request stops the parse before the next row.
+     */
+    private void readFile(Path file, int minHeaderColumns, ImportProgress progress,
+                          XlsxRowReader.RowHandler rowHandler) {
+        XlsxRowReader.RowHandler counting = row -> {
+            if (progress.isCancelRequested()) {
+                throw new ImportCancelled();
+            }
+            progress.rowRead();
+            rowHandler.row(row);
+        };
+        try {
+            if (isCsv(file.getFileName().toString())) {
+                CsvRowReader.read(file, minHeaderColumns, counting);
+            } else {
+                XlsxRowReader.read(file, minHeaderColumns, counting);
+            }
+        } catch (ExcelStructureException e) {
+            throw e;
+        } catch (ImportCancelled e) {
+            logger.info("Import cancelled after {} rows", progress.getRowsRead());
+        } catch (Exception e) {
+            String errorMsg = "Грешка при четене на файла: " + e.getMessage();
+            progress.error(errorMsg);
+            logger.error("Import file could not be read", e);
+        }
+    }
+    
+    static boolean isCsv(String filename) {
+        return filename != null && filename.toLowerCase().endsWith(".csv");
+    }
+    
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary import file {}: {}", path, e.getMessage());
+        }
+    }
+    
+    /**
+     * Thrown by validateExcelStructure to stop parsing after the header row
+     */
+    private static final class HeaderRead extends RuntimeException {
+        HeaderRead() {
+            super(null, null, false, false);
+        }
+    }
+    
+    /**
+     * Thrown from the row callback to stop parsing when the import was cancelled
+     */
+    private static final class ImportCancelled extends RuntimeException {
+        ImportCancelled() {
+            super(null, null, false, false);
+        }
     }
     
     @Override
@@ -563,7 +849,7 @@ public class ExcelServiceImpl implements ExcelService {
             
             // Create header row
             Row headerRow = sheet.createRow(0);
-            String[] headers = {"Име", "Адрес", "Статус", "Етап", "Бележки"};
+            String[] headers = BUILDING_HEADERS;
             
             CellStyle headerStyle = workbook.createCellStyle();
             Font headerFont = workbook.createFont();
@@ -607,7 +893,7 @@ public class ExcelServiceImpl implements ExcelService {
             
             // Create header row
             Row headerRow = sheet.createRow(0);
-            String[] headers = {"Име", "Телефон", "Email", "Адрес", "Бележки"};
+            String[] headers = CLIENT_HEADERS;
             
             CellStyle headerStyle = workbook.createCellStyle();
             Font headerFont = workbook.createFont();
@@ -629,6 +915,7 @@ public class ExcelServiceImpl implements ExcelService {
             exampleRow.createCell(2).setCellValue("ivan@example.com");
             exampleRow.createCell(3).setCellValue("София, ул. Примерна 1");
             exampleRow.createCell(4).setCellValue("Примерни бележки");
+            exampleRow.createCell(5).setCellValue("8501011234");
             
             // Auto-size columns
             for (int i = 0; i < headers.length; i++) {
@@ -646,10 +933,70 @@ public class ExcelServiceImpl implements ExcelService {
     
     @Override
     public byte[] generateApartmentsTemplate() {
-        // Use the same format as export
-        return exportApartmentsToExcel(List.of());
+        // Same columns as the export, header row only
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Апартаменти");
+            
+            Row headerRow = sheet.createRow(0);
+            
+            CellStyle headerStyle = workbook.createCellStyle();
+            Font headerFont = workbook.createFont();
+            headerFont.setBold(true);
+            headerStyle.setFont(headerFont);
+            headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+            headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            
+            for (int i = 0; i < APARTMENT_HEADERS.length; i++) {
+                Cell cell = headerRow.createCell(i);
+                cell.setCellValue(APARTMENT_HEADERS[i]);
+                cell.setCellStyle(headerStyle);
+                sheet.autoSizeColumn(i);
+            }
+            
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            workbook.write(outputStream);
+            return outputStream.toByteArray();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Грешка при генериране на шаблон за апартаменти: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public byte[] generateWorkbookTemplate() {
+        // One sheet per type in dependency order, header rows only
+        try (Workbook workbook = new XSSFWorkbook()) {
+            CellStyle headerStyle = workbook.createCellStyle();
+            Font headerFont = workbook.createFont();
+            headerFont.setBold(true);
+            headerStyle.setFont(headerFont);
+            headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+            headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            
+            createHeaderSheet(workbook, WorkbookImportServiceImpl.BUILDINGS_SHEET.get(0), BUILDING_HEADERS, headerStyle);
+            createHeaderSheet(workbook, WorkbookImportServiceImpl.CLIENTS_SHEET.get(0), CLIENT_HEADERS, headerStyle);
+            createHeaderSheet(workbook, WorkbookImportServiceImpl.APARTMENTS_SHEET.get(0),
+                WorkbookImportServiceImpl.APARTMENT_HEADERS, headerStyle);
+            createHeaderSheet(workbook, WorkbookImportServiceImpl.PAYMENTS_SHEET.get(0), PAYMENT_HEADERS, headerStyle);
+            
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            workbook.write(outputStream);
+            return outputStream.toByteArray();
+            
+        } catch (Exception e) {
+            throw new RuntimeException("Грешка при генериране на шаблон за работна книга: " + e.getMessage(), e);
+        }
+    }
+    
+    private static void createHeaderSheet(Workbook workbook, String name, String[] headers, CellStyle headerStyle) {
+        Sheet sheet = workbook.createSheet(name);
+        Row headerRow = sheet.createRow(0);
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(headerStyle);
+            sheet.autoSizeColumn(i);
+        }
     }
 }
 
-
-
@@ -0,0 +1,497 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.entity.ImportJob;
+import apartmentsmanager.apartmentsmanager.entity.ImportJobError;
+import apartmentsmanager.apartmentsmanager.repository.ImportJobErrorRepository;
+import apartmentsmanager.apartmentsmanager.repository.ImportJobRepository;
+import apartmentsmanager.apartmentsmanager.service.ExcelService;
+import apartmentsmanager.apartmentsmanager.service.ExcelStructureException;
+import apartmentsmanager.apartmentsmanager.service.ImportJobService;
+import apartmentsmanager.apartmentsmanager.service.ImportProgress;
+import apartmentsmanager.apartmentsmanager.service.ImportStageMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional
+public class ImportJobServiceImpl implements ImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobServiceImpl.class);
+
+    // Errors sent in one SSE event (the full list is available from the errors endpoint)
+    private static final int MAX_ERRORS_PER_EVENT = 500;
+    private static final long SSE_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+    private final ImportJobRepository jobRepository;
+    private final ImportJobErrorRepository errorRepository;
+    private final ExcelService excelService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path importDir;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService progressTicker;
+    // Jobs currently being imported by a worker
+    private final Map<Long, RunningJob> running = new ConcurrentHashMap<>();
+    private final Map<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ImportJobServiceImpl(ImportJobRepository jobRepository,
+                                ImportJobErrorRepository errorRepository,
+                                ExcelService excelService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.import.dir:uploads/imports}") String importDir,
+                                @Value("${app.import.jobs.threads:2}") int workerThreads,
+                                @Value("${app.import.jobs.queue-capacity:10}") int queueCapacity,
+                                @Value("${app.import.jobs.progress-interval-ms:1000}") long progressIntervalMillis) {
+        this.jobRepository = jobRepository;
+        this.errorRepository = errorRepository;
+        this.excelService = excelService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.importDir = Paths.get(importDir).toAbsolutePath().normalize();
+        // Bounded pool and queue - every worker holds pooled connections while importing
+        int threads = Math.max(1, workerThreads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                Thread thread = new Thread(runnable, "import-job-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        // One thread checkpoints the counters of running jobs and pushes them to the subscribers
+        this.progressTicker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "import-job-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100L, progressIntervalMillis);
+        this.progressTicker.scheduleWithFixedDelay(this::publishProgress, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        progressTicker.shutdownNow();
+        // Interrupted jobs stay RUNNING in the table and are closed by recoverJobs on the next start
+        workers.shutdownNow();
+    }
+
+    /**
+     * Jobs of a previous run: running ones were interrupted (their committed rows stay),
+     * queued ones still have their file on disk and are queued again
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(3)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void recoverJobs() {
+        for (ImportJob job : jobRepository.findByStatusOrderByIdAsc(ImportJob.STATUS_RUNNING)) {
+            finishJob(job.getId(), ImportJob.STATUS_FAILED,
+                "Импортът е прекъснат от рестарт на приложението (вече записаните редове са запазени)");
+            deleteFile(job);
+        }
+        for (ImportJob job : jobRepository.findByStatusOrderByIdAsc(ImportJob.STATUS_QUEUED)) {
+            try {
+                enqueue(job.getId());
+            } catch (IllegalStateException e) {
+                logger.warn("Import job {} could not be queued after restart: {}", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ImportJob submit(MultipartFile file, String importType, Long buildingId) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Файлът е празен");
+        }
+        String filename = file.getOriginalFilename();
+        String extension = filename != null && filename.toLowerCase().endsWith(".csv") ? ".csv" : ".xlsx";
+        if (filename == null || !filename.toLowerCase().endsWith(extension)) {
+            throw new IllegalArgumentException("Поддържат се само Excel (.xlsx) и CSV (.csv) файлове");
+        }
+        if ("workbook".equalsIgnoreCase(importType) && extension.equals(".csv")) {
+            throw new IllegalArgumentException("Работната книга трябва да е .xlsx файл (един лист за всеки тип данни)");
+        }
+
+        ImportJob job = new ImportJob();
+        job.setImportType(importType != null ? importType.toLowerCase() : "apartments");
+        job.setBuildingId(buildingId);
+        job.setOriginalFilename(filename);
+        job.setStatus(ImportJob.STATUS_QUEUED);
+        job.setCreatedAt(LocalDateTime.now());
+        // Committed before the worker can pick it up
+        ImportJob saved = transactionTemplate.execute(status -> jobRepository.save(job));
+
+        // The extension picks the reader when the job runs
+        Path target = importDir.resolve("import-" + saved.getId() + extension);
+        try {
+            Files.createDirectories(importDir);
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            finishJob(saved.getId(), ImportJob.STATUS_FAILED, "Грешка при запис на файла: " + e.getMessage());
+            throw new IllegalStateException("Грешка при запис на файла: " + e.getMessage(), e);
+        }
+        saved.setFilePath(target.toString());
+        ImportJob stored = transactionTemplate.execute(status -> jobRepository.save(saved));
+
+        enqueue(stored.getId());
+        return stored;
+    }
+
+    private void enqueue(Long jobId) {
+        try {
+            workers.execute(() -> runJob(jobId));
+        } catch (RejectedExecutionException e) {
+            String message = "Опашката за импорт е пълна, опитайте отново по-късно";
+            ImportJob job = finishJob(jobId, ImportJob.STATUS_FAILED, message);
+            if (job != null) {
+                deleteFile(job);
+            }
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private void runJob(Long jobId) {
+        // Registered before the status check so a concurrent cancel always reaches the progress
+        RunningJob runningJob = new RunningJob(jobId);
+        running.put(jobId, runningJob);
+        ImportJob job = transactionTemplate.execute(status -> {
+            ImportJob current = jobRepository.findById(jobId).orElse(null);
+            if (current == null || !ImportJob.STATUS_QUEUED.equals(current.getStatus())) {
+                return null; // Cancelled while queued
+            }
+            current.setStatus(ImportJob.STATUS_RUNNING);
+            current.setStartedAt(LocalDateTime.now());
+            return jobRepository.save(current);
+        });
+        if (job == null) {
+            running.remove(jobId);
+            jobRepository.findById(jobId).ifPresent(this::deleteFile);
+            publishDone(jobId, null);
+            return;
+        }
+
+        String finalStatus;
+        String message;
+        ImportProgress progress = runningJob.progress;
+        try {
+            excelService.importFile(job.getImportType(), Paths.get(job.getFilePath()), job.getBuildingId(), progress);
+            if (progress.isCancelRequested()) {
+                finalStatus = ImportJob.STATUS_CANCELLED;
+                message = "Импортът е прекратен след " + progress.getRowsRead() + " реда";
+            } else {
+                finalStatus = ImportJob.STATUS_COMPLETED;
+                message = "Импортът е завършен успешно";
+            }
+        } catch (ExcelStructureException e) {
+            finalStatus = ImportJob.STATUS_FAILED;
+            message = "Невалидна структура на Excel файла. Моля, използвайте предоставения шаблон.";
+        } catch (Exception e) {
+            logger.error("Import job {} failed", jobId, e);
+            finalStatus = ImportJob.STATUS_FAILED;
+            message = "Грешка при импорт: " + e.getMessage();
+        }
+
+        try {
+            checkpoint(runningJob, finalStatus, message);
+            logger.info("Import job {} ({}) {}: {} rows read, {} imported, {} skipped",
+                jobId, job.getImportType(), finalStatus, progress.getRowsRead(), progress.getImported(), progress.getSkipped());
+        } finally {
+            running.remove(jobId);
+            deleteFile(job);
+            publishDone(jobId, runningJob);
+        }
+    }
+
+    /**
+     * Persist the counters and the errors reported since the last checkpoint;
+     * finalStatus != null closes the job
+     */
+    private void checkpoint(RunningJob runningJob, String finalStatus, String message) {
+        synchronized (runningJob) {
+            ImportProgress progress = runningJob.progress;
+            List<String> newErrors = progress.getErrorsFrom(runningJob.persistedErrors);
+            transactionTemplate.executeWithoutResult(status -> {
+                jobRepository.findById(runningJob.jobId).ifPresent(job -> {
+                    job.setRowsRead(progress.getRowsRead());
+                    job.setImportedCount(progress.getImported());
+                    job.setUpdatedCount(progress.getUpdated());
+                    job.setSkippedCount(progress.getSkipped());
+                    job.setErrorCount(runningJob.persistedErrors + newErrors.size());
+                    job.setStageMetrics(describeStages(progress));
+                    if (finalStatus != null) {
+                        job.setStatus(finalStatus);
+                        job.setMessage(message);
+                        job.setFinishedAt(LocalDateTime.now());
+                    }
+                    jobRepository.save(job);
+                });
+                List<ImportJobError> rows = new ArrayList<>(newErrors.size());
+                for (int i = 0; i < newErrors.size(); i++) {
+                    rows.add(ImportJobError.of(runningJob.jobId, runningJob.persistedErrors + i, newErrors.get(i)));
+                }
+                errorRepository.saveAll(rows);
+            });
+            runningJob.persistedErrors += newErrors.size();
+        }
+    }
+
+    private static String describeStages(ImportProgress progress) {
+        if (progress.getStages().isEmpty()) {
+            return null;
+        }
+        String text = progress.getStages().stream()
+            .map(ImportStageMetrics::toString)
+            .collect(Collectors.joining("; "));
+        return text.length() > 1000 ? text.substring(0, 1000) : text;
+    }
+
+    private ImportJob finishJob(Long jobId, String finalStatus, String message) {
+        return transactionTemplate.execute(status -> jobRepository.findById(jobId).map(job -> {
+            job.setStatus(finalStatus);
+            job.setMessage(message);
+            job.setFinishedAt(LocalDateTime.now());
+            return jobRepository.save(job);
+        }).orElse(null));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ImportJob> getJob(Long jobId) {
+        if (jobId == null) {
+            return Optional.empty();
+        }
+        return jobRepository.findById(jobId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ImportJob> getRecentJobs() {
+        return jobRepository.findTop20ByOrderByCreatedAtDesc();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<String> getErrors(Long jobId, int limit) {
+        return errorRepository.findMessagesByJobId(jobId, PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean cancel(Long jobId) {
+        RunningJob runningJob = running.get(jobId);
+        if (runningJob != null) {
+            runningJob.progress.cancel();
+        }
+        ImportJob job = transactionTemplate.execute(status -> jobRepository.findById(jobId).map(current -> {
+            if (ImportJob.STATUS_QUEUED.equals(current.getStatus())) {
+                // The worker skips jobs that are no longer queued
+                current.setStatus(ImportJob.STATUS_CANCELLED);
+                current.setMessage("Импортът е прекратен преди началото си");
+                current.setFinishedAt(LocalDateTime.now());
+                return jobRepository.save(current);
+            }
+            return current;
+        }).orElseThrow(() -> new IllegalArgumentException("Импорт с ID " + jobId + " не е намерен")));
+        if (runningJob == null && ImportJob.STATUS_CANCELLED.equals(job.getStatus())) {
+            deleteFile(job);
+            publishDone(jobId, null);
+            return true;
+        }
+        return runningJob != null;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public SseEmitter subscribe(Long jobId) {
+        ImportJob job = jobRepository.findById(jobId)
+            .orElseThrow(() -> new IllegalArgumentException("Импорт с ID " + jobId + " не е намерен"));
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+        Subscriber subscriber = new Subscriber(emitter);
+
+        if (!job.isFinished()) {
+            List<Subscriber> list = subscribers.computeIfAbsent(jobId, id -> new CopyOnWriteArrayList<>());
+            list.add(subscriber);
+            emitter.onCompletion(() -> list.remove(subscriber));
+            emitter.onTimeout(() -> list.remove(subscriber));
+            emitter.onError(error -> list.remove(subscriber));
+
+            RunningJob runningJob = running.get(jobId);
+            if (runningJob != null) {
+                send(subscriber, "progress", ImportJob.STATUS_RUNNING, null, runningJob.progress);
+                return emitter;
+            }
+            // Queued, or finished between the two reads
+            job = jobRepository.findById(jobId).orElse(job);
+            if (!job.isFinished()) {
+                send(subscriber, "progress", job, List.of());
+                return emitter;
+            }
+            list.remove(subscriber);
+        }
+
+        // Finished job - one final event from the stored state
+        send(subscriber, "done", job, errorRepository.findMessagesByJobId(jobId, PageRequest.of(0, MAX_ERRORS_PER_EVENT)));
+        emitter.complete();
+        return emitter;
+    }
+
+    private void publishProgress() {
+        for (RunningJob runningJob : running.values()) {
+            try {
+                checkpoint(runningJob, null, null);
+                List<Subscriber> list = subscribers.get(runningJob.jobId);
+                if (list != null) {
+                    for (Subscriber subscriber : list) {
+                        send(subscriber, "progress", ImportJob.STATUS_RUNNING, null, runningJob.progress);
+                    }
+                }
+            } catch (Exception e) {
+                logger.warn("Progress checkpoint of import job {} failed: {}", runningJob.jobId, e.getMessage());
+            }
+        }
+    }
+
+    private void publishDone(Long jobId, RunningJob runningJob) {
+        List<Subscriber> list = subscribers.remove(jobId);
+        if (list == null || list.isEmpty()) {
+            return;
+        }
+        ImportJob job = jobRepository.findById(jobId).orElse(null);
+        for (Subscriber subscriber : list) {
+            if (job != null && runningJob != null) {
+                send(subscriber, "done", job.getStatus(), job.getMessage(), runningJob.progress);
+            } else if (job != null) {
+                send(subscriber, "done", job, List.of());
+            }
+            subscriber.emitter.complete();
+        }
+    }
+
+    /**
+     * Event from the live counters; only the errors this subscriber has not seen yet are sent
+     */
+    private void send(Subscriber subscriber, String eventName, String status, String message, ImportProgress progress) {
+        // The ticker and the worker (final event) can send to the same client
+        synchronized (subscriber) {
+            sendLive(subscriber, eventName, status, message, progress);
+        }
+    }
+
+    private void sendLive(Subscriber subscriber, String eventName, String status, String message, ImportProgress progress) {
+        List<String> errors = progress.getErrorsFrom(subscriber.sentErrors);
+        if (errors.size() > MAX_ERRORS_PER_EVENT) {
+            errors = errors.subList(0, MAX_ERRORS_PER_EVENT);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("status", status);
+        data.put("message", message);
+        data.put("rowsRead", progress.getRowsRead());
+        data.put("imported", progress.getImported());
+        data.put("updated", progress.getUpdated());
+        data.put("skipped", progress.getSkipped());
+        data.put("errorCount", progress.getErrorCount());
+        data.put("errorsFrom", subscriber.sentErrors);
+        data.put("errors", errors);
+        data.put("stages", progress.getStagesAsMaps());
+        if (emit(subscriber, eventName, data)) {
+            subscriber.sentErrors += errors.size();
+        }
+    }
+
+    /**
+     * Event from the stored job row (queued or finished job)
+     */
+    private void send(Subscriber subscriber, String eventName, ImportJob job, List<String> errors) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("status", job.getStatus());
+        data.put("message", job.getMessage());
+        data.put("rowsRead", job.getRowsRead());
+        data.put("imported", job.getImportedCount());
+        data.put("updated", job.getUpdatedCount());
+        data.put("skipped", job.getSkippedCount());
+        data.put("errorCount", job.getErrorCount());
+        data.put("errorsFrom", 0);
+        data.put("errors", errors);
+        data.put("stageMetrics", job.getStageMetrics());
+        emit(subscriber, eventName, data);
+    }
+
+    private boolean emit(Subscriber subscriber, String eventName, Map<String, Object> data) {
+        try {
+            subscriber.emitter.send(SseEmitter.event().name(eventName).data(data, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away - the completion callback removes the subscriber
+            subscriber.emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private void deleteFile(ImportJob job) {
+        if (job.getFilePath() == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(job.getFilePath()));
+        } catch (IOException e) {
+            logger.warn("Could not delete import file {}: {}", job.getFilePath(), e.getMessage());
+        }
+    }
+
+    private static final class RunningJob {
+        private final Long jobId;
+        private final ImportProgress progress = new ImportProgress();
+        private int persistedErrors; // Guarded by the RunningJob monitor
+
+        RunningJob(Long jobId) {
+            this.jobId = jobId;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private int sentErrors; // Errors already delivered to this client (guarded by the Subscriber monitor)
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
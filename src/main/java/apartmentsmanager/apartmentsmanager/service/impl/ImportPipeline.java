@@ -0,0 +1,217 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.service.ImportStageMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Three-stage import pipeline: parse (caller thread) -> validate -> persist, connected by bounded queues.
+ * Parsing the sheet, building/validating entities and writing to the database overlap; a slow stage
+ * fills the queue in front of it and blocks the stages before it (backpressure).
+ * <p>
+ * Usage: create, submit() every parsed row from the reader, then close() (always, also on failure).
+ * The validator and the writer report per-row problems themselves; an exception escaping them
+ * aborts the whole pipeline and is rethrown by close().
+ *
+ * @param <T> validated value handed from the validate to the persist stage
+ */
+final class ImportPipeline<T> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportPipeline.class);
+
+    private static final Object END = new Object();
+    private static final long POLL_MILLIS = 100;
+
+    private final String name;
+    private final Function<XlsxRowReader.XlsxRow, T> validator;
+    private final ObjIntConsumer<T> writer;
+    private final Runnable onEnd;
+    private final BlockingQueue<Object> parsed;
+    private final BlockingQueue<Object> validated;
+    private final ImportStageMetrics parseMetrics = new ImportStageMetrics("parse");
+    private final ImportStageMetrics validateMetrics = new ImportStageMetrics("validate");
+    private final ImportStageMetrics persistMetrics = new ImportStageMetrics("persist");
+    private final Thread validateThread;
+    private final Thread persistThread;
+    private final long startNanos = System.nanoTime();
+    private long lastSubmitNanos = startNanos;
+    private volatile Throwable failure;
+    private boolean closed;
+
+    /**
+     * @param validator row -> value for the persist stage, null when the row was rejected
+     * @param writer    persists one value (value, line); may buffer and write in batches
+     * @param onEnd     runs on the persist thread after the last value (flush the last batch)
+     */
+    ImportPipeline(String name, int queueCapacity, Function<XlsxRowReader.XlsxRow, T> validator,
+                   ObjIntConsumer<T> writer, Runnable onEnd) {
+        this.name = name;
+        this.validator = validator;
+        this.writer = writer;
+        this.onEnd = onEnd;
+        this.parsed = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.validated = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.validateThread = new Thread(this::runValidate, "import-" + name + "-validate");
+        this.persistThread = new Thread(this::runPersist, "import-" + name + "-persist");
+        validateThread.setDaemon(true);
+        persistThread.setDaemon(true);
+        validateThread.start();
+        persistThread.start();
+    }
+
+    /**
+     * Metrics of the three stages (live values while the import runs)
+     */
+    List<ImportStageMetrics> getStages() {
+        return List.of(parseMetrics, validateMetrics, persistMetrics);
+    }
+
+    /**
+     * Parse stage output - blocks while the validate queue is full
+     */
+    void submit(XlsxRowReader.XlsxRow row) {
+        long now = System.nanoTime();
+        parseMetrics.addBusy(now - lastSubmitNanos);
+        put(parsed, row);
+        lastSubmitNanos = System.nanoTime();
+        parseMetrics.addWaitOutput(lastSubmitNanos - now);
+        parseMetrics.addItem();
+    }
+
+    /**
+     * Signal the end of the input and wait until everything submitted so far is persisted
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        parseMetrics.addBusy(System.nanoTime() - lastSubmitNanos);
+        try {
+            if (failure == null) {
+                put(parsed, END);
+            }
+            validateThread.join();
+            persistThread.join();
+        } catch (InterruptedException e) {
+            failure = e;
+            validateThread.interrupt();
+            persistThread.interrupt();
+            Thread.currentThread().interrupt();
+        } catch (PipelineAborted e) {
+            // A stage failed - its error is rethrown below
+        }
+        logger.info("Import pipeline {} finished in {} ms - {}; {}; {}", name,
+            (System.nanoTime() - startNanos) / 1_000_000, parseMetrics, validateMetrics, persistMetrics);
+        if (failure != null) {
+            throw new IllegalStateException("Импортът е прекъснат: " + failure.getMessage(), failure);
+        }
+    }
+
+    private void runValidate() {
+        try {
+            while (true) {
+                Object item = take(parsed, validateMetrics);
+                if (item == END) {
+                    put(validated, END);
+                    return;
+                }
+                XlsxRowReader.XlsxRow row = (XlsxRowReader.XlsxRow) item;
+                long start = System.nanoTime();
+                T value = validator.apply(row);
+                validateMetrics.addBusy(System.nanoTime() - start);
+                validateMetrics.addItem();
+                if (value != null) {
+                    long putStart = System.nanoTime();
+                    put(validated, new Validated<>(row.getRowNum() + 1, value));
+                    validateMetrics.addWaitOutput(System.nanoTime() - putStart);
+                }
+            }
+        } catch (PipelineAborted e) {
+            // Another stage failed
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runPersist() {
+        try {
+            while (true) {
+                Object item = take(validated, persistMetrics);
+                long start = System.nanoTime();
+                if (item == END) {
+                    onEnd.run();
+                    persistMetrics.addBusy(System.nanoTime() - start);
+                    return;
+                }
+                Validated<T> value = (Validated<T>) item;
+                writer.accept(value.value(), value.line());
+                persistMetrics.addBusy(System.nanoTime() - start);
+                persistMetrics.addItem();
+            }
+        } catch (PipelineAborted e) {
+            // Another stage failed
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable e) {
+        logger.error("Import pipeline {} failed", name, e);
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private Object take(BlockingQueue<Object> queue, ImportStageMetrics metrics) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                Object item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+                if (failure != null) {
+                    throw new PipelineAborted();
+                }
+            }
+        } finally {
+            metrics.addWaitInput(System.nanoTime() - start);
+        }
+    }
+
+    private void put(BlockingQueue<Object> queue, Object item) {
+        try {
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    throw new PipelineAborted();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            throw new PipelineAborted();
+        }
+    }
+
+    private record Validated<T>(int line, T value) {
+    }
+
+    /**
+     * Stops a stage when another stage has failed
+     */
+    private static final class PipelineAborted extends RuntimeException {
+        PipelineAborted() {
+            super("Импортът е спрян поради грешка в друг етап", null, false, false);
+        }
+    }
+}
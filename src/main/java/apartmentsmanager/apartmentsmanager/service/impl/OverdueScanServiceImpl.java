@@ -0,0 +1,288 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingCount;
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
+import apartmentsmanager.apartmentsmanager.entity.OverdueScanRun;
+import apartmentsmanager.apartmentsmanager.entity.OverdueSnapshot;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.repository.OverdueScanRunRepository;
+import apartmentsmanager.apartmentsmanager.repository.OverdueSnapshotRepository;
+import apartmentsmanager.apartmentsmanager.repository.ReceivableInstallmentRepository;
+import apartmentsmanager.apartmentsmanager.service.OverdueScanService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Transactional
+public class OverdueScanServiceImpl implements OverdueScanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverdueScanServiceImpl.class);
+
+    private final OverdueSnapshotRepository snapshotRepository;
+    private final OverdueScanRunRepository runRepository;
+    private final ReceivableInstallmentRepository installmentRepository;
+    private final BuildingRepository buildingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+    private final int workerThreads;
+    private final AtomicBoolean fullScanRunning = new AtomicBoolean(false);
+
+    @Autowired
+    public OverdueScanServiceImpl(OverdueSnapshotRepository snapshotRepository,
+                                  OverdueScanRunRepository runRepository,
+                                  ReceivableInstallmentRepository installmentRepository,
+                                  BuildingRepository buildingRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.overdue.scan.threads:4}") int workerThreads) {
+        this.snapshotRepository = snapshotRepository;
+        this.runRepository = runRepository;
+        this.installmentRepository = installmentRepository;
+        this.buildingRepository = buildingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workerThreads = Math.max(1, workerThreads);
+        // Bounded pool - every worker holds one pooled connection while scanning its building
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "overdue-scan-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Rescan on startup when there was no run today (the application was down overnight or on first start)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void scanOnStartupIfStale() {
+        if (!runRepository.existsByStatusAndStartedAtAfter(OverdueScanRun.STATUS_SUCCESS, LocalDate.now().atStartOfDay())) {
+            scanAll(OverdueScanRun.TRIGGER_STARTUP);
+        }
+    }
+
+    /**
+     * Nightly scan - installments whose due date has just passed become overdue
+     */
+    @Scheduled(cron = "${app.overdue.scan.cron:0 5 0 * * *}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void scheduledScan() {
+        try {
+            scanAll(OverdueScanRun.TRIGGER_SCHEDULED);
+        } catch (IllegalStateException e) {
+            logger.warn("Overdue scan skipped: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public OverdueScanRun scanAll(String triggerType) {
+        if (!fullScanRunning.compareAndSet(false, true)) {
+            throw new IllegalStateException("Сканирането за просрочени плащания вече се изпълнява");
+        }
+        try {
+            return runScan(null, triggerType, buildingRepository.findAllIds());
+        } finally {
+            fullScanRunning.set(false);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public OverdueScanRun scanBuilding(Long buildingId) {
+        if (buildingId == null || !buildingRepository.existsById(buildingId)) {
+            throw new IllegalArgumentException("Сграда с ID " + buildingId + " не е намерена");
+        }
+        return runScan(buildingId, OverdueScanRun.TRIGGER_MANUAL, List.of(buildingId));
+    }
+
+    private OverdueScanRun runScan(Long scopeBuildingId, String triggerType, List<Long> buildingIds) {
+        OverdueScanRun run = new OverdueScanRun();
+        run.setBuildingId(scopeBuildingId);
+        run.setTriggerType(triggerType);
+        run.setStatus(OverdueScanRun.STATUS_RUNNING);
+        run.setStartedAt(LocalDateTime.now());
+        run.setWorkerThreads(Math.min(workerThreads, Math.max(1, buildingIds.size())));
+        OverdueScanRun started = transactionTemplate.execute(status -> runRepository.save(run));
+        long startNanos = System.nanoTime();
+
+        // One task per building, each in its own transaction
+        LocalDateTime scannedAt = started.getStartedAt();
+        List<Future<BuildingScanResult>> futures = new ArrayList<>(buildingIds.size());
+        for (Long buildingId : buildingIds) {
+            futures.add(workers.submit(() -> transactionTemplate.execute(
+                status -> scanBuildingRows(buildingId, started.getId(), scannedAt))));
+        }
+
+        long apartments = 0;
+        BigDecimal total = BigDecimal.ZERO;
+        BuildingScanResult slowest = null;
+        String error = null;
+        for (Future<BuildingScanResult> future : futures) {
+            try {
+                BuildingScanResult result = future.get();
+                apartments += result.apartments;
+                total = total.add(result.amount);
+                if (slowest == null || result.millis > slowest.millis) {
+                    slowest = result;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = "Сканирането е прекъснато";
+                break;
+            } catch (ExecutionException e) {
+                // Other buildings keep their fresh rows; the run is marked as failed
+                logger.error("Overdue scan failed for a building", e.getCause());
+                error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            }
+        }
+
+        started.setFinishedAt(LocalDateTime.now());
+        started.setDurationMillis((System.nanoTime() - startNanos) / 1_000_000);
+        started.setBuildingsScanned(buildingIds.size());
+        started.setApartmentsOverdue(apartments);
+        started.setTotalOverdue(total);
+        if (slowest != null) {
+            started.setSlowestBuildingId(slowest.buildingId);
+            started.setSlowestBuildingMillis(slowest.millis);
+        }
+        started.setStatus(error == null ? OverdueScanRun.STATUS_SUCCESS : OverdueScanRun.STATUS_FAILED);
+        if (error != null && error.length() > 1000) {
+            error = error.substring(0, 1000);
+        }
+        started.setErrorMessage(error);
+        return transactionTemplate.execute(status -> runRepository.save(started));
+    }
+
+    /**
+     * Replace the snapshot rows of one building with the current overdue aggregate
+     */
+    private BuildingScanResult scanBuildingRows(Long buildingId, Long runId, LocalDateTime scannedAt) {
+        long start = System.nanoTime();
+        List<OverdueApartmentRow> rows = installmentRepository.findOverdueRowsByBuilding(buildingId);
+        snapshotRepository.deleteByBuildingId(buildingId);
+        List<OverdueSnapshot> snapshots = new ArrayList<>(rows.size());
+        BigDecimal amount = BigDecimal.ZERO;
+        for (OverdueApartmentRow row : rows) {
+            OverdueSnapshot snapshot = OverdueSnapshot.of(buildingId, row, runId, scannedAt);
+            amount = amount.add(snapshot.getOverdueAmount());
+            snapshots.add(snapshot);
+        }
+        snapshotRepository.saveAll(snapshots);
+        return new BuildingScanResult(buildingId, snapshots.size(), amount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void refreshApartment(Long apartmentId, Long buildingId) {
+        if (apartmentId == null) {
+            return;
+        }
+        snapshotRepository.deleteByApartmentId(apartmentId);
+        if (buildingId == null) {
+            return;
+        }
+        installmentRepository.findOverdueRowByApartment(apartmentId)
+            .map(row -> OverdueSnapshot.of(buildingId, row, null, LocalDateTime.now()))
+            .ifPresent(snapshotRepository::save);
+    }
+
+    @Override
+    public void refreshBuilding(Long buildingId) {
+        if (buildingId != null) {
+            scanBuildingRows(buildingId, null, LocalDateTime.now());
+        }
+    }
+
+    @Override
+    public void removeApartment(Long apartmentId) {
+        if (apartmentId != null) {
+            snapshotRepository.deleteByApartmentId(apartmentId);
+        }
+    }
+
+    @Override
+    public void removeBuilding(Long buildingId) {
+        if (buildingId != null) {
+            snapshotRepository.deleteByBuildingId(buildingId);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OverdueSnapshot> getOverdueRows(Long buildingId) {
+        if (buildingId == null) {
+            return List.of();
+        }
+        return snapshotRepository.findByBuildingIdOrderByOverdueSinceAscApartmentIdAsc(buildingId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OverdueSnapshot> getAllOverdueRows() {
+        return snapshotRepository.findAllByOrderByOverdueSinceAscApartmentIdAsc();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countOverdue(Long buildingId) {
+        if (buildingId == null) {
+            return 0L;
+        }
+        return snapshotRepository.countByBuildingId(buildingId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BuildingCount> countOverdueGroupedByBuilding() {
+        return snapshotRepository.countGroupedByBuilding();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OverdueScanRun> getRecentRuns() {
+        return runRepository.findTop20ByOrderByStartedAtDesc();
+    }
+
+    private static final class BuildingScanResult {
+        private final Long buildingId;
+        private final long apartments;
+        private final BigDecimal amount;
+        private final long millis;
+
+        private BuildingScanResult(Long buildingId, long apartments, BigDecimal amount, long millis) {
+            this.buildingId = buildingId;
+            this.apartments = apartments;
+            this.amount = amount;
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.entity.Payment;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+import apartmentsmanager.apartmentsmanager.service.PaymentImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+@Service
+public class PaymentImportServiceImpl implements PaymentImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentImportServiceImpl.class);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO payments (apartment_id, amount, payment_date, invoice_number, payment_method, " +
+        "payment_stage, payment_stage_order, is_deposit, notes, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public PaymentImportServiceImpl(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.import.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public Session begin(BiConsumer<Integer, String> rowErrors) {
+        return new BatchSession(rowErrors);
+    }
+
+    private record PendingRow(int line, Long apartmentId, Payment payment) {
+    }
+
+    private final class BatchSession implements Session {
+
+        private final BiConsumer<Integer, String> rowErrors;
+        private final List<PendingRow> pending = new ArrayList<>();
+        private final long startNanos = System.nanoTime();
+        private int inserted;
+        private int batches;
+
+        BatchSession(BiConsumer<Integer, String> rowErrors) {
+            this.rowErrors = rowErrors;
+        }
+
+        @Override
+        public void add(int line, Long apartmentId, Payment payment) {
+            // Same normalization as Payment @PrePersist (the row goes to JDBC directly)
+            LocalDateTime now = LocalDateTime.now();
+            payment.setCreatedAt(now);
+            payment.setUpdatedAt(now);
+            payment.setAmount(payment.getAmount().setScale(2, RoundingMode.HALF_UP));
+            payment.setPaymentStage(PaymentStage.normalizeLabel(payment.getPaymentStage()));
+            payment.setPaymentStageCode(PaymentStage.fromLabel(payment.getPaymentStage()));
+
+            pending.add(new PendingRow(line, apartmentId, payment));
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public int finish() {
+            flush();
+            logger.info("Payment import: {} rows inserted in {} batches in {} ms",
+                inserted, batches, (System.nanoTime() - startNanos) / 1_000_000);
+            return inserted;
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batches++;
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, pending, pending.size(), PaymentImportServiceImpl::bind));
+                inserted += pending.size();
+            } catch (DataAccessException e) {
+                // The batch was rolled back - insert its rows one by one to find the failing ones
+                logger.warn("Payment import batch of {} rows failed, retrying row by row: {}",
+                    pending.size(), e.getMostSpecificCause().getMessage());
+                for (PendingRow row : pending) {
+                    insertSingle(row);
+                }
+            }
+            pending.clear();
+        }
+
+        private void insertSingle(PendingRow row) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, row)));
+                inserted++;
+            } catch (DataAccessException e) {
+                rowErrors.accept(row.line(), e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, PendingRow row) throws SQLException {
+        Payment payment = row.payment();
+        Timestamp now = Timestamp.valueOf(payment.getCreatedAt());
+        ps.setLong(1, row.apartmentId());
+        ps.setBigDecimal(2, payment.getAmount());
+        ps.setDate(3, Date.valueOf(payment.getPaymentDate()));
+        ps.setString(4, payment.getInvoiceNumber());
+        ps.setString(5, payment.getPaymentMethod());
+        ps.setString(6, payment.getPaymentStage());
+        if (payment.getPaymentStageCode() != null) {
+            ps.setInt(7, payment.getPaymentStageCode().getCode());
+        } else {
+            ps.setNull(7, Types.INTEGER);
+        }
+        ps.setBoolean(8, Boolean.TRUE.equals(payment.getIsDeposit()));
+        ps.setString(9, payment.getNotes());
+        ps.setTimestamp(10, now);
+        ps.setTimestamp(11, now);
+    }
+}
@@ -1,17 +1,27 @@
 package apartmentsmanager.apartmentsmanager.service.impl;
 
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
 import apartmentsmanager.apartmentsmanager.entity.Apartment;
+import apartmentsmanager.apartmentsmanager.entity.CashFlowMonthly;
 import apartmentsmanager.apartmentsmanager.entity.Payment;
 import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
 import apartmentsmanager.apartmentsmanager.repository.PaymentRepository;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.CashFlowService;
 import apartmentsmanager.apartmentsmanager.service.PaymentService;
+import apartmentsmanager.apartmentsmanager.service.PaymentTotalsService;
+import apartmentsmanager.apartmentsmanager.service.ReceivableInstallmentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -19,12 +29,24 @@ public class PaymentServiceImpl implements PaymentService {
     
     private final PaymentRepository paymentRepository;
     private final ApartmentRepository apartmentRepository;
+    private final BuildingStatsService buildingStatsService;
+    private final CashFlowService cashFlowService;
+    private final ReceivableInstallmentService receivableInstallmentService;
+    private final PaymentTotalsService paymentTotalsService;
     
     @Autowired
     public PaymentServiceImpl(PaymentRepository paymentRepository, 
-                             ApartmentRepository apartmentRepository) {
+                             ApartmentRepository apartmentRepository,
+                             BuildingStatsService buildingStatsService,
+                             CashFlowService cashFlowService,
+                             ReceivableInstallmentService receivableInstallmentService,
+                             PaymentTotalsService paymentTotalsService) {
         this.paymentRepository = paymentRepository;
         this.apartmentRepository = apartmentRepository;
+        this.buildingStatsService = buildingStatsService;
+        this.cashFlowService = cashFlowService;
+        this.receivableInstallmentService = receivableInstallmentService;
+        this.paymentTotalsService = paymentTotalsService;
     }
     
     @Override
@@ -41,12 +63,47 @@ public class PaymentServiceImpl implements PaymentService {
     
     @Override
     public Payment savePayment(Payment payment) {
-        return paymentRepository.save(payment);
+        // An updated payment may have been moved to another apartment - capture both
+        Set<Long> apartmentIds = new LinkedHashSet<>();
+        if (payment.getId() != null) {
+            paymentRepository.findApartmentIdByPaymentId(payment.getId()).ifPresent(apartmentIds::add);
+        }
+        if (payment.getApartment() != null && payment.getApartment().getId() != null) {
+            apartmentIds.add(payment.getApartment().getId());
+        }
+        Map<Long, BuildingStatisticsSnapshot> statsBefore = new LinkedHashMap<>();
+        Map<Long, List<CashFlowMonthly>> cashFlowBefore = new LinkedHashMap<>();
+        for (Long apartmentId : apartmentIds) {
+            statsBefore.put(apartmentId, buildingStatsService.captureApartment(apartmentId));
+            cashFlowBefore.put(apartmentId, cashFlowService.captureApartment(apartmentId));
+        }
+        
+        Payment saved = paymentRepository.saveAndFlush(payment);
+        
+        for (Long apartmentId : apartmentIds) {
+            paymentTotalsService.refreshApartment(apartmentId);
+            buildingStatsService.applyApartmentChange(statsBefore.get(apartmentId), buildingStatsService.captureApartment(apartmentId));
+            cashFlowService.applyApartmentChange(cashFlowBefore.get(apartmentId), cashFlowService.captureApartment(apartmentId));
+            receivableInstallmentService.syncApartment(apartmentId);
+        }
+        return saved;
     }
     
     @Override
     public void deletePayment(Long id) {
+        Long apartmentId = paymentRepository.findApartmentIdByPaymentId(id).orElse(null);
+        BuildingStatisticsSnapshot statsBefore = buildingStatsService.captureApartment(apartmentId);
+        List<CashFlowMonthly> cashFlowBefore = cashFlowService.captureApartment(apartmentId);
+        
         paymentRepository.deleteById(id);
+        paymentRepository.flush();
+        
+        if (apartmentId != null) {
+            paymentTotalsService.refreshApartment(apartmentId);
+            buildingStatsService.applyApartmentChange(statsBefore, buildingStatsService.captureApartment(apartmentId));
+            cashFlowService.applyApartmentChange(cashFlowBefore, cashFlowService.captureApartment(apartmentId));
+            receivableInstallmentService.syncApartment(apartmentId);
+        }
     }
     
     @Override
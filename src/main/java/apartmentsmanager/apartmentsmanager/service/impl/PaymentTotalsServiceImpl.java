@@ -0,0 +1,82 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.service.PaymentTotalsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Transactional
+public class PaymentTotalsServiceImpl implements PaymentTotalsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentTotalsServiceImpl.class);
+
+    private final ApartmentRepository apartmentRepository;
+
+    @Autowired
+    public PaymentTotalsServiceImpl(ApartmentRepository apartmentRepository) {
+        this.apartmentRepository = apartmentRepository;
+    }
+
+    /**
+     * Backfill the columns on first start (apartments from before the columns existed)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void initializeIfMissing() {
+        if (apartmentRepository.existsByTotalPaidIsNull()) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Nightly reconciliation - repairs rows changed outside the payment write path
+     */
+    @Scheduled(cron = "${app.payment-totals.reconcile.cron:0 30 0 * * *}")
+    public void scheduledReconcile() {
+        Map<String, Object> result = reconcile();
+        if (((Number) result.get("staleApartments")).intValue() > 0) {
+            logger.warn("Payment totals were out of sync for apartments {}", result.get("staleApartmentIds"));
+        }
+    }
+
+    @Override
+    public void refreshApartment(Long apartmentId) {
+        if (apartmentId != null) {
+            apartmentRepository.refreshPaymentTotals(apartmentId);
+        }
+    }
+
+    @Override
+    public void refreshApartments(Collection<Long> apartmentIds) {
+        if (apartmentIds != null && !apartmentIds.isEmpty()) {
+            apartmentRepository.refreshPaymentTotalsByIds(apartmentIds);
+        }
+    }
+
+    @Override
+    public Map<String, Object> reconcile() {
+        long start = System.nanoTime();
+        List<Long> staleIds = apartmentRepository.findApartmentIdsWithStalePaymentTotals();
+        int updated = apartmentRepository.refreshAllPaymentTotals();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("staleApartments", staleIds.size());
+        result.put("staleApartmentIds", staleIds.size() > 100 ? staleIds.subList(0, 100) : staleIds);
+        result.put("updatedRows", updated);
+        result.put("durationMillis", (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+}
@@ -0,0 +1,258 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.ApartmentStagePaid;
+import apartmentsmanager.apartmentsmanager.dto.BuildingCount;
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
+import apartmentsmanager.apartmentsmanager.dto.PaymentPlanRow;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingInstallmentRow;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingPaymentDto;
+import apartmentsmanager.apartmentsmanager.dto.UpcomingPaymentsPageDto;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+import apartmentsmanager.apartmentsmanager.entity.ReceivableInstallment;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.PaymentRepository;
+import apartmentsmanager.apartmentsmanager.repository.ReceivableInstallmentRepository;
+import apartmentsmanager.apartmentsmanager.service.OverdueScanService;
+import apartmentsmanager.apartmentsmanager.service.ReceivableInstallmentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@Transactional
+public class ReceivableInstallmentServiceImpl implements ReceivableInstallmentService {
+
+    private static final BigDecimal TOLERANCE = new BigDecimal("0.01");
+
+    private final ReceivableInstallmentRepository installmentRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final PaymentRepository paymentRepository;
+    private final OverdueScanService overdueScanService;
+
+    @Autowired
+    public ReceivableInstallmentServiceImpl(ReceivableInstallmentRepository installmentRepository,
+                                            ApartmentRepository apartmentRepository,
+                                            PaymentRepository paymentRepository,
+                                            OverdueScanService overdueScanService) {
+        this.installmentRepository = installmentRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.paymentRepository = paymentRepository;
+        this.overdueScanService = overdueScanService;
+    }
+
+    /**
+     * Fill the table on first start (existing data from before the table was introduced) and rebuild
+     * it once when the rows predate the is_due flag
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void initializeIfEmpty() {
+        if (installmentRepository.count() == 0
+            || installmentRepository.existsByStageOrderAndDueFalse(PaymentStage.PRELIMINARY.getCode())) {
+            rebuildAll();
+        }
+    }
+
+    @Override
+    public void syncApartment(Long apartmentId) {
+        if (apartmentId == null) {
+            return;
+        }
+        List<ReceivableInstallment> existing = installmentRepository.findByApartmentIdOrderByStageOrder(apartmentId);
+        Optional<PaymentPlanRow> plan = apartmentRepository.findPaymentPlanRowByApartment(apartmentId);
+        if (plan.isEmpty()) {
+            // Unsold or deleted apartment - nothing is receivable
+            installmentRepository.deleteAll(existing);
+            overdueScanService.removeApartment(apartmentId);
+            return;
+        }
+
+        BigDecimal totalPaid = paymentRepository.calculateTotalByApartment(apartmentId);
+        List<ReceivableInstallment> target = buildInstallments(plan.get(), totalPaid);
+
+        Map<Integer, ReceivableInstallment> byStage = new HashMap<>();
+        for (ReceivableInstallment installment : existing) {
+            byStage.put(installment.getStageOrder(), installment);
+        }
+        List<ReceivableInstallment> toSave = new ArrayList<>();
+        for (ReceivableInstallment wanted : target) {
+            ReceivableInstallment row = byStage.remove(wanted.getStageOrder());
+            if (row == null) {
+                toSave.add(wanted);
+                continue;
+            }
+            row.setBuildingId(wanted.getBuildingId());
+            row.setStage(wanted.getStage());
+            row.setDueDate(wanted.getDueDate());
+            row.setDue(wanted.isDue());
+            row.setExpectedAmount(wanted.getExpectedAmount());
+            row.setPaidAmount(wanted.getPaidAmount());
+            row.setStatus(wanted.getStatus());
+            toSave.add(row);
+        }
+        installmentRepository.deleteAll(byStage.values()); // Stages removed from the plan
+        installmentRepository.saveAll(toSave);
+        overdueScanService.refreshApartment(apartmentId, plan.get().getBuildingId());
+    }
+
+    @Override
+    public void removeApartment(Long apartmentId) {
+        if (apartmentId != null) {
+            installmentRepository.deleteByApartmentId(apartmentId);
+            overdueScanService.removeApartment(apartmentId);
+        }
+    }
+
+    @Override
+    public void removeBuilding(Long buildingId) {
+        if (buildingId != null) {
+            installmentRepository.deleteByBuildingId(buildingId);
+            overdueScanService.removeBuilding(buildingId);
+        }
+    }
+
+    @Override
+    public int rebuildAll() {
+        Map<Long, BigDecimal> paidByApartment = new HashMap<>();
+        for (ApartmentStagePaid paid : paymentRepository.sumPaidByStageForSoldApartments()) {
+            paidByApartment.put(paid.getApartmentId(), paid.getPaidTotal());
+        }
+
+        List<ReceivableInstallment> rows = new ArrayList<>();
+        for (PaymentPlanRow plan : apartmentRepository.findPaymentPlanRows()) {
+            rows.addAll(buildInstallments(plan, paidByApartment.get(plan.getApartmentId())));
+        }
+
+        installmentRepository.deleteAllInBatch();
+        installmentRepository.saveAll(rows);
+        return rows.size();
+    }
+
+    @Override
+    public int rebuildBuilding(Long buildingId) {
+        if (buildingId == null) {
+            return 0;
+        }
+        Map<Long, BigDecimal> paidByApartment = new HashMap<>();
+        for (ApartmentStagePaid paid : paymentRepository.sumPaidByStageForSoldApartmentsByBuilding(buildingId)) {
+            paidByApartment.put(paid.getApartmentId(), paid.getPaidTotal());
+        }
+
+        List<ReceivableInstallment> rows = new ArrayList<>();
+        for (PaymentPlanRow plan : apartmentRepository.findPaymentPlanRowsByBuilding(buildingId)) {
+            rows.addAll(buildInstallments(plan, paidByApartment.get(plan.getApartmentId())));
+        }
+
+        installmentRepository.deleteByBuildingId(buildingId);
+        installmentRepository.saveAll(rows);
+        overdueScanService.refreshBuilding(buildingId);
+        return rows.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OverdueApartmentRow> getOverdueRowsByBuilding(Long buildingId) {
+        if (buildingId == null) {
+            return List.of();
+        }
+        return installmentRepository.findOverdueRowsByBuilding(buildingId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countOverdueApartmentsByBuilding(Long buildingId) {
+        if (buildingId == null) {
+            return 0L;
+        }
+        return installmentRepository.countOverdueApartmentsByBuilding(buildingId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BuildingCount> countOverdueApartmentsGroupedByBuilding() {
+        return installmentRepository.countOverdueApartmentsGroupedByBuilding();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UpcomingInstallmentRow> getUpcomingRowsByBuilding(Long buildingId) {
+        if (buildingId == null) {
+            return List.of();
+        }
+        return installmentRepository.findUpcomingRowsByBuilding(buildingId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UpcomingPaymentsPageDto getUpcomingPage(Long buildingId, LocalDate from, LocalDate to,
+                                                   LocalDate afterDate, Long afterApartmentId, Integer afterStageOrder,
+                                                   int size) {
+        if (buildingId == null) {
+            return new UpcomingPaymentsPageDto(List.of(), 0, false);
+        }
+        boolean firstPage = afterDate == null;
+        // First page: a cursor just before "from" lets the same query return everything from "from" on
+        LocalDate cursorDate = firstPage ? from.minusDays(1) : afterDate;
+        long cursorApartmentId = firstPage || afterApartmentId == null ? Long.MAX_VALUE : afterApartmentId;
+        int cursorStageOrder = firstPage || afterStageOrder == null ? Integer.MAX_VALUE : afterStageOrder;
+
+        // One extra row tells whether there is a next page
+        List<UpcomingPaymentDto> rows = installmentRepository.findUpcomingPage(buildingId, from, to,
+            cursorDate, cursorApartmentId, cursorStageOrder, PageRequest.of(0, size + 1));
+        boolean hasMore = rows.size() > size;
+        List<UpcomingPaymentDto> items = hasMore ? rows.subList(0, size) : rows;
+        return new UpcomingPaymentsPageDto(new ArrayList<>(items), items.size(), hasMore);
+    }
+
+    /**
+     * One installment per plan stage with an amount; payments cover the stages in order
+     */
+    static List<ReceivableInstallment> buildInstallments(PaymentPlanRow plan, BigDecimal totalPaid) {
+        LocalDate[] dates = {plan.getPreliminaryContractDate(), plan.getAkt14Date(), plan.getAkt15Date(), plan.getAkt16Date()};
+        BigDecimal[] amounts = {plan.getPreliminaryContractAmount(), plan.getAkt14Amount(), plan.getAkt15Amount(), plan.getAkt16Amount()};
+
+        List<ReceivableInstallment> installments = new ArrayList<>();
+        if (plan.getBuildingId() == null) {
+            return installments;
+        }
+        BigDecimal unallocated = totalPaid != null ? totalPaid : BigDecimal.ZERO;
+        // Stages up to the one the apartment has reached are due whatever their date (preliminary always)
+        int reached = plan.getStageCode() != null ? plan.getStageCode().getCode() : PaymentStage.PRELIMINARY.getCode();
+        for (PaymentStage paymentStage : PaymentStage.values()) {
+            int stage = paymentStage.getCode();
+            BigDecimal expected = amounts[stage];
+            if (expected == null || expected.compareTo(TOLERANCE) <= 0) {
+                continue; // Stage not in the plan
+            }
+            BigDecimal paid = unallocated.min(expected).max(BigDecimal.ZERO);
+            unallocated = unallocated.subtract(paid);
+
+            ReceivableInstallment installment = new ReceivableInstallment();
+            installment.setApartmentId(plan.getApartmentId());
+            installment.setBuildingId(plan.getBuildingId());
+            installment.setStage(paymentStage.getLabel());
+            installment.setStageOrder(stage);
+            installment.setDueDate(dates[stage]);
+            installment.setDue(stage <= reached);
+            installment.setExpectedAmount(expected);
+            installment.setPaidAmount(paid);
+            installment.setStatus(expected.subtract(paid).compareTo(TOLERANCE) <= 0
+                ? ReceivableInstallment.STATUS_PAID
+                : ReceivableInstallment.STATUS_OPEN);
+            installments.add(installment);
+        }
+        return installments;
+    }
+}
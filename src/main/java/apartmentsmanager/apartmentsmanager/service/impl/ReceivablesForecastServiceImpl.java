@@ -0,0 +1,160 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.ApartmentStagePaid;
+import apartmentsmanager.apartmentsmanager.dto.PaymentPlanRow;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.PaymentRepository;
+import apartmentsmanager.apartmentsmanager.service.ReceivablesForecastService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Прогноза за постъпления по PaymentPlan графиците.
+ * Графикът се зарежда в примитивни масиви (epoch-day int, суми в центове long),
+ * а агрегирането по месеци е без BigDecimal на ред.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ReceivablesForecastServiceImpl implements ReceivablesForecastService {
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final int STAGES = 4; // prelim, akt14, akt15, akt16
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final ApartmentRepository apartmentRepository;
+    private final PaymentRepository paymentRepository;
+
+    @Autowired
+    public ReceivablesForecastServiceImpl(ApartmentRepository apartmentRepository,
+                                          PaymentRepository paymentRepository) {
+        this.apartmentRepository = apartmentRepository;
+        this.paymentRepository = paymentRepository;
+    }
+
+    @Override
+    public Map<String, Object> forecast(Long buildingId, int months) {
+        long started = System.nanoTime();
+        int horizon = Math.max(1, months);
+
+        List<PaymentPlanRow> plans = buildingId != null
+            ? apartmentRepository.findPaymentPlanRowsByBuilding(buildingId)
+            : apartmentRepository.findPaymentPlanRows();
+        List<ApartmentStagePaid> paid = buildingId != null
+            ? paymentRepository.sumPaidByStageForSoldApartmentsByBuilding(buildingId)
+            : paymentRepository.sumPaidByStageForSoldApartments();
+
+        // Schedule: slot = apartment * STAGES + stage
+        int n = plans.size();
+        int[] dueDay = new int[n * STAGES];
+        long[] remainingCents = new long[n * STAGES];
+        Map<Long, Integer> positions = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            PaymentPlanRow plan = plans.get(i);
+            positions.put(plan.getApartmentId(), i);
+            int base = i * STAGES;
+            setSlot(dueDay, remainingCents, base, plan.getPreliminaryContractDate(), plan.getPreliminaryContractAmount());
+            setSlot(dueDay, remainingCents, base + 1, plan.getAkt14Date(), plan.getAkt14Amount());
+            setSlot(dueDay, remainingCents, base + 2, plan.getAkt15Date(), plan.getAkt15Amount());
+            setSlot(dueDay, remainingCents, base + 3, plan.getAkt16Date(), plan.getAkt16Amount());
+        }
+        for (ApartmentStagePaid row : paid) {
+            Integer i = positions.get(row.getApartmentId());
+            if (i == null) {
+                continue;
+            }
+            int base = i * STAGES;
+            remainingCents[base] -= toCents(row.getPaidPrelim());
+            remainingCents[base + 1] -= toCents(row.getPaidAkt14());
+            remainingCents[base + 2] -= toCents(row.getPaidAkt15());
+            remainingCents[base + 3] -= toCents(row.getPaidAkt16());
+        }
+
+        // Month boundaries as epoch days: monthStart[m] <= due < monthStart[m + 1]
+        LocalDate today = LocalDate.now();
+        LocalDate firstMonth = today.withDayOfMonth(1);
+        int todayDay = (int) today.toEpochDay();
+        int[] monthStart = new int[horizon + 1];
+        List<String> labels = new ArrayList<>(horizon);
+        for (int m = 0; m <= horizon; m++) {
+            LocalDate month = firstMonth.plusMonths(m);
+            monthStart[m] = (int) month.toEpochDay();
+            if (m < horizon) {
+                labels.add(month.format(MONTH_FORMAT));
+            }
+        }
+
+        long[] monthCents = new long[horizon];
+        long[] monthCount = new long[horizon];
+        long overdueCents = 0;
+        long unscheduledCents = 0;
+        long beyondHorizonCents = 0;
+        for (int slot = 0; slot < dueDay.length; slot++) {
+            long remaining = remainingCents[slot];
+            if (remaining <= 0) {
+                continue;
+            }
+            int due = dueDay[slot];
+            if (due == NO_DATE) {
+                unscheduledCents += remaining;
+            } else if (due < todayDay) {
+                overdueCents += remaining;
+            } else if (due >= monthStart[horizon]) {
+                beyondHorizonCents += remaining;
+            } else {
+                int idx = Arrays.binarySearch(monthStart, due);
+                int m = idx >= 0 ? idx : -idx - 2;
+                monthCents[m] += remaining;
+                monthCount[m]++;
+            }
+        }
+
+        long forecastCents = 0;
+        List<BigDecimal> amounts = new ArrayList<>(horizon);
+        List<Long> counts = new ArrayList<>(horizon);
+        for (int m = 0; m < horizon; m++) {
+            forecastCents += monthCents[m];
+            amounts.add(fromCents(monthCents[m]));
+            counts.add(monthCount[m]);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("buildingId", buildingId);
+        result.put("months", labels);
+        result.put("amounts", amounts);
+        result.put("installments", counts);
+        result.put("totalForecast", fromCents(forecastCents));
+        result.put("overdueAmount", fromCents(overdueCents));
+        result.put("beyondHorizonAmount", fromCents(beyondHorizonCents));
+        result.put("unscheduledAmount", fromCents(unscheduledCents));
+        result.put("apartmentsCount", n);
+        result.put("computeMillis", (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    private static void setSlot(int[] dueDay, long[] remainingCents, int slot, LocalDate date, BigDecimal amount) {
+        dueDay[slot] = date != null ? (int) date.toEpochDay() : NO_DATE;
+        remainingCents[slot] = toCents(amount);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return 0L;
+        }
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,101 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.entity.ConstructionStage;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.repository.PaymentRepository;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.StageMigrationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-time migration of the free-text stage labels to the typed stage codes.
+ * Only rows without a code are touched, so running it again after the migration costs
+ * one DISTINCT query per table (labels that match no stage keep a null code).
+ */
+@Service
+@Transactional
+public class StageMigrationServiceImpl implements StageMigrationService {
+
+    private final ApartmentRepository apartmentRepository;
+    private final PaymentRepository paymentRepository;
+    private final BuildingRepository buildingRepository;
+    private final BuildingStatsService buildingStatsService;
+
+    @Autowired
+    public StageMigrationServiceImpl(ApartmentRepository apartmentRepository,
+                                     PaymentRepository paymentRepository,
+                                     BuildingRepository buildingRepository,
+                                     BuildingStatsService buildingStatsService) {
+        this.apartmentRepository = apartmentRepository;
+        this.paymentRepository = paymentRepository;
+        this.buildingRepository = buildingRepository;
+        this.buildingStatsService = buildingStatsService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void normalizeOnStartup() {
+        normalizeStages();
+    }
+
+    @Override
+    public Map<String, Integer> normalizeStages() {
+        int apartments = 0;
+        for (Map.Entry<PaymentStage, List<String>> group : groupPaymentStages(apartmentRepository.findUncodedStageLabels()).entrySet()) {
+            apartments += apartmentRepository.normalizeStage(group.getValue(), group.getKey().getLabel(), group.getKey());
+        }
+        int payments = 0;
+        for (Map.Entry<PaymentStage, List<String>> group : groupPaymentStages(paymentRepository.findUncodedStageLabels()).entrySet()) {
+            payments += paymentRepository.normalizeStage(group.getValue(), group.getKey().getLabel(), group.getKey());
+        }
+        int buildings = 0;
+        Map<ConstructionStage, List<String>> buildingGroups = new EnumMap<>(ConstructionStage.class);
+        for (String label : buildingRepository.findUncodedStageLabels()) {
+            ConstructionStage stage = ConstructionStage.fromLabel(label);
+            if (stage != null) {
+                buildingGroups.computeIfAbsent(stage, key -> new ArrayList<>()).add(label);
+            }
+        }
+        for (Map.Entry<ConstructionStage, List<String>> group : buildingGroups.entrySet()) {
+            buildings += buildingRepository.normalizeStage(group.getValue(), group.getKey().getLabel(), group.getKey());
+        }
+
+        // Statistics now classify by code - recompute the materialized rows once
+        if (apartments > 0 || payments > 0) {
+            buildingStatsService.rebuildAll();
+        }
+
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("apartments", apartments);
+        result.put("payments", payments);
+        result.put("buildings", buildings);
+        return result;
+    }
+
+    /**
+     * Label variants grouped by the stage they resolve to (unknown labels are skipped)
+     */
+    private static Map<PaymentStage, List<String>> groupPaymentStages(List<String> labels) {
+        Map<PaymentStage, List<String>> groups = new EnumMap<>(PaymentStage.class);
+        for (String label : labels) {
+            PaymentStage stage = PaymentStage.fromLabel(label);
+            if (stage != null) {
+                groups.computeIfAbsent(stage, key -> new ArrayList<>()).add(label);
+            }
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,137 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.ConstructionStage;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+import apartmentsmanager.apartmentsmanager.entity.StageTransition;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.repository.StageTransitionRepository;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.OverdueScanService;
+import apartmentsmanager.apartmentsmanager.service.ReceivableInstallmentService;
+import apartmentsmanager.apartmentsmanager.service.StageTransitionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Stage transitions as set-based writes: one UPDATE for all affected apartments instead of loading
+ * them and letting dirty checking issue one UPDATE per row. The bulk UPDATE bypasses @PreUpdate, so
+ * the label is normalized and the stage code and updated_at are set in the statement itself.
+ * The statistics row is adjusted in place; its change event evicts the statistics cache after commit.
+ * A stage decides which installments are due, so receivable_installments and overdue_snapshot of the
+ * affected buildings are rebuilt set-based in the same transaction.
+ */
+@Service
+@Transactional
+public class StageTransitionServiceImpl implements StageTransitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StageTransitionServiceImpl.class);
+
+    private final BuildingRepository buildingRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final StageTransitionRepository stageTransitionRepository;
+    private final BuildingStatsService buildingStatsService;
+    private final ReceivableInstallmentService receivableInstallmentService;
+    private final OverdueScanService overdueScanService;
+
+    @Autowired
+    public StageTransitionServiceImpl(BuildingRepository buildingRepository,
+                                      ApartmentRepository apartmentRepository,
+                                      StageTransitionRepository stageTransitionRepository,
+                                      BuildingStatsService buildingStatsService,
+                                      ReceivableInstallmentService receivableInstallmentService,
+                                      OverdueScanService overdueScanService) {
+        this.buildingRepository = buildingRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.stageTransitionRepository = stageTransitionRepository;
+        this.buildingStatsService = buildingStatsService;
+        this.receivableInstallmentService = receivableInstallmentService;
+        this.overdueScanService = overdueScanService;
+    }
+
+    @Override
+    public Building transitionBuilding(Long buildingId, String buildingStage) {
+        Building building = buildingRepository.findById(buildingId)
+            .orElseThrow(() -> new RuntimeException("Сграда с ID " + buildingId + " не е намерена"));
+        String fromStage = building.getStage();
+
+        // The building row goes through JPA (@PreUpdate normalizes its label and code)
+        building.setStage(buildingStage);
+        Building saved = buildingRepository.saveAndFlush(building);
+
+        String apartmentStage = toApartmentStage(saved.getStage());
+        LocalDateTime now = LocalDateTime.now();
+        int updated = apartmentRepository.updateStageByBuilding(buildingId,
+            apartmentStage, PaymentStage.fromLabel(apartmentStage), now);
+        record(buildingId, fromStage, saved.getStage(), apartmentStage, updated, now);
+        buildingStatsService.applyStageTransition(buildingId, apartmentStage);
+        receivableInstallmentService.rebuildBuilding(buildingId);
+        return saved;
+    }
+
+    @Override
+    public int transitionSoldApartments(Long buildingId, String apartmentStage) {
+        if (buildingId == null) {
+            return 0;
+        }
+        String label = PaymentStage.normalizeLabel(apartmentStage);
+        LocalDateTime now = LocalDateTime.now();
+        int updated = apartmentRepository.updateSoldStageByBuilding(buildingId, label, PaymentStage.fromLabel(label), now);
+        record(buildingId, null, label, label, updated, now);
+        buildingStatsService.applyStageTransition(buildingId, label);
+        receivableInstallmentService.rebuildBuilding(buildingId);
+        return updated;
+    }
+
+    @Override
+    public int transitionAllSoldApartments(String apartmentStage) {
+        String label = PaymentStage.normalizeLabel(apartmentStage);
+        LocalDateTime now = LocalDateTime.now();
+        int updated = apartmentRepository.updateSoldStage(label, PaymentStage.fromLabel(label), now);
+        record(null, null, label, label, updated, now);
+        buildingStatsService.applyStageTransitionToAll(label);
+        receivableInstallmentService.rebuildAll();
+        for (Long id : buildingRepository.findAllIds()) {
+            overdueScanService.refreshBuilding(id);
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StageTransition> getRecentTransitions(Long buildingId) {
+        return stageTransitionRepository.findTop20ByBuildingIdOrderByTransitionedAtDesc(buildingId);
+    }
+
+    private void record(Long buildingId, String fromStage, String toStage, String apartmentStage,
+                        int apartmentCount, LocalDateTime at) {
+        StageTransition transition = new StageTransition();
+        transition.setBuildingId(buildingId);
+        transition.setFromStage(fromStage);
+        transition.setToStage(toStage);
+        transition.setApartmentStage(apartmentStage);
+        transition.setApartmentCount(apartmentCount);
+        transition.setTransitionedAt(at);
+        stageTransitionRepository.save(transition);
+        logger.info("Stage transition of building {}: {} -> {} ({} objects to '{}')",
+            buildingId != null ? buildingId : "all", fromStage, toStage, apartmentCount, apartmentStage);
+    }
+
+    /**
+     * Building stage -> apartment stage ("Открита строителна площадка" -> "При предварителен договор", "Акт 14" -> "Акт 14" ...)
+     */
+    private static String toApartmentStage(String buildingStage) {
+        ConstructionStage stage = ConstructionStage.fromLabel(buildingStage);
+        if (stage == null) {
+            return PaymentStage.PRELIMINARY.getLabel();
+        }
+        return stage.getApartmentStage().getLabel();
+    }
+}
@@ -0,0 +1,144 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.event.BuildingStatisticsChangedEvent;
+import apartmentsmanager.apartmentsmanager.service.StatisticsCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process кеш на статистиката по сграда (LRU по размер + TTL).
+ * Записите се инвалидират след commit на транзакцията, която е променила данните
+ * (BuildingStatisticsChangedEvent), така че четене след запис никога не вижда стари стойности.
+ */
+@Service
+public class StatisticsCacheImpl implements StatisticsCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final Map<Long, CacheEntry> entries;
+    // Incremented on every invalidation - a load that started before it is not stored
+    private final AtomicLong invalidationVersion = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public StatisticsCacheImpl(@Value("${app.statistics.cache.max-size:200}") int maxSize,
+                               @Value("${app.statistics.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+                if (size() > StatisticsCacheImpl.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Map<String, Object> get(Long buildingId, Function<Long, Map<String, Object>> loader) {
+        long version;
+        synchronized (entries) {
+            CacheEntry entry = entries.get(buildingId);
+            if (entry != null) {
+                if (!entry.isExpired(ttlMillis)) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                entries.remove(buildingId);
+                evictions.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            version = invalidationVersion.get();
+        }
+
+        // Load outside the lock - the database query must not block other buildings
+        Map<String, Object> value = Collections.unmodifiableMap(loader.apply(buildingId));
+
+        synchronized (entries) {
+            if (version == invalidationVersion.get()) {
+                entries.put(buildingId, new CacheEntry(value));
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void evict(Long buildingId) {
+        synchronized (entries) {
+            invalidationVersion.incrementAndGet();
+            if (entries.remove(buildingId) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        synchronized (entries) {
+            invalidationVersion.incrementAndGet();
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    /**
+     * Invalidate after the writing transaction commits (or immediately when there is no transaction)
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatisticsChanged(BuildingStatisticsChangedEvent event) {
+        if (event.isAllBuildings()) {
+            evictAll();
+        } else {
+            evict(event.getBuildingId());
+        }
+    }
+
+    @Override
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("hitRate", requests == 0 ? 0.0 : (double) hitCount / requests);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlMillis / 1000L);
+        return stats;
+    }
+
+    private static final class CacheEntry {
+        private final Map<String, Object> value;
+        private final long createdAt;
+
+        private CacheEntry(Map<String, Object> value) {
+            this.value = value;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        private boolean isExpired(long ttlMillis) {
+            return System.currentTimeMillis() - createdAt > ttlMillis;
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package apartmentsmanager.apartmentsmanager.service.impl;
 
+import apartmentsmanager.apartmentsmanager.dto.BuildingCount;
+import apartmentsmanager.apartmentsmanager.dto.BuildingPortfolioRowDto;
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
+import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.BuildingStats;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
 import apartmentsmanager.apartmentsmanager.service.ApartmentService;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.OverdueScanService;
+import apartmentsmanager.apartmentsmanager.service.StatisticsCache;
 import apartmentsmanager.apartmentsmanager.service.StatisticsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -16,10 +29,23 @@ import java.util.Map;
 public class StatisticsServiceImpl implements StatisticsService {
     
     private final ApartmentService apartmentService;
+    private final ApartmentRepository apartmentRepository;
+    private final BuildingRepository buildingRepository;
+    private final BuildingStatsService buildingStatsService;
+    private final StatisticsCache statisticsCache;
+    private final OverdueScanService overdueScanService;
     
     @Autowired
-    public StatisticsServiceImpl(ApartmentService apartmentService) {
+    public StatisticsServiceImpl(ApartmentService apartmentService, ApartmentRepository apartmentRepository,
+                                 BuildingRepository buildingRepository,
+                                 BuildingStatsService buildingStatsService, StatisticsCache statisticsCache,
+                                 OverdueScanService overdueScanService) {
         this.apartmentService = apartmentService;
+        this.apartmentRepository = apartmentRepository;
+        this.buildingRepository = buildingRepository;
+        this.buildingStatsService = buildingStatsService;
+        this.statisticsCache = statisticsCache;
+        this.overdueScanService = overdueScanService;
     }
     
     @Override
@@ -72,102 +98,154 @@ public class StatisticsServiceImpl implements StatisticsService {
         return stats;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public BuildingStatisticsSnapshot getStatisticsSnapshotForBuilding(Long buildingId) {
+        if (buildingId == null) {
+            return null;
+        }
+        // Materialized row (primary key read); aggregate only if the row is not built yet
+        return buildingStatsService.getBuildingStats(buildingId)
+            .<BuildingStatisticsSnapshot>map(stats -> stats)
+            .orElseGet(() -> apartmentRepository.findStatisticsSnapshotByBuilding(buildingId));
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Map<String, Object> getStatisticsForBuilding(Long buildingId) {
-        Map<String, Object> stats = new HashMap<>();
-        BigDecimal totalRevenue = apartmentService.getTotalRevenueByBuilding(buildingId);
-        BigDecimal totalCollected = apartmentService.getTotalCollectedPaymentsByBuilding(buildingId);
-        BigDecimal totalExpected = apartmentService.getTotalExpectedPaymentsByBuilding(buildingId);
-        long totalApartments = apartmentService.getTotalApartmentsCountByBuilding(buildingId);
-
-        BigDecimal collectionRate = BigDecimal.ZERO;
-        if (totalRevenue.compareTo(BigDecimal.ZERO) > 0) {
-            collectionRate = totalCollected.divide(totalRevenue, 4, RoundingMode.HALF_UP)
-                .multiply(BigDecimal.valueOf(100))
-                .setScale(2, RoundingMode.HALF_UP);
+        if (buildingId == null) {
+            return toStatisticsMap(null);
+        }
+        return statisticsCache.get(buildingId, id -> toStatisticsMap(getStatisticsSnapshotForBuilding(id)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getPortfolioStatistics() {
+        List<Building> buildings = buildingRepository.findAll(Sort.by("name"));
+
+        // building_stats rows first; one grouped aggregate only if some building has no row yet
+        Map<Long, BuildingStatisticsSnapshot> snapshots = new HashMap<>();
+        for (BuildingStats stats : buildingStatsService.getAllBuildingStats()) {
+            snapshots.put(stats.getBuildingId(), stats);
+        }
+        if (buildings.stream().anyMatch(b -> !snapshots.containsKey(b.getId()))) {
+            for (BuildingStatisticsSnapshot snapshot : apartmentRepository.findStatisticsSnapshotsGroupedByBuilding()) {
+                snapshots.putIfAbsent(snapshot.getBuildingId(), snapshot);
+            }
+        }
+
+        Map<Long, Long> overdueCounts = new HashMap<>();
+        for (BuildingCount count : overdueScanService.countOverdueGroupedByBuilding()) {
+            overdueCounts.put(count.getBuildingId(), count.getTotal());
         }
 
+        List<BuildingPortfolioRowDto> rows = new ArrayList<>(buildings.size());
+        long totalApartments = 0;
+        long totalOverdue = 0;
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+        BigDecimal totalCollected = BigDecimal.ZERO;
+        for (Building building : buildings) {
+            BuildingStatisticsSnapshot snapshot = snapshots.get(building.getId());
+            BuildingPortfolioRowDto row = new BuildingPortfolioRowDto();
+            row.setBuildingId(building.getId());
+            row.setName(building.getName());
+            row.setStatus(building.getStatus());
+            row.setStage(building.getStage());
+            row.setTotalApartments(snapshot != null ? snapshot.getTotalApartments() : 0L);
+            row.setTotalRevenue(snapshot != null ? nullToZero(snapshot.getTotalRevenue()) : BigDecimal.ZERO);
+            row.setTotalCollected(snapshot != null ? nullToZero(snapshot.getTotalCollected()) : BigDecimal.ZERO);
+            row.setRemainingPayments(row.getTotalRevenue().subtract(row.getTotalCollected()));
+            row.setCollectionRate(collectionRate(row.getTotalCollected(), row.getTotalRevenue()));
+            row.setOverdueCount(overdueCounts.getOrDefault(building.getId(), 0L));
+            row.setStageBreakdown(buildStageBreakdown(snapshot));
+            rows.add(row);
+
+            totalApartments += row.getTotalApartments();
+            totalOverdue += row.getOverdueCount();
+            totalRevenue = totalRevenue.add(row.getTotalRevenue());
+            totalCollected = totalCollected.add(row.getTotalCollected());
+        }
+
+        Map<String, Object> totals = new HashMap<>();
+        totals.put("buildingsCount", buildings.size());
+        totals.put("totalApartments", totalApartments);
+        totals.put("totalRevenue", totalRevenue);
+        totals.put("totalCollected", totalCollected);
+        totals.put("remainingPayments", totalRevenue.subtract(totalCollected));
+        totals.put("collectionRate", collectionRate(totalCollected, totalRevenue));
+        totals.put("overdueCount", totalOverdue);
+
+        Map<String, Object> portfolio = new HashMap<>();
+        portfolio.put("buildings", rows);
+        portfolio.put("totals", totals);
+        return portfolio;
+    }
+
+    /**
+     * Map snapshot -> response format used by /api/statistics and dashboard.html
+     */
+    private Map<String, Object> toStatisticsMap(BuildingStatisticsSnapshot snapshot) {
+        Map<String, Object> stats = new HashMap<>();
+        long totalApartments = snapshot != null ? snapshot.getTotalApartments() : 0L;
+        BigDecimal totalRevenue = snapshot != null ? nullToZero(snapshot.getTotalRevenue()) : BigDecimal.ZERO;
+        BigDecimal totalCollected = snapshot != null ? nullToZero(snapshot.getTotalCollected()) : BigDecimal.ZERO;
+        BigDecimal totalExpected = totalRevenue;
+
+        BigDecimal collectionRate = collectionRate(totalCollected, totalRevenue);
+
         stats.put("totalApartments", totalApartments);
         stats.put("totalRevenue", totalRevenue);
         stats.put("totalCollected", totalCollected);
         stats.put("totalExpected", totalExpected);
         stats.put("collectionRate", collectionRate);
         stats.put("remainingPayments", totalExpected.subtract(totalCollected));
-        stats.put("stageBreakdown", buildStageBreakdown(buildingId));
-        stats.put("paymentBreakdown", buildPaymentBreakdown(buildingId));
+        stats.put("stageBreakdown", buildStageBreakdown(snapshot));
+        stats.put("paymentBreakdown", buildPaymentBreakdown(snapshot));
         return stats;
     }
 
-    private Map<String, Long> buildStageBreakdown(Long buildingId) {
+    private Map<String, Long> buildStageBreakdown(BuildingStatisticsSnapshot snapshot) {
         Map<String, Long> breakdown = new HashMap<>();
-        breakdown.put("При предварителен договор", 0L);
-        breakdown.put("Акт 14", 0L);
-        breakdown.put("Акт 15", 0L);
-        breakdown.put("Акт 16", 0L);
-
-        apartmentService.getAllSoldApartmentsByBuilding(buildingId).forEach(apt -> {
-            String stage = apt.getStage();
-            if (stage == null || stage.isBlank()) {
-                stage = "При предварителен договор";
-            }
-            if ("Предварителен договор".equals(stage)) {
-                stage = "При предварителен договор";
-            }
-            breakdown.put(stage, breakdown.getOrDefault(stage, 0L) + 1L);
-        });
-
+        breakdown.put("При предварителен договор", snapshot != null ? snapshot.getPrelimCount() : 0L);
+        breakdown.put("Акт 14", snapshot != null ? snapshot.getAkt14Count() : 0L);
+        breakdown.put("Акт 15", snapshot != null ? snapshot.getAkt15Count() : 0L);
+        breakdown.put("Акт 16", snapshot != null ? snapshot.getAkt16Count() : 0L);
         return breakdown;
     }
 
-    private Map<String, Object> buildPaymentBreakdown(Long buildingId) {
+    private Map<String, Object> buildPaymentBreakdown(BuildingStatisticsSnapshot snapshot) {
         Map<String, Object> breakdown = new HashMap<>();
         Map<String, BigDecimal> expected = new HashMap<>();
         Map<String, BigDecimal> collected = new HashMap<>();
 
-        expected.put("prelim", BigDecimal.ZERO);
-        expected.put("akt14", BigDecimal.ZERO);
-        expected.put("akt15", BigDecimal.ZERO);
-        expected.put("akt16", BigDecimal.ZERO);
-
-        collected.put("prelim", BigDecimal.ZERO);
-        collected.put("akt14", BigDecimal.ZERO);
-        collected.put("akt15", BigDecimal.ZERO);
-        collected.put("akt16", BigDecimal.ZERO);
-
-        apartmentService.getAllSoldApartmentsByBuilding(buildingId).forEach(apt -> {
-            if (apt.getPaymentPlan() != null) {
-                var plan = apt.getPaymentPlan();
-                expected.put("prelim", expected.get("prelim").add(plan.getPreliminaryContractAmount() != null ? plan.getPreliminaryContractAmount() : BigDecimal.ZERO));
-                expected.put("akt14", expected.get("akt14").add(plan.getAkt14Amount() != null ? plan.getAkt14Amount() : BigDecimal.ZERO));
-                expected.put("akt15", expected.get("akt15").add(plan.getAkt15Amount() != null ? plan.getAkt15Amount() : BigDecimal.ZERO));
-                expected.put("akt16", expected.get("akt16").add(plan.getAkt16Amount() != null ? plan.getAkt16Amount() : BigDecimal.ZERO));
-            }
+        expected.put("prelim", snapshot != null ? nullToZero(snapshot.getExpectedPrelim()) : BigDecimal.ZERO);
+        expected.put("akt14", snapshot != null ? nullToZero(snapshot.getExpectedAkt14()) : BigDecimal.ZERO);
+        expected.put("akt15", snapshot != null ? nullToZero(snapshot.getExpectedAkt15()) : BigDecimal.ZERO);
+        expected.put("akt16", snapshot != null ? nullToZero(snapshot.getExpectedAkt16()) : BigDecimal.ZERO);
 
-            if (apt.getPayments() != null) {
-                apt.getPayments().forEach(payment -> {
-                    String stage = payment.getPaymentStage();
-                    BigDecimal amount = payment.getAmount() != null ? payment.getAmount() : BigDecimal.ZERO;
-                    if (stage == null) {
-                        return;
-                    }
-                    if (stage.contains("предварителен") || stage.toLowerCase().contains("prelim")) {
-                        collected.put("prelim", collected.get("prelim").add(amount));
-                    } else if (stage.contains("Акт 14") || stage.contains("акт 14")) {
-                        collected.put("akt14", collected.get("akt14").add(amount));
-                    } else if (stage.contains("Акт 15") || stage.contains("акт 15")) {
-                        collected.put("akt15", collected.get("akt15").add(amount));
-                    } else if (stage.contains("Акт 16") || stage.contains("акт 16")) {
-                        collected.put("akt16", collected.get("akt16").add(amount));
-                    }
-                });
-            }
-        });
+        collected.put("prelim", snapshot != null ? nullToZero(snapshot.getCollectedPrelim()) : BigDecimal.ZERO);
+        collected.put("akt14", snapshot != null ? nullToZero(snapshot.getCollectedAkt14()) : BigDecimal.ZERO);
+        collected.put("akt15", snapshot != null ? nullToZero(snapshot.getCollectedAkt15()) : BigDecimal.ZERO);
+        collected.put("akt16", snapshot != null ? nullToZero(snapshot.getCollectedAkt16()) : BigDecimal.ZERO);
 
         breakdown.put("expected", expected);
         breakdown.put("collected", collected);
         return breakdown;
     }
+
+    private static BigDecimal collectionRate(BigDecimal collected, BigDecimal revenue) {
+        if (revenue.compareTo(BigDecimal.ZERO) <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return collected.divide(revenue, 4, RoundingMode.HALF_UP)
+            .multiply(BigDecimal.valueOf(100))
+            .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal nullToZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
 }
 
 
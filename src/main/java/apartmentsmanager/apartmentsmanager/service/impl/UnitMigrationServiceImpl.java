@@ -0,0 +1,119 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.entity.UnitType;
+import apartmentsmanager.apartmentsmanager.service.UnitMigrationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * One-time move of the per-type unit tables into the single units table. Each table is copied with
+ * one INSERT ... SELECT that skips rows already present (building, type, number), so an interrupted
+ * run simply continues on the next start. Once none of its rows is missing from units the old table is
+ * renamed to *_legacy (or dropped with app.units.drop-legacy-tables=true); after that a restart costs
+ * one information_schema query per old table.
+ * Not transactional on purpose - RENAME/DROP TABLE commit implicitly in MySQL.
+ */
+@Service
+public class UnitMigrationServiceImpl implements UnitMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnitMigrationServiceImpl.class);
+
+    private static final List<LegacyTable> LEGACY_TABLES = List.of(
+        new LegacyTable("garages", "garage_number", UnitType.GARAGE),
+        new LegacyTable("parking_spaces", "parking_number", UnitType.PARKING_SPACE),
+        new LegacyTable("basements", "basement_number", UnitType.BASEMENT),
+        new LegacyTable("commercial_spaces", "commercial_number", UnitType.COMMERCIAL_SPACE)
+    );
+
+    private static final String LEGACY_SUFFIX = "_legacy";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean dropLegacyTables;
+
+    @Autowired
+    public UnitMigrationServiceImpl(JdbcTemplate jdbcTemplate,
+                                    @Value("${app.units.drop-legacy-tables:false}") boolean dropLegacyTables) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dropLegacyTables = dropLegacyTables;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void migrateOnStartup() {
+        try {
+            int moved = migrateLegacyUnitTables();
+            if (moved > 0) {
+                logger.info("Unit migration: {} rows moved to the units table", moved);
+            }
+        } catch (Exception e) {
+            logger.error("Unit migration failed, the old unit tables are kept: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int migrateLegacyUnitTables() {
+        int moved = 0;
+        for (LegacyTable table : LEGACY_TABLES) {
+            if (!tableExists(table.name())) {
+                continue;
+            }
+            int code = table.unitType().getCode();
+            moved += jdbcTemplate.update(
+                "INSERT INTO units (unit_type, building_id, unit_number, area, price_per_m2, total_price, client_id, " +
+                "contract_date, notes, is_sold, created_at, updated_at) " +
+                "SELECT ?, l.building_id, l." + table.numberColumn() + ", l.area, l.price_per_m2, l.total_price, l.client_id, " +
+                "l.contract_date, l.notes, l.is_sold, l.created_at, l.updated_at FROM " + table.name() + " l " +
+                "WHERE NOT EXISTS (" + missingRowCondition(table) + ")",
+                code, code);
+            Long missing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table.name() + " l WHERE NOT EXISTS (" + missingRowCondition(table) + ")",
+                Long.class, code);
+            if (missing != null && missing == 0) {
+                retire(table.name());
+            } else {
+                logger.warn("Unit migration: {} rows of {} could not be moved, the table is kept", missing, table.name());
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Fully moved table: kept as *_legacy unless dropping is enabled
+     */
+    private void retire(String name) {
+        if (dropLegacyTables) {
+            jdbcTemplate.execute("DROP TABLE " + name);
+            logger.info("Unit migration: table {} moved to units and dropped", name);
+        } else if (tableExists(name + LEGACY_SUFFIX)) {
+            logger.warn("Unit migration: table {} moved to units but {} already exists, the table is kept",
+                name, name + LEGACY_SUFFIX);
+        } else {
+            jdbcTemplate.execute("RENAME TABLE " + name + " TO " + name + LEGACY_SUFFIX);
+            logger.info("Unit migration: table {} moved to units and renamed to {}", name, name + LEGACY_SUFFIX);
+        }
+    }
+
+    private static String missingRowCondition(LegacyTable table) {
+        return "SELECT 1 FROM units u WHERE u.building_id = l.building_id AND u.unit_type = ? " +
+               "AND u.unit_number = l." + table.numberColumn();
+    }
+
+    private boolean tableExists(String name) {
+        Long count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?",
+            Long.class, name);
+        return count != null && count > 0;
+    }
+
+    private record LegacyTable(String name, String numberColumn, UnitType unitType) {
+    }
+}
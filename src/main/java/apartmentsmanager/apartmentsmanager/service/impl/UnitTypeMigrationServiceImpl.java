@@ -0,0 +1,55 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.entity.UnitType;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.service.UnitTypeMigrationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * One-time backfill of the unit type of existing apartment rows. Each marker is one bulk UPDATE
+ * over the still unclassified rows, in the order of UnitType.classificationOrder() so the first
+ * matching marker wins like in Java. Once every row has a type a restart costs one EXISTS query.
+ */
+@Service
+@Transactional
+public class UnitTypeMigrationServiceImpl implements UnitTypeMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnitTypeMigrationServiceImpl.class);
+
+    private final ApartmentRepository apartmentRepository;
+
+    @Autowired
+    public UnitTypeMigrationServiceImpl(ApartmentRepository apartmentRepository) {
+        this.apartmentRepository = apartmentRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void classifyOnStartup() {
+        int updated = classifyUnitTypes();
+        if (updated > 0) {
+            logger.info("Unit type backfill: {} apartment rows classified", updated);
+        }
+    }
+
+    @Override
+    public int classifyUnitTypes() {
+        if (!apartmentRepository.existsByUnitTypeIsNull()) {
+            return 0;
+        }
+        int updated = 0;
+        for (UnitType type : UnitType.classificationOrder()) {
+            for (String marker : type.getNumberMarkers()) {
+                updated += apartmentRepository.classifyUnitType(type, "%" + marker + "%");
+            }
+        }
+        return updated + apartmentRepository.classifyRemainingUnitTypes(UnitType.APARTMENT);
+    }
+}
@@ -0,0 +1,458 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.ApartmentKey;
+import apartmentsmanager.apartmentsmanager.entity.Apartment;
+import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.entity.Client;
+import apartmentsmanager.apartmentsmanager.entity.OverdueScanRun;
+import apartmentsmanager.apartmentsmanager.entity.PaymentPlan;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.service.ApartmentImportService;
+import apartmentsmanager.apartmentsmanager.service.BuildingService;
+import apartmentsmanager.apartmentsmanager.service.BuildingStatsService;
+import apartmentsmanager.apartmentsmanager.service.CashFlowService;
+import apartmentsmanager.apartmentsmanager.service.ClientImportService;
+import apartmentsmanager.apartmentsmanager.service.ExcelStructureException;
+import apartmentsmanager.apartmentsmanager.service.ImportProgress;
+import apartmentsmanager.apartmentsmanager.service.OverdueScanService;
+import apartmentsmanager.apartmentsmanager.service.PaymentImportService;
+import apartmentsmanager.apartmentsmanager.service.PaymentTotalsService;
+import apartmentsmanager.apartmentsmanager.service.ReceivableInstallmentService;
+import apartmentsmanager.apartmentsmanager.service.WorkbookImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+public class WorkbookImportServiceImpl implements WorkbookImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkbookImportServiceImpl.class);
+
+    static final List<String> BUILDINGS_SHEET = List.of("Сгради", "Buildings");
+    static final List<String> CLIENTS_SHEET = List.of("Клиенти", "Clients");
+    static final List<String> APARTMENTS_SHEET = List.of("Апартаменти", "Apartments");
+    static final List<String> PAYMENTS_SHEET = List.of("Плащания", "Payments");
+
+    // Apartments sheet of the workbook - the client is referenced by EGN/EIK, the payment plan follows the notes
+    static final String[] APARTMENT_HEADERS = {
+        "Сграда", "Апартамент", "Площ (кв.м)", "Цена/кв.м (€)", "Обща цена (€)", "Етап", "ЕГН/ЕИК на клиент",
+        "Дата на договор", "Продаден", "Бележки",
+        "Предв. договор - дата", "Предв. договор - сума (€)", "Акт 14 - дата", "Акт 14 - сума (€)",
+        "Акт 15 - дата", "Акт 15 - сума (€)", "Акт 16 - дата", "Акт 16 - сума (€)"
+    };
+    // Other sheets use the columns of the single-type templates
+    private static final int MIN_HEADER_COLUMNS = 3;
+    // Marker for an unreadable date cell (compared by reference)
+    private static final LocalDate DATE_ERROR = LocalDate.MIN;
+
+    private final BuildingService buildingService;
+    private final BuildingRepository buildingRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final ClientImportService clientImportService;
+    private final ApartmentImportService apartmentImportService;
+    private final PaymentImportService paymentImportService;
+    private final PaymentTotalsService paymentTotalsService;
+    private final ReceivableInstallmentService receivableInstallmentService;
+    private final CashFlowService cashFlowService;
+    private final BuildingStatsService buildingStatsService;
+    private final OverdueScanService overdueScanService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public WorkbookImportServiceImpl(BuildingService buildingService,
+                                     BuildingRepository buildingRepository,
+                                     ApartmentRepository apartmentRepository,
+                                     ClientImportService clientImportService,
+                                     ApartmentImportService apartmentImportService,
+                                     PaymentImportService paymentImportService,
+                                     PaymentTotalsService paymentTotalsService,
+                                     ReceivableInstallmentService receivableInstallmentService,
+                                     CashFlowService cashFlowService,
+                                     BuildingStatsService buildingStatsService,
+                                     OverdueScanService overdueScanService,
+                                     PlatformTransactionManager transactionManager) {
+        this.buildingService = buildingService;
+        this.buildingRepository = buildingRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.clientImportService = clientImportService;
+        this.apartmentImportService = apartmentImportService;
+        this.paymentImportService = paymentImportService;
+        this.paymentTotalsService = paymentTotalsService;
+        this.receivableInstallmentService = receivableInstallmentService;
+        this.cashFlowService = cashFlowService;
+        this.buildingStatsService = buildingStatsService;
+        this.overdueScanService = overdueScanService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void importWorkbook(Path file, ImportProgress progress) {
+        if (ExcelServiceImpl.isCsv(file.getFileName().toString())) {
+            progress.error("Импортът на работна книга изисква .xlsx файл с листове Сгради, Клиенти, Апартаменти и Плащания");
+            return;
+        }
+        long startNanos = System.nanoTime();
+        Load load = new Load(progress);
+        boolean committed;
+        try {
+            // One transaction on this thread - the batch transactions of the import sessions join it,
+            // so nothing is visible to other users until the whole workbook is in
+            committed = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                load.run(file);
+                if (progress.getErrorCount() > 0) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                load.rebuildAggregates();
+                return true;
+            }));
+        } catch (ExcelStructureException e) {
+            throw e;
+        } catch (TransactionException e) {
+            progress.error("Грешка при запис: " + e.getMessage());
+            committed = false;
+        }
+
+        if (!committed) {
+            progress.error("Работната книга не е импортирана - нито един ред не е записан. Поправете грешките и качете файла отново.");
+            logger.info("Workbook import rolled back after {} rows in {} ms",
+                progress.getRowsRead(), (System.nanoTime() - startNanos) / 1_000_000);
+            return;
+        }
+        progress.addImported(load.imported());
+        progress.addUpdated(load.clientsUpdated);
+        logger.info("Workbook import: {} buildings, {} clients ({} updated), {} apartments, {} payments in {} ms",
+            load.buildingsInserted, load.clientsInserted + load.clientsUpdated, load.clientsUpdated,
+            load.apartmentsInserted, load.paymentsInserted, (System.nanoTime() - startNanos) / 1_000_000);
+
+        // The overdue scan runs outside of transactions - it needs the committed rows
+        try {
+            overdueScanService.scanAll(OverdueScanRun.TRIGGER_IMPORT);
+        } catch (IllegalStateException e) {
+            logger.warn("Overdue scan after workbook import skipped: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * State of one workbook load - the key maps live only as long as the load
+     */
+    private final class Load {
+
+        private final ImportProgress progress;
+        private final Set<String> existingBuildings = new HashSet<>();
+        private final Set<String> sheetBuildings = new HashSet<>();
+        private ClientImportService.Session clients;
+        private ApartmentImportService.Session apartments;
+        private PaymentImportService.Session payments;
+        // "building name\napartment number" -> apartment id, built once after the apartments sheet
+        private Map<String, Long> apartmentIds;
+        // Apartment id -> amount still to pay, reduced by every accepted payment row
+        private Map<Long, BigDecimal> remaining;
+        private int buildingsInserted;
+        private int clientsInserted;
+        private int clientsUpdated;
+        private int apartmentsInserted;
+        private int paymentsInserted;
+
+        Load(ImportProgress progress) {
+            this.progress = progress;
+        }
+
+        void run(Path file) {
+            List<XlsxRowReader.SheetHandler> found;
+            try {
+                found = XlsxRowReader.readSheets(file, List.of(
+                    new XlsxRowReader.SheetHandler(BUILDINGS_SHEET, 0, rows(this::addBuilding, () -> { })),
+                    new XlsxRowReader.SheetHandler(CLIENTS_SHEET, MIN_HEADER_COLUMNS, rows(this::addClient, this::finishClients)),
+                    new XlsxRowReader.SheetHandler(APARTMENTS_SHEET, MIN_HEADER_COLUMNS, rows(this::addApartment, this::finishApartments)),
+                    new XlsxRowReader.SheetHandler(PAYMENTS_SHEET, MIN_HEADER_COLUMNS, rows(this::addPayment, this::finishPayments))));
+            } catch (ExcelStructureException e) {
+                throw e;
+            } catch (ImportCancelled e) {
+                progress.error("Импортът е прекратен след " + progress.getRowsRead() + " реда");
+                return;
+            } catch (Exception e) {
+                progress.error("Грешка при четене на файла: " + e.getMessage());
+                return;
+            }
+            if (found.isEmpty()) {
+                progress.error("Файлът не съдържа нито един от листовете Сгради, Клиенти, Апартаменти, Плащания");
+            }
+        }
+
+        int imported() {
+            return buildingsInserted + clientsInserted + clientsUpdated + apartmentsInserted + paymentsInserted;
+        }
+
+        /**
+         * Counting row handler of one sheet; empty rows are skipped silently, end finishes the sheet's session
+         */
+        private XlsxRowReader.RowHandler rows(SheetRow sheetRow, Runnable end) {
+            return new XlsxRowReader.RowHandler() {
+                @Override
+                public void row(XlsxRowReader.XlsxRow row) {
+                    if (progress.isCancelRequested()) {
+                        throw new ImportCancelled();
+                    }
+                    progress.rowRead();
+                    if (row.isEmpty()) {
+                        return;
+                    }
+                    try {
+                        sheetRow.accept(row, row.getRowNum() + 1);
+                    } catch (ExcelStructureException | ImportCancelled e) {
+                        throw e;
+                    } catch (Exception e) {
+                        progress.skip(row.getRowNum() + 1, e.getMessage());
+                    }
+                }
+
+                @Override
+                public void end() {
+                    end.run();
+                }
+            };
+        }
+
+        private void addBuilding(XlsxRowReader.XlsxRow row, int line) {
+            Building building = ExcelServiceImpl.parseBuilding(row);
+            if (building == null) {
+                return;
+            }
+            if (sheetBuildings.isEmpty()) {
+                // All names in one query; a building that already exists is reused by the other sheets
+                existingBuildings.addAll(buildingRepository.findAllNames());
+            }
+            if (!sheetBuildings.add(building.getName())) {
+                progress.skip(line, "Сграда '" + building.getName() + "' се повтаря в листа");
+                return;
+            }
+            if (existingBuildings.contains(building.getName())) {
+                return;
+            }
+            // Buildings are few - saved through JPA like in the buildings import
+            buildingService.saveBuilding(building);
+            buildingsInserted++;
+        }
+
+        private void addClient(XlsxRowReader.XlsxRow row, int line) {
+            Client client = ExcelServiceImpl.parseClient(row, progress);
+            if (client != null) {
+                clients().add(line, client);
+            }
+        }
+
+        private void finishClients() {
+            ClientImportService.Result result = clients().finish();
+            clientsInserted += result.inserted();
+            clientsUpdated += result.updated();
+        }
+
+        private void addApartment(XlsxRowReader.XlsxRow row, int line) {
+            Apartment apartment = parseApartment(row, line);
+            if (apartment != null) {
+                apartments().add(line, apartment);
+            }
+        }
+
+        private void finishApartments() {
+            apartmentsInserted += apartments().finish();
+        }
+
+        private void addPayment(XlsxRowReader.XlsxRow row, int line) {
+            ExcelServiceImpl.PaymentImportRow payment = ExcelServiceImpl.parsePayment(row, progress);
+            if (payment == null) {
+                return;
+            }
+            Long apartmentId = apartmentIds().get(payment.buildingName() + "\n" + payment.apartmentNumber());
+            if (apartmentId == null) {
+                progress.skip(line, "Апартамент " + payment.apartmentNumber() + " в сграда '"
+                    + payment.buildingName() + "' не е намерен");
+                return;
+            }
+            // Same rule as payments entered in the UI, against the running total of this import
+            BigDecimal amount = payment.payment().getAmount();
+            BigDecimal left = remaining.getOrDefault(apartmentId, BigDecimal.ZERO);
+            if (amount.compareTo(left) > 0) {
+                progress.skip(line, "Сумата на плащането надвишава остатъка за плащане");
+                return;
+            }
+            remaining.put(apartmentId, left.subtract(amount));
+            payments().add(line, apartmentId, payment.payment());
+        }
+
+        private void finishPayments() {
+            paymentsInserted += payments().finish();
+        }
+
+        /**
+         * Apartments sheet row - null when the row is rejected
+         */
+        private Apartment parseApartment(XlsxRowReader.XlsxRow row, int line) {
+            Apartment apartment = new Apartment();
+            apartment.setBuildingName(row.getString(0));
+            apartment.setApartmentNumber(row.getString(1));
+            if (apartment.getBuildingName().isEmpty() || apartment.getApartmentNumber().isEmpty()) {
+                progress.skip(line, "Липсват задължителни полета");
+                return null;
+            }
+
+            double area = row.getDouble(2);
+            if (area < 0.01) {
+                progress.skip(line, "Площта трябва да е по-голяма от 0");
+                return null;
+            }
+            apartment.setArea(BigDecimal.valueOf(area));
+            apartment.setPricePerM2(positiveOrNull(row.getDouble(3)));
+            // Empty total price = area * price per m2 (applyInsertDefaults)
+            apartment.setTotalPrice(positiveOrNull(row.getDouble(4)));
+            if (row.has(5)) {
+                apartment.setStage(row.getString(5));
+            }
+
+            String egn = row.getString(6);
+            if (!egn.isEmpty()) {
+                Long clientId = clients().findIdByEgn(egn);
+                if (clientId == null) {
+                    progress.skip(line, "Клиент с ЕГН/ЕИК " + egn + " не е намерен");
+                    return null;
+                }
+                Client client = new Client();
+                client.setId(clientId);
+                apartment.setClient(client);
+            }
+
+            LocalDate contractDate = date(row, 7, line);
+            if (contractDate == DATE_ERROR) {
+                return null;
+            }
+            apartment.setContractDate(contractDate);
+            String sold = row.getString(8).toLowerCase();
+            // A row with a client is a sold apartment unless the column says otherwise
+            apartment.setIsSold(sold.isEmpty() ? apartment.getClient() != null
+                : sold.equals("да") || sold.equals("true") || sold.equals("1"));
+            if (row.has(9)) {
+                apartment.setNotes(row.getString(9));
+            }
+
+            PaymentPlan plan = new PaymentPlan();
+            LocalDate[] dates = new LocalDate[4];
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = date(row, 10 + i * 2, line);
+                if (dates[i] == DATE_ERROR) {
+                    return null;
+                }
+            }
+            plan.setPreliminaryContractDate(dates[0]);
+            plan.setPreliminaryContractAmount(positiveOrNull(row.getDouble(11)));
+            plan.setAkt14Date(dates[1]);
+            plan.setAkt14Amount(positiveOrNull(row.getDouble(13)));
+            plan.setAkt15Date(dates[2]);
+            plan.setAkt15Amount(positiveOrNull(row.getDouble(15)));
+            plan.setAkt16Date(dates[3]);
+            plan.setAkt16Amount(positiveOrNull(row.getDouble(17)));
+            apartment.setPaymentPlan(plan);
+            return apartment;
+        }
+
+        /**
+         * Optional date cell - null when empty, DATE_ERROR (already reported) when unreadable
+         */
+        private LocalDate date(XlsxRowReader.XlsxRow row, int column, int line) {
+            String value = row.getString(column);
+            if (value.isEmpty()) {
+                return null;
+            }
+            LocalDate date = ExcelServiceImpl.parseDate(value);
+            if (date == null) {
+                progress.skip(line, "Невалидна дата: '" + value + "'");
+                return DATE_ERROR;
+            }
+            return date;
+        }
+
+        /**
+         * Set-based rebuild of everything the per-row write paths normally maintain - cheaper than
+         * per-apartment refreshes for a migration-sized load
+         */
+        void rebuildAggregates() {
+            if (apartmentsInserted == 0 && paymentsInserted == 0) {
+                return;
+            }
+            paymentTotalsService.reconcile();
+            receivableInstallmentService.rebuildAll();
+            cashFlowService.rebuildAll();
+            buildingStatsService.rebuildAll();
+        }
+
+        private ClientImportService.Session clients() {
+            // Also needed without a clients sheet - apartments may reference stored clients
+            if (clients == null) {
+                clients = clientImportService.begin(progress::skip);
+            }
+            return clients;
+        }
+
+        private ApartmentImportService.Session apartments() {
+            if (apartments == null) {
+                // Building statistics are rebuilt for all buildings in rebuildAggregates
+                apartments = apartmentImportService.begin(null, false, progress::skip);
+            }
+            return apartments;
+        }
+
+        private PaymentImportService.Session payments() {
+            if (payments == null) {
+                payments = paymentImportService.begin(progress::skip);
+            }
+            return payments;
+        }
+
+        private Map<String, Long> apartmentIds() {
+            // Loaded on the first payment - stored apartments plus the ones inserted from the apartments sheet
+            if (apartmentIds == null) {
+                apartmentIds = new HashMap<>();
+                remaining = new HashMap<>();
+                for (ApartmentKey key : apartmentRepository.findAllKeys()) {
+                    apartmentIds.putIfAbsent(key.getBuildingName() + "\n" + key.getApartmentNumber(), key.getId());
+                    BigDecimal totalPrice = key.getTotalPrice() != null ? key.getTotalPrice() : BigDecimal.ZERO;
+                    BigDecimal totalPaid = key.getTotalPaid() != null ? key.getTotalPaid() : BigDecimal.ZERO;
+                    remaining.put(key.getId(), totalPrice.subtract(totalPaid));
+                }
+            }
+            return apartmentIds;
+        }
+    }
+
+    private static BigDecimal positiveOrNull(double value) {
+        return value > 0 ? BigDecimal.valueOf(value) : null;
+    }
+
+    @FunctionalInterface
+    private interface SheetRow {
+        void accept(XlsxRowReader.XlsxRow row, int line);
+    }
+
+    /**
+     * Thrown from the row callback to stop parsing when the import was cancelled
+     */
+    private static final class ImportCancelled extends RuntimeException {
+        ImportCancelled() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.service.ExcelStructureException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streaming reader for the sheets of an .xlsx file (XSSF event API).
+ * The sheet XML is parsed with SAX and every row is handed to the handler as soon as it is read,
+ * so only the shared strings table and the current row are held in memory - never the workbook DOM.
+ * The first row is the header; it is checked before any data row is delivered.
+ */
+public final class XlsxRowReader {
+
+    /**
+     * Receives the rows of the sheet one at a time
+     */
+    public interface RowHandler {
+
+        /**
+         * First row of the sheet; throw ExcelStructureException to abort the import
+         */
+        default void header(XlsxRow header) {
+        }
+
+        void row(XlsxRow row);
+
+        /**
+         * Called after the last row of the sheet
+         */
+        default void end() {
+        }
+    }
+
+    private XlsxRowReader() {
+    }
+
+    /**
+     * Parse the first sheet of the file. The header must have at least minHeaderColumns non-empty cells
+     * (0 = no check). Rows with no cells at all are still delivered - XlsxRow.isEmpty() tells them apart.
+     */
+    public static void read(Path xlsx, int minHeaderColumns, RowHandler handler) throws Exception {
+        // Opened from a file (zip central directory) - entries are inflated on demand, not buffered
+        try (OPCPackage pkg = OPCPackage.open(xlsx.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new ExcelStructureException("Файлът не съдържа листове");
+            }
+            try (InputStream sheet = sheets.next()) {
+                parseSheet(reader.getStylesTable(), strings, sheet, minHeaderColumns, handler);
+            }
+        }
+    }
+
+    /**
+     * One sheet of a multi-sheet workbook, found by any of its names (case-insensitive)
+     */
+    public record SheetHandler(List<String> names, int minHeaderColumns, RowHandler handler) {
+    }
+
+    /**
+     * Parse several sheets of one workbook in the given order - not the order of the sheets in the file,
+     * so referenced data can be loaded first. The package and the shared strings table are opened once.
+     * A sheet that is not in the workbook is skipped; returns the handlers whose sheet was found.
+     */
+    public static List<SheetHandler> readSheets(Path xlsx, List<SheetHandler> sheetHandlers) throws Exception {
+        List<SheetHandler> found = new ArrayList<>();
+        try (OPCPackage pkg = OPCPackage.open(xlsx.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            for (SheetHandler sheetHandler : sheetHandlers) {
+                // The iterator only opens the part of the sheet it is positioned on
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+                while (sheets.hasNext()) {
+                    try (InputStream sheet = sheets.next()) {
+                        if (matches(sheetHandler.names(), sheets.getSheetName())) {
+                            parseSheet(styles, strings, sheet, sheetHandler.minHeaderColumns(), sheetHandler.handler());
+                            found.add(sheetHandler);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean matches(List<String> names, String sheetName) {
+        for (String name : names) {
+            if (name.equalsIgnoreCase(sheetName.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void parseSheet(StylesTable styles, ReadOnlySharedStringsTable strings, InputStream sheet,
+                                   int minHeaderColumns, RowHandler handler) throws Exception {
+        RowCollector collector = new RowCollector(minHeaderColumns, handler);
+        XMLReader parser = XMLHelper.newXMLReader();
+        // false = cached formula results instead of the formula text
+        parser.setContentHandler(new XSSFSheetXMLHandler(
+            styles, null, strings, collector, new RawNumberFormatter(), false));
+        try {
+            parser.parse(new InputSource(sheet));
+        } catch (SAXException e) {
+            // Some parsers wrap exceptions thrown from the handler
+            if (e.getException() instanceof RuntimeException) {
+                throw (RuntimeException) e.getException();
+            }
+            throw e;
+        }
+        if (!collector.headerSeen && minHeaderColumns > 0) {
+            throw new ExcelStructureException("Липсва заглавен ред");
+        }
+        handler.end();
+    }
+
+    /**
+     * One sheet row; missing cells read as "" (strings) and 0 (numbers)
+     */
+    public static final class XlsxRow {
+
+        private final int rowNum;
+        private final String[] cells;
+
+        XlsxRow(int rowNum, String[] cells) {
+            this.rowNum = rowNum;
+            this.cells = cells;
+        }
+
+        /**
+         * Zero-based row index as in the sheet (the header is row 0)
+         */
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        public int getColumnCount() {
+            return cells.length;
+        }
+
+        public boolean isEmpty() {
+            return cells.length == 0;
+        }
+
+        /**
+         * True when the sheet has a cell at this column
+         */
+        public boolean has(int column) {
+            return column < cells.length && cells[column] != null;
+        }
+
+        public String getString(int column) {
+            return has(column) ? cells[column].trim() : "";
+        }
+
+        /**
+         * Numeric value of the cell; a comma is accepted as decimal separator (Bulgarian format).
+         * Text values (CSV) may also carry grouping - "1 234,56" and "1.234,56" read as 1234.56
+         */
+        public double getDouble(int column) {
+            String value = getString(column);
+            if (value.isEmpty()) {
+                return 0.0;
+            }
+            try {
+                return Double.parseDouble(normalizeNumber(value));
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+
+        static String normalizeNumber(String value) {
+            // Spaces (incl. no-break) are grouping only
+            String number = value.replace(" ", "").replace("\u00A0", "");
+            int comma = number.lastIndexOf(',');
+            int dot = number.lastIndexOf('.');
+            if (comma >= 0 && dot >= 0) {
+                // Both present - the last one is the decimal separator, the other one groups thousands
+                return comma > dot
+                    ? number.replace(".", "").replace(',', '.')
+                    : number.replace(",", "");
+            }
+            return number.replace(',', '.');
+        }
+    }
+
+    private static final class RowCollector implements SheetContentsHandler {
+
+        private final int minHeaderColumns;
+        private final RowHandler handler;
+        private String[] cells = new String[16];
+        private int width;
+        private int nextColumn;
+        private boolean headerSeen;
+
+        RowCollector(int minHeaderColumns, RowHandler handler) {
+            this.minHeaderColumns = minHeaderColumns;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(cells, 0, width, null);
+            width = 0;
+            nextColumn = 0;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            // The reference can be missing in files written by other tools - cells are then consecutive
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            if (column >= cells.length) {
+                cells = Arrays.copyOf(cells, Math.max(column + 1, cells.length * 2));
+            }
+            cells[column] = formattedValue;
+            width = Math.max(width, column + 1);
+            nextColumn = column + 1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            XlsxRow row = new XlsxRow(rowNum, Arrays.copyOf(cells, width));
+            if (!headerSeen) {
+                headerSeen = true;
+                checkHeader(row, minHeaderColumns);
+                handler.header(row);
+                return;
+            }
+            handler.row(row);
+        }
+    }
+
+    /**
+     * Header check shared with CsvRowReader - at least minHeaderColumns non-empty cells (0 = no check)
+     */
+    static void checkHeader(XlsxRow header, int minHeaderColumns) {
+        if (minHeaderColumns <= 0) {
+            return;
+        }
+        int filled = 0;
+        for (int i = 0; i < header.getColumnCount(); i++) {
+            if (!header.getString(i).isEmpty()) {
+                filled++;
+            }
+        }
+        if (filled < minHeaderColumns) {
+            throw new ExcelStructureException("Заглавният ред трябва да има поне " + minHeaderColumns + " колони");
+        }
+    }
+
+    /**
+     * Numbers are returned unformatted (no grouping, no rounding) like the old cell-based reading;
+     * only date-formatted cells go through the regular formatting
+     */
+    private static final class RawNumberFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return super.formatRawCellContents(value, formatIndex, formatString, use1904Windowing);
+            }
+            if (value == (long) value) {
+                return String.valueOf((long) value);
+            }
+            return String.valueOf(value);
+        }
+    }
+}
@@ -1 +1,4 @@
 ALTER TABLE apartments MODIFY price_per_m2 DECIMAL(15,2) NULL;
+-- Client EGN/EIK is unique (uk_client_egn): store it normalized and blank values as NULL before the index is created
+UPDATE clients SET egn = UPPER(REPLACE(REPLACE(TRIM(egn), ' ', ''), '-', '')) WHERE egn IS NOT NULL;
+UPDATE clients SET egn = NULL WHERE egn = '';
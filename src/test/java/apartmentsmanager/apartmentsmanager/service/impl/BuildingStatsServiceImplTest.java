@@ -0,0 +1,202 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingStatisticsSnapshot;
+import apartmentsmanager.apartmentsmanager.entity.BuildingStats;
+import apartmentsmanager.apartmentsmanager.entity.PaymentStage;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A building_stats row maintained by deltas must end up equal to a full rebuild from the aggregate.
+ * The repositories are backed by maps: apartments holds the contribution of every sold apartment
+ * (what findStatisticsSnapshotByApartment returns), stored holds the building_stats rows.
+ */
+class BuildingStatsServiceImplTest {
+
+    private static final Long BUILDING_A = 1L;
+    private static final Long BUILDING_B = 2L;
+
+    private final Map<Long, BuildingStats> apartments = new HashMap<>();
+    private final Map<Long, BuildingStats> stored = new HashMap<>();
+    private BuildingStatsServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        BuildingStatsRepository statsRepository = mock(BuildingStatsRepository.class);
+        ApartmentRepository apartmentRepository = mock(ApartmentRepository.class);
+
+        when(statsRepository.insertIfMissing(anyLong())).thenAnswer(invocation -> {
+            Long buildingId = invocation.getArgument(0);
+            if (stored.containsKey(buildingId)) {
+                return 0;
+            }
+            stored.put(buildingId, BuildingStats.of(buildingId, null));
+            return 1;
+        });
+        when(statsRepository.findByIdForUpdate(anyLong()))
+            .thenAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<Long>getArgument(0))));
+        when(statsRepository.save(any(BuildingStats.class))).thenAnswer(invocation -> {
+            BuildingStats stats = invocation.getArgument(0);
+            stored.put(stats.getBuildingId(), stats);
+            return stats;
+        });
+        when(apartmentRepository.findStatisticsSnapshotByBuilding(anyLong()))
+            .thenAnswer(invocation -> aggregate(invocation.getArgument(0)));
+
+        service = new BuildingStatsServiceImpl(statsRepository, apartmentRepository,
+            mock(BuildingRepository.class), mock(ApplicationEventPublisher.class));
+
+        apartments.put(10L, contribution(BUILDING_A, "100000", "20000", PaymentStage.PRELIMINARY));
+        apartments.put(11L, contribution(BUILDING_A, "150000", "0", PaymentStage.AKT14));
+        apartments.put(20L, contribution(BUILDING_B, "90000", "45000", PaymentStage.AKT15));
+        service.rebuildBuilding(BUILDING_A);
+        service.rebuildBuilding(BUILDING_B);
+    }
+
+    @Test
+    void paymentOnSameBuildingMatchesRebuild() {
+        change(10L, contribution(BUILDING_A, "100000", "35000", PaymentStage.PRELIMINARY));
+
+        assertMatchesRebuild(BUILDING_A);
+        assertMatchesRebuild(BUILDING_B);
+    }
+
+    @Test
+    void stageChangeOnSameBuildingMatchesRebuild() {
+        change(11L, contribution(BUILDING_A, "150000", "0", PaymentStage.AKT16));
+
+        assertMatchesRebuild(BUILDING_A);
+        assertEquals(1, stored.get(BUILDING_A).getAkt16Count());
+        assertEquals(0, stored.get(BUILDING_A).getAkt14Count());
+    }
+
+    @Test
+    void soldToUnsoldMatchesRebuild() {
+        change(10L, null);
+
+        assertMatchesRebuild(BUILDING_A);
+        assertEquals(1, stored.get(BUILDING_A).getTotalApartments());
+    }
+
+    @Test
+    void moveToAnotherBuildingMatchesRebuild() {
+        change(11L, contribution(BUILDING_B, "150000", "0", PaymentStage.AKT14));
+
+        assertMatchesRebuild(BUILDING_A);
+        assertMatchesRebuild(BUILDING_B);
+        assertEquals(2, stored.get(BUILDING_B).getTotalApartments());
+    }
+
+    @Test
+    void missingRowIsBuiltFromAggregateWithoutDoubleCounting() {
+        stored.remove(BUILDING_A);
+
+        change(12L, contribution(BUILDING_A, "80000", "8000", PaymentStage.PRELIMINARY));
+
+        assertMatchesRebuild(BUILDING_A);
+        assertEquals(3, stored.get(BUILDING_A).getTotalApartments());
+    }
+
+    @Test
+    void missingRowOfNewBuildingThenSecondWriteMatchesRebuild() {
+        Long newBuilding = 3L;
+
+        change(30L, contribution(newBuilding, "60000", "0", PaymentStage.PRELIMINARY));
+        change(31L, contribution(newBuilding, "70000", "7000", PaymentStage.PRELIMINARY));
+
+        assertMatchesRebuild(newBuilding);
+        assertEquals(2, stored.get(newBuilding).getTotalApartments());
+    }
+
+    /**
+     * Same order as the write paths: capture before, write (flushed), capture after, apply
+     */
+    private void change(Long apartmentId, BuildingStats after) {
+        BuildingStats before = apartments.get(apartmentId);
+        if (after != null) {
+            apartments.put(apartmentId, after);
+        } else {
+            apartments.remove(apartmentId);
+        }
+        service.applyApartmentChange(before, after);
+    }
+
+    private BuildingStatisticsSnapshot aggregate(Long buildingId) {
+        BuildingStats total = BuildingStats.of(buildingId, null);
+        for (BuildingStats apartment : apartments.values()) {
+            if (buildingId.equals(apartment.getBuildingId())) {
+                total.add(apartment, 1);
+            }
+        }
+        return total;
+    }
+
+    private static BuildingStats contribution(Long buildingId, String revenue, String collected, PaymentStage stage) {
+        BuildingStats apartment = BuildingStats.of(buildingId, null);
+        apartment.setTotalApartments(1);
+        apartment.setTotalRevenue(new BigDecimal(revenue));
+        apartment.setTotalCollected(new BigDecimal(collected));
+        switch (stage) {
+            case PRELIMINARY:
+                apartment.setPrelimCount(1);
+                apartment.setCollectedPrelim(new BigDecimal(collected));
+                break;
+            case AKT14:
+                apartment.setAkt14Count(1);
+                apartment.setCollectedAkt14(new BigDecimal(collected));
+                break;
+            case AKT15:
+                apartment.setAkt15Count(1);
+                apartment.setCollectedAkt15(new BigDecimal(collected));
+                break;
+            case AKT16:
+                apartment.setAkt16Count(1);
+                apartment.setCollectedAkt16(new BigDecimal(collected));
+                break;
+        }
+        apartment.setExpectedPrelim(new BigDecimal(revenue).multiply(new BigDecimal("0.2")));
+        apartment.setExpectedAkt14(new BigDecimal(revenue).multiply(new BigDecimal("0.3")));
+        return apartment;
+    }
+
+    private void assertMatchesRebuild(Long buildingId) {
+        BuildingStatisticsSnapshot expected = aggregate(buildingId);
+        BuildingStats actual = stored.get(buildingId);
+        assertNotNull(actual, "building_stats row of building " + buildingId);
+        assertEquals(expected.getTotalApartments(), actual.getTotalApartments());
+        assertEquals(expected.getPrelimCount(), actual.getPrelimCount());
+        assertEquals(expected.getAkt14Count(), actual.getAkt14Count());
+        assertEquals(expected.getAkt15Count(), actual.getAkt15Count());
+        assertEquals(expected.getAkt16Count(), actual.getAkt16Count());
+        assertAmount(expected.getTotalRevenue(), actual.getTotalRevenue());
+        assertAmount(expected.getTotalCollected(), actual.getTotalCollected());
+        assertAmount(expected.getExpectedPrelim(), actual.getExpectedPrelim());
+        assertAmount(expected.getExpectedAkt14(), actual.getExpectedAkt14());
+        assertAmount(expected.getExpectedAkt15(), actual.getExpectedAkt15());
+        assertAmount(expected.getExpectedAkt16(), actual.getExpectedAkt16());
+        assertAmount(expected.getCollectedPrelim(), actual.getCollectedPrelim());
+        assertAmount(expected.getCollectedAkt14(), actual.getCollectedAkt14());
+        assertAmount(expected.getCollectedAkt15(), actual.getCollectedAkt15());
+        assertAmount(expected.getCollectedAkt16(), actual.getCollectedAkt16());
+    }
+
+    private static void assertAmount(BigDecimal expected, BigDecimal actual) {
+        assertEquals(0, expected.compareTo(actual), "expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,264 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.ClientMatchKey;
+import apartmentsmanager.apartmentsmanager.entity.Client;
+import apartmentsmanager.apartmentsmanager.repository.ClientRepository;
+import apartmentsmanager.apartmentsmanager.service.ClientImportService;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dedupe rules of the client import. JDBC is replaced by a recording JdbcTemplate: inserted and updated
+ * hold the bound parameters of every written row (index -> value), rows with a name in rejected fail.
+ */
+class ClientImportServiceImplTest {
+
+    private static final int NAME = 1;
+    private static final int PHONE = 2;
+    private static final int EMAIL = 3;
+    private static final int EGN = 4;
+    private static final int ADDRESS = 5;
+    private static final int UPDATE_ID = 8;
+
+    private final ClientRepository clientRepository = mock(ClientRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final List<Map<Integer, String>> inserted = new ArrayList<>();
+    private final List<Map<Integer, String>> updated = new ArrayList<>();
+    private final Set<String> rejected = new HashSet<>();
+    private final Map<Integer, String> rowErrors = new HashMap<>();
+    private Map<Integer, String> bound;
+    private long nextId = 100;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        doAnswer(invocation -> bound.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(statement).setString(anyInt(), any());
+        doAnswer(invocation -> bound.put(invocation.getArgument(0), String.valueOf(invocation.<Long>getArgument(1))))
+            .when(statement).setLong(anyInt(), anyLong());
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString(), anyInt())).thenReturn(statement);
+
+        // Multi-row insert: all or nothing, like the rolled back transaction of a batch
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+                any(KeyHolder.class))).thenAnswer(invocation -> {
+            BatchPreparedStatementSetter setter = invocation.getArgument(1);
+            List<Map<Integer, String>> rows = new ArrayList<>();
+            for (int i = 0; i < setter.getBatchSize(); i++) {
+                bound = new HashMap<>();
+                setter.setValues(statement, i);
+                rows.add(bound);
+            }
+            for (Map<Integer, String> row : rows) {
+                rejectIfListed(row);
+            }
+            KeyHolder keyHolder = invocation.getArgument(2);
+            for (Map<Integer, String> row : rows) {
+                keyHolder.getKeyList().add(Map.of("GENERATED_KEY", insert(row)));
+            }
+            return new int[rows.size()];
+        });
+        // Single insert of the row-by-row retry
+        when(jdbcTemplate.update(any(PreparedStatementCreator.class), any(KeyHolder.class))).thenAnswer(invocation -> {
+            bound = new HashMap<>();
+            invocation.<PreparedStatementCreator>getArgument(0).createPreparedStatement(connection);
+            rejectIfListed(bound);
+            invocation.<KeyHolder>getArgument(1).getKeyList().add(Map.of("GENERATED_KEY", insert(bound)));
+            return 1;
+        });
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenAnswer(invocation -> {
+                ParameterizedPreparedStatementSetter<Object> setter = invocation.getArgument(3);
+                for (Object row : invocation.<Collection<?>>getArgument(1)) {
+                    bound = new HashMap<>();
+                    setter.setValues(statement, row);
+                    updated.add(bound);
+                }
+                return new int[0][];
+            });
+    }
+
+    @Test
+    void egnIsMatchedBeforeEmail() {
+        ClientImportService.Session session = begin(10,
+            key(1L, "8001011234", "petrov@mail.bg", null),
+            key(2L, null, "ivan@mail.bg", null));
+
+        session.add(2, client("Иван Петров", "800101-1234", "ivan@mail.bg", null));
+        ClientImportService.Result result = session.finish();
+
+        assertEquals(0, result.inserted());
+        assertEquals(1, result.updated());
+        assertEquals("1", updated.get(0).get(UPDATE_ID));
+    }
+
+    @Test
+    void emailAndPhoneDoNotMatchWhenEgnsDiffer() {
+        ClientImportService.Session session = begin(10,
+            key(1L, "8001011234", "shared@mail.bg", "0888123456"));
+
+        session.add(2, client("Мария Петрова", "9002021234", "SHARED@mail.bg", null));
+        session.add(3, client("Георги Петров", "9103031234", null, "+359 888 123 456"));
+        // Without an EGN the email is enough
+        session.add(4, client("Иван Петров", null, " Shared@Mail.bg ", null));
+        ClientImportService.Result result = session.finish();
+
+        assertEquals(2, result.inserted());
+        assertEquals(1, result.updated());
+        assertEquals("1", updated.get(0).get(UPDATE_ID));
+        assertEquals(Arrays.asList("9002021234", "9103031234"),
+            Arrays.asList(inserted.get(0).get(EGN), inserted.get(1).get(EGN)));
+    }
+
+    @Test
+    void normalizePhoneTurnsBulgarianPrefixIntoLeadingZero() {
+        assertEquals("0888123456", ClientImportServiceImpl.normalizePhone("+359 888 123 456"));
+        assertEquals("0888123456", ClientImportServiceImpl.normalizePhone("00359 888 123 456"));
+        assertEquals("0888123456", ClientImportServiceImpl.normalizePhone("088-812-34-56"));
+        // 359 without "+" is not a country code
+        assertEquals("359888123456", ClientImportServiceImpl.normalizePhone("359888123456"));
+        assertNull(ClientImportServiceImpl.normalizePhone("12 34"));
+        assertNull(ClientImportServiceImpl.normalizePhone(null));
+    }
+
+    @Test
+    void mergeTakesLaterValuesAndKeepsEarlierOnesForEmptyFields() {
+        Client target = client("Иван Петров", "8001011234", "ivan@mail.bg", "0888123456");
+        Client row = client("Иван Г. Петров", null, "petrov@mail.bg", null);
+        row.setAddress("ул. Роза 5");
+
+        ClientImportServiceImpl.merge(target, row);
+
+        assertEquals("Иван Г. Петров", target.getName());
+        assertEquals("8001011234", target.getEgn());
+        assertEquals("petrov@mail.bg", target.getEmail());
+        assertEquals("0888123456", target.getPhone());
+        assertEquals("ул. Роза 5", target.getAddress());
+    }
+
+    @Test
+    void repeatedRowsAreMergedIntoPendingInsert() {
+        ClientImportService.Session session = begin(10);
+
+        session.add(2, client("Иван Петров", "8001011234", null, "0888 111 222"));
+        session.add(3, client("Иван Г. Петров", "8001011234", "ivan@mail.bg", null));
+        // No EGN, matched through the phone of the first row
+        Client byPhone = client("Иван Петров", null, null, "+359888111222");
+        byPhone.setAddress("ул. Роза 5");
+        session.add(4, byPhone);
+        ClientImportService.Result result = session.finish();
+
+        assertEquals(1, result.inserted());
+        assertEquals(2, result.updated());
+        assertEquals(1, inserted.size());
+        assertTrue(updated.isEmpty());
+        Map<Integer, String> row = inserted.get(0);
+        assertEquals("Иван Петров", row.get(NAME));
+        assertEquals("+359888111222", row.get(PHONE));
+        assertEquals("ivan@mail.bg", row.get(EMAIL));
+        assertEquals("8001011234", row.get(EGN));
+        assertEquals("ул. Роза 5", row.get(ADDRESS));
+        assertEquals(100L, session.findIdByEgn("8001011234"));
+    }
+
+    @Test
+    void failedInsertIsForgottenSoLaterRowsAreMatchedAgain() {
+        rejected.add("Дубликат");
+        ClientImportService.Session session = begin(1);
+
+        session.add(2, client("Дубликат", "8001011234", null, null));
+        assertNull(session.findIdByEgn("8001011234"));
+        session.add(3, client("Иван Петров", "8001011234", null, null));
+        ClientImportService.Result result = session.finish();
+
+        assertEquals(1, result.inserted());
+        assertEquals(0, result.updated());
+        assertTrue(rowErrors.containsKey(2));
+        assertEquals(1, rowErrors.size());
+        assertEquals("Иван Петров", inserted.get(0).get(NAME));
+        assertEquals(100L, session.findIdByEgn("8001011234"));
+    }
+
+    private ClientImportService.Session begin(int batchSize, ClientMatchKey... stored) {
+        when(clientRepository.findAllMatchKeys()).thenReturn(Arrays.asList(stored));
+        ClientImportServiceImpl service = new ClientImportServiceImpl(clientRepository, jdbcTemplate,
+            mock(PlatformTransactionManager.class), mock(Validator.class), batchSize);
+        return service.begin(rowErrors::put);
+    }
+
+    private void rejectIfListed(Map<Integer, String> row) {
+        if (rejected.contains(row.get(NAME))) {
+            throw new DataIntegrityViolationException("Duplicate entry '" + row.get(EGN) + "' for key 'clients.egn'");
+        }
+    }
+
+    private Long insert(Map<Integer, String> row) {
+        inserted.add(row);
+        return nextId++;
+    }
+
+    private static Client client(String name, String egn, String email, String phone) {
+        Client client = new Client();
+        client.setName(name);
+        client.setEgn(egn);
+        client.setEmail(email);
+        client.setPhone(phone);
+        return client;
+    }
+
+    private static ClientMatchKey key(Long id, String egn, String email, String phone) {
+        return new ClientMatchKey() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getEgn() {
+                return egn;
+            }
+
+            @Override
+            public String getEmail() {
+                return email;
+            }
+
+            @Override
+            public String getPhone() {
+                return phone;
+            }
+        };
+    }
+}
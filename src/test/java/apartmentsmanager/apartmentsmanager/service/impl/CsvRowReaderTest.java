@@ -0,0 +1,119 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.service.ExcelStructureException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvRowReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void skipsByteOrderMark() throws IOException {
+        Rows rows = read("\uFEFFСграда;Апартамент;Сума\nА;1;100\n", 3);
+
+        assertEquals("Сграда", rows.header.getString(0));
+        assertEquals(1, rows.rows.size());
+        assertEquals("А", rows.rows.get(0).getString(0));
+    }
+
+    @Test
+    void readsQuotedFieldsWithDoubledQuotesAndLineBreaks() throws IOException {
+        Rows rows = read("Име;Бележки;Адрес\n\"Иван \"\"Ванко\"\" Петров\";\"ред 1\nред 2\";\"ул. Роза; 5\"\n", 3);
+
+        assertEquals(1, rows.rows.size());
+        XlsxRowReader.XlsxRow row = rows.rows.get(0);
+        assertEquals("Иван \"Ванко\" Петров", row.getString(0));
+        assertEquals("ред 1\nред 2", row.getString(1));
+        assertEquals("ул. Роза; 5", row.getString(2));
+    }
+
+    @Test
+    void treatsCrLfAsOneLineBreak() throws IOException {
+        Rows rows = read("a;b;c\r\n1;2;3\r\n4;5;6\r\n", 3);
+
+        assertEquals(2, rows.rows.size());
+        assertEquals("3", rows.rows.get(0).getString(2));
+        assertEquals(2, rows.rows.get(1).getRowNum());
+        assertEquals("4", rows.rows.get(1).getString(0));
+    }
+
+    @Test
+    void readsLastLineWithoutLineBreak() throws IOException {
+        Rows rows = read("a;b;c\n1;2;3", 3);
+
+        assertEquals(1, rows.rows.size());
+        assertEquals("3", rows.rows.get(0).getString(2));
+        assertTrue(rows.ended);
+    }
+
+    @Test
+    void detectsDelimiterFromHeader() throws IOException {
+        Rows comma = read("a,b,c\n1,\"2,5\",3\n", 3);
+        assertEquals("2,5", comma.rows.get(0).getString(1));
+        assertEquals("3", comma.rows.get(0).getString(2));
+
+        Rows tab = read("a\tb\tc\n1\t2;5\t3\n", 3);
+        assertEquals("2;5", tab.rows.get(0).getString(1));
+
+        // Decimal commas in the data do not matter - only the header decides
+        Rows semicolon = read("a;b;c\n1,5;2,5;3\n", 3);
+        assertEquals("1,5", semicolon.rows.get(0).getString(0));
+        assertEquals(1.5, semicolon.rows.get(0).getDouble(0));
+    }
+
+    @Test
+    void deliversEmptyLinesAsEmptyRows() throws IOException {
+        Rows rows = read("a;b;c\n\n1;2;3\n", 3);
+
+        assertEquals(2, rows.rows.size());
+        assertTrue(rows.rows.get(0).isEmpty());
+        assertEquals("1", rows.rows.get(1).getString(0));
+    }
+
+    @Test
+    void rejectsShortHeader() {
+        assertThrows(ExcelStructureException.class, () -> read("a;b\n1;2\n", 3));
+    }
+
+    private Rows read(String content, int minHeaderColumns) throws IOException {
+        Path file = dir.resolve("import.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        Rows rows = new Rows();
+        CsvRowReader.read(file, minHeaderColumns, rows);
+        return rows;
+    }
+
+    private static final class Rows implements XlsxRowReader.RowHandler {
+        private XlsxRowReader.XlsxRow header;
+        private final List<XlsxRowReader.XlsxRow> rows = new ArrayList<>();
+        private boolean ended;
+
+        @Override
+        public void header(XlsxRowReader.XlsxRow header) {
+            this.header = header;
+        }
+
+        @Override
+        public void row(XlsxRowReader.XlsxRow row) {
+            rows.add(row);
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+        }
+    }
+}
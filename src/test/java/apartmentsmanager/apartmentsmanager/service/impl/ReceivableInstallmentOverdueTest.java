@@ -0,0 +1,78 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import apartmentsmanager.apartmentsmanager.dto.BuildingCount;
+import apartmentsmanager.apartmentsmanager.dto.OverdueApartmentRow;
+import apartmentsmanager.apartmentsmanager.dto.PaymentPlanRow;
+import apartmentsmanager.apartmentsmanager.entity.Apartment;
+import apartmentsmanager.apartmentsmanager.entity.Building;
+import apartmentsmanager.apartmentsmanager.repository.ApartmentRepository;
+import apartmentsmanager.apartmentsmanager.repository.BuildingRepository;
+import apartmentsmanager.apartmentsmanager.repository.ReceivableInstallmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The overdue list and the overdue counts read receivable_installments with the same rule as
+ * Apartment.hasOverduePayments: a stage the apartment has reached is due even without a date
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.sql.init.mode=never"
+})
+class ReceivableInstallmentOverdueTest {
+
+    @Autowired
+    private BuildingRepository buildingRepository;
+
+    @Autowired
+    private ApartmentRepository apartmentRepository;
+
+    @Autowired
+    private ReceivableInstallmentRepository installmentRepository;
+
+    @Test
+    void undatedReachedStageIsOverdueInListAndCounts() {
+        Building building = new Building();
+        building.setName("Сграда А");
+        building = buildingRepository.save(building);
+
+        Apartment apartment = new Apartment();
+        apartment.setBuilding(building);
+        apartment.setApartmentNumber("1");
+        apartment.setArea(new BigDecimal("80.00"));
+        apartment.setTotalPrice(new BigDecimal("60000.00"));
+        apartment.setStage("Акт 14");
+        apartment.setIsSold(true);
+        // Preliminary dated in the future, Акт 14 reached but without a date, Акт 15 not reached yet
+        apartment.getPaymentPlan().setPreliminaryContractAmount(new BigDecimal("10000.00"));
+        apartment.getPaymentPlan().setPreliminaryContractDate(LocalDate.now().plusMonths(1));
+        apartment.getPaymentPlan().setAkt14Amount(new BigDecimal("20000.00"));
+        apartment.getPaymentPlan().setAkt15Amount(new BigDecimal("30000.00"));
+        apartment.getPaymentPlan().setAkt15Date(LocalDate.now().plusMonths(6));
+        apartment = apartmentRepository.saveAndFlush(apartment);
+
+        PaymentPlanRow plan = apartmentRepository.findPaymentPlanRowByApartment(apartment.getId()).orElseThrow();
+        installmentRepository.saveAllAndFlush(ReceivableInstallmentServiceImpl.buildInstallments(plan, BigDecimal.ZERO));
+
+        List<OverdueApartmentRow> overdue = installmentRepository.findOverdueRowsByBuilding(building.getId());
+        assertEquals(1, overdue.size());
+        assertEquals(0, new BigDecimal("30000.00").compareTo(overdue.get(0).getOverdueAmount()));
+
+        assertEquals(1L, installmentRepository.countOverdueApartmentsByBuilding(building.getId()));
+        List<BuildingCount> grouped = installmentRepository.countOverdueApartmentsGroupedByBuilding();
+        assertEquals(1, grouped.size());
+        assertEquals(1L, grouped.get(0).getTotal());
+        assertTrue(installmentRepository.findOverdueRowByApartment(apartment.getId()).isPresent());
+
+        assertTrue(apartment.hasOverduePayments());
+    }
+}
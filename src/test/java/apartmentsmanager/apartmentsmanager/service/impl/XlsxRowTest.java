@@ -0,0 +1,33 @@
+package apartmentsmanager.apartmentsmanager.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XlsxRowTest {
+
+    @Test
+    void normalizeNumberAcceptsDecimalComma() {
+        assertEquals("1234.56", XlsxRowReader.XlsxRow.normalizeNumber("1234,56"));
+        assertEquals("1234.56", XlsxRowReader.XlsxRow.normalizeNumber("1234.56"));
+        assertEquals("100", XlsxRowReader.XlsxRow.normalizeNumber("100"));
+    }
+
+    @Test
+    void normalizeNumberDropsGrouping() {
+        assertEquals("1234.56", XlsxRowReader.XlsxRow.normalizeNumber("1 234,56"));
+        assertEquals("1234.56", XlsxRowReader.XlsxRow.normalizeNumber("1\u00A0234,56"));
+        assertEquals("1234567.89", XlsxRowReader.XlsxRow.normalizeNumber("1.234.567,89"));
+        assertEquals("1234567.89", XlsxRowReader.XlsxRow.normalizeNumber("1,234,567.89"));
+    }
+
+    @Test
+    void getDoubleReadsNormalizedTextAndDefaultsToZero() {
+        XlsxRowReader.XlsxRow row = new XlsxRowReader.XlsxRow(1, new String[] {"1.234,56", "", "abc"});
+
+        assertEquals(1234.56, row.getDouble(0));
+        assertEquals(0.0, row.getDouble(1));
+        assertEquals(0.0, row.getDouble(2));
+        assertEquals(0.0, row.getDouble(5));
+    }
+}